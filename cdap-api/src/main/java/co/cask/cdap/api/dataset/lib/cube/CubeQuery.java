@@ -55,6 +55,7 @@ public final class CubeQuery {
   private final Map<String, String> dimensionValues;
   private final List<String> groupByDimensions;
   private final Interpolator interpolator;
+  private final int parallelism;
 
   /**
    * Creates {@link CubeQuery} with given parameters.
@@ -74,6 +75,30 @@ public final class CubeQuery {
                    Map<String, AggregationFunction> measurements,
                    Map<String, String> dimensionValues, List<String> groupByDimensions,
                    @Nullable Interpolator interpolator) {
+    this(aggregation, startTs, endTs, resolution, limit, measurements, dimensionValues, groupByDimensions,
+         interpolator, 1);
+  }
+
+  /**
+   * Creates {@link CubeQuery} with given parameters.
+   * @param aggregation (optional) aggregation name to query in; if {@code null}, the aggregation will be auto-selected
+   *                    based on rest of query parameters
+   * @param startTs start (inclusive) of the time range to query
+   * @param endTs end (exclusive) of the time range to query
+   * @param resolution resolution of the aggregation to query in
+   * @param limit max number of returned data points
+   * @param measurements map of measure name, measure type to query for, empty map means "all measures"
+   * @param dimensionValues dimension values to filter by
+   * @param groupByDimensions dimensions to group by
+   * @param interpolator {@link Interpolator} to use
+   * @param parallelism max number of concurrent scans to use for the query, the {@link Cube} implementation
+   *                    may use less
+   */
+  public CubeQuery(@Nullable String aggregation,
+                   long startTs, long endTs, int resolution, int limit,
+                   Map<String, AggregationFunction> measurements,
+                   Map<String, String> dimensionValues, List<String> groupByDimensions,
+                   @Nullable Interpolator interpolator, int parallelism) {
     this.aggregation = aggregation;
     this.startTs = startTs;
     this.endTs = endTs;
@@ -83,6 +108,7 @@ public final class CubeQuery {
     this.dimensionValues = Collections.unmodifiableMap(new HashMap<>(dimensionValues));
     this.groupByDimensions = Collections.unmodifiableList(new ArrayList<>(groupByDimensions));
     this.interpolator = interpolator;
+    this.parallelism = parallelism;
   }
 
   @Nullable
@@ -123,6 +149,13 @@ public final class CubeQuery {
     return interpolator;
   }
 
+  /**
+   * @return max number of concurrent scans to use for the query
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder();
@@ -136,6 +169,7 @@ public final class CubeQuery {
     sb.append(", dimensionValues=").append(dimensionValues);
     sb.append(", groupByDimensions=").append(groupByDimensions);
     sb.append(", interpolator=").append(interpolator);
+    sb.append(", parallelism=").append(parallelism);
     sb.append('}');
     return sb.toString();
   }
@@ -160,6 +194,7 @@ public final class CubeQuery {
     private Map<String, String> dimensionValues = new HashMap<>();
     private List<String> groupByDimensions = new ArrayList<>();
     private Interpolator interpolator;
+    private int parallelism = 1;
 
     /**
      * @return builder for configuring {@link CubeQuery}
@@ -173,7 +208,7 @@ public final class CubeQuery {
      */
     private CubeQuery build() {
       return new CubeQuery(aggregation, startTs, endTs, resolution, limit,
-                           measurements, dimensionValues, groupByDimensions, interpolator);
+                           measurements, dimensionValues, groupByDimensions, interpolator, parallelism);
     }
 
     /**
@@ -400,6 +435,16 @@ public final class CubeQuery {
         return new Build();
       }
 
+      /**
+       * Sets max number of concurrent scans to use for {@link CubeQuery}.
+       * @param parallelism max number of concurrent scans
+       * @return builder for configuring {@link CubeQuery}
+       */
+      public Limit parallelism(int parallelism) {
+        Builder.this.parallelism = parallelism;
+        return this;
+      }
+
       /**
        * @return {@link CubeQuery}
        */
@@ -414,6 +459,16 @@ public final class CubeQuery {
     public final class Build {
       private Build() {}
 
+      /**
+       * Sets max number of concurrent scans to use for {@link CubeQuery}.
+       * @param parallelism max number of concurrent scans
+       * @return builder for configuring {@link CubeQuery}
+       */
+      public Build parallelism(int parallelism) {
+        Builder.this.parallelism = parallelism;
+        return this;
+      }
+
       /**
        * @return {@link CubeQuery}
        */
@@ -37,4 +37,12 @@ public interface MetricsCollector {
    * @param value value of the metric.
    */
   void gauge(String metricName, long value);
+
+  /**
+   * Adds a value to the distribution of a metric at the current time. Percentiles of the values added to
+   * the distribution can be queried.
+   * @param metricName Name of the metric.
+   * @param value value to add to the distribution, e.g. a latency.
+   */
+  void distribution(String metricName, long value);
 }
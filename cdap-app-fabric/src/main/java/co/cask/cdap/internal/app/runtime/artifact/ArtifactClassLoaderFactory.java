@@ -20,10 +20,8 @@ import co.cask.cdap.app.runtime.ProgramClassLoaderProvider;
 import co.cask.cdap.app.runtime.ProgramRunner;
 import co.cask.cdap.app.runtime.ProgramRunnerFactory;
 import co.cask.cdap.common.conf.CConfiguration;
-import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.lang.FilterClassLoader;
-import co.cask.cdap.common.lang.jar.BundleJarUtil;
-import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.internal.app.deploy.pipeline.NamespacedImpersonator;
 import co.cask.cdap.internal.app.runtime.ProgramClassLoader;
 import co.cask.cdap.proto.ProgramType;
@@ -47,13 +45,16 @@ final class ArtifactClassLoaderFactory {
 
   private final CConfiguration cConf;
   private final ProgramRunnerFactory programRunnerFactory;
-  private final File tmpDir;
+  private final UnpackedJarCache unpackedJarCache;
 
   ArtifactClassLoaderFactory(CConfiguration cConf, ProgramRunnerFactory programRunnerFactory) {
     this.cConf = cConf;
     this.programRunnerFactory = programRunnerFactory;
-    this.tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
-                           cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
+    try {
+      this.unpackedJarCache = UnpackedJarCache.get(cConf);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
   }
 
   /**
@@ -102,35 +103,39 @@ final class ArtifactClassLoaderFactory {
   }
 
   /**
-   * Unpack the given {@code artifactLocation} to a temporary directory and call
+   * Acquire the unpacked {@code artifactLocation} from the {@link UnpackedJarCache}, unpacking it if needed, and call
    * {@link #createClassLoader(File)} to create the {@link ClassLoader}.
    *
    * @param artifactLocation the location of the artifact to create the classloader from
    * @return a closeable classloader based off the specified artifact; on closing the returned {@link ClassLoader},
-   *         all temporary resources created for the classloader will be removed
+   *         the unpacked artifact will be released to the cache
    * @throws IOException if there was an error copying or unpacking the artifact
    * @see #createClassLoader(File)
    */
   CloseableClassLoader createClassLoader(final Location artifactLocation,
                                          NamespacedImpersonator namespacedImpersonator) throws IOException {
     try {
-      final File unpackDir = namespacedImpersonator.impersonate(new Callable<File>() {
-        @Override
-        public File call() throws IOException {
-          return BundleJarUtil.unJar(artifactLocation, DirUtils.createTempDir(tmpDir));
-        }
-      });
+      // The artifact location is accessed as the impersonated user even if the artifact is already in the cache
+      final UnpackedJarCache.Lease lease = namespacedImpersonator.impersonate(
+        new Callable<UnpackedJarCache.Lease>() {
+          @Override
+          public UnpackedJarCache.Lease call() throws IOException {
+            return unpackedJarCache.acquire(artifactLocation.getName(), artifactLocation);
+          }
+        });
 
-      final CloseableClassLoader classLoader = createClassLoader(unpackDir);
+      final CloseableClassLoader classLoader;
+      try {
+        classLoader = createClassLoader(lease.getDirectory());
+      } catch (Exception e) {
+        lease.close();
+        throw e;
+      }
       return new CloseableClassLoader(classLoader, new Closeable() {
         @Override
-        public void close() throws IOException {
-          try {
-            Closeables.closeQuietly(classLoader);
-            DirUtils.deleteDirectoryContents(unpackDir);
-          } catch (IOException e) {
-            LOG.warn("Failed to delete directory {}", unpackDir, e);
-          }
+        public void close() {
+          Closeables.closeQuietly(classLoader);
+          lease.close();
         }
       });
     } catch (Exception e) {
@@ -35,6 +35,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.lang.jar.BundleJarUtil;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.internal.app.runtime.plugin.PluginInstantiator;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
@@ -120,11 +121,11 @@ final class ArtifactInspector {
     Location artifactLocation = Locations.toLocation(artifactFile);
 
     Path stageDir = Files.createTempDirectory(tmpDir, artifactFile.getName());
-    try {
-      File unpackedDir = BundleJarUtil.unJar(artifactLocation,
-                                             Files.createTempDirectory(stageDir, "unpacked-").toFile());
-
-      try (CloseableClassLoader artifactClassLoader = artifactClassLoaderFactory.createClassLoader(unpackedDir)) {
+    // The plugin instantiator below expands the same artifact with the same name, which is served from the cache
+    String unpackName = Artifacts.getFileName(artifactId.toArtifactId());
+    try (UnpackedJarCache.Lease unpacked = UnpackedJarCache.get(cConf).acquire(unpackName, artifactLocation)) {
+      try (CloseableClassLoader artifactClassLoader =
+             artifactClassLoaderFactory.createClassLoader(unpacked.getDirectory())) {
         ArtifactClasses.Builder builder = inspectApplications(artifactId, ArtifactClasses.builder(),
                                                               artifactLocation, artifactClassLoader);
 
@@ -21,6 +21,7 @@ import co.cask.cdap.api.flow.flowlet.FailurePolicy;
 import co.cask.cdap.api.flow.flowlet.FailureReason;
 import co.cask.cdap.api.flow.flowlet.Flowlet;
 import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.api.metrics.MetricHandle;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.app.queue.InputDatum;
 import co.cask.cdap.common.conf.Constants;
@@ -67,6 +68,8 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   private final Callback txCallback;
   private final LoggingContext loggingContext;
   private final PriorityQueue<FlowletProcessEntry<?>> processQueue;
+  private final MetricHandle attemptReadMetric;
+  private final MetricHandle processTimeMetric;
 
   private Thread runThread;
   private ExecutorService processExecutor;
@@ -79,6 +82,8 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     this.dataFabricFacade = dataFabricFacade;
     this.txCallback = txCallback;
     this.loggingContext = flowletContext.getLoggingContext();
+    this.attemptReadMetric = flowletContext.getProgramMetrics().getMetricHandle("process.tuples.attempt.read");
+    this.processTimeMetric = flowletContext.getProgramMetrics().getMetricHandle("process.time.ms");
 
     processQueue = new PriorityQueue<>(processSpecifications.size());
     for (ProcessSpecification<?> spec : processSpecifications) {
@@ -97,6 +102,8 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     this.dataFabricFacade = other.dataFabricFacade;
     this.txCallback = other.txCallback;
     this.loggingContext = other.loggingContext;
+    this.attemptReadMetric = other.attemptReadMetric;
+    this.processTimeMetric = other.processTimeMetric;
     this.processQueue = new PriorityQueue<>(other.processQueue.size());
     Iterables.addAll(processQueue, other.processQueue);
   }
@@ -221,7 +228,7 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
     ProcessMethod<T> processMethod = entry.getProcessSpec().getProcessMethod();
     if (processMethod.needsInput()) {
-      flowletContext.getProgramMetrics().increment("process.tuples.attempt.read", 1);
+      attemptReadMetric.increment(1);
     }
 
     // Begin transaction and dequeue
@@ -243,7 +250,9 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
         // Call the process method and commit the transaction. The current process entry will put
         // back to queue in the postProcess method (either a retry copy or itself).
+        long processStartTime = System.nanoTime();
         ProcessMethod.ProcessResult<?> result = processMethod.invoke(input);
+        processTimeMetric.distribution(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - processStartTime));
         postProcess(processMethodCallback(processQueue, entry, input), txContext, input, result);
         return true;
 
@@ -74,8 +74,9 @@ import co.cask.cdap.internal.app.runtime.DataSetFieldSetter;
 import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.ProgramRunners;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.DatumWriterFactory;
-import co.cask.cdap.internal.io.ReflectionDatumReader;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import co.cask.cdap.internal.lang.Reflections;
 import co.cask.cdap.internal.specification.FlowletMethod;
@@ -133,6 +134,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
   private final CConfiguration cConf;
   private final SchemaGenerator schemaGenerator;
   private final DatumWriterFactory datumWriterFactory;
+  private final DatumReaderFactory datumReaderFactory;
   private final DataFabricFacadeFactory dataFabricFacadeFactory;
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final QueueReaderFactory queueReaderFactory;
@@ -148,6 +150,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
   public FlowletProgramRunner(CConfiguration cConfiguration,
                               SchemaGenerator schemaGenerator,
                               DatumWriterFactory datumWriterFactory,
+                              DatumReaderFactory datumReaderFactory,
                               DataFabricFacadeFactory dataFabricFacadeFactory,
                               StreamCoordinatorClient streamCoordinatorClient,
                               QueueReaderFactory queueReaderFactory,
@@ -161,6 +164,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
     this.cConf = cConfiguration;
     this.schemaGenerator = schemaGenerator;
     this.datumWriterFactory = datumWriterFactory;
+    this.datumReaderFactory = datumReaderFactory;
     this.dataFabricFacadeFactory = dataFabricFacadeFactory;
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.queueReaderFactory = queueReaderFactory;
@@ -615,7 +619,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
 
   private <T> Function<ByteBuffer, T> createInputDatumDecoder(final TypeToken<T> dataType, final Schema schema,
                                                               final SchemaCache schemaCache) {
-    final ReflectionDatumReader<T> datumReader = new ReflectionDatumReader<>(schema, dataType);
+    final DatumReader<T> datumReader = datumReaderFactory.create(dataType, schema);
     final ByteBufferInputStream byteBufferInput = new ByteBufferInputStream(null);
     final BinaryDecoder decoder = new BinaryDecoder(byteBufferInput);
 
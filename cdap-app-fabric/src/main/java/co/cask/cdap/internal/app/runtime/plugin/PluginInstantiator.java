@@ -27,11 +27,9 @@ import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.cdap.api.plugin.PluginProperties;
 import co.cask.cdap.api.plugin.PluginPropertyField;
 import co.cask.cdap.common.conf.CConfiguration;
-import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.lang.InstantiatorFactory;
-import co.cask.cdap.common.lang.jar.BundleJarUtil;
-import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.internal.app.runtime.artifact.Artifacts;
 import co.cask.cdap.internal.lang.FieldVisitor;
 import co.cask.cdap.internal.lang.Fields;
@@ -66,6 +64,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import javax.annotation.Nullable;
 
@@ -73,7 +72,7 @@ import javax.annotation.Nullable;
  * This class helps creating new instances of plugins. It also contains a ClassLoader cache to
  * save ClassLoader creation.
  *
- * This class implements {@link Closeable} as well for cleanup of temporary directories created for the ClassLoaders.
+ * This class implements {@link Closeable} as well for releasing the expanded plugin jars used by the ClassLoaders.
  */
 public class PluginInstantiator implements Closeable {
   private static final Logger LOG = LoggerFactory.getLogger(PluginInstantiator.class);
@@ -91,18 +90,23 @@ public class PluginInstantiator implements Closeable {
     .build();
 
   private final LoadingCache<ArtifactId, ClassLoader> classLoaders;
+  // Leases of the expanded plugin jars of the ClassLoaders in the cache
+  private final Map<ArtifactId, UnpackedJarCache.Lease> unpackedJars;
   private final InstantiatorFactory instantiatorFactory;
-  private final File tmpDir;
+  private final UnpackedJarCache unpackedJarCache;
   private final File pluginDir;
   private final ClassLoader parentClassLoader;
 
   public PluginInstantiator(CConfiguration cConf, ClassLoader parentClassLoader, File pluginDir) {
     this.instantiatorFactory = new InstantiatorFactory(false);
-    File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
-                           cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
+    try {
+      this.unpackedJarCache = UnpackedJarCache.get(cConf);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
 
     this.pluginDir = pluginDir;
-    this.tmpDir = DirUtils.createTempDir(tmpDir);
+    this.unpackedJars = new ConcurrentHashMap<>();
     this.classLoaders = CacheBuilder.newBuilder()
       .removalListener(new ClassLoaderRemovalListener())
       .build(new ClassLoaderCacheLoader());
@@ -329,17 +333,11 @@ public class PluginInstantiator implements Closeable {
 
   @Override
   public void close() throws IOException {
-    // Cleanup the ClassLoader cache and the temporary directory for the expanded plugin jar.
+    // Cleanup the ClassLoader cache, which releases the expanded plugin jars.
     classLoaders.invalidateAll();
     if (parentClassLoader instanceof Closeable) {
       Closeables.closeQuietly((Closeable) parentClassLoader);
     }
-    try {
-      DirUtils.deleteDirectoryContents(tmpDir);
-    } catch (IOException e) {
-      // It's the cleanup step. Nothing much can be done if cleanup failed.
-      LOG.warn("Failed to delete directory {}", tmpDir);
-    }
   }
 
   /**
@@ -349,17 +347,24 @@ public class PluginInstantiator implements Closeable {
 
     @Override
     public ClassLoader load(ArtifactId artifactId) throws Exception {
-      File unpackedDir = DirUtils.createTempDir(tmpDir);
-      File artifact = new File(pluginDir, Artifacts.getFileName(artifactId));
-      BundleJarUtil.unJar(Locations.toLocation(artifact), unpackedDir);
-      return new PluginClassLoader(unpackedDir, parentClassLoader);
+      String fileName = Artifacts.getFileName(artifactId);
+      UnpackedJarCache.Lease lease = unpackedJarCache.acquire(fileName,
+                                                              Locations.toLocation(new File(pluginDir, fileName)));
+      try {
+        ClassLoader classLoader = new PluginClassLoader(lease.getDirectory(), parentClassLoader);
+        unpackedJars.put(artifactId, lease);
+        return classLoader;
+      } catch (Exception e) {
+        lease.close();
+        throw e;
+      }
     }
   }
 
   /**
-   * A RemovalListener for closing plugin ClassLoader.
+   * A RemovalListener for closing plugin ClassLoader and releasing the expanded plugin jar.
    */
-  private static final class ClassLoaderRemovalListener implements RemovalListener<ArtifactId, ClassLoader> {
+  private final class ClassLoaderRemovalListener implements RemovalListener<ArtifactId, ClassLoader> {
 
     @Override
     public void onRemoval(RemovalNotification<ArtifactId, ClassLoader> notification) {
@@ -367,6 +372,10 @@ public class PluginInstantiator implements Closeable {
       if (cl instanceof Closeable) {
         Closeables.closeQuietly((Closeable) cl);
       }
+      UnpackedJarCache.Lease lease = unpackedJars.remove(notification.getKey());
+      if (lease != null) {
+        lease.close();
+      }
     }
   }
 
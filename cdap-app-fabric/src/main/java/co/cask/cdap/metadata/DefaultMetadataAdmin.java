@@ -23,6 +23,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.entity.EntityExistenceVerifier;
 import co.cask.cdap.data2.metadata.dataset.MetadataDataset;
+import co.cask.cdap.data2.metadata.store.MetadataSearchPage;
 import co.cask.cdap.data2.metadata.store.MetadataStore;
 import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.id.NamespacedEntityId;
@@ -40,6 +41,7 @@ import com.google.inject.Inject;
 
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MetadataAdmin} that interacts directly with {@link MetadataStore}.
@@ -173,6 +175,22 @@ public class DefaultMetadataAdmin implements MetadataAdmin {
     return filterAuthorizedSearchResult(metadataStore.searchMetadataOnType(scope, namespaceId, searchQuery, types));
   }
 
+  @Override
+  public MetadataSearchPage searchMetadata(String namespaceId, String searchQuery,
+                                           Set<MetadataSearchTargetType> types, boolean matchAllTerms,
+                                           @Nullable String cursor, int limit) throws Exception {
+    // Filter before paginating, so that the pages are not shortened by unauthorized results
+    Principal principal = authenticationContext.getPrincipal();
+    final Predicate<EntityId> filter = authorizationEnforcer.createFilter(principal);
+    return metadataStore.searchMetadataRanked(
+      namespaceId, searchQuery, types, matchAllTerms, new com.google.common.base.Predicate<NamespacedEntityId>() {
+        @Override
+        public boolean apply(NamespacedEntityId entityId) {
+          return filter.apply(entityId);
+        }
+      }, cursor, limit);
+  }
+
   /**
    * Filter a list of {@link MetadataSearchResultRecord} that ensures the logged-in user has a privilege on
    *
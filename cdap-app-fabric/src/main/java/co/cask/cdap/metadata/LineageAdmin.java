@@ -43,25 +43,39 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import org.apache.twill.api.RunId;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -71,21 +85,14 @@ import javax.annotation.Nullable;
 public class LineageAdmin {
   private static final Logger LOG = LoggerFactory.getLogger(LineageAdmin.class);
 
-  private static final Function<Relation, ProgramId> RELATION_TO_PROGRAM_FUNCTION =
-    new Function<Relation, ProgramId>() {
-      @Override
-      public ProgramId apply(Relation input) {
-        return input.getProgram();
-      }
-    };
-
-  private static final Function<Relation, NamespacedEntityId> RELATION_TO_DATA_FUNCTION =
-    new Function<Relation, NamespacedEntityId>() {
-      @Override
-      public NamespacedEntityId apply(Relation input) {
-        return input.getData();
-      }
-    };
+  // Relations are scanned and cached in time buckets, so that lineage requests with similar time ranges,
+  // such as repeated requests for the last week, can be served from the cache
+  private static final long SCAN_BUCKET_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long CACHE_EXPIRY_SECONDS = 60;
+  private static final long CACHE_MAX_RELATIONS = 100000;
+  // Number of entities in a frontier to scan in one transaction and the max number of concurrent scans
+  private static final int SCAN_BATCH_SIZE = 50;
+  private static final int MAX_SCAN_PARALLELISM = 4;
 
   private static final Predicate<Relation> UNKNOWN_TYPE_FILTER = new Predicate<Relation>() {
     @Override
@@ -110,6 +117,8 @@ public class LineageAdmin {
   private final Store store;
   private final MetadataStore metadataStore;
   private final EntityExistenceVerifier entityExistenceVerifier;
+  private final Cache<RelationScanKey, Set<Relation>> relationsCache;
+  private final ExecutorService scanExecutor;
 
   @Inject
   LineageAdmin(LineageStoreReader lineageStoreReader, Store store, MetadataStore metadataStore,
@@ -118,6 +127,21 @@ public class LineageAdmin {
     this.store = store;
     this.metadataStore = metadataStore;
     this.entityExistenceVerifier = entityExistenceVerifier;
+    this.relationsCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(CACHE_EXPIRY_SECONDS, TimeUnit.SECONDS)
+      .maximumWeight(CACHE_MAX_RELATIONS)
+      .weigher(new Weigher<RelationScanKey, Set<Relation>>() {
+        @Override
+        public int weigh(RelationScanKey key, Set<Relation> relations) {
+          return relations.size() + 1;
+        }
+      })
+      .build();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_SCAN_PARALLELISM, MAX_SCAN_PARALLELISM,
+                                                         60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                         Threads.createDaemonThreadFactory("lineage-scan-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    this.scanExecutor = executor;
   }
 
   /**
@@ -329,36 +353,24 @@ public class LineageAdmin {
     toVisitDatasets.add(sourceData);
     for (int i = 0; i < levels; ++i) {
       LOG.trace("Level {}", i);
+      // Fetch related programs of the whole frontier of datasets
+      toVisitDatasets.removeAll(visitedDatasets);
+      visitedDatasets.addAll(toVisitDatasets);
+      LOG.trace("Visiting datasets {}", toVisitDatasets);
       toVisitPrograms.clear();
-      for (NamespacedEntityId d : toVisitDatasets) {
-        if (visitedDatasets.add(d)) {
-          LOG.trace("Visiting dataset {}", d);
-          // Fetch related programs
-          Iterable<Relation> programRelations = getProgramRelations(d, scanRange.getStart(), scanRange.getEnd(),
-                                                                    scanRange.getFilter());
-          LOG.trace("Got program relations {}", programRelations);
-          for (Relation relation : programRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitPrograms, Iterables.transform(programRelations, RELATION_TO_PROGRAM_FUNCTION));
-        }
+      for (Relation relation : getRelations(toVisitDatasets, scanRange)) {
+        relations.put(new RelationKey(relation), relation);
+        toVisitPrograms.add(relation.getProgram());
       }
 
+      // Fetch related datasets of the whole frontier of programs
+      toVisitPrograms.removeAll(visitedPrograms);
+      visitedPrograms.addAll(toVisitPrograms);
+      LOG.trace("Visiting programs {}", toVisitPrograms);
       toVisitDatasets.clear();
-      for (ProgramId p : toVisitPrograms) {
-        if (visitedPrograms.add(p)) {
-          LOG.trace("Visiting program {}", p);
-          // Fetch related datasets
-          Iterable<Relation> datasetRelations = lineageStoreReader.getRelations(p, scanRange.getStart(),
-                                                                                scanRange.getEnd(),
-                                                                                scanRange.getFilter());
-          LOG.trace("Got data relations {}", datasetRelations);
-          for (Relation relation : datasetRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitDatasets,
-                           Iterables.transform(datasetRelations, RELATION_TO_DATA_FUNCTION));
-        }
+      for (Relation relation : getRelations(toVisitPrograms, scanRange)) {
+        relations.put(new RelationKey(relation), relation);
+        toVisitDatasets.add(relation.getData());
       }
     }
 
@@ -372,17 +384,69 @@ public class LineageAdmin {
     return lineage;
   }
 
-  private Iterable<Relation> getProgramRelations(NamespacedEntityId data, long start, long end,
-                                                 Predicate<Relation> filter) {
-    if (data instanceof DatasetId) {
-      return lineageStoreReader.getRelations((DatasetId) data, start, end, filter);
+  /**
+   * Returns the relations of the given datasets, streams or programs that pass the filter of the scan range.
+   * Relations of each entity are cached for the time buckets covering the scan range. Entities not in the cache
+   * are scanned in batches, with the batches scanned concurrently.
+   */
+  private Set<Relation> getRelations(Set<? extends NamespacedEntityId> entities, ScanRangeWithFilter scanRange) {
+    // Rows are keyed by the run start time, hence scanning the whole buckets covering the range and then applying
+    // the filter gives the same relations as scanning the range
+    final long start = scanRange.getStart() / SCAN_BUCKET_MILLIS * SCAN_BUCKET_MILLIS;
+    final long end = (scanRange.getEnd() + SCAN_BUCKET_MILLIS - 1) / SCAN_BUCKET_MILLIS * SCAN_BUCKET_MILLIS;
+
+    Set<Relation> result = new HashSet<>();
+    List<NamespacedEntityId> toScan = new ArrayList<>();
+    for (NamespacedEntityId entity : entities) {
+      Set<Relation> cached = relationsCache.getIfPresent(new RelationScanKey(entity, start, end));
+      if (cached == null) {
+        toScan.add(entity);
+      } else {
+        Iterables.addAll(result, Iterables.filter(cached, scanRange.getFilter()));
+      }
+    }
+    if (toScan.isEmpty()) {
+      return result;
     }
 
-    if (data instanceof StreamId) {
-      return lineageStoreReader.getRelations((StreamId) data, start, end, filter);
+    List<List<NamespacedEntityId>> batches = Lists.partition(toScan, SCAN_BATCH_SIZE);
+    List<Future<Map<NamespacedEntityId, Set<Relation>>>> futures = new ArrayList<>(batches.size());
+    try {
+      // Scan the first batch in the current thread, the rest concurrently
+      for (final List<NamespacedEntityId> batch : batches.subList(1, batches.size())) {
+        futures.add(scanExecutor.submit(new Callable<Map<NamespacedEntityId, Set<Relation>>>() {
+          @Override
+          public Map<NamespacedEntityId, Set<Relation>> call() throws Exception {
+            return lineageStoreReader.getRelations(batch, start, end, Predicates.<Relation>alwaysTrue());
+          }
+        }));
+      }
+      addScannedRelations(lineageStoreReader.getRelations(batches.get(0), start, end,
+                                                          Predicates.<Relation>alwaysTrue()),
+                          start, end, scanRange.getFilter(), result);
+      for (Future<Map<NamespacedEntityId, Set<Relation>>> future : futures) {
+        addScannedRelations(future.get(), start, end, scanRange.getFilter(), result);
+      }
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      // no-op for completed scans, stops remaining scans on failure
+      for (Future<Map<NamespacedEntityId, Set<Relation>>> future : futures) {
+        future.cancel(true);
+      }
     }
+  }
 
-    throw new IllegalStateException("Unknown data type " + data);
+  private void addScannedRelations(Map<NamespacedEntityId, Set<Relation>> scanned, long start, long end,
+                                   Predicate<Relation> filter, Set<Relation> result) {
+    for (Map.Entry<NamespacedEntityId, Set<Relation>> entry : scanned.entrySet()) {
+      relationsCache.put(new RelationScanKey(entry.getKey(), start, end), entry.getValue());
+      Iterables.addAll(result, Iterables.filter(entry.getValue(), filter));
+    }
   }
 
   /**
@@ -444,6 +508,38 @@ public class LineageAdmin {
     }
   }
 
+  /**
+   * Key of the relations cache, which is an entity together with the scan range.
+   */
+  private static final class RelationScanKey {
+    private final NamespacedEntityId entity;
+    private final long start;
+    private final long end;
+
+    private RelationScanKey(NamespacedEntityId entity, long start, long end) {
+      this.entity = entity;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RelationScanKey other = (RelationScanKey) o;
+      return start == other.start && end == other.end && Objects.equals(entity, other.entity);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(entity, start, end);
+    }
+  }
+
   /**
    * This class helps collapsing access type of {@link Relation} by ignoring the access type in equals and hashCode
    * so that it can be used as the map key for Relations of different access types.
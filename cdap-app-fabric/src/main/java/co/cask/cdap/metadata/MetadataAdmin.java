@@ -18,6 +18,7 @@ package co.cask.cdap.metadata;
 
 import co.cask.cdap.common.InvalidMetadataException;
 import co.cask.cdap.common.NotFoundException;
+import co.cask.cdap.data2.metadata.store.MetadataSearchPage;
 import co.cask.cdap.proto.id.NamespacedEntityId;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
@@ -26,6 +27,7 @@ import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Interface that the {@link MetadataHttpHandler} uses to interact with Metadata.
@@ -176,4 +178,23 @@ public interface MetadataAdmin {
    */
   Set<MetadataSearchResultRecord> searchMetadata(MetadataScope scope, String namespaceId, String searchQuery,
                                                  Set<MetadataSearchTargetType> types) throws Exception;
+
+  /**
+   * Executes a search for CDAP entities in the specified namespace with the specified search query and
+   * an optional set of {@link MetadataSearchTargetType entity types} in both
+   * {@link MetadataScope#USER} and {@link MetadataScope#SYSTEM}, and returns one page of the results ranked by
+   * relevance.
+   *
+   * @param namespaceId The namespace to filter the search by
+   * @param searchQuery The search query
+   * @param types The types of CDAP entity to be searched. If empty all possible types will be searched
+   * @param matchAllTerms Whether entities have to match all terms of the search query, or any of them
+   * @param cursor The cursor returned with the previous page, or {@code null} for the first page
+   * @param limit The maximum number of results to return
+   * @return a {@link MetadataSearchPage} containing a {@link MetadataSearchResultRecord} for each matching entity
+   *         in the page
+   * @throws IllegalArgumentException if the cursor is not valid
+   */
+  MetadataSearchPage searchMetadata(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                                    boolean matchAllTerms, @Nullable String cursor, int limit) throws Exception;
 }
@@ -19,6 +19,7 @@ package co.cask.cdap.metadata;
 import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data2.metadata.store.MetadataSearchPage;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.codec.NamespacedEntityIdCodec;
@@ -892,7 +893,9 @@ public class MetadataHttpHandler extends AbstractHttpHandler {
                              @QueryParam("target") List<String> targets,
                              @QueryParam("sort") @DefaultValue("") String sort,
                              @QueryParam("offset") @DefaultValue("0") int offset,
-                             @QueryParam("size") @DefaultValue("") String sizeStr) throws Exception {
+                             @QueryParam("size") @DefaultValue("") String sizeStr,
+                             @QueryParam("cursor") String cursor,
+                             @QueryParam("match") @DefaultValue("any") String match) throws Exception {
     Set<MetadataSearchTargetType> types = Collections.emptySet();
     if (targets != null) {
       types = ImmutableSet.copyOf(Iterables.transform(targets, STRING_TO_TARGET_TYPE));
@@ -906,17 +909,23 @@ public class MetadataHttpHandler extends AbstractHttpHandler {
       String[] sortSplit = sort.split("\\s+");
       if (sortSplit.length != 2) {
         throw new BadRequestException("'sort' parameter should be a space separated string containing the field " +
-                                        "('name') and the sort order ('asc' or 'desc'). Found " +
+                                        "('name' or 'relevance') and the sort order ('asc' or 'desc'). Found " +
                                         sort);
       }
       sortBy = sortSplit[0];
       sortOrder = sortSplit[1];
-      if (!"name".equalsIgnoreCase(sortBy)) {
-        throw new BadRequestException("Sort field must be 'name'. Found " + sortBy);
+      if (!"name".equalsIgnoreCase(sortBy) && !"relevance".equalsIgnoreCase(sortBy)) {
+        throw new BadRequestException("Sort field must be one of 'name' or 'relevance'. Found " + sortBy);
       }
       if (!"asc".equalsIgnoreCase(sortOrder) && !"desc".equalsIgnoreCase(sortOrder)) {
         throw new BadRequestException("Sort order must be one of 'asc' or 'desc'. Found " + sortOrder);
       }
+      if ("relevance".equalsIgnoreCase(sortBy) && !"desc".equalsIgnoreCase(sortOrder)) {
+        throw new BadRequestException("Sort order must be 'desc' when sorting by 'relevance'. Found " + sortOrder);
+      }
+    }
+    if (!"any".equalsIgnoreCase(match) && !"all".equalsIgnoreCase(match)) {
+      throw new BadRequestException("Parameter 'match' must be one of 'any' or 'all'. Found " + match);
     }
 
     int size = Integer.MAX_VALUE;
@@ -930,6 +939,29 @@ public class MetadataHttpHandler extends AbstractHttpHandler {
     if (searchQuery == null) {
       throw new BadRequestException("Parameter 'query' should be passed to the search API.");
     }
+
+    if ("relevance".equalsIgnoreCase(sortBy)) {
+      // Ranking and pagination are done by the metadata store, with the cursor pointing to the start of the page
+      if (size <= 0) {
+        throw new BadRequestException(String.format("Parameter 'size' should be positive. Found %s.", sizeStr));
+      }
+      if (offset != 0) {
+        throw new BadRequestException("Parameter 'offset' is not supported when sorting by 'relevance'. " +
+                                        "Use 'cursor' to fetch subsequent pages.");
+      }
+      MetadataSearchPage page;
+      try {
+        page = metadataAdmin.searchMetadata(namespaceId, URLDecoder.decode(searchQuery, "UTF-8"), types,
+                                            "all".equalsIgnoreCase(match), cursor, size);
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestException(e.getMessage());
+      }
+      MetadataSearchResponse response = new MetadataSearchResponse(sort, offset, size, page.getTotal(),
+                                                                   page.getResults(), page.getCursor());
+      responder.sendJson(HttpResponseStatus.OK, response, MetadataSearchResponse.class, GSON);
+      return;
+    }
+
     Set<MetadataSearchResultRecord> results =
       metadataAdmin.searchMetadata(namespaceId, URLDecoder.decode(searchQuery, "UTF-8"), types);
 
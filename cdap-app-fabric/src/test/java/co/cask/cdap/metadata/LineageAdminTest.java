@@ -283,6 +283,40 @@ public class LineageAdminTest extends AppFabricTestBase {
     Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(dataset1, 500, 20000, 100));
   }
 
+  @Test
+  public void testWideLineage() throws Exception {
+    // Lineage for D1 -> P1 -> (W0 ... W119) -> P2, with frontiers larger than a scan batch
+
+    LineageStore lineageStore = new LineageStore(getTxExecFactory(), getDatasetFramework(),
+                                                 NamespaceId.DEFAULT.dataset("testWideLineage"));
+    Store store = getInjector().getInstance(Store.class);
+    MetadataStore metadataStore = getInjector().getInstance(MetadataStore.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(lineageStore, store, metadataStore, new NoOpEntityExistenceVerifier());
+
+    // Add accesses
+    addRuns(store, run1, run2);
+    // It is okay to use current time here since access time is ignore during assertions
+    lineageStore.addAccess(run1, dataset1, AccessType.READ, System.currentTimeMillis(), flowlet1);
+    ImmutableSet.Builder<Relation> expectedRelations = ImmutableSet.builder();
+    expectedRelations.add(new Relation(dataset1, program1, AccessType.READ, twillRunId(run1), toSet(flowlet1)));
+    for (int i = 0; i < 120; i++) {
+      DatasetId wide = NamespaceId.DEFAULT.dataset("wide" + i);
+      lineageStore.addAccess(run1, wide, AccessType.WRITE, System.currentTimeMillis(), flowlet1);
+      lineageStore.addAccess(run2, wide, AccessType.READ, System.currentTimeMillis(), flowlet2);
+      expectedRelations.add(new Relation(wide, program1, AccessType.WRITE, twillRunId(run1), toSet(flowlet1)));
+      expectedRelations.add(new Relation(wide, program2, AccessType.READ, twillRunId(run2), toSet(flowlet2)));
+    }
+
+    Lineage expectedLineage = new Lineage(expectedRelations.build());
+    Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(dataset1, 500, 20000, 100));
+    // Computing again should give the same lineage, with the relations served from the cache
+    Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(dataset1, 500, 20000, 100));
+
+    // Lineage with one level only includes the programs accessing D1 and the datasets accessed by them
+    Lineage oneLevelLineage = lineageAdmin.computeLineage(dataset1, 500, 20000, 1);
+    Assert.assertEquals(121, oneLevelLineage.getRelations().size());
+  }
+
   @Test
   public void testDirectCycleTwoRuns() throws Exception {
     // Lineage for:
@@ -0,0 +1,335 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Binary encoding of {@link StructuredRecord} data, driven by the record {@link Schema}.
+ *
+ * The encoding is canonical, meaning records that are equal are always encoded to the same bytes, so that encoded
+ * records can be compared byte by byte. Map entries are written in the order of their encoded keys for that reason.
+ * Values are decoded into the same types as {@link co.cask.cdap.format.StructuredRecordStringConverter} does.
+ */
+final class StructuredRecordBinaryCodec {
+
+  private static final Comparator<byte[][]> ENTRY_COMPARATOR = new Comparator<byte[][]>() {
+    @Override
+    public int compare(byte[][] entry1, byte[][] entry2) {
+      return WritableComparator.compareBytes(entry1[0], 0, entry1[0].length, entry2[0], 0, entry2[0].length);
+    }
+  };
+
+  /**
+   * Encodes the given value of the given schema to the {@link DataOutput}.
+   */
+  static void encode(DataOutput out, Schema schema, @Nullable Object value) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        out.writeBoolean((Boolean) value);
+        break;
+      case INT:
+        WritableUtils.writeVInt(out, ((Number) value).intValue());
+        break;
+      case LONG:
+        WritableUtils.writeVLong(out, ((Number) value).longValue());
+        break;
+      case FLOAT:
+        out.writeInt(Float.floatToIntBits(((Number) value).floatValue()));
+        break;
+      case DOUBLE:
+        out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        break;
+      case BYTES:
+        encodeBytes(out, value);
+        break;
+      case STRING:
+        encodeBytes(out, Bytes.toBytes((String) value));
+        break;
+      case ENUM:
+        encodeEnum(out, schema, value);
+        break;
+      case ARRAY:
+        encodeArray(out, schema.getComponentSchema(), value);
+        break;
+      case MAP:
+        encodeMap(out, schema.getMapSchema(), value);
+        break;
+      case RECORD:
+        encodeRecord(out, schema, value);
+        break;
+      case UNION:
+        encodeUnion(out, schema, value);
+        break;
+      default:
+        throw new IOException("Unsupported schema: " + schema);
+    }
+  }
+
+  /**
+   * Decodes a value of the given schema from the {@link DataInput}.
+   */
+  @Nullable
+  static Object decode(DataInput in, Schema schema) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return in.readBoolean();
+      case INT:
+        return WritableUtils.readVInt(in);
+      case LONG:
+        return WritableUtils.readVLong(in);
+      case FLOAT:
+        return Float.intBitsToFloat(in.readInt());
+      case DOUBLE:
+        return Double.longBitsToDouble(in.readLong());
+      case BYTES:
+        return decodeBytes(in);
+      case STRING:
+        return Bytes.toString(decodeBytes(in));
+      case ENUM:
+        return schema.getEnumValue(WritableUtils.readVInt(in));
+      case ARRAY:
+        return decodeArray(in, schema.getComponentSchema());
+      case MAP:
+        return decodeMap(in, schema.getMapSchema());
+      case RECORD:
+        return decodeRecord(in, schema);
+      case UNION:
+        return decode(in, schema.getUnionSchema(WritableUtils.readVInt(in)));
+      default:
+        throw new IOException("Unsupported schema: " + schema);
+    }
+  }
+
+  private static void encodeBytes(DataOutput out, Object value) throws IOException {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = (ByteBuffer) value;
+      WritableUtils.writeVInt(out, buffer.remaining());
+      if (buffer.hasArray()) {
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      } else {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        out.write(bytes);
+      }
+    } else if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      WritableUtils.writeVInt(out, bytes.length);
+      out.write(bytes);
+    } else {
+      throw new IOException("Expects either ByteBuffer or byte[]. Got " + value.getClass());
+    }
+  }
+
+  private static byte[] decodeBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[WritableUtils.readVInt(in)];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static void encodeEnum(DataOutput out, Schema schema, Object value) throws IOException {
+    String symbol = value instanceof Enum ? ((Enum) value).name() : value.toString();
+    int idx = schema.getEnumIndex(symbol);
+    if (idx < 0) {
+      throw new IOException("Value " + symbol + " is not in enum " + schema);
+    }
+    WritableUtils.writeVInt(out, idx);
+  }
+
+  private static void encodeArray(DataOutput out, Schema elementSchema, Object value) throws IOException {
+    if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      WritableUtils.writeVInt(out, collection.size());
+      for (Object element : collection) {
+        encode(out, elementSchema, element);
+      }
+    } else if (value.getClass().isArray()) {
+      int length = Array.getLength(value);
+      WritableUtils.writeVInt(out, length);
+      for (int i = 0; i < length; i++) {
+        encode(out, elementSchema, Array.get(value, i));
+      }
+    } else {
+      throw new IOException("Expects either Collection or array. Got: " + value.getClass());
+    }
+  }
+
+  private static List<Object> decodeArray(DataInput in, Schema elementSchema) throws IOException {
+    int size = WritableUtils.readVInt(in);
+    List<Object> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(decode(in, elementSchema));
+    }
+    return result;
+  }
+
+  private static void encodeMap(DataOutput out, Map.Entry<Schema, Schema> mapSchema, Object value) throws IOException {
+    if (!(value instanceof Map)) {
+      throw new IOException("Expects Map. Got: " + value.getClass());
+    }
+    Map<?, ?> map = (Map<?, ?>) value;
+
+    // Encode each entry separately and sort them by the encoded key to make the encoding independent of map order
+    byte[][][] entries = new byte[map.size()][][];
+    DataOutputBuffer buffer = new DataOutputBuffer();
+    int i = 0;
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      buffer.reset();
+      encode(buffer, mapSchema.getKey(), entry.getKey());
+      byte[] key = Arrays.copyOf(buffer.getData(), buffer.getLength());
+      buffer.reset();
+      encode(buffer, mapSchema.getValue(), entry.getValue());
+      byte[] val = Arrays.copyOf(buffer.getData(), buffer.getLength());
+      entries[i++] = new byte[][] { key, val };
+    }
+    Arrays.sort(entries, ENTRY_COMPARATOR);
+
+    WritableUtils.writeVInt(out, entries.length);
+    for (byte[][] entry : entries) {
+      out.write(entry[0]);
+      out.write(entry[1]);
+    }
+  }
+
+  private static Map<Object, Object> decodeMap(DataInput in, Map.Entry<Schema, Schema> mapSchema) throws IOException {
+    int size = WritableUtils.readVInt(in);
+    Map<Object, Object> result = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      Object key = decode(in, mapSchema.getKey());
+      result.put(key, decode(in, mapSchema.getValue()));
+    }
+    return result;
+  }
+
+  private static void encodeRecord(DataOutput out, Schema schema, Object value) throws IOException {
+    if (!(value instanceof StructuredRecord)) {
+      throw new IOException("Expects StructuredRecord. Got: " + value.getClass());
+    }
+    StructuredRecord record = (StructuredRecord) value;
+    for (Schema.Field field : schema.getFields()) {
+      Object fieldValue = record.get(field.getName());
+      if (fieldValue == null && !field.getSchema().isNullable() && field.getSchema().getType() != Schema.Type.NULL) {
+        throw new IOException("Missing value for non-nullable field " + field.getName());
+      }
+      encode(out, field.getSchema(), fieldValue);
+    }
+  }
+
+  private static StructuredRecord decodeRecord(DataInput in, Schema schema) throws IOException {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      Object value = decode(in, field.getSchema());
+      // Leave null fields unset, same as the json decoding
+      if (value != null) {
+        builder.set(field.getName(), value);
+      }
+    }
+    return builder.build();
+  }
+
+  private static void encodeUnion(DataOutput out, Schema unionSchema, @Nullable Object value) throws IOException {
+    Schema.Type type = getSchemaType(value);
+    List<Schema> schemas = unionSchema.getUnionSchemas();
+
+    // Just match the type, not matching the detail schema as it'd be too expensive.
+    for (int i = 0; i < schemas.size(); i++) {
+      if (schemas.get(i).getType() == type) {
+        WritableUtils.writeVInt(out, i);
+        encode(out, schemas.get(i), value);
+        return;
+      }
+    }
+    // String value can be an enum symbol
+    if (type == Schema.Type.STRING) {
+      for (int i = 0; i < schemas.size(); i++) {
+        if (schemas.get(i).getType() == Schema.Type.ENUM) {
+          WritableUtils.writeVInt(out, i);
+          encode(out, schemas.get(i), value);
+          return;
+        }
+      }
+    }
+    throw new IOException("Value type " + type + " not valid in union: " + unionSchema);
+  }
+
+  private static Schema.Type getSchemaType(@Nullable Object value) throws IOException {
+    if (value == null) {
+      return Schema.Type.NULL;
+    }
+    if (value instanceof Boolean) {
+      return Schema.Type.BOOLEAN;
+    }
+    if (value instanceof Byte || value instanceof Short || value instanceof Integer) {
+      return Schema.Type.INT;
+    }
+    if (value instanceof Long) {
+      return Schema.Type.LONG;
+    }
+    if (value instanceof Float) {
+      return Schema.Type.FLOAT;
+    }
+    if (value instanceof Double) {
+      return Schema.Type.DOUBLE;
+    }
+    if (value instanceof String) {
+      return Schema.Type.STRING;
+    }
+    if (value instanceof ByteBuffer || value instanceof byte[]) {
+      return Schema.Type.BYTES;
+    }
+    if (value instanceof Enum) {
+      return Schema.Type.ENUM;
+    }
+    if (value instanceof StructuredRecord) {
+      return Schema.Type.RECORD;
+    }
+    if (value instanceof Collection || value.getClass().isArray()) {
+      return Schema.Type.ARRAY;
+    }
+    if (value instanceof Map) {
+      return Schema.Type.MAP;
+    }
+    throw new IOException("Unsupported value type " + value.getClass());
+  }
+
+  private StructuredRecordBinaryCodec() {
+    // no-op
+  }
+}
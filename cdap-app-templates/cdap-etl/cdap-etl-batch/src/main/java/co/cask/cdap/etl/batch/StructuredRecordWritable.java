@@ -19,21 +19,64 @@ package co.cask.cdap.etl.batch;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Wrapper around a {@link StructuredRecord} so that it can be used as the output key and/or value of a mapper.
- * This is not very performant and must be improved soon (CDAP-5347).
+ *
+ * The record is serialized as a header identifying the schema, followed by the record data encoded with the
+ * {@link StructuredRecordBinaryCodec}. The header is a flag byte and the schema fingerprint, which is the
+ * {@link SchemaHash} of the schema. For schemas registered through {@link #internSchemas(Iterable)}, only the
+ * fingerprint is written. Otherwise, the schema json follows the fingerprint. Schemas are looked up by the
+ * fingerprint on read, so that the same schema json is only parsed once.
+ *
+ * Serialized records can be compared without deserialization with the {@link Comparator}, which is registered
+ * as the default {@link WritableComparator} of this class. Records are ordered by schema fingerprint then by the
+ * encoded data, which groups equal records together.
  */
 public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable> {
+
+  private static final byte INTERNED_SCHEMA = 0;
+  private static final byte INLINE_SCHEMA = 1;
+  private static final int FINGERPRINT_SIZE = 16;
+  private static final int HEADER_SIZE = 1 + FINGERPRINT_SIZE;
+
+  // Schemas that are known to all tasks of the job, hence don't need to be written with the records
+  private static final ConcurrentMap<SchemaHash, Schema> INTERNED_SCHEMAS = new ConcurrentHashMap<>();
+  // Schemas parsed from serialized records
+  private static final Cache<SchemaHash, Schema> SCHEMA_CACHE = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+  static {
+    WritableComparator.define(StructuredRecordWritable.class, new Comparator());
+  }
+
   private StructuredRecord record;
 
+  /**
+   * Registers the given schemas as known to all tasks of the job, so that records of those schemas are written
+   * with the schema fingerprint only. Both the writing and reading tasks must register the same schemas before
+   * writing or reading any record.
+   */
+  public static void internSchemas(Iterable<Schema> schemas) {
+    for (Schema schema : schemas) {
+      INTERNED_SCHEMAS.putIfAbsent(schema.getSchemaHash(), schema);
+    }
+  }
+
   // required by Hadoop
   @SuppressWarnings("unused")
   public StructuredRecordWritable() {
@@ -51,36 +94,64 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
     return record;
   }
 
-  @SuppressWarnings("ConstantConditions")
   @Override
   public void write(DataOutput out) throws IOException {
-    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
-    out.writeInt(schemaBytes.length);
-    out.write(schemaBytes);
-
-    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
-    out.writeInt(recordBytes.length);
-    out.write(recordBytes);
+    Schema schema = record.getSchema();
+    SchemaHash schemaHash = schema.getSchemaHash();
+    if (INTERNED_SCHEMAS.containsKey(schemaHash)) {
+      out.writeByte(INTERNED_SCHEMA);
+      out.write(schemaHash.toByteArray());
+    } else {
+      out.writeByte(INLINE_SCHEMA);
+      out.write(schemaHash.toByteArray());
+      byte[] schemaBytes = Bytes.toBytes(schema.toString());
+      WritableUtils.writeVInt(out, schemaBytes.length);
+      out.write(schemaBytes);
+    }
+    StructuredRecordBinaryCodec.encode(out, schema, record);
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
-    int schemaLen = in.readInt();
-    byte[] schemaBytes = new byte[schemaLen];
-    in.readFully(schemaBytes, 0, schemaLen);
-    String schemaStr = Bytes.toString(schemaBytes);
-    Schema schema = Schema.parseJson(schemaStr);
-
-    int recordLen = in.readInt();
-    byte[] recordBytes = new byte[recordLen];
-    in.readFully(recordBytes, 0, recordLen);
-    String recordStr = Bytes.toString(recordBytes);
-    this.record = StructuredRecordStringConverter.fromJsonString(recordStr, schema);
+    byte flag = in.readByte();
+    byte[] fingerprint = new byte[FINGERPRINT_SIZE];
+    in.readFully(fingerprint);
+    SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(fingerprint));
+
+    Schema schema = INTERNED_SCHEMAS.get(schemaHash);
+    if (flag == INLINE_SCHEMA) {
+      byte[] schemaBytes = new byte[WritableUtils.readVInt(in)];
+      in.readFully(schemaBytes);
+      if (schema == null) {
+        schema = SCHEMA_CACHE.getIfPresent(schemaHash);
+      }
+      if (schema == null) {
+        schema = Schema.parseJson(Bytes.toString(schemaBytes));
+        SCHEMA_CACHE.put(schemaHash, schema);
+      }
+    } else if (flag != INTERNED_SCHEMA) {
+      throw new IOException("Invalid schema flag " + flag);
+    }
+    if (schema == null) {
+      throw new IOException("Unknown schema with fingerprint " + schemaHash);
+    }
+
+    this.record = (StructuredRecord) StructuredRecordBinaryCodec.decode(in, schema);
   }
 
   @Override
   public int compareTo(StructuredRecordWritable o) {
-    return Integer.compare(hashCode(), o.hashCode());
+    // Compare the serialized form to be consistent with the raw comparator
+    try {
+      DataOutputBuffer buffer = new DataOutputBuffer();
+      write(buffer);
+      int length = buffer.getLength();
+      o.write(buffer);
+      return Comparator.compareSerialized(buffer.getData(), 0, length,
+                                          buffer.getData(), length, buffer.getLength() - length);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to serialize record for comparison", e);
+    }
   }
 
   @Override
@@ -101,4 +172,43 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   public int hashCode() {
     return record != null ? record.hashCode() : 0;
   }
+
+  /**
+   * A {@link WritableComparator} that compares serialized {@link StructuredRecordWritable} without deserialization.
+   */
+  public static final class Comparator extends WritableComparator {
+
+    public Comparator() {
+      super(StructuredRecordWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      return compareSerialized(b1, s1, l1, b2, s2, l2);
+    }
+
+    private static int compareSerialized(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      // Compare the schema fingerprints
+      int cmp = compareBytes(b1, s1 + 1, FINGERPRINT_SIZE, b2, s2 + 1, FINGERPRINT_SIZE);
+      if (cmp != 0) {
+        return cmp;
+      }
+      // Same schema, compare the encoded data, skipping the inline schema if there is one
+      int d1 = dataOffset(b1, s1);
+      int d2 = dataOffset(b2, s2);
+      return compareBytes(b1, d1, l1 - (d1 - s1), b2, d2, l2 - (d2 - s2));
+    }
+
+    private static int dataOffset(byte[] bytes, int start) {
+      int offset = start + HEADER_SIZE;
+      if (bytes[start] != INLINE_SCHEMA) {
+        return offset;
+      }
+      try {
+        return offset + WritableUtils.decodeVIntSize(bytes[offset]) + readVInt(bytes, offset);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Invalid serialized record", e);
+      }
+    }
+  }
 }
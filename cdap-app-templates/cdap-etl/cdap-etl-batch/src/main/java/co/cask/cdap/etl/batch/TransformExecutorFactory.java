@@ -22,18 +22,27 @@ import co.cask.cdap.api.metrics.Metrics;
 import co.cask.cdap.api.preview.DataTracer;
 import co.cask.cdap.etl.api.StageLifecycle;
 import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.cdap.etl.api.Transform;
 import co.cask.cdap.etl.api.Transformation;
 import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
+import co.cask.cdap.etl.common.DefaultStageMetrics;
+import co.cask.cdap.etl.common.FusedTransformDetail;
+import co.cask.cdap.etl.common.FusedTransformation;
 import co.cask.cdap.etl.common.PipelinePhase;
 import co.cask.cdap.etl.common.TrackedTransform;
 import co.cask.cdap.etl.common.TransformDetail;
 import co.cask.cdap.etl.common.TransformExecutor;
+import co.cask.cdap.etl.planner.Dag;
 import co.cask.cdap.etl.planner.StageInfo;
 import com.google.common.collect.Sets;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Mapper;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -68,9 +77,11 @@ public abstract class TransformExecutorFactory<T> {
   protected abstract TrackedTransform getTransformation(String pluginType, String stageName)
     throws Exception;
 
+  protected abstract DataTracer getDataTracer(String stageName);
+
   /**
    * Create a transform executor for the specified pipeline. Will instantiate and initialize all sources,
-   * transforms, and sinks in the pipeline.
+   * transforms, and sinks in the pipeline. Linear chains of transforms are fused and executed as one stage.
    *
    * @param pipeline the pipeline to create a transform executor for
    * @return executor for the pipeline
@@ -79,9 +90,19 @@ public abstract class TransformExecutorFactory<T> {
    */
   public TransformExecutor<T> create(PipelinePhase pipeline) throws Exception {
     Map<String, TransformDetail> transformations = new HashMap<>();
+    Set<String> fusedStages = new HashSet<>();
+    for (List<String> chain : getTransformChains(pipeline)) {
+      // the chain is executed in place of its first stage
+      transformations.put(chain.get(0), createFusedTransformDetail(pipeline, chain));
+      fusedStages.addAll(chain);
+    }
+
     for (String pluginType : pipeline.getPluginTypes()) {
       for (StageInfo stageInfo : pipeline.getStagesOfType(pluginType)) {
         String stageName = stageInfo.getName();
+        if (fusedStages.contains(stageName)) {
+          continue;
+        }
         outputSchema = stageInfo.getOutputSchema();
         perStageInputSchemas.put(stageName, stageInfo.getInputSchemas());
         // Wrap each transformation so that each stage is emitting stageName along with the record
@@ -96,6 +117,39 @@ public abstract class TransformExecutorFactory<T> {
     return new TransformExecutor<>(transformations, startingPoints);
   }
 
+  /**
+   * Returns the linear chains of transforms in the pipeline that can be fused.
+   */
+  private List<List<String>> getTransformChains(PipelinePhase pipeline) {
+    Dag dag = pipeline.getDag();
+    if (dag == null) {
+      return Collections.emptyList();
+    }
+    Set<String> transforms = new HashSet<>();
+    for (StageInfo stageInfo : pipeline.getStagesOfType(Transform.PLUGIN_TYPE)) {
+      transforms.add(stageInfo.getName());
+    }
+    return dag.getLinearChains(transforms);
+  }
+
+  /**
+   * Creates a {@link TransformDetail} that executes the given chain of transforms with a {@link FusedTransformation}.
+   * The record key is only unwrapped before the first stage and wrapped after the last stage,
+   * with the name of the last stage.
+   */
+  private TransformDetail createFusedTransformDetail(PipelinePhase pipeline, List<String> chain) throws Exception {
+    List<FusedTransformation.Stage> stages = new ArrayList<>();
+    for (String stageName : chain) {
+      perStageInputSchemas.put(stageName, pipeline.getStage(stageName).getInputSchemas());
+      stages.add(new FusedTransformation.Stage(stageName, getInitializedTransformation(stageName),
+                                               new DefaultStageMetrics(metrics, stageName), getDataTracer(stageName)));
+    }
+    String lastStage = chain.get(chain.size() - 1);
+    FusedTransformation fusedTransformation = new FusedTransformation(stages);
+    return new FusedTransformDetail(new KVTransformations.KVWrappedTransformation<>(lastStage, fusedTransformation),
+                                    fusedTransformation, pipeline.getStageOutputs(lastStage));
+  }
+
   /**
    * Instantiates and initializes the plugin for the stage.
    *
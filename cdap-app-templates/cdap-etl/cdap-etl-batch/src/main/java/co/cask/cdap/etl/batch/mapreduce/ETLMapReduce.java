@@ -359,6 +359,16 @@ public class ETLMapReduce extends AbstractMapReduce {
       }
     }
 
+    @Override
+    protected void cleanup(Mapper.Context context) throws IOException, InterruptedException {
+      // transform the records buffered in the last batch before the outputs get closed
+      try {
+        transformRunner.flush();
+      } catch (Exception e) {
+        Throwables.propagate(e);
+      }
+    }
+
     @Override
     public void destroy() {
       transformRunner.destroy();
@@ -90,6 +90,11 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
                                        stageName, stageRuntimeArgs);
   }
 
+  @Override
+  protected DataTracer getDataTracer(String stageName) {
+    return taskContext.getDataTracer(stageName);
+  }
+
   private BatchJoinerRuntimeContext createJoinerRuntimeContext(String stageName) {
     Map<String, String> stageRuntimeArgs = pluginRuntimeArgs.get(stageName);
     if (stageRuntimeArgs == null) {
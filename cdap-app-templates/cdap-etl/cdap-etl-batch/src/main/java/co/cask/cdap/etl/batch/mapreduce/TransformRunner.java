@@ -26,6 +26,7 @@ import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
 import co.cask.cdap.etl.batch.TransformExecutorFactory;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.Destroyables;
@@ -46,9 +47,11 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,6 +60,11 @@ import java.util.Set;
  * do mostly the same thing, except the mapper needs to write to an aggregator or to sinks, whereas the reducer
  * needs to read from an aggregator and write to sinks.
  *
+ * In the mapper, input records can be buffered and pushed through the transforms in batches, as configured by the
+ * {@link Constants#TRANSFORM_BATCH_SIZE} runtime argument. Batching is off by default, since it requires that the
+ * input format doesn't reuse key and value objects across records. The reducer always transforms one group at a time,
+ * since the group values can only be iterated during the reduce call.
+ *
  * @param <KEY>   the type of key to send into the transform executor
  * @param <VALUE> the type of value to send into the transform executor
  */
@@ -70,6 +78,8 @@ public class TransformRunner<KEY, VALUE> {
   private final Map<String, ErrorOutputWriter<Object, Object>> transformErrorSinkMap;
   private final TransformExecutor<KeyValue<KEY, VALUE>> transformExecutor;
   private final OutputWriter<Object, Object> outputWriter;
+  private final int batchSize;
+  private final List<KeyValue<KEY, VALUE>> batch;
 
   public TransformRunner(MapReduceTaskContext<Object, Object> context,
                          Metrics metrics) throws Exception {
@@ -95,6 +105,9 @@ public class TransformRunner<KEY, VALUE> {
     String sourceStage = (inputAliasName != null) ? inputAliasToStage.get(inputAliasName) : null;
 
     PipelinePhase phase = phaseSpec.getPhase();
+    // intern the schemas known to the whole pipeline, so that the shuffled records don't need to carry them.
+    // it has to happen before subsetting, since both mappers and reducers must intern the same schemas.
+    internSchemas(phase);
     Set<StageInfo> reducers = phase.getStagesOfType(BatchAggregator.PLUGIN_TYPE, BatchJoiner.PLUGIN_TYPE);
     if (!reducers.isEmpty()) {
       String reducerName = reducers.iterator().next().getName();
@@ -107,6 +120,10 @@ public class TransformRunner<KEY, VALUE> {
       }
     }
 
+    String batchSizeArg = context.getRuntimeArguments().get(Constants.TRANSFORM_BATCH_SIZE);
+    this.batchSize = jobContext instanceof Mapper.Context && batchSizeArg != null ? Integer.parseInt(batchSizeArg) : 1;
+    this.batch = new ArrayList<>(Math.max(batchSize, 1));
+
     TransformExecutorFactory<KeyValue<KEY, VALUE>> transformExecutorFactory =
       new MapReduceTransformExecutorFactory<>(context, pluginInstantiator, metrics, runtimeArgs, sourceStage);
     this.transformExecutor = transformExecutorFactory.create(phase);
@@ -141,6 +158,21 @@ public class TransformRunner<KEY, VALUE> {
       new SingleOutputWriter<>(context) : new MultiOutputWriter<>(context, sinkOutputs);
   }
 
+  private void internSchemas(PipelinePhase phase) {
+    List<Schema> schemas = new ArrayList<>();
+    for (StageInfo stageInfo : phase) {
+      if (stageInfo.getOutputSchema() != null) {
+        schemas.add(stageInfo.getOutputSchema());
+      }
+      for (Schema schema : stageInfo.getInputSchemas().values()) {
+        if (schema != null) {
+          schemas.add(schema);
+        }
+      }
+    }
+    StructuredRecordWritable.internSchemas(schemas);
+  }
+
   private boolean hasSingleOutput(Set<StageInfo> transformInfos, Map<String, SinkOutput> sinkOutputs) {
     // if there are any error datasets, we know we have at least one sink, and one error dataset
     for (StageInfo info : transformInfos) {
@@ -162,7 +194,32 @@ public class TransformRunner<KEY, VALUE> {
 
   public void transform(KEY key, VALUE value) throws Exception {
     KeyValue<KEY, VALUE> input = new KeyValue<>(key, value);
-    TransformResponse transformResponse = transformExecutor.runOneIteration(input);
+    if (batchSize <= 1) {
+      handleResponse(transformExecutor.runOneIteration(input));
+      return;
+    }
+    batch.add(input);
+    if (batch.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Transforms the buffered input records, if any. This must be called after the last call to
+   * {@link #transform(Object, Object)} and before outputs are closed.
+   */
+  public void flush() throws Exception {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      handleResponse(transformExecutor.runBatch(batch));
+    } finally {
+      batch.clear();
+    }
+  }
+
+  private void handleResponse(TransformResponse transformResponse) throws Exception {
     for (Map.Entry<String, Collection<Object>> transformedEntry : transformResponse.getSinksResults().entrySet()) {
       for (Object transformedRecord : transformedEntry.getValue()) {
         outputWriter.write(transformedEntry.getKey(), (KeyValue<Object, Object>) transformedRecord);
@@ -18,6 +18,10 @@ package co.cask.cdap.etl.batch;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -28,6 +32,11 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  */
@@ -51,4 +60,132 @@ public class StructuredRecordWritableTest {
 
     Assert.assertEquals(writableIn.get(), record);
   }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Schema innerSchema = Schema.recordOf("inner",
+                                         Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+                                         Schema.Field.of("e", Schema.enumWith("a", "b", "c")));
+    Schema schema = Schema.recordOf(
+      "outer",
+      Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+      Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("n", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("u", Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("arr", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("inner", innerSchema));
+
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("b", true)
+      .set("l", Long.MIN_VALUE)
+      .set("f", 1.5f)
+      .set("d", -2.25d)
+      .set("bytes", new byte[] { 1, 2, 3 })
+      .set("u", "str")
+      .set("arr", ImmutableList.of("x", "y"))
+      .set("m", ImmutableMap.of("k1", 1L, "k2", 2L))
+      .set("inner", StructuredRecord.builder(innerSchema).set("i", 5).set("e", "b").build())
+      .build();
+
+    // Schema written inline
+    StructuredRecord copy = roundTrip(record);
+    assertRecordEquals(record, copy);
+
+    // Schema interned
+    StructuredRecordWritable.internSchemas(Collections.singleton(schema));
+    copy = roundTrip(record);
+    assertRecordEquals(record, copy);
+  }
+
+  @Test
+  public void testByteBuffer() throws IOException {
+    Schema schema = Schema.recordOf("buffer", Schema.Field.of("x", Schema.of(Schema.Type.BYTES)));
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0, 1, 2, 3, 4 });
+    buffer.position(2);
+    StructuredRecord record = StructuredRecord.builder(schema).set("x", buffer).build();
+
+    Assert.assertArrayEquals(new byte[] { 2, 3, 4 }, (byte[]) roundTrip(record).get("x"));
+  }
+
+  @Test
+  public void testCompare() throws IOException {
+    Schema schema = Schema.recordOf("cmp",
+                                    Schema.Field.of("x", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                                      Schema.of(Schema.Type.INT))));
+    Map<String, Integer> map1 = new LinkedHashMap<>();
+    map1.put("a", 1);
+    map1.put("b", 2);
+    Map<String, Integer> map2 = new LinkedHashMap<>();
+    map2.put("b", 2);
+    map2.put("a", 1);
+
+    StructuredRecordWritable writable1 = new StructuredRecordWritable(
+      StructuredRecord.builder(schema).set("x", "abc").set("m", map1).build());
+    StructuredRecordWritable writable2 = new StructuredRecordWritable(
+      StructuredRecord.builder(schema).set("x", "abc").set("m", map2).build());
+    StructuredRecordWritable writable3 = new StructuredRecordWritable(
+      StructuredRecord.builder(schema).set("x", "abd").set("m", map1).build());
+
+    // Map order shouldn't matter
+    Assert.assertArrayEquals(serialize(writable1), serialize(writable2));
+    Assert.assertEquals(0, writable1.compareTo(writable2));
+    Assert.assertTrue(writable1.compareTo(writable3) != 0);
+    Assert.assertEquals(-writable1.compareTo(writable3), writable3.compareTo(writable1));
+
+    // The raw comparator should agree with compareTo, both with the schema inline or interned
+    assertRawCompare(writable1, writable2, writable3);
+    StructuredRecordWritable.internSchemas(Collections.singleton(schema));
+    assertRawCompare(writable1, writable2, writable3);
+  }
+
+  private void assertRawCompare(StructuredRecordWritable... writables) throws IOException {
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    Assert.assertTrue(comparator instanceof StructuredRecordWritable.Comparator);
+
+    for (StructuredRecordWritable w1 : writables) {
+      for (StructuredRecordWritable w2 : writables) {
+        byte[] b1 = serialize(w1);
+        // Put some bytes before the second one to verify offsets are handled properly
+        byte[] b2 = serialize(w2);
+        byte[] padded = new byte[b2.length + 3];
+        System.arraycopy(b2, 0, padded, 3, b2.length);
+
+        Assert.assertEquals(Integer.signum(w1.compareTo(w2)),
+                            Integer.signum(comparator.compare(b1, 0, b1.length, padded, 3, b2.length)));
+      }
+    }
+  }
+
+  private void assertRecordEquals(StructuredRecord expected, StructuredRecord actual) {
+    Assert.assertEquals(expected.getSchema(), actual.getSchema());
+    for (Schema.Field field : expected.getSchema().getFields()) {
+      Object expectedValue = expected.get(field.getName());
+      Object actualValue = actual.get(field.getName());
+      if (expectedValue instanceof byte[]) {
+        Assert.assertArrayEquals((byte[]) expectedValue, (byte[]) actualValue);
+      } else if (expectedValue instanceof StructuredRecord) {
+        assertRecordEquals((StructuredRecord) expectedValue, (StructuredRecord) actualValue);
+      } else {
+        Assert.assertEquals(expectedValue, actualValue);
+      }
+    }
+  }
+
+  private StructuredRecord roundTrip(StructuredRecord record) throws IOException {
+    StructuredRecordWritable writableIn = new StructuredRecordWritable();
+    writableIn.readFields(new DataInputStream(new ByteArrayInputStream(
+      serialize(new StructuredRecordWritable(record)))));
+    return writableIn.get();
+  }
+
+  private byte[] serialize(StructuredRecordWritable writable) throws IOException {
+    DataOutputBuffer buffer = new DataOutputBuffer();
+    writable.write(buffer);
+    return Arrays.copyOf(buffer.getData(), buffer.getLength());
+  }
 }
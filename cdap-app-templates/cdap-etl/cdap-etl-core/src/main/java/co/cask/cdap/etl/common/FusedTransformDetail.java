@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.InvalidEntry;
+import co.cask.cdap.etl.api.Transformation;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link TransformDetail} for a linear chain of stages executed by a {@link FusedTransformation}.
+ * Errors are reported under the name of the stage that emitted them rather than the name of the chain.
+ */
+public class FusedTransformDetail extends TransformDetail {
+  private final FusedTransformation fusedTransformation;
+
+  /**
+   * Constructor.
+   *
+   * @param transformation the transformation to execute, which is either the fused transformation itself or
+   *                       a transformation wrapping it
+   * @param fusedTransformation the fused transformation
+   * @param nextStages the next stages of the last stage in the chain
+   */
+  public FusedTransformDetail(Transformation transformation, FusedTransformation fusedTransformation,
+                              Collection<String> nextStages) {
+    super(transformation, nextStages);
+    this.fusedTransformation = fusedTransformation;
+  }
+
+  @Override
+  public void collectErrors(String stageName, Map<String, Collection<InvalidEntry<Object>>> errors) {
+    super.collectErrors(stageName, errors);
+    for (Map.Entry<String, Collection<InvalidEntry<Object>>> entry : fusedTransformation.getStageErrors().entrySet()) {
+      if (!entry.getValue().isEmpty()) {
+        errors.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  @Override
+  public void resetEmitter() {
+    super.resetEmitter();
+    fusedTransformation.resetErrors();
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (getTransformation() != fusedTransformation) {
+      Destroyables.destroyQuietly(fusedTransformation);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.api.preview.DataTracer;
+import co.cask.cdap.etl.api.Destroyable;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
+import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.cdap.etl.api.Transformation;
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Transformation} that executes a linear chain of stages as one, where the output of each stage is the
+ * only input of the next stage. Compared to executing each stage with a {@link TrackedTransform}, records are
+ * passed from stage to stage through reused buffers, and the records.in, records.out and records.error metrics of
+ * each stage are counted locally and flushed periodically instead of for every record.
+ *
+ * Records emitted by the last stage are emitted to the given emitter. Errors emitted by every stage are collected
+ * separately for each stage, and are available through {@link #getStageErrors()} until {@link #resetErrors()}
+ * is called. Metrics not flushed yet are flushed when this transformation is destroyed.
+ */
+public class FusedTransformation implements Transformation<Object, Object>, Destroyable {
+
+  // number of input records to transform between flushing metrics
+  private static final int METRICS_FLUSH_INTERVAL = 1000;
+
+  private final List<Stage> stages;
+  private final Map<String, Collection<InvalidEntry<Object>>> stageErrors;
+  private int unflushedRecords;
+
+  public FusedTransformation(List<Stage> stages) {
+    Preconditions.checkArgument(!stages.isEmpty(), "There must be at least one stage to fuse.");
+    this.stages = new ArrayList<>(stages);
+    Map<String, Collection<InvalidEntry<Object>>> stageErrors = new LinkedHashMap<>();
+    for (Stage stage : stages) {
+      stageErrors.put(stage.name, Collections.unmodifiableCollection(stage.errors));
+    }
+    this.stageErrors = Collections.unmodifiableMap(stageErrors);
+  }
+
+  @Override
+  public void transform(Object input, Emitter<Object> emitter) throws Exception {
+    try {
+      Stage previous = stages.get(0);
+      previous.transform(input);
+      for (int i = 1; i < stages.size(); i++) {
+        Stage stage = stages.get(i);
+        for (Object record : previous.outputs) {
+          stage.transform(record);
+        }
+        previous = stage;
+      }
+      for (Object record : previous.outputs) {
+        emitter.emit(record);
+      }
+    } finally {
+      for (Stage stage : stages) {
+        stage.outputs.clear();
+      }
+    }
+
+    if (++unflushedRecords >= METRICS_FLUSH_INTERVAL) {
+      flushMetrics();
+    }
+  }
+
+  /**
+   * Returns the errors emitted by each stage, keyed by stage name.
+   */
+  public Map<String, Collection<InvalidEntry<Object>>> getStageErrors() {
+    return stageErrors;
+  }
+
+  /**
+   * Clears the errors collected for all stages.
+   */
+  public void resetErrors() {
+    for (Stage stage : stages) {
+      stage.errors.clear();
+    }
+  }
+
+  /**
+   * Emits the metrics counted since the last flush.
+   */
+  public void flushMetrics() {
+    for (Stage stage : stages) {
+      stage.flushMetrics();
+    }
+    unflushedRecords = 0;
+  }
+
+  @Override
+  public void destroy() {
+    flushMetrics();
+    for (Stage stage : stages) {
+      if (stage.transformation instanceof Destroyable) {
+        Destroyables.destroyQuietly((Destroyable) stage.transformation);
+      }
+    }
+  }
+
+  /**
+   * A stage in a {@link FusedTransformation}. It is the emitter of its own transformation, buffering the
+   * output records for the next stage and counting metrics.
+   */
+  public static final class Stage implements Emitter<Object> {
+    private final String name;
+    private final Transformation<Object, Object> transformation;
+    private final StageMetrics metrics;
+    private final DataTracer dataTracer;
+    private final List<Object> outputs;
+    private final List<InvalidEntry<Object>> errors;
+    private int recordsIn;
+    private int recordsOut;
+    private int recordsError;
+
+    @SuppressWarnings("unchecked")
+    public Stage(String name, Transformation transformation, StageMetrics metrics, DataTracer dataTracer) {
+      this.name = name;
+      this.transformation = transformation;
+      this.metrics = metrics;
+      this.dataTracer = dataTracer;
+      this.outputs = new ArrayList<>();
+      this.errors = new ArrayList<>();
+    }
+
+    @Override
+    public void emit(Object value) {
+      outputs.add(value);
+      recordsOut++;
+      if (dataTracer.isEnabled()) {
+        dataTracer.info(TrackedTransform.RECORDS_OUT, value);
+      }
+    }
+
+    @Override
+    public void emitError(InvalidEntry<Object> invalidEntry) {
+      errors.add(invalidEntry);
+      recordsError++;
+      if (dataTracer.isEnabled()) {
+        dataTracer.info(TrackedEmitter.RECORDS_ERROR, invalidEntry);
+      }
+    }
+
+    private void transform(Object input) throws Exception {
+      recordsIn++;
+      if (dataTracer.isEnabled()) {
+        dataTracer.info(TrackedTransform.RECORDS_IN, input);
+      }
+      transformation.transform(input, this);
+    }
+
+    private void flushMetrics() {
+      if (recordsIn > 0) {
+        metrics.count(TrackedTransform.RECORDS_IN, recordsIn);
+        recordsIn = 0;
+      }
+      if (recordsOut > 0) {
+        metrics.count(TrackedTransform.RECORDS_OUT, recordsOut);
+        recordsOut = 0;
+      }
+      if (recordsError > 0) {
+        metrics.count(TrackedEmitter.RECORDS_ERROR, recordsError);
+        recordsError = 0;
+      }
+    }
+  }
+}
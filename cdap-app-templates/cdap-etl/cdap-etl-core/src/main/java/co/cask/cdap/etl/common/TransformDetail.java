@@ -22,6 +22,7 @@ import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.Transformation;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * Encapsulates {@link Transformation} list of next stages, current stage name, and {@link DefaultEmitter}.
@@ -56,6 +57,19 @@ public class TransformDetail implements Emitter<Object> {
     return defaultEmitter.getErrors();
   }
 
+  /**
+   * Adds the errors emitted by this stage to the given map, keyed by the stage name.
+   *
+   * @param stageName name of this stage
+   * @param errors the map to add the errors to
+   */
+  public void collectErrors(String stageName, Map<String, Collection<InvalidEntry<Object>>> errors) {
+    Collection<InvalidEntry<Object>> stageErrors = getErrors();
+    if (!stageErrors.isEmpty()) {
+      errors.put(stageName, stageErrors);
+    }
+  }
+
   public void resetEmitter() {
     defaultEmitter.reset();
   }
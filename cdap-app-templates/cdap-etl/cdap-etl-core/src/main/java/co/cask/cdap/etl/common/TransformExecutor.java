@@ -19,10 +19,12 @@ package co.cask.cdap.etl.common;
 import co.cask.cdap.etl.api.Destroyable;
 import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.Transformation;
-import com.google.common.collect.ImmutableList;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -31,6 +33,11 @@ import java.util.Set;
  * Executes Transforms one iteration at a time, tracking how many records were input into and output from
  * each transform.
  *
+ * Records can either be executed one at a time with {@link #runOneIteration(Object)}, or in batches with
+ * {@link #runBatch(Collection)}, which pushes the whole batch through one stage before moving on to the next stages.
+ * The emitted records of each stage are collected in the emitter of the stage, which is reused across iterations.
+ * Output of the terminal stages and errors are accumulated until {@link #resetEmitter()} is called.
+ *
  * @param <IN> the type of input object to the first transform
  *
  */
@@ -38,61 +45,102 @@ public class TransformExecutor<IN> implements Destroyable {
 
   private final Set<String> startingPoints;
   private final Map<String, TransformDetail> transformDetailMap;
+  private final TransformResponse transformResponse;
+  private final Map<String, Collection<InvalidEntry<Object>>> errors;
+  private final List<Map.Entry<String, TransformDetail>> transformDetails;
 
   public TransformExecutor(Map<String, TransformDetail> transformDetailMap, Set<String> startingPoints) {
     this.transformDetailMap = transformDetailMap;
     this.startingPoints = startingPoints;
+    this.transformDetails = new ArrayList<>(transformDetailMap.entrySet());
+
+    // the emitter of each stage is reused, hence the terminal entries can be computed once
+    Map<String, Collection<Object>> terminalNodeEntriesMap = new HashMap<>();
+    for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetails) {
+      if (transformDetailEntry.getValue().getNextStages().isEmpty()) {
+        terminalNodeEntriesMap.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getEntries());
+      }
+    }
+    this.errors = new HashMap<>();
+    this.transformResponse = new TransformResponse(Collections.unmodifiableMap(terminalNodeEntriesMap),
+                                                   Collections.unmodifiableMap(errors));
   }
 
+  /**
+   * Executes the given input through all the stages.
+   *
+   * @return a {@link TransformResponse} containing the output of the terminal stages and the errors. It is only
+   *         valid until the next call to this executor.
+   */
   public TransformResponse runOneIteration(IN input) throws Exception {
     for (String stageName : startingPoints) {
       // no prevStage for starting points
-      executeTransformation(stageName, ImmutableList.of(input));
+      executeTransformation(stageName, input);
     }
+    return getResponse();
+  }
 
-    Map<String, Collection<Object>> terminalNodeEntriesMap = new HashMap<>();
-    Map<String, Collection<InvalidEntry<Object>>> errors = new HashMap<>();
-
-    for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetailMap.entrySet()) {
-      if (transformDetailEntry.getValue().getNextStages().isEmpty()) {
-        // terminal node
-        Collection<Object> entries = transformDetailEntry.getValue().getEntries();
-        if (entries != null) {
-          terminalNodeEntriesMap.put(transformDetailEntry.getKey(), entries);
-        }
-      }
-
-      if (!transformDetailEntry.getValue().getErrors().isEmpty()) {
-        errors.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getErrors());
+  /**
+   * Executes the given batch of inputs through all the stages. The result is the same as calling
+   * {@link #runOneIteration(Object)} for each of the inputs, except that the output of a stage with multiple
+   * input stages is ordered by input stage rather than by input.
+   *
+   * @return a {@link TransformResponse} containing the output of the terminal stages and the errors. It is only
+   *         valid until the next call to this executor.
+   */
+  public TransformResponse runBatch(Collection<? extends IN> inputs) throws Exception {
+    if (!inputs.isEmpty()) {
+      for (String stageName : startingPoints) {
+        executeBatchTransformation(stageName, inputs);
       }
     }
-    return new TransformResponse(terminalNodeEntriesMap, errors);
+    return getResponse();
   }
 
-  private <T> void executeTransformation(final String stageName,
-                                         Collection<T> input) throws Exception {
-    if (input == null) {
-      return;
+  private TransformResponse getResponse() {
+    errors.clear();
+    for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetails) {
+      transformDetailEntry.getValue().collectErrors(transformDetailEntry.getKey(), errors);
     }
+    return transformResponse;
+  }
 
+  private <T> void executeTransformation(String stageName, T input) throws Exception {
     TransformDetail transformDetail = transformDetailMap.get(stageName);
     Transformation<T, Object> transformation = transformDetail.getTransformation();
 
-
+    Collection<String> nextStages = transformDetail.getNextStages();
     // clear old data for this stageName if its not a terminal node
-    if (!transformDetail.getNextStages().isEmpty()) {
+    if (!nextStages.isEmpty()) {
       transformDetail.getEntries().clear();
     }
+    transformation.transform(input, transformDetail);
+    executeNextStages(transformDetail);
+  }
 
+  private <T> void executeBatchTransformation(String stageName, Collection<T> input) throws Exception {
+    TransformDetail transformDetail = transformDetailMap.get(stageName);
+    Transformation<T, Object> transformation = transformDetail.getTransformation();
+
+    Collection<String> nextStages = transformDetail.getNextStages();
+    // clear old data for this stageName if its not a terminal node
+    if (!nextStages.isEmpty()) {
+      transformDetail.getEntries().clear();
+    }
     for (T inputEntry : input) {
       transformation.transform(inputEntry, transformDetail);
     }
+    executeNextStages(transformDetail);
+  }
 
-    Collection<String> nextStages = transformDetail.getNextStages();
-    for (String nextStage : nextStages) {
-      executeTransformation(nextStage, transformDetail.getEntries());
+  private void executeNextStages(TransformDetail transformDetail) throws Exception {
+    Collection<Object> entries = transformDetail.getEntries();
+    if (entries.isEmpty()) {
+      return;
+    }
+    for (String nextStage : transformDetail.getNextStages()) {
+      executeBatchTransformation(nextStage, entries);
     }
-
   }
 
   public void resetEmitter() {
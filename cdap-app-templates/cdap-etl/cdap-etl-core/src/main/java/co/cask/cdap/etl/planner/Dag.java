@@ -34,6 +34,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import javax.annotation.Nullable;
 
 /**
  * A DAG (directed acyclic graph).
@@ -342,6 +343,56 @@ public class Dag {
       String.format("Invalid DAG. Stages %s form a cycle.", Joiner.on(',').join(cycle)));
   }
 
+  /**
+   * Get the maximal linear chains made up of the specified candidate nodes. In a chain, each node except the last
+   * has the next node as its only output, and each node except the first has the previous node as its only input.
+   * Nodes in such a chain always process the same records one after another, so they can be executed as one.
+   * Chains are returned in topological order, and only chains of at least two nodes are returned.
+   *
+   * @param candidates the nodes that can be part of a chain
+   * @return the linear chains
+   */
+  public List<List<String>> getLinearChains(Set<String> candidates) {
+    List<List<String>> chains = new ArrayList<>();
+    for (String node : getTopologicalOrder()) {
+      if (!candidates.contains(node)) {
+        continue;
+      }
+      // skip the node if it is not the start of a chain
+      Set<String> inputs = incomingConnections.get(node);
+      if (inputs.size() == 1 && node.equals(getNextInChain(inputs.iterator().next(), candidates))) {
+        continue;
+      }
+
+      List<String> chain = new ArrayList<>();
+      String current = node;
+      while (current != null) {
+        chain.add(current);
+        current = getNextInChain(current, candidates);
+      }
+      if (chain.size() > 1) {
+        chains.add(chain);
+      }
+    }
+    return chains;
+  }
+
+  /**
+   * Returns the node that follows the given node in a linear chain, or null if there is none.
+   */
+  @Nullable
+  private String getNextInChain(String node, Set<String> candidates) {
+    if (!candidates.contains(node)) {
+      return null;
+    }
+    Set<String> outputs = outgoingConnections.get(node);
+    if (outputs.size() != 1) {
+      return null;
+    }
+    String next = outputs.iterator().next();
+    return candidates.contains(next) && incomingConnections.get(next).size() == 1 ? next : null;
+  }
+
   /**
    * Remove a source from the dag. New sources will be re-calculated after the source is removed.
    *
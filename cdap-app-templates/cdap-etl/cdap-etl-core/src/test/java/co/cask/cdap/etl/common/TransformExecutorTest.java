@@ -144,6 +144,124 @@ public class TransformExecutorTest {
     mockMetrics.clearMetrics();
   }
 
+  @Test
+  public void testRunBatch() throws Exception {
+    MockMetrics mockMetrics = new MockMetrics();
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+
+    transformationMap.put("transform1",
+                          new TransformDetail(
+                            new TrackedTransform<>(new IntToDouble(),
+                                                   new DefaultStageMetrics(mockMetrics, "transform1"),
+                                                   dataTracerFactory.getDataTracer(null, "transform1")),
+                            ImmutableList.of("transform2", "sink1")));
+
+    transformationMap.put("transform2",
+                          new TransformDetail(
+                            new TrackedTransform<>(new Filter(100d, Threshold.LOWER),
+                                                   new DefaultStageMetrics(mockMetrics, "transform2"),
+                                                   dataTracerFactory.getDataTracer(null, "transform2")),
+                            ImmutableList.of("sink2")));
+
+    transformationMap.put("sink1",
+                          new TransformDetail(
+                            new TrackedTransform<>(new DoubleToString(),
+                                                   new DefaultStageMetrics(mockMetrics, "sink1"),
+                                                   dataTracerFactory.getDataTracer(null, "sink1")),
+                            ImmutableList.<String>of()));
+
+    transformationMap.put("sink2",
+                          new TransformDetail(
+                            new TrackedTransform<>(new DoubleToString(),
+                                                   new DefaultStageMetrics(mockMetrics, "sink2"),
+                                                   dataTracerFactory.getDataTracer(null, "sink2")),
+                            ImmutableList.<String>of()));
+
+    TransformExecutor<Integer> executor = new TransformExecutor<>(transformationMap, ImmutableSet.of("transform1"));
+
+    // Running a batch should give the same result as running each input one by one
+    TransformResponse transformResponse = executor.runBatch(ImmutableList.of(1, 10, 100, 2000));
+
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink1", 12, "sink2", 6));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("transform2", 6));
+
+    Assert.assertEquals(12, mockMetrics.getCount("transform1.records.out"));
+    Assert.assertEquals(6, mockMetrics.getCount("transform2.records.out"));
+    Assert.assertEquals(12, mockMetrics.getCount("sink1.records.out"));
+    Assert.assertEquals(6, mockMetrics.getCount("sink2.records.out"));
+    executor.resetEmitter();
+    mockMetrics.clearMetrics();
+
+    // Outputs are accumulated until the emitters are reset
+    executor.runBatch(ImmutableList.of(2000));
+    transformResponse = executor.runBatch(ImmutableList.of(1, 2000));
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink1", 9, "sink2", 6));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("transform2", 3));
+    executor.resetEmitter();
+
+    // An empty batch produces nothing
+    transformResponse = executor.runBatch(ImmutableList.<Integer>of());
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink1", 0, "sink2", 0));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), new HashMap<String, Integer>());
+  }
+
+  @Test
+  public void testFusedTransforms() throws Exception {
+    MockMetrics mockMetrics = new MockMetrics();
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+
+    // conversion -> filter1 -> filter2 are fused, and executed in place of conversion
+    FusedTransformation fusedTransformation = new FusedTransformation(ImmutableList.of(
+      new FusedTransformation.Stage("conversion", new IntToDouble(), new DefaultStageMetrics(mockMetrics, "conversion"),
+                                    dataTracerFactory.getDataTracer(null, "conversion")),
+      new FusedTransformation.Stage("filter1", new Filter(100d, Threshold.LOWER),
+                                    new DefaultStageMetrics(mockMetrics, "filter1"),
+                                    dataTracerFactory.getDataTracer(null, "filter1")),
+      new FusedTransformation.Stage("filter2", new Filter(1000d, Threshold.UPPER),
+                                    new DefaultStageMetrics(mockMetrics, "filter2"),
+                                    dataTracerFactory.getDataTracer(null, "filter2"))));
+    transformationMap.put("conversion", new FusedTransformDetail(fusedTransformation, fusedTransformation,
+                                                                 ImmutableList.of("sink")));
+    transformationMap.put("sink",
+                          new TransformDetail(
+                            new TrackedTransform<>(new DoubleToString(),
+                                                   new DefaultStageMetrics(mockMetrics, "sink"),
+                                                   dataTracerFactory.getDataTracer(null, "sink")),
+                            ImmutableList.<String>of()));
+
+    TransformExecutor<Integer> executor = new TransformExecutor<>(transformationMap, ImmutableSet.of("conversion"));
+
+    // 20 -> 20, 200, 2000. 200 and 2000 pass filter1, 200 passes filter2
+    TransformResponse transformResponse = executor.runOneIteration(20);
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink", 1));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("filter1", 1, "filter2", 1));
+    Assert.assertEquals("200.0", transformResponse.getSinksResults().get("sink").iterator().next());
+
+    // 50 -> 50, 500, 5000. 500 and 5000 pass filter1, 500 passes filter2
+    transformResponse = executor.runOneIteration(50);
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink", 2));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("filter1", 2, "filter2", 2));
+    executor.resetEmitter();
+
+    // 5 -> 5, 50, 500. 500 passes both filters
+    transformResponse = executor.runOneIteration(5);
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink", 1));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("filter1", 2));
+
+    // metrics of the fused stages are only emitted when flushed
+    Assert.assertEquals(0, mockMetrics.getCount("conversion.records.in"));
+    Assert.assertEquals(3, mockMetrics.getCount("sink.records.in"));
+    executor.destroy();
+    Assert.assertEquals(3, mockMetrics.getCount("conversion.records.in"));
+    Assert.assertEquals(9, mockMetrics.getCount("conversion.records.out"));
+    Assert.assertEquals(9, mockMetrics.getCount("filter1.records.in"));
+    Assert.assertEquals(5, mockMetrics.getCount("filter1.records.out"));
+    Assert.assertEquals(4, mockMetrics.getCount("filter1.records.error"));
+    Assert.assertEquals(5, mockMetrics.getCount("filter2.records.in"));
+    Assert.assertEquals(3, mockMetrics.getCount("filter2.records.out"));
+    Assert.assertEquals(2, mockMetrics.getCount("filter2.records.error"));
+  }
+
   @Test
   public void testTransformsWithMerge() throws Exception {
     MockMetrics mockMetrics = new MockMetrics();
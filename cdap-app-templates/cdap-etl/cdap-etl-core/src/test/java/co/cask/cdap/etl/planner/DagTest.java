@@ -123,6 +123,48 @@ public class DagTest {
     dag.getTopologicalOrder();
   }
 
+  @Test
+  public void testLinearChains() {
+    /*
+                            |--> n5 --> n6
+        n1 --> n2 --> n3 --|
+                            |--> n7 --> n8 --|
+                                             |--> n10 --> n11 --> n12
+                                      n9 ----|
+     */
+    Dag dag = new Dag(ImmutableSet.of(
+      new Connection("n1", "n2"),
+      new Connection("n2", "n3"),
+      new Connection("n3", "n5"),
+      new Connection("n3", "n7"),
+      new Connection("n5", "n6"),
+      new Connection("n7", "n8"),
+      new Connection("n8", "n10"),
+      new Connection("n9", "n10"),
+      new Connection("n10", "n11"),
+      new Connection("n11", "n12")));
+
+    Set<String> candidates = ImmutableSet.of("n2", "n3", "n5", "n6", "n7", "n8", "n10", "n11");
+    Set<List<String>> expected = ImmutableSet.<List<String>>of(
+      ImmutableList.of("n2", "n3"),
+      ImmutableList.of("n5", "n6"),
+      ImmutableList.of("n7", "n8"),
+      ImmutableList.of("n10", "n11"));
+    Assert.assertEquals(expected, ImmutableSet.copyOf(dag.getLinearChains(candidates)));
+
+    // a chain is broken by a node that is not a candidate
+    candidates = ImmutableSet.of("n1", "n2", "n5", "n6", "n9");
+    expected = ImmutableSet.<List<String>>of(ImmutableList.of("n1", "n2"), ImmutableList.of("n5", "n6"));
+    Assert.assertEquals(expected, ImmutableSet.copyOf(dag.getLinearChains(candidates)));
+
+    // n1 -> n2 -> n3 -> n4
+    dag = new Dag(ImmutableSet.of(
+      new Connection("n1", "n2"), new Connection("n2", "n3"), new Connection("n3", "n4")));
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of("n1", "n2", "n3", "n4")),
+                        dag.getLinearChains(ImmutableSet.of("n1", "n2", "n3", "n4")));
+    Assert.assertTrue(dag.getLinearChains(ImmutableSet.of("n1", "n3")).isEmpty());
+  }
+
   @Test
   public void testRemoveSource() {
     /*
@@ -144,6 +144,8 @@ public final class Constants {
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String PROGRAM_RUNID_CORRECTOR_INTERVAL_SECONDS = "app.program.runid.corrector.interval";
     public static final String SYSTEM_ARTIFACTS_DIR = "app.artifact.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_DIR = "app.artifact.unpack.cache.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB = "app.artifact.unpack.cache.max.size.mb";
     public static final String PROGRAM_EXTRA_CLASSPATH = "app.program.extra.classpath";
     public static final String SPARK_YARN_CLIENT_REWRITE = "app.program.spark.yarn.client.rewrite.enabled";
     public static final String RUNTIME_EXT_DIR = "app.program.runtime.extensions.dir";
@@ -288,6 +290,10 @@ public final class Constants {
     // tables. Constant could be moved to Table after that is changed. See CDAP-1193 for more info
     public static final String TABLE_TX_DISABLED = "dataset.table.tx.disabled";
 
+    // Table dataset property that defines the maximum size in bytes of uncommitted changes a table buffers in memory
+    // before writing them to the underlying storage. Zero or absent means no limit.
+    public static final String TABLE_BUFFER_SIZE_LIMIT = "dataset.table.buffer.size.limit";
+
     public static final String DATA_DIR = "dataset.data.dir";
     public static final String DEFAULT_DATA_DIR = "data";
 
@@ -379,6 +385,8 @@ public final class Constants {
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
+    public static final String GROUP_COMMIT_MAX_BATCH_SIZE = "stream.group.commit.max.batch.size";
+    public static final String GROUP_COMMIT_MAX_LINGER_US = "stream.group.commit.max.linger.us";
 
     // Stream http service configurations.
     public static final String STREAM_HANDLER = "stream.handler";
@@ -407,6 +415,9 @@ public final class Constants {
     public static final String DESCRIPTION = "stream.description";
     public static final String FORMAT_SPECIFICATION = "stream.format.specification";
 
+    // Content type for the batch endpoint with body of events encoded in the stream file event format
+    public static final String ENCODED_EVENTS_CONTENT_TYPE = "application/vnd.cdap.stream-events";
+
     /**
      * Contains HTTP headers used by Stream handler.
      */
@@ -466,6 +477,7 @@ public final class Constants {
     public static final String CLIENT_BOSS_THREADS = "router.client.boss.threads";
     public static final String CLIENT_WORKER_THREADS = "router.client.worker.threads";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
+    public static final String BACKEND_POOL_MAX_IDLE_CONNECTIONS = "router.backend.pool.max.idle.connections";
     public static final String ROUTER_USERSERVICE_FALLBACK_STRAGEY = "router.userservice.fallback.strategy";
 
     /**
@@ -510,6 +522,9 @@ public final class Constants {
 
     public static final String SERVER_ADDRESS = "metrics.query.bind.address";
     public static final String SERVER_PORT = "metrics.query.bind.port";
+    public static final String QUERY_CACHE_MAX_SIZE_MB = "metrics.query.cache.max.size.mb";
+    public static final String QUERY_CACHE_DELAY_SECONDS = "metrics.query.cache.delay.seconds";
+    public static final String QUERY_CACHE_EXPIRE_SECONDS = "metrics.query.cache.expire.seconds";
 
     public static final String KAFKA_TOPIC_PREFIX = "metrics.kafka.topic.prefix";
     public static final String KAFKA_PARTITION_SIZE = "metrics.kafka.partition.size";
@@ -956,6 +971,7 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
+  public static final String CFG_DATA_LEVELDB_ROW_LOCK_STRIPES = "data.local.storage.row.lock.stripes";
 
   /**
    * Defaults for Data Fabric.
@@ -964,6 +980,7 @@ public final class Constants {
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
+  public static final int DEFAULT_DATA_LEVELDB_ROW_LOCK_STRIPES = 1024;
 
   /**
    * Config for Log Collection.
@@ -1078,6 +1095,8 @@ public final class Constants {
     public static final String PAYLOAD_TABLE_NAME = "messaging.payload.table.name";
     public static final String PAYLOAD_TABLE_HBASE_SPLITS = "messaging.payload.table.hbase.splits";
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
+    public static final String TOPIC_TAIL_CACHE_MAX_MESSAGES = "messaging.topic.tail.cache.max.messages";
+    public static final String TOPIC_TAIL_CACHE_MAX_BYTES = "messaging.topic.tail.cache.max.bytes";
 
     // Tell the instance id of the YARN container. Set by the messaging service TwillRunnable only, not in default.xml
     public static final String CONTAINER_INSTANCE_ID = "messaging.container.instance.id";
@@ -0,0 +1,339 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.lang.jar;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A cache of expanded jars in a local directory, shared by everything in the same process that uses the same
+ * directory. Jars are keyed by the checksum of their content, so that the same jar copied to different locations
+ * is only expanded once.
+ *
+ * An expanded jar is acquired as a {@link Lease} and stays in the cache at least until all leases of it are
+ * closed. Expanded jars without lease are evicted in least recently used order when the total size of the cache
+ * exceeds the maximum size. A jar is expanded to a temporary directory and then moved to the cache atomically,
+ * with concurrent acquisitions of the same jar waiting for the one expansion. If the maximum size is not
+ * positive, caching is disabled and every acquisition expands the jar to a new directory that is deleted
+ * when the lease is closed.
+ *
+ * Directories in the cache are shared, hence they must not be modified by users of the cache.
+ */
+@ThreadSafe
+public final class UnpackedJarCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UnpackedJarCache.class);
+  private static final String TEMP_PREFIX = ".tmp-";
+  private static final Map<File, UnpackedJarCache> INSTANCES = new HashMap<>();
+
+  private final File cacheDir;
+  private final long maxSize;
+  // Content checksums of jars, keyed by the jar location, size and modification time
+  private final Cache<String, String> checksums;
+  // Cache entries in least recently used order, guarded by this
+  private final LinkedHashMap<String, CacheEntry> entries;
+  private long totalSize;
+
+  /**
+   * Returns the {@link UnpackedJarCache} for the cache directory and size given by the configuration.
+   * The same instance is returned for the same directory.
+   */
+  public static synchronized UnpackedJarCache get(CConfiguration cConf) throws IOException {
+    File cacheDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
+                             cConf.get(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_DIR)).getAbsoluteFile();
+    UnpackedJarCache cache = INSTANCES.get(cacheDir);
+    if (cache == null) {
+      long maxSize = cConf.getLong(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB) * 1024 * 1024;
+      cache = new UnpackedJarCache(cacheDir, maxSize);
+      INSTANCES.put(cacheDir, cache);
+    }
+    return cache;
+  }
+
+  @VisibleForTesting
+  UnpackedJarCache(File cacheDir, long maxSize) throws IOException {
+    this.cacheDir = cacheDir;
+    this.maxSize = maxSize;
+    this.checksums = CacheBuilder.newBuilder().maximumSize(1000).build();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    if (!DirUtils.mkdirs(cacheDir)) {
+      throw new IOException("Failed to create directory " + cacheDir);
+    }
+
+    // Reuse jars expanded before, with the least recently modified ones be evicted first.
+    // Temporary directories are leftovers from failed expansion and are removed.
+    List<File> dirs = new ArrayList<>();
+    for (File file : DirUtils.listFiles(cacheDir)) {
+      if (file.getName().startsWith(TEMP_PREFIX) || maxSize <= 0) {
+        delete(file);
+      } else if (file.isDirectory()) {
+        dirs.add(file);
+      }
+    }
+    Collections.sort(dirs, new Comparator<File>() {
+      @Override
+      public int compare(File file1, File file2) {
+        return Long.compare(file1.lastModified(), file2.lastModified());
+      }
+    });
+    for (File dir : dirs) {
+      CacheEntry entry = new CacheEntry(dir.getName(), dir);
+      entry.size = getSize(dir);
+      entry.populated = true;
+      entries.put(entry.key, entry);
+      totalSize += entry.size;
+    }
+    for (File dir : evict()) {
+      delete(dir);
+    }
+  }
+
+  /**
+   * Acquires the expanded content of the given jar, expanding it if it is not in the cache.
+   *
+   * @param name name of the jar, which is used as part of the directory name
+   * @param jarLocation location of the jar
+   * @return a {@link Lease} of the directory containing the expanded jar, which must be closed when the
+   *         directory is no longer used
+   * @throws IOException if failed to read or expand the jar
+   */
+  public Lease acquire(String name, Location jarLocation) throws IOException {
+    if (maxSize <= 0) {
+      final File dir = BundleJarUtil.unJar(jarLocation, new File(cacheDir, TEMP_PREFIX + UUID.randomUUID()));
+      return new Lease(dir, new Runnable() {
+        @Override
+        public void run() {
+          delete(dir);
+        }
+      });
+    }
+
+    String key = getChecksum(jarLocation) + "-" + name.replaceAll("[^\\w.-]", "_");
+    final CacheEntry entry;
+    synchronized (this) {
+      CacheEntry existing = entries.get(key);
+      if (existing == null) {
+        existing = new CacheEntry(key, new File(cacheDir, key));
+        entries.put(key, existing);
+      }
+      entry = existing;
+      entry.refCount++;
+    }
+
+    try {
+      synchronized (entry) {
+        if (!entry.populated) {
+          populate(entry, jarLocation);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      release(entry);
+      throw e;
+    }
+    return new Lease(entry.dir, new Runnable() {
+      @Override
+      public void run() {
+        release(entry);
+      }
+    });
+  }
+
+  /**
+   * Expands the jar of the given entry to a temporary directory and moves it into the cache.
+   */
+  private void populate(CacheEntry entry, Location jarLocation) throws IOException {
+    File tempDir = new File(cacheDir, TEMP_PREFIX + UUID.randomUUID());
+    long size;
+    try {
+      BundleJarUtil.unJar(jarLocation, tempDir);
+      size = getSize(tempDir);
+      Files.move(tempDir.toPath(), entry.dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      if (tempDir.exists()) {
+        delete(tempDir);
+      }
+    }
+
+    List<File> evicted;
+    synchronized (this) {
+      entry.size = size;
+      entry.populated = true;
+      totalSize += size;
+      evicted = evict();
+    }
+    for (File dir : evicted) {
+      delete(dir);
+    }
+  }
+
+  private void release(CacheEntry entry) {
+    List<File> evicted;
+    synchronized (this) {
+      entry.refCount--;
+      if (entry.refCount == 0 && !entry.populated) {
+        // Failed to populate. Remove it so that the next acquisition will try again.
+        entries.remove(entry.key);
+      }
+      evicted = evict();
+    }
+    for (File dir : evicted) {
+      delete(dir);
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries without lease until the cache size is within the maximum size.
+   * The directories of the evicted entries are renamed, so that they can be deleted without holding the lock.
+   *
+   * @return the directories to delete
+   */
+  private synchronized List<File> evict() {
+    List<File> evicted = new ArrayList<>();
+    Iterator<CacheEntry> iterator = entries.values().iterator();
+    while (totalSize > maxSize && iterator.hasNext()) {
+      CacheEntry entry = iterator.next();
+      if (entry.refCount > 0 || !entry.populated) {
+        continue;
+      }
+      iterator.remove();
+      totalSize -= entry.size;
+
+      File dir = new File(cacheDir, TEMP_PREFIX + UUID.randomUUID());
+      if (entry.dir.renameTo(dir)) {
+        evicted.add(dir);
+      } else {
+        delete(entry.dir);
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Returns the checksum of the content of the given jar.
+   */
+  private String getChecksum(Location jarLocation) throws IOException {
+    String locationKey = jarLocation.toURI() + ":" + jarLocation.length() + ":" + jarLocation.lastModified();
+    String checksum = checksums.getIfPresent(locationKey);
+    if (checksum == null) {
+      checksum = ByteStreams.hash(Locations.newInputSupplier(jarLocation), Hashing.sha1()).toString();
+      checksums.put(locationKey, checksum);
+    }
+    return checksum;
+  }
+
+  private static long getSize(File dir) throws IOException {
+    final long[] size = new long[1];
+    Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        size[0] += attrs.size();
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return size[0];
+  }
+
+  private static void delete(File file) {
+    try {
+      if (file.isDirectory()) {
+        DirUtils.deleteDirectoryContents(file);
+      } else if (!file.delete()) {
+        LOG.warn("Failed to delete file {}", file);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to delete directory {}", file, e);
+    }
+  }
+
+  /**
+   * A lease of an expanded jar. The directory of the expanded jar must not be used after the lease is closed.
+   */
+  public static final class Lease implements Closeable {
+
+    private final File directory;
+    private final Runnable releaser;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private Lease(File directory, Runnable releaser) {
+      this.directory = directory;
+      this.releaser = releaser;
+    }
+
+    /**
+     * Returns the directory containing the expanded jar.
+     */
+    public File getDirectory() {
+      return directory;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        releaser.run();
+      }
+    }
+  }
+
+  /**
+   * An expanded jar in the cache.
+   */
+  private static final class CacheEntry {
+    private final String key;
+    private final File dir;
+    // Number of leases of this entry and whether the jar is expanded, guarded by the cache
+    private int refCount;
+    private long size;
+    private volatile boolean populated;
+
+    private CacheEntry(String key, File dir) {
+      this.key = key;
+      this.dir = dir;
+    }
+  }
+}
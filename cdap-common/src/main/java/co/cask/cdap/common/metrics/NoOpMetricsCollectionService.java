@@ -16,8 +16,10 @@
 
 package co.cask.cdap.common.metrics;
 
+import co.cask.cdap.api.metrics.MetricHandle;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import com.google.common.util.concurrent.AbstractIdleService;
 
 import java.util.Collections;
@@ -28,6 +30,8 @@ import java.util.Map;
  */
 public class NoOpMetricsCollectionService extends AbstractIdleService implements MetricsCollectionService {
 
+  private static final MetricsContext NOOP_CONTEXT = new NoopMetricsContext();
+
   @Override
   protected void startUp() throws Exception {
     // no-op
@@ -51,6 +55,11 @@ public class NoOpMetricsCollectionService extends AbstractIdleService implements
         // no-op
       }
 
+      @Override
+      public void distribution(String metricName, long value) {
+        // no-op
+      }
+
       @Override
       public MetricsContext childContext(Map<String, String> tags) {
         return this;
@@ -65,6 +74,11 @@ public class NoOpMetricsCollectionService extends AbstractIdleService implements
       public Map<String, String> getTags() {
         return Collections.emptyMap();
       }
+
+      @Override
+      public MetricHandle getMetricHandle(String metricName) {
+        return NOOP_CONTEXT.getMetricHandle(metricName);
+      }
     };
   }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.MapMaker;
+import com.google.common.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+
+/**
+ * A factory class for creating {@link DatumReader} instance for different data type and schema.
+ * It serves as an in memory cache for generated {@link DatumReader} {@link Class} using ASM.
+ * For data type that cannot be decoded by generated {@link DatumReader}, {@link ReflectionDatumReader} will be used.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ASMDatumReaderFactory.class);
+
+  private final LoadingCache<CacheKey, Optional<Class<DatumReader<?>>>> datumReaderClasses;
+  private final FieldAccessorFactory fieldAccessorFactory;
+
+  @Inject
+  public ASMDatumReaderFactory(FieldAccessorFactory fieldAccessorFactory) {
+    this(fieldAccessorFactory, CacheBuilder.newBuilder());
+  }
+
+  /**
+   * Creates an instance that discards generated {@link DatumReader} classes that were not used for the given
+   * amount of time. It is for instances that are shared statically, so that the data types, and the ClassLoaders
+   * that loaded them, are not retained forever.
+   */
+  public ASMDatumReaderFactory(FieldAccessorFactory fieldAccessorFactory, long expireAfterAccess, TimeUnit unit) {
+    this(fieldAccessorFactory, CacheBuilder.newBuilder().expireAfterAccess(expireAfterAccess, unit));
+  }
+
+  private ASMDatumReaderFactory(FieldAccessorFactory fieldAccessorFactory, CacheBuilder<Object, Object> builder) {
+    this.fieldAccessorFactory = fieldAccessorFactory;
+    this.datumReaderClasses = builder.build(new ASMCacheLoader());
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode given data type with the given {@link Schema}.
+   * The instance created is reusable.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    Optional<Class<DatumReader<?>>> readerClass = datumReaderClasses.getUnchecked(new CacheKey(schema, type));
+    if (!readerClass.isPresent()) {
+      return new ReflectionDatumReader<>(schema, type);
+    }
+    try {
+      return (DatumReader<T>) readerClass.get()
+        .getConstructor(Schema.class, TypeToken.class, FieldAccessorFactory.class)
+        .newInstance(schema, type, fieldAccessorFactory);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * A private {@link CacheLoader} for generating different {@link DatumReader} {@link Class}.
+   */
+  private static final class ASMCacheLoader extends CacheLoader<CacheKey, Optional<Class<DatumReader<?>>>> {
+
+    // Weak keys, which compare by identity, so that the ClassLoader is gone together with the cache keys of the type
+    private final Map<TypeToken<?>, ByteCodeClassLoader> classloaders = new MapMaker().weakKeys().makeMap();
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Optional<Class<DatumReader<?>>> load(CacheKey key) throws Exception {
+      ClassDefinition classDef;
+      try {
+        classDef = new DatumReaderGenerator().generate(key.getType(), key.getSchema());
+      } catch (IllegalArgumentException e) {
+        // The type cannot be decoded without schema resolution, fallback to ReflectionDatumReader.
+        LOG.debug("Not generating DatumReader for type {} with schema {}. Reason: {}",
+                  key.getType(), key.getSchema(), e.getMessage());
+        return Optional.absent();
+      }
+
+      ByteCodeClassLoader classloader;
+      // The factory is shared, hence the cache could be loading different keys concurrently.
+      synchronized (classloaders) {
+        classloader = classloaders.get(key.getType());
+        if (classloader == null) {
+          // The ClassLoader of the generated DatumReader has CDAP system ClassLoader as parent.
+          // The ClassDefinition contains list of classes that should not be loaded by the generated class ClassLoader
+          classloader = new ByteCodeClassLoader(ASMDatumReaderFactory.class.getClassLoader());
+          classloaders.put(key.getType(), classloader);
+        }
+      }
+
+      return Optional.of((Class<DatumReader<?>>) classloader.addClass(classDef).loadClass(classDef.getClassName()));
+    }
+  }
+
+  private static final class CacheKey {
+    private final Schema schema;
+    private final TypeToken<?> type;
+
+    private CacheKey(Schema schema, TypeToken<?> type) {
+      this.schema = schema;
+      this.type = type;
+    }
+
+    public Schema getSchema() {
+      return schema;
+    }
+
+    public TypeToken<?> getType() {
+      return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return schema.equals(cacheKey.schema) && type.equals(cacheKey.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(schema, type);
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.google.common.reflect.TypeToken;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link FieldAccessorFactory} that uses ASM to generate a specific {@link FieldAccessor} class
@@ -38,6 +39,16 @@ public final class ASMFieldAccessorFactory implements FieldAccessorFactory {
     this.fieldAccessorCache = CacheBuilder.newBuilder().build(new FieldAccessorLoader());
   }
 
+  /**
+   * Creates an instance that discards cached {@link FieldAccessor} that were not used for the given amount of time.
+   * It is for instances that are shared statically, so that the data types are not retained forever.
+   */
+  public ASMFieldAccessorFactory(long expireAfterAccess, TimeUnit unit) {
+    this.fieldAccessorCache = CacheBuilder.newBuilder()
+      .expireAfterAccess(expireAfterAccess, unit)
+      .build(new FieldAccessorLoader());
+  }
+
   @Override
   public FieldAccessor getFieldAccessor(TypeToken<?> type, String fieldName) {
     return fieldAccessorCache.getUnchecked(new FieldEntry(type, fieldName));
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.google.common.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Base class for {@link DatumReader} classes generated by {@link DatumReaderGenerator}. The generated subclass
+ * decodes data that was written with the same schema as the one it was generated for. Data written with a
+ * different schema goes through a {@link ReflectionDatumReader} for schema resolution.
+ *
+ * @param <T> type of object to read
+ */
+public abstract class AbstractGeneratedDatumReader<T> implements DatumReader<T> {
+
+  private final Schema schema;
+  private final InstantiatorFactory instantiatorFactory;
+  private final ReflectionDatumReader<T> resolvingReader;
+
+  protected AbstractGeneratedDatumReader(Schema schema, TypeToken<T> type) {
+    this.schema = schema;
+    this.instantiatorFactory = new InstantiatorFactory(true);
+    this.resolvingReader = new ReflectionDatumReader<>(schema, type);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public final T read(Decoder decoder, Schema sourceSchema) throws IOException {
+    // Schema equality is based on schema hash, which is computed once per Schema instance.
+    if (sourceSchema == schema || schema.equals(sourceSchema)) {
+      return (T) decode(decoder);
+    }
+    return resolvingReader.read(decoder, sourceSchema);
+  }
+
+  /**
+   * Decodes an object that was written with the same schema as the one this reader was generated for.
+   *
+   * @param decoder the {@link Decoder} to read from
+   * @return the decoded object
+   * @throws IOException if failed to decode
+   */
+  protected abstract Object decode(Decoder decoder) throws IOException;
+
+  /**
+   * Returns an {@link Instantiator} for creating instances of the given class.
+   */
+  protected final Instantiator<?> getInstantiator(Class<?> cls) {
+    return instantiatorFactory.get(TypeToken.of(cls));
+  }
+
+  /**
+   * Returns an array of enum constants, ordered by the enum value indexes in the schema.
+   *
+   * @param enumClass the enum class
+   * @param values enum value names in schema index order
+   */
+  protected static Object[] getEnumConstants(Class<?> enumClass, String[] values) {
+    Map<String, Object> enums = Maps.newHashMap();
+    for (Object constant : enumClass.getEnumConstants()) {
+      enums.put(((Enum<?>) constant).name(), constant);
+    }
+    Object[] constants = new Object[values.length];
+    for (int i = 0; i < values.length; i++) {
+      constants[i] = enums.get(values[i]);
+      Preconditions.checkArgument(constants[i] != null, "Enum value '%s' missing in %s.", values[i], enumClass);
+    }
+    return constants;
+  }
+
+  /**
+   * Converts the remaining content of the given {@link ByteBuffer} to a byte array.
+   */
+  protected static byte[] toBytes(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      if (buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == array.length) {
+        return array;
+      }
+      byte[] bytes = new byte[buffer.remaining()];
+      System.arraycopy(array, buffer.arrayOffset() + buffer.position(), bytes, 0, buffer.remaining());
+      return bytes;
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Converts the given {@link ByteBuffer} to {@link UUID}. Same as {@link ReflectionReader}, the buffer
+   * is returned as is if it doesn't contain exactly two longs.
+   */
+  protected static Object toUUID(ByteBuffer buffer) {
+    if (buffer.remaining() != Longs.BYTES * 2) {
+      return buffer;
+    }
+    return new UUID(buffer.getLong(), buffer.getLong());
+  }
+
+  protected static URL toURL(String str) throws MalformedURLException {
+    return new URL(str);
+  }
+
+  /**
+   * Creates a new array of the given component type.
+   */
+  protected static Object newArray(Class<?> componentType, int length) {
+    return Array.newInstance(componentType, length);
+  }
+
+  /**
+   * Creates a new array of the given length with the same component type as the given array,
+   * with all elements of the given array copied to it.
+   */
+  protected static Object growArray(Object array, int length) {
+    Object newArray = Array.newInstance(array.getClass().getComponentType(), length);
+    System.arraycopy(array, 0, newArray, 0, Array.getLength(array));
+    return newArray;
+  }
+}
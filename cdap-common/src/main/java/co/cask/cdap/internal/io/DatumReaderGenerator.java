@@ -0,0 +1,987 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeToken;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link DatumReader} bytecodes using ASM. The class generated extends from
+ * {@link AbstractGeneratedDatumReader} and will have a skeleton looks like the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName extends AbstractGeneratedDatumReader<InputType> {
+ *    private static final String SCHEMA_HASH = "schema_hash_as_hex_string";
+ *
+ *    public generatedClassName(Schema schema, TypeToken<InputType> type, FieldAccessorFactory accessorFactory) {
+ *      super(schema, type);
+ *      if (!SCHEMA_HASH.equals(schema.getSchemaHash().toString())) {
+ *        throw new IllegalArgumentException("Schema not match.");
+ *      }
+ *      // Initialize FieldAccessor, Instantiator, enum constants and array component type fields
+ *    }
+ *
+ *    @Override
+ *    protected Object decode(Decoder decoder) throws IOException {
+ *      return generatedDecodeMethod(decoder);
+ *    }
+ *
+ *    private InputType generatedDecodeMethod(Decoder decoder) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the type.
+ *    }
+ *
+ *    // Could have more generatedDecodeMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * For example, to decode type {@code int[]}, a generated {@link DatumReader} will looks like this after decompile.
+ * <pre>
+ * {@code
+ *
+ *   public final class intArrayDatumReader07D4F780E3528DB8C539EE5C21FDDEAE
+ *                 extends AbstractGeneratedDatumReader<int[]> {
+ *     ...
+ *     protected Object decode(Decoder paramDecoder) throws IOException {
+ *       return decodeArray1int07D4F780E3528DB8C539EE5C21FDDEAE(paramDecoder);
+ *     }
+ *
+ *     private Object decodeArray1int07D4F780E3528DB8C539EE5C21FDDEAE(Decoder paramDecoder) throws IOException {
+ *       int i = paramDecoder.readInt();
+ *       int[] arrayOfInt = new int[i];
+ *       int j = 0;
+ *       while (i != 0) {
+ *         if (j + i > arrayOfInt.length) {
+ *           arrayOfInt = (int[]) growArray(arrayOfInt, j + i);
+ *         }
+ *         for (int k = 0; k < i; k++) {
+ *           arrayOfInt[j++] = decodeint9E688C58A5487B8EAF69C9E1005AD0BF(paramDecoder);
+ *         }
+ *         i = paramDecoder.readInt();
+ *       }
+ *       return arrayOfInt;
+ *     }
+ *
+ *     private int decodeint9E688C58A5487B8EAF69C9E1005AD0BF(Decoder paramDecoder) throws IOException {
+ *       return paramDecoder.readInt();
+ *     }
+ *   }
+ * }
+ * </pre>
+ *
+ * The generated class only decodes data written with the exact same schema that it was generated for, which is
+ * the common case. Schema resolution between different source and target schemas is handled by the
+ * {@link ReflectionDatumReader} inside {@link AbstractGeneratedDatumReader}. Types that cannot be decoded
+ * without schema resolution, such as interfaces or types that don't match the schema, will result in an
+ * {@link IllegalArgumentException} being thrown from the {@link #generate(TypeToken, Schema)} method.
+ */
+@NotThreadSafe
+final class DatumReaderGenerator {
+
+  private final Map<String, Method> decodeMethods = Maps.newHashMap();
+  private final Multimap<TypeToken<?>, String> fieldAccessorRequests = LinkedHashMultimap.create();
+  private final Set<Class<?>> instantiatorRequests = Sets.newLinkedHashSet();
+  private final Set<Class<?>> componentTypeRequests = Sets.newLinkedHashSet();
+  private final Map<Class<?>, List<String>> enumRequests = Maps.newLinkedHashMap();
+  private ClassWriter classWriter;
+  private Type classType;
+  private List<Class<?>> preservedClasses;
+
+  /**
+   * Generates a {@link DatumReader} class for decoding data of the given input type with the given schema.
+   * @param inputType Type information of the input data type.
+   * @param schema Schema of the input data type.
+   * @return A {@link co.cask.cdap.internal.asm.ClassDefinition} that contains generated class information.
+   * @throws IllegalArgumentException if the given type cannot be decoded with generated code
+   */
+  ClassDefinition generate(TypeToken<?> inputType, Schema schema) {
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    preservedClasses = Lists.newArrayList();
+
+    // Generate the class
+    String className = getClassName(inputType, schema);
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, null,
+                      Type.getInternalName(AbstractGeneratedDatumReader.class), null);
+
+    // Static schema hash field, for verification
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC + Opcodes.ACC_FINAL, "SCHEMA_HASH",
+                           Type.getDescriptor(String.class), null, schema.getSchemaHash().toString()).visitEnd();
+
+    // Decode method
+    generateDecode(inputType, schema);
+
+    // Constructor
+    generateConstructor();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), className, preservedClasses);
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature
+   * {@code (Schema, TypeToken, FieldAccessorFactory)}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", Schema.class, TypeToken.class, FieldAccessorFactory.class);
+
+    // Constructor(Schema schema, TypeToken type, FieldAccessorFactory accessorFactory)
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super(schema, type);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.loadArg(1);
+    mg.invokeConstructor(Type.getType(AbstractGeneratedDatumReader.class),
+                         getMethod(void.class, "<init>", Schema.class, TypeToken.class));
+
+    // if (!SCHEMA_HASH.equals(schema.getSchemaHash().toString())) { throw IllegalArgumentException }
+    mg.getStatic(classType, "SCHEMA_HASH", Type.getType(String.class));
+    mg.loadArg(0);
+    mg.invokeVirtual(Type.getType(Schema.class), getMethod(SchemaHash.class, "getSchemaHash"));
+    mg.invokeVirtual(Type.getType(SchemaHash.class), getMethod(String.class, "toString"));
+    mg.invokeVirtual(Type.getType(String.class), getMethod(boolean.class, "equals", Object.class));
+    Label hashEquals = mg.newLabel();
+    mg.ifZCmp(GeneratorAdapter.NE, hashEquals);
+    mg.throwException(Type.getType(IllegalArgumentException.class), "Schema not match.");
+    mg.mark(hashEquals);
+
+    // For each record field that needs an accessor, get the accessor and store it in field.
+    for (Map.Entry<TypeToken<?>, String> entry : fieldAccessorRequests.entries()) {
+      String fieldAccessorName = getFieldAccessorName(entry.getKey(), entry.getValue());
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL,
+                             fieldAccessorName,
+                             Type.getDescriptor(FieldAccessor.class), null, null);
+      // this.fieldAccessorName
+      //  = accessorFactory.getFieldAccessor(TypeToken.of(Class.forName("className")), "fieldName");
+      mg.loadThis();
+      mg.loadArg(2);
+      loadClass(mg, entry.getKey().getRawType());
+      mg.invokeStatic(Type.getType(TypeToken.class), getMethod(TypeToken.class, "of", Class.class));
+      mg.push(entry.getValue());
+      mg.invokeInterface(Type.getType(FieldAccessorFactory.class),
+                         getMethod(FieldAccessor.class, "getFieldAccessor", TypeToken.class, String.class));
+      mg.putField(classType, fieldAccessorName, Type.getType(FieldAccessor.class));
+    }
+
+    // For each record or container class, get the Instantiator and store it in field.
+    for (Class<?> cls : instantiatorRequests) {
+      String instantiatorName = getInstantiatorName(cls);
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL,
+                             instantiatorName, Type.getDescriptor(Instantiator.class), null, null);
+      // this.instantiatorName = getInstantiator(Class.forName("className"));
+      mg.loadThis();
+      mg.loadThis();
+      loadClass(mg, cls);
+      mg.invokeVirtual(classType, getMethod(Instantiator.class, "getInstantiator", Class.class));
+      mg.putField(classType, instantiatorName, Type.getType(Instantiator.class));
+    }
+
+    // For each array of non-primitive type, store the component class in field.
+    for (Class<?> cls : componentTypeRequests) {
+      String componentTypeName = getComponentTypeName(cls);
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL,
+                             componentTypeName, Type.getDescriptor(Class.class), null, null);
+      // this.componentTypeName = Class.forName("className");
+      mg.loadThis();
+      loadClass(mg, cls);
+      mg.putField(classType, componentTypeName, Type.getType(Class.class));
+    }
+
+    // For each enum type, store the enum constants in schema index order in field.
+    for (Map.Entry<Class<?>, List<String>> entry : enumRequests.entrySet()) {
+      String enumConstantsName = getEnumConstantsName(entry.getKey());
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL,
+                             enumConstantsName, Type.getDescriptor(Object[].class), null, null);
+      // this.enumConstantsName = getEnumConstants(Class.forName("className"), new String[] { values... });
+      mg.loadThis();
+      loadClass(mg, entry.getKey());
+      List<String> values = entry.getValue();
+      mg.push(values.size());
+      mg.newArray(Type.getType(String.class));
+      for (int i = 0; i < values.size(); i++) {
+        mg.dup();
+        mg.push(i);
+        mg.push(values.get(i));
+        mg.arrayStore(Type.getType(String.class));
+      }
+      mg.invokeStatic(Type.getType(AbstractGeneratedDatumReader.class),
+                      getMethod(Object[].class, "getEnumConstants", Class.class, String[].class));
+      mg.putField(classType, enumConstantsName, Type.getType(Object[].class));
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link AbstractGeneratedDatumReader#decode(Decoder)} method.
+   * @param inputType Type information of the data type for input
+   * @param schema Schema to use for input.
+   */
+  private void generateDecode(TypeToken<?> inputType, Schema schema) {
+    Method decodeMethod = getMethod(Object.class, "decode", Decoder.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PROTECTED, decodeMethod, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+
+    // return actualDecodeMethod(decoder);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getDecodeMethod(inputType, schema));
+    boxIfPrimitive(mg, inputType);
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the decode method for the given type and schema. The same method will be returned if the same
+   * type and schema has been passed to the method before.
+   *
+   * @param inputType Type information of the data type for input
+   * @param schema Schema to use for input.
+   * @return A method for decoding the given input type and schema.
+   */
+  private Method getDecodeMethod(TypeToken<?> inputType, Schema schema) {
+    String key = String.format("%s%s", normalizeTypeName(inputType), schema.getSchemaHash());
+
+    Method method = decodeMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    // Generate the decode method (decoder)
+    String methodName = String.format("decode%s", key);
+    method = getMethod(getCallType(inputType), methodName, Decoder.class);
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    decodeMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[]{Type.getType(IOException.class)}, classWriter);
+
+    generateDecodeBody(mg, schema, inputType);
+    mg.returnValue();
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the decode method body, with the decoder as the first method argument. The generated code
+   * leaves the decoded value on the stack.
+   *
+   * @param mg Method generator for generating method code body
+   * @param schema Schema of the data to be decoded.
+   * @param inputType Type of the data to be decoded.
+   */
+  private void generateDecodeBody(GeneratorAdapter mg, Schema schema, TypeToken<?> inputType) {
+    Schema.Type schemaType = schema.getType();
+
+    switch (schemaType) {
+      case NULL:
+        Preconditions.checkArgument(!inputType.getRawType().isPrimitive(),
+                                    "Cannot decode null to primitive type %s.", inputType);
+        mg.loadArg(0);
+        mg.invokeInterface(Type.getType(Decoder.class), getMethod(Object.class, "readNull"));
+        break;
+      case BOOLEAN:
+        decodePrimitive(mg, inputType, schemaType, boolean.class);
+        break;
+      case INT:
+        decodePrimitive(mg, inputType, schemaType, int.class);
+        break;
+      case LONG:
+        decodePrimitive(mg, inputType, schemaType, long.class);
+        break;
+      case FLOAT:
+        decodePrimitive(mg, inputType, schemaType, float.class);
+        break;
+      case DOUBLE:
+        decodePrimitive(mg, inputType, schemaType, double.class);
+        break;
+      case STRING:
+        decodeString(mg, inputType);
+        break;
+      case BYTES:
+        decodeBytes(mg, inputType);
+        break;
+      case ENUM:
+        decodeEnum(mg, inputType, schema);
+        break;
+      case ARRAY:
+        if (Collection.class.isAssignableFrom(inputType.getRawType())) {
+          Preconditions.checkArgument(inputType.getType() instanceof ParameterizedType,
+                                      "Only support parameterized collection type.");
+          TypeToken<?> componentType = TypeToken.of(((ParameterizedType) inputType.getType())
+                                                      .getActualTypeArguments()[0]);
+          decodeCollection(mg, inputType, componentType, schema.getComponentSchema());
+        } else {
+          Preconditions.checkArgument(inputType.isArray(), "Only support array or collection type for %s.", schema);
+          decodeArray(mg, inputType, inputType.getComponentType(), schema.getComponentSchema());
+        }
+        break;
+      case MAP:
+        Preconditions.checkArgument(Map.class.isAssignableFrom(inputType.getRawType()),
+                                    "Only %s type is supported.", Map.class.getName());
+        Preconditions.checkArgument(inputType.getType() instanceof ParameterizedType,
+                                    "Only support parameterized map type.");
+        java.lang.reflect.Type[] mapArgs = ((ParameterizedType) inputType.getType()).getActualTypeArguments();
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        decodeMap(mg, inputType, TypeToken.of(mapArgs[0]), TypeToken.of(mapArgs[1]),
+                  mapSchema.getKey(), mapSchema.getValue());
+        break;
+      case RECORD:
+        decodeRecord(mg, inputType, schema);
+        break;
+      case UNION:
+        decodeUnion(mg, inputType, schema);
+        break;
+    }
+  }
+
+  /**
+   * Generates method body for decoding a primitive value by calling the corresponding read method in Decoder.
+   * The value is converted to the input type, which could be a narrower primitive for INT schema and could
+   * be the boxed type.
+   *
+   * @param mg Method body generator
+   * @param inputType Data type to decode to
+   * @param schemaType Type of the schema
+   * @param readType The primitive type returned by the Decoder read method
+   */
+  private void decodePrimitive(GeneratorAdapter mg, TypeToken<?> inputType,
+                               Schema.Type schemaType, Class<?> readType) {
+    Class<?> rawType = inputType.getRawType();
+    Class<?> primitiveType = Primitives.unwrap(rawType);
+
+    if (schemaType == Schema.Type.INT) {
+      Preconditions.checkArgument(int.class.equals(primitiveType) || byte.class.equals(primitiveType)
+                                    || char.class.equals(primitiveType) || short.class.equals(primitiveType),
+                                  "Cannot decode %s to type %s.", schemaType, inputType);
+    } else {
+      Preconditions.checkArgument(readType.equals(primitiveType),
+                                  "Cannot decode %s to type %s.", schemaType, inputType);
+    }
+
+    // decoder.readXXX();
+    String readMethod = boolean.class.equals(readType) ? "readBool"
+      : "read" + Character.toUpperCase(readType.getName().charAt(0)) + readType.getName().substring(1);
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(readType, readMethod));
+
+    // A special case since INT type represents (byte, char, short and int).
+    if (!readType.equals(primitiveType)) {
+      mg.cast(Type.getType(readType), Type.getType(primitiveType));
+    }
+    if (!rawType.isPrimitive()) {
+      mg.valueOf(Type.getType(primitiveType));
+    }
+  }
+
+  /**
+   * Generates method body for decoding string value. Besides {@link String}, it supports {@link URI} and
+   * {@link URL} types, as those are encoded as string by the {@link DatumWriter}.
+   */
+  private void decodeString(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+
+    // decoder.readString();
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(String.class, "readString"));
+
+    if (URI.class.equals(rawType)) {
+      mg.invokeStatic(Type.getType(URI.class), getMethod(URI.class, "create", String.class));
+    } else if (URL.class.equals(rawType)) {
+      mg.invokeStatic(Type.getType(AbstractGeneratedDatumReader.class), getMethod(URL.class, "toURL", String.class));
+    } else {
+      Preconditions.checkArgument(rawType.isAssignableFrom(String.class),
+                                  "Cannot decode %s to type %s.", Schema.Type.STRING, inputType);
+    }
+  }
+
+  /**
+   * Generates method body for decoding bytes value. It supports {@link ByteBuffer}, {@code byte[]} and
+   * {@link UUID} types.
+   */
+  private void decodeBytes(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+
+    // decoder.readBytes();
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(ByteBuffer.class, "readBytes"));
+
+    if (byte[].class.equals(rawType)) {
+      mg.invokeStatic(Type.getType(AbstractGeneratedDatumReader.class),
+                      getMethod(byte[].class, "toBytes", ByteBuffer.class));
+    } else if (UUID.class.equals(rawType)) {
+      mg.invokeStatic(Type.getType(AbstractGeneratedDatumReader.class),
+                      getMethod(Object.class, "toUUID", ByteBuffer.class));
+    } else {
+      Preconditions.checkArgument(rawType.isAssignableFrom(ByteBuffer.class),
+                                  "Cannot decode %s to type %s.", Schema.Type.BYTES, inputType);
+    }
+  }
+
+  /**
+   * Generates method body for decoding enum value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * return this.enumConstants[decoder.readInt()];
+   * }
+   * </pre>
+   */
+  private void decodeEnum(GeneratorAdapter mg, TypeToken<?> inputType, Schema schema) {
+    Class<?> rawType = inputType.getRawType();
+    Preconditions.checkArgument(rawType.isEnum(), "Cannot decode %s to type %s.", Schema.Type.ENUM, inputType);
+
+    // Enum type might be defined by the user, hence need to preserve class loading of it
+    preservedClasses.add(rawType);
+
+    List<String> values = Lists.newArrayList();
+    for (int i = 0; i < schema.getEnumValues().size(); i++) {
+      values.add(schema.getEnumValue(i));
+    }
+    enumRequests.put(rawType, values);
+
+    mg.loadThis();
+    mg.getField(classType, getEnumConstantsName(rawType), Type.getType(Object[].class));
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(int.class, "readInt"));
+    mg.arrayLoad(Type.getType(Object.class));
+  }
+
+  /**
+   * Generates method body for decoding Collection value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Collection collection = (Collection) this.instantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     collection.add(decodeElement(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return collection;
+   * }
+   * </pre>
+   */
+  private void decodeCollection(GeneratorAdapter mg, TypeToken<?> inputType,
+                                TypeToken<?> componentType, Schema componentSchema) {
+    Type collectionType = Type.getType(Collection.class);
+
+    int collection = createInstance(mg, inputType.getRawType(), collectionType);
+
+    int length = readLength(mg);
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(length);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    // for (int idx = 0; idx < len; idx++)
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(length);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    // collection.add(decodeElement(decoder));
+    mg.loadLocal(collection);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getDecodeMethod(componentType, componentSchema));
+    boxIfPrimitive(mg, componentType);
+    mg.invokeInterface(collectionType, getMethod(boolean.class, "add", Object.class));
+    mg.pop();
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    // len = decoder.readInt();
+    readLength(mg, length);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+
+    mg.loadLocal(collection);
+  }
+
+  /**
+   * Generates method body for decoding array value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * T[] array = new T[len];
+   * int size = 0;
+   * while (len != 0) {
+   *   if (size + len > array.length) {
+   *     array = (T[]) growArray(array, size + len);
+   *   }
+   *   for (int i = 0; i < len; i++) {
+   *     array[size++] = decodeElement(decoder);
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return array;
+   * }
+   * </pre>
+   *
+   * For non-primitive component type, the array is created through {@link AbstractGeneratedDatumReader#newArray}
+   * and the generated code access it as {@code Object[]}, since the generated class might not have access to the
+   * component type.
+   */
+  private void decodeArray(GeneratorAdapter mg, TypeToken<?> inputType,
+                           TypeToken<?> componentType, Schema componentSchema) {
+    Class<?> componentRawType = componentType.getRawType();
+    Type arrayType;
+    Type elementType;
+
+    int length = readLength(mg);
+    if (componentRawType.isPrimitive()) {
+      arrayType = Type.getType(inputType.getRawType());
+      elementType = Type.getType(componentRawType);
+      mg.loadLocal(length);
+      mg.newArray(elementType);
+    } else {
+      arrayType = Type.getType(Object[].class);
+      elementType = Type.getType(Object.class);
+
+      // Array component type might be defined by the user, hence need to preserve class loading of it
+      Class<?> elementRawType = componentRawType;
+      while (elementRawType.isArray()) {
+        elementRawType = elementRawType.getComponentType();
+      }
+      if (!elementRawType.isPrimitive()) {
+        preservedClasses.add(elementRawType);
+      }
+      componentTypeRequests.add(componentRawType);
+
+      mg.loadThis();
+      mg.getField(classType, getComponentTypeName(componentRawType), Type.getType(Class.class));
+      mg.loadLocal(length);
+      mg.invokeStatic(Type.getType(AbstractGeneratedDatumReader.class),
+                      getMethod(Object.class, "newArray", Class.class, int.class));
+      mg.checkCast(arrayType);
+    }
+    int array = mg.newLocal(arrayType);
+    mg.storeLocal(array);
+
+    int size = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(size);
+
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(length);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    // if (size + len > array.length) { array = (T[]) growArray(array, size + len); }
+    Label noGrow = mg.newLabel();
+    mg.loadLocal(size);
+    mg.loadLocal(length);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.loadLocal(array);
+    mg.arrayLength();
+    mg.ifICmp(GeneratorAdapter.LE, noGrow);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadLocal(length);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.invokeStatic(Type.getType(AbstractGeneratedDatumReader.class),
+                    getMethod(Object.class, "growArray", Object.class, int.class));
+    mg.checkCast(arrayType);
+    mg.storeLocal(array);
+    mg.mark(noGrow);
+
+    // for (int idx = 0; idx < len; idx++)
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(length);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    // array[size++] = decodeElement(decoder);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getDecodeMethod(componentType, componentSchema));
+    mg.arrayStore(elementType);
+    mg.iinc(size, 1);
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    // len = decoder.readInt();
+    readLength(mg, length);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+
+    mg.loadLocal(array);
+  }
+
+  /**
+   * Generates method body for decoding map value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Map map = (Map) this.instantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     map.put(decodeKey(decoder), decodeValue(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return map;
+   * }
+   * </pre>
+   */
+  private void decodeMap(GeneratorAdapter mg, TypeToken<?> inputType, TypeToken<?> keyType, TypeToken<?> valueType,
+                         Schema keySchema, Schema valueSchema) {
+    Type mapType = Type.getType(Map.class);
+
+    int map = createInstance(mg, inputType.getRawType(), mapType);
+
+    int length = readLength(mg);
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(length);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    // for (int idx = 0; idx < len; idx++)
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(length);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    // map.put(decodeKey(decoder), decodeValue(decoder));
+    mg.loadLocal(map);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getDecodeMethod(keyType, keySchema));
+    boxIfPrimitive(mg, keyType);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getDecodeMethod(valueType, valueSchema));
+    boxIfPrimitive(mg, valueType);
+    mg.invokeInterface(mapType, getMethod(Object.class, "put", Object.class, Object.class));
+    mg.pop();
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    // len = decoder.readInt();
+    readLength(mg, length);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+
+    mg.loadLocal(map);
+  }
+
+  /**
+   * Generates method body for decoding java class. Field values are set through {@link FieldAccessor}.
+   * The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Object record = this.instantiator.create();
+   * this.fieldAccessor1.set(record, decodeField1(decoder));
+   * this.fieldAccessor2.setInt(record, decodeField2(decoder));
+   * ...
+   * return record;
+   * }
+   * </pre>
+   */
+  private void decodeRecord(GeneratorAdapter mg, TypeToken<?> inputType, Schema schema) {
+    Class<?> rawType = inputType.getRawType();
+    Preconditions.checkArgument(!rawType.isInterface() && !rawType.isPrimitive() && !rawType.isArray(),
+                                "Cannot decode %s to type %s.", Schema.Type.RECORD, inputType);
+
+    // Record type might be defined by the user, hence need to preserve class loading of it
+    preservedClasses.add(rawType);
+
+    int record = createInstance(mg, rawType, Type.getType(Object.class));
+
+    for (Schema.Field field : schema.getFields()) {
+      TypeToken<?> fieldType;
+      try {
+        fieldType = inputType.resolveType(Fields.findField(inputType.getType(), field.getName()).getGenericType());
+      } catch (NoSuchFieldException e) {
+        throw new IllegalArgumentException(e);
+      }
+      fieldAccessorRequests.put(inputType, field.getName());
+
+      // this.fieldAccessor.setXXX(record, decodeField(decoder));
+      mg.loadThis();
+      mg.getField(classType, getFieldAccessorName(inputType, field.getName()), Type.getType(FieldAccessor.class));
+      mg.loadLocal(record);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, getDecodeMethod(fieldType, field.getSchema()));
+      mg.invokeInterface(Type.getType(FieldAccessor.class), getAccessorMethod(fieldType));
+    }
+
+    mg.loadLocal(record);
+  }
+
+  /**
+   * Generates method body for decoding union value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int idx = decoder.readInt();
+   * if (idx == 0) {
+   *   return decodeUnion0(decoder);
+   * }
+   * if (idx == 1) {
+   *   return decodeUnion1(decoder);
+   * }
+   * ...
+   * throw new IOException("Invalid union index.");
+   * }
+   * </pre>
+   */
+  private void decodeUnion(GeneratorAdapter mg, TypeToken<?> inputType, Schema schema) {
+    Preconditions.checkArgument(!inputType.getRawType().isPrimitive(),
+                                "Cannot decode %s to primitive type %s.", Schema.Type.UNION, inputType);
+
+    int idx = readLength(mg);
+    int value = mg.newLocal(Type.getType(Object.class));
+    Label endUnion = mg.newLabel();
+
+    List<Schema> unionSchemas = schema.getUnionSchemas();
+    for (int i = 0; i < unionSchemas.size(); i++) {
+      Label nextSchema = mg.newLabel();
+      mg.loadLocal(idx);
+      mg.push(i);
+      mg.ifICmp(GeneratorAdapter.NE, nextSchema);
+
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, getDecodeMethod(inputType, unionSchemas.get(i)));
+      mg.storeLocal(value);
+      mg.goTo(endUnion);
+
+      mg.mark(nextSchema);
+    }
+    mg.throwException(Type.getType(IOException.class), "Invalid union index.");
+
+    mg.mark(endUnion);
+    mg.loadLocal(value);
+  }
+
+  /**
+   * Generates code to create a new instance of the given class using the {@link Instantiator} stored in field
+   * and stores it in a new local variable.
+   *
+   * @return the local variable index that stores the new instance
+   */
+  private int createInstance(GeneratorAdapter mg, Class<?> cls, Type localType) {
+    instantiatorRequests.add(cls);
+
+    mg.loadThis();
+    mg.getField(classType, getInstantiatorName(cls), Type.getType(Instantiator.class));
+    mg.invokeInterface(Type.getType(Instantiator.class), getMethod(Object.class, "create"));
+    if (!localType.equals(Type.getType(Object.class))) {
+      mg.checkCast(localType);
+    }
+    int local = mg.newLocal(localType);
+    mg.storeLocal(local);
+    return local;
+  }
+
+  /**
+   * Generates code to read an int from the decoder and stores it in a new local variable.
+   *
+   * @return the local variable index that stores the int value
+   */
+  private int readLength(GeneratorAdapter mg) {
+    int local = mg.newLocal(Type.INT_TYPE);
+    readLength(mg, local);
+    return local;
+  }
+
+  /**
+   * Generates code to read an int from the decoder and stores it in the given local variable.
+   */
+  private void readLength(GeneratorAdapter mg, int local) {
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(int.class, "readInt"));
+    mg.storeLocal(local);
+  }
+
+  /**
+   * Generates code to load the given class through {@link Class#forName(String)}.
+   */
+  private void loadClass(GeneratorAdapter mg, Class<?> cls) {
+    mg.push(cls.getName());
+    mg.invokeStatic(Type.getType(Class.class), getMethod(Class.class, "forName", String.class));
+  }
+
+  /**
+   * Generates code to box the value on the stack if the given type is primitive.
+   */
+  private void boxIfPrimitive(GeneratorAdapter mg, TypeToken<?> type) {
+    if (type.getRawType().isPrimitive()) {
+      mg.valueOf(Type.getType(type.getRawType()));
+    }
+  }
+
+  /**
+   * Returns the type returned by the decode method. It is the primitive type for primitive types, otherwise
+   * it is {@link Object}, since the generated class might not have access to the actual type.
+   */
+  private Class<?> getCallType(TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    return rawType.isPrimitive() ? rawType : Object.class;
+  }
+
+  private String getClassName(TypeToken<?> inputType, Schema schema) {
+    return String.format("%s/%s%s%s",
+                         DatumReader.class.getPackage().getName().replace('.', '/'),
+                         normalizeTypeName(inputType),
+                         DatumReader.class.getSimpleName(), schema.getSchemaHash());
+  }
+
+  private String normalizeTypeName(TypeToken<?> type) {
+    String typeName = type.toString();
+    int dimension = 0;
+    while (type.isArray()) {
+      type = type.getComponentType();
+      typeName = type.toString();
+      dimension++;
+    }
+
+    typeName = typeName.replace(".", "")
+                        .replace("<", "Of")
+                        .replace(">", "")
+                        .replace(",", "To")
+                        .replace(" ", "")
+                        .replace("$", "")
+                        .replace("?", "");
+    if (dimension > 0) {
+      typeName = "Array" + dimension + typeName;
+    }
+    return typeName;
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+
+  /**
+   * Returns the method for calling {@link FieldAccessor} to set value based on the data type.
+   * @param type Data type.
+   * @return A {@link Method} for calling {@link FieldAccessor}.
+   */
+  private Method getAccessorMethod(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    if (rawType.isPrimitive()) {
+      return getMethod(void.class,
+                       String.format("set%c%s",
+                                     Character.toUpperCase(rawType.getName().charAt(0)),
+                                     rawType.getName().substring(1)),
+                       Object.class, rawType);
+    } else {
+      return getMethod(void.class, "set", Object.class, Object.class);
+    }
+  }
+
+  /**
+   * Generates the name of the class field for storing {@link FieldAccessor} for the given record field.
+   * @param recordType Type of the record.
+   * @param fieldName name of the field.
+   * @return name of the class field.
+   */
+  private String getFieldAccessorName(TypeToken<?> recordType, String fieldName) {
+    return String.format("%s$%s", normalizeTypeName(recordType), fieldName);
+  }
+
+  private String getInstantiatorName(Class<?> cls) {
+    return String.format("%s$instantiator", normalizeTypeName(TypeToken.of(cls)));
+  }
+
+  private String getComponentTypeName(Class<?> cls) {
+    return String.format("%s$componentType", normalizeTypeName(TypeToken.of(cls)));
+  }
+
+  private String getEnumConstantsName(Class<?> cls) {
+    return String.format("%s$enumConstants", normalizeTypeName(TypeToken.of(cls)));
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.common.lang.jar;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link UnpackedJarCache}.
+ */
+public class UnpackedJarCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSharing() throws IOException {
+    UnpackedJarCache cache = new UnpackedJarCache(TEMP_FOLDER.newFolder(), 1024 * 1024);
+
+    // Same content at different locations should be expanded once
+    Location jar1 = createJar("content");
+    Location jar2 = Locations.toLocation(TEMP_FOLDER.newFile("copy.jar"));
+    Files.copy(Locations.newInputSupplier(jar1), new File(jar2.toURI()));
+
+    try (
+      UnpackedJarCache.Lease lease1 = cache.acquire("test.jar", jar1);
+      UnpackedJarCache.Lease lease2 = cache.acquire("test.jar", jar2)
+    ) {
+      Assert.assertEquals(lease1.getDirectory(), lease2.getDirectory());
+      Assert.assertEquals("content", Files.toString(new File(lease1.getDirectory(), "file"), Charsets.UTF_8));
+
+      // Different content should be expanded to a different directory
+      try (UnpackedJarCache.Lease lease3 = cache.acquire("test.jar", createJar("other"))) {
+        Assert.assertNotEquals(lease1.getDirectory(), lease3.getDirectory());
+        Assert.assertEquals("other", Files.toString(new File(lease3.getDirectory(), "file"), Charsets.UTF_8));
+      }
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    File cacheDir = TEMP_FOLDER.newFolder();
+    String content = Strings.repeat("0123456789", 100);
+
+    // The cache can only hold one expanded jar
+    UnpackedJarCache cache = new UnpackedJarCache(cacheDir, 1500);
+    Location jar2 = createJar("2" + content);
+    UnpackedJarCache.Lease lease1 = cache.acquire("jar1.jar", createJar("1" + content));
+    UnpackedJarCache.Lease lease2 = cache.acquire("jar2.jar", jar2);
+
+    // Leased directories are never evicted, even if the cache is over the limit
+    File dir1 = lease1.getDirectory();
+    File dir2 = lease2.getDirectory();
+    Assert.assertTrue(dir1.isDirectory());
+    Assert.assertTrue(dir2.isDirectory());
+
+    // Releasing the least recently used one should evict it
+    lease1.close();
+    Assert.assertFalse(dir1.exists());
+    Assert.assertTrue(dir2.isDirectory());
+
+    // Closing a lease more than once has no effect
+    lease1.close();
+    lease2.close();
+    Assert.assertTrue(dir2.isDirectory());
+
+    // A new cache on the same directory reuses the expanded jar
+    cache = new UnpackedJarCache(cacheDir, 1500);
+    try (UnpackedJarCache.Lease lease = cache.acquire("jar2.jar", jar2)) {
+      Assert.assertEquals(dir2, lease.getDirectory());
+    }
+  }
+
+  @Test
+  public void testDisabled() throws IOException {
+    UnpackedJarCache cache = new UnpackedJarCache(TEMP_FOLDER.newFolder(), 0);
+    Location jar = createJar("content");
+
+    UnpackedJarCache.Lease lease1 = cache.acquire("test.jar", jar);
+    UnpackedJarCache.Lease lease2 = cache.acquire("test.jar", jar);
+    Assert.assertNotEquals(lease1.getDirectory(), lease2.getDirectory());
+    Assert.assertEquals("content", Files.toString(new File(lease1.getDirectory(), "file"), Charsets.UTF_8));
+
+    // Without caching, the directory is deleted when the lease is closed
+    lease1.close();
+    Assert.assertFalse(lease1.getDirectory().exists());
+    Assert.assertTrue(lease2.getDirectory().isDirectory());
+    lease2.close();
+    Assert.assertFalse(lease2.getDirectory().exists());
+  }
+
+  private Location createJar(String content) throws IOException {
+    File dir = TEMP_FOLDER.newFolder();
+    Files.write(content, new File(dir, "file"), Charsets.UTF_8);
+    File jar = new File(TEMP_FOLDER.newFolder(), "test.jar");
+    BundleJarUtil.createJar(dir, jar);
+    return Locations.toLocation(jar);
+  }
+}
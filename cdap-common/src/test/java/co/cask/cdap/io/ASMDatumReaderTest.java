@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.AbstractGeneratedDatumReader;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tests for {@link DatumReader} created by {@link ASMDatumReaderFactory}.
+ */
+public class ASMDatumReaderTest {
+
+  private static final ASMFieldAccessorFactory FIELD_ACCESSOR_FACTORY = new ASMFieldAccessorFactory();
+  private static final ASMDatumWriterFactory DATUM_WRITER_FACTORY = new ASMDatumWriterFactory(FIELD_ACCESSOR_FACTORY);
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY = new ASMDatumReaderFactory(FIELD_ACCESSOR_FACTORY);
+
+  /**
+   *
+   */
+  public enum TestEnum {
+    VALUE1, VALUE2, VALUE3, VALUE4
+  }
+
+  @Test
+  public void testPrimitives() throws IOException, UnsupportedTypeException {
+    Assert.assertEquals((short) 3000, (short) roundTrip(new TypeToken<Short>() { }, (short) 3000));
+    Assert.assertEquals(12234234, (int) roundTrip(new TypeToken<Integer>() { }, 12234234));
+    Assert.assertEquals(-123456789012L, (long) roundTrip(new TypeToken<Long>() { }, -123456789012L));
+    Assert.assertEquals(3.14d, roundTrip(new TypeToken<Double>() { }, 3.14d), 0.000001d);
+    Assert.assertEquals('c', (char) roundTrip(new TypeToken<Character>() { }, 'c'));
+    Assert.assertTrue(roundTrip(new TypeToken<Boolean>() { }, true));
+    Assert.assertEquals("Testing message", roundTrip(new TypeToken<String>() { }, "Testing message"));
+  }
+
+  @Test
+  public void testUUIDAndURI() throws IOException, UnsupportedTypeException {
+    UUID uuid = UUID.randomUUID();
+    Assert.assertEquals(uuid, roundTrip(new TypeToken<UUID>() { }, uuid));
+
+    List<URI> uris = ImmutableList.of(URI.create("http://www.abc.com"));
+    Assert.assertEquals(uris, roundTrip(new TypeToken<List<URI>>() { }, uris));
+  }
+
+  @Test
+  public void testEnum() throws IOException, UnsupportedTypeException {
+    for (TestEnum value : TestEnum.values()) {
+      Assert.assertEquals(value, roundTrip(new TypeToken<TestEnum>() { }, value));
+    }
+  }
+
+  @Test
+  public void testArrays() throws IOException, UnsupportedTypeException {
+    int[] ints = {1, 2, 3, 4, -5, -6, -7, -8};
+    Assert.assertArrayEquals(ints, roundTrip(new TypeToken<int[]>() { }, ints));
+
+    String[] strings = {"1", "2", null, "3"};
+    Assert.assertArrayEquals(strings, roundTrip(new TypeToken<String[]>() { }, strings));
+
+    byte[] bytes = "Testing bytes".getBytes(Charsets.UTF_8);
+    Assert.assertArrayEquals(bytes, roundTrip(new TypeToken<byte[]>() { }, bytes));
+
+    Record[][] records = new Record[][] {{ new Record(10, "testing", ImmutableList.of("a", "b"), TestEnum.VALUE2) }};
+    Assert.assertArrayEquals(records, roundTrip(new TypeToken<Record[][]>() { }, records));
+  }
+
+  @Test
+  public void testCollections() throws IOException, UnsupportedTypeException {
+    List<Long> list = ImmutableList.of(1L, 10L, 100L, 1000L);
+    Assert.assertEquals(list, roundTrip(new TypeToken<List<Long>>() { }, list));
+
+    Map<String, List<String>> map = ImmutableMap.<String, List<String>>of("k1", Lists.newArrayList("v1"),
+                                                                          "k2", Lists.newArrayList("v2", null));
+    Assert.assertEquals(map, roundTrip(new TypeToken<Map<String, List<String>>>() { }, map));
+  }
+
+  @Test
+  public void testRecord() throws IOException, UnsupportedTypeException {
+    Record record = new Record(10, "testing", ImmutableList.of("a", "b", "c"), TestEnum.VALUE2);
+    Assert.assertEquals(record, roundTrip(new TypeToken<Record>() { }, record));
+
+    List<Record> records = ImmutableList.of(record, new Record(20, "testing2", ImmutableList.<String>of(),
+                                                               TestEnum.VALUE4));
+    Assert.assertEquals(records, roundTrip(new TypeToken<List<Record>>() { }, records));
+  }
+
+  @Test
+  public void testTree() throws IOException, UnsupportedTypeException {
+    Node root = new Node((short) 1,
+                         new Node((short) 2, null, new Node((short) 3, null, null)),
+                         new Node((short) 4, new Node((short) 5, null, null), null));
+    Assert.assertEquals(root, roundTrip(new TypeToken<Node>() { }, root));
+  }
+
+  @Test
+  public void testStreamEvent() throws IOException, UnsupportedTypeException {
+    StreamEvent event = new StreamEvent(ImmutableMap.of("key", "value"),
+                                        ByteBuffer.wrap("Testing message".getBytes(Charsets.UTF_8)));
+    StreamEvent value = roundTrip(new TypeToken<StreamEvent>() { }, event);
+
+    Assert.assertEquals(event.getHeaders(), value.getHeaders());
+    Assert.assertEquals(event.getBody(), value.getBody());
+  }
+
+  @Test
+  public void testSchemaResolution() throws IOException, UnsupportedTypeException {
+    // Write with the Record schema, read with the schema of a projected record type
+    TypeToken<Record> writeType = new TypeToken<Record>() { };
+    Schema writeSchema = getSchema(writeType);
+    DatumWriter<Record> writer = DATUM_WRITER_FACTORY.create(writeType, writeSchema);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writer.encode(new Record(10, "testing", ImmutableList.of("a"), TestEnum.VALUE3), new BinaryEncoder(os));
+
+    TypeToken<ProjectedRecord> readType = new TypeToken<ProjectedRecord>() { };
+    DatumReader<ProjectedRecord> reader = DATUM_READER_FACTORY.create(readType, getSchema(readType));
+    ProjectedRecord value = reader.read(new BinaryDecoder(new ByteArrayInputStream(os.toByteArray())), writeSchema);
+
+    Assert.assertEquals(10L, value.i);
+    Assert.assertEquals(TestEnum.VALUE3, value.e);
+  }
+
+  private <T> Schema getSchema(TypeToken<T> type) throws UnsupportedTypeException {
+    return new ReflectionSchemaGenerator().generate(type.getType());
+  }
+
+  private <T> T roundTrip(TypeToken<T> type, T value) throws IOException, UnsupportedTypeException {
+    Schema schema = getSchema(type);
+    DatumWriter<T> writer = DATUM_WRITER_FACTORY.create(type, schema);
+    DatumReader<T> reader = DATUM_READER_FACTORY.create(type, schema);
+    Assert.assertTrue(reader instanceof AbstractGeneratedDatumReader);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writer.encode(value, new BinaryEncoder(os));
+    return reader.read(new BinaryDecoder(new ByteArrayInputStream(os.toByteArray())), schema);
+  }
+
+  private static class Record {
+    private int i;
+    private String s;
+    private List<String> list;
+    private TestEnum e;
+
+    Record(int i, String s, List<String> list, TestEnum e) {
+      this.i = i;
+      this.s = s;
+      this.list = list;
+      this.e = e;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Record record = (Record) o;
+
+      return i == record.i && e == record.e && list.equals(record.list) && s.equals(record.s);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(i, s, list, e);
+    }
+  }
+
+  private static class ProjectedRecord {
+    private long i;
+    private TestEnum e;
+  }
+
+  /**
+   *
+   */
+  public static final class Node {
+    public short data;
+    public Short boxedData;
+    public Node left;
+    public Node right;
+
+    public Node(short data, Node left, Node right) {
+      this.data = data;
+      this.boxedData = data;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Node node = (Node) o;
+
+      return data == node.data && Objects.equal(boxedData, node.boxedData)
+               && (left  != null ? left.equals(node.left) : node.left == null)
+               && (right != null ? right.equals(node.right) : node.right == null);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(data, left, right);
+    }
+  }
+}
@@ -15,11 +15,22 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.Locations;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -37,4 +48,44 @@ public class LocalStreamDataFileTest extends StreamDataFileTestBase {
   protected LocationFactory getLocationFactory() {
     return locationFactory;
   }
+
+  @Test
+  public void testIndexCache() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    // Write 1000 events with different timestamps, and create index for every 100 timestamps.
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           100L);
+    for (int i = 0; i < 1000; i++) {
+      writer.append(StreamFileTestUtils.createEvent(1000 + i, "Testing " + i));
+    }
+    writer.close();
+
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    Path indexPath = new Path(indexFile.toURI());
+
+    // Index loaded for the same file should be shared
+    StreamDataFileIndex index = StreamIndexInputSupplier.create(fs, indexPath).getIndex();
+    Assert.assertTrue(index.size() > 0);
+    Assert.assertSame(index, StreamIndexInputSupplier.create(fs, indexPath).getIndex());
+
+    // Read with the cached index
+    for (long ts : new long[] {1050, 1110, 1200, 1290, 1301, 1400, 1500, 1600, 1898, 1900, 1999}) {
+      StreamDataFileReader reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                                           StreamIndexInputSupplier.create(fs,
+                                                                                                           indexPath),
+                                                                           ts);
+      Queue<StreamEvent> events = Lists.newLinkedList();
+      Assert.assertEquals(1, reader.read(events, 1, 1L, TimeUnit.MILLISECONDS));
+      Assert.assertEquals(ts, events.poll().getTimestamp());
+      reader.close();
+    }
+
+    // Missing index file should result in empty index
+    Path missingPath = new Path(dir.append("missing.idx").toURI());
+    Assert.assertEquals(0, StreamIndexInputSupplier.create(fs, missingPath).getIndex().size());
+  }
 }
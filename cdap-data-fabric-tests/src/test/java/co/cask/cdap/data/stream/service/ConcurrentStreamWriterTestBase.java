@@ -94,14 +94,24 @@ public abstract class ConcurrentStreamWriterTestBase {
 
   @Test
   public void testConcurrentWrite() throws Exception {
-    final String streamName = "testConcurrentWrite";
+    testConcurrentWrite("testConcurrentWrite", 0, Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void testConcurrentWriteGroupCommit() throws Exception {
+    // Linger for up to 1ms, with a small max batch size so that batches get cut by size as well
+    testConcurrentWrite("testConcurrentWriteGroupCommit", 1000, 4096);
+  }
+
+  private void testConcurrentWrite(String streamName, long maxLingerMicros, int maxBatchSize) throws Exception {
     NamespaceId namespace = new NamespaceId("namespace");
     StreamId streamId = namespace.stream(streamName);
     StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
     int threads = Runtime.getRuntime().availableProcessors() * 4;
 
     StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
-    final ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, threads, fileWriterFactory);
+    final ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, threads, maxLingerMicros,
+                                                                   maxBatchSize, fileWriterFactory);
 
     // Starts n threads to write events through stream writer, each thread write 1000 events
     final int msgPerThread = 1000;
@@ -210,11 +220,17 @@ public abstract class ConcurrentStreamWriterTestBase {
   private ConcurrentStreamWriter createStreamWriter(StreamId streamId, StreamAdmin streamAdmin,
                                                     int threads, StreamFileWriterFactory writerFactory)
     throws Exception {
+    return createStreamWriter(streamId, streamAdmin, threads, 0, Integer.MAX_VALUE, writerFactory);
+  }
+
+  private ConcurrentStreamWriter createStreamWriter(StreamId streamId, StreamAdmin streamAdmin, int threads,
+                                                    long maxLingerMicros, int maxBatchSize,
+                                                    StreamFileWriterFactory writerFactory) throws Exception {
     StreamConfig streamConfig = streamAdmin.getConfig(streamId);
     streamConfig.getLocation().mkdirs();
 
-    return new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
-                                      writerFactory, threads, new TestMetricsCollectorFactory(), impersonator);
+    return new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin, writerFactory, threads,
+                                      maxLingerMicros, maxBatchSize, new TestMetricsCollectorFactory(), impersonator);
   }
 
   private Runnable createWriterTask(final StreamId streamId,
@@ -353,6 +369,11 @@ public abstract class ConcurrentStreamWriterTestBase {
         public void emitMetrics(long bytesWritten, long eventsWritten) {
           // No-op
         }
+
+        @Override
+        public void emitBatchMetrics(long batchBytes, int batchRequests, long flushMicros) {
+          // No-op
+        }
       };
     }
   }
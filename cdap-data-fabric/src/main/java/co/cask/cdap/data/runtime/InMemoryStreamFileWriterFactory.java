@@ -20,6 +20,7 @@ import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.common.stream.StreamEventCodec;
 import co.cask.cdap.data.file.FileWriter;
+import co.cask.cdap.data.stream.EncodedStreamEvents;
 import co.cask.cdap.data.stream.StreamFileWriterFactory;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueEntry;
@@ -76,12 +77,18 @@ public final class InMemoryStreamFileWriterFactory implements StreamFileWriterFa
 
       @Override
       public void append(StreamEvent event) throws IOException {
-        events.add(event);
+        if (event instanceof EncodedStreamEvents) {
+          Iterators.addAll(events, ((EncodedStreamEvents) event).iterator());
+        } else {
+          events.add(event);
+        }
       }
 
       @Override
       public void appendAll(Iterator<? extends StreamEvent> events) throws IOException {
-        Iterators.addAll(this.events, events);
+        while (events.hasNext()) {
+          append(events.next());
+        }
       }
 
       @Override
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BufferedEncoder;
+import co.cask.cdap.common.io.ByteBuffers;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link StreamEvent} that carries a sequence of events that are already encoded with the
+ * {@link StreamEventDataCodec}, with all of them sharing the same timestamp.
+ *
+ * The {@link StreamDataFileWriter} writes the encoded bytes to the data block as is, without decoding the
+ * individual events. Other writers can decode the events through the {@link #iterator()} method.
+ * The {@link #getBody()} method returns an empty buffer and the {@link #getHeaders()} method returns an empty map.
+ */
+@NotThreadSafe
+public final class EncodedStreamEvents extends StreamEvent implements Iterable<StreamEvent> {
+
+  private final ByteBuffer[] encoded;
+  private final int eventCount;
+  private final long bodySize;
+  private long timestamp;
+
+  /**
+   * Creates an instance with the given encoded events. The caller must make sure the given buffers contain
+   * complete encoded events and must not modify the buffers afterwards.
+   *
+   * @param encoded buffers containing the encoded events, in order
+   * @param eventCount number of events encoded in the buffers
+   * @param bodySize total size in bytes of the event bodies
+   */
+  public EncodedStreamEvents(ByteBuffer[] encoded, int eventCount, long bodySize) {
+    super(ImmutableMap.<String, String>of(), ByteBuffers.EMPTY_BUFFER);
+    this.encoded = encoded;
+    this.eventCount = eventCount;
+    this.bodySize = bodySize;
+  }
+
+  /**
+   * Sets the timestamp of the events.
+   *
+   * @return this instance
+   */
+  public EncodedStreamEvents setTimestamp(long timestamp) {
+    this.timestamp = timestamp;
+    return this;
+  }
+
+  @Override
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Returns the number of events.
+   */
+  public int getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Returns the total size in bytes of the event bodies.
+   */
+  public long getBodySize() {
+    return bodySize;
+  }
+
+  /**
+   * Returns an {@link Iterator} that decodes the events one by one.
+   */
+  @Override
+  public Iterator<StreamEvent> iterator() {
+    ByteBuffer[] buffers = new ByteBuffer[encoded.length];
+    for (int i = 0; i < encoded.length; i++) {
+      buffers[i] = encoded[i].duplicate();
+    }
+    final Decoder decoder = new BinaryDecoder(new ChannelBufferInputStream(ChannelBuffers.wrappedBuffer(buffers)));
+    return new AbstractIterator<StreamEvent>() {
+      private int count;
+
+      @Override
+      protected StreamEvent computeNext() {
+        if (count >= eventCount) {
+          return endOfData();
+        }
+        count++;
+        try {
+          StreamEventData data = StreamEventDataCodec.decode(decoder);
+          return new StreamEvent(data, timestamp);
+        } catch (IOException e) {
+          throw Throwables.propagate(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Writes the encoded events to the given {@link BufferedEncoder} without decoding them.
+   */
+  void writeTo(BufferedEncoder encoder) throws IOException {
+    for (ByteBuffer buffer : encoded) {
+      if (buffer.hasArray()) {
+        encoder.writeRaw(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      } else {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        encoder.writeRaw(bytes);
+      }
+    }
+  }
+}
@@ -43,12 +43,17 @@ final class StreamDataFileIndex {
 
   private static final byte[] INDEX_MAGIC_HEADER = {'I', '1'};
 
+  /**
+   * An index without any entry.
+   */
+  static final StreamDataFileIndex EMPTY = new StreamDataFileIndex(LongLists.EMPTY_LIST, LongLists.EMPTY_LIST);
+
   // Parallel array list for holding timestamps and corresponding positions in the index.
   private final LongList timestamps;
   private final LongList positions;
 
   /**
-   * Constructs with the given input.
+   * Constructs with the given input. If failed to load the index, an empty index will be used.
    *
    * @param indexInputSupplier Provides {@link InputStream} for reading the index.
    */
@@ -62,15 +67,41 @@ final class StreamDataFileIndex {
       try (InputStream indexInput = indexInputSupplier.getInput()) {
         index = loadIndex(indexInput);
       }
-      timestamps = LongLists.unmodifiable(index.getKey());
-      positions = LongLists.unmodifiable(index.getValue());
+      timestamps = index.getKey();
+      positions = index.getValue();
     } catch (IOException e) {
       LOG.error("Failed to load stream index. Default to empty index.", e);
       timestamps = LongLists.EMPTY_LIST;
       positions = LongLists.EMPTY_LIST;
     }
-    this.timestamps = timestamps;
-    this.positions = positions;
+    this.timestamps = LongLists.unmodifiable(timestamps);
+    this.positions = LongLists.unmodifiable(positions);
+  }
+
+  private StreamDataFileIndex(LongList timestamps, LongList positions) {
+    this.timestamps = LongLists.unmodifiable(timestamps);
+    this.positions = LongLists.unmodifiable(positions);
+  }
+
+  /**
+   * Loads the index from the given input.
+   *
+   * @param indexInputSupplier Provides {@link InputStream} for reading the index.
+   * @throws IOException if failed to load the index
+   */
+  static StreamDataFileIndex load(InputSupplier<? extends InputStream> indexInputSupplier) throws IOException {
+    Map.Entry<LongList, LongList> index;
+    try (InputStream indexInput = indexInputSupplier.getInput()) {
+      index = loadIndex(indexInput);
+    }
+    return new StreamDataFileIndex(index.getKey(), index.getValue());
+  }
+
+  /**
+   * Returns the number of entries in the index.
+   */
+  int size() {
+    return timestamps.size();
   }
 
   /**
@@ -175,7 +206,7 @@ final class StreamDataFileIndex {
     return -(low + 1);
   }
 
-  private Map.Entry<LongList, LongList> loadIndex(InputStream input) throws IOException {
+  private static Map.Entry<LongList, LongList> loadIndex(InputStream input) throws IOException {
     byte[] magic = new byte[INDEX_MAGIC_HEADER.length];
     ByteStreams.readFully(input, magic);
 
@@ -187,14 +218,17 @@ final class StreamDataFileIndex {
     StreamUtils.decodeMap(new BinaryDecoder(input));
 
     // Read in all index (timestamp, position pairs).
-    LongList timestamps = new LongArrayList(1000);
-    LongList positions = new LongArrayList(1000);
+    LongArrayList timestamps = new LongArrayList(1000);
+    LongArrayList positions = new LongArrayList(1000);
     byte[] buf = new byte[Longs.BYTES * 2];
 
     while (ByteStreams.read(input, buf, 0, buf.length) == buf.length) {
       timestamps.add(Bytes.toLong(buf, 0));
       positions.add(Bytes.toLong(buf, Longs.BYTES));
     }
+    // Release the unused capacity, as the index can be kept in memory for a long time.
+    timestamps.trim();
+    positions.trim();
 
     return Maps.immutableEntry(timestamps, positions);
   }
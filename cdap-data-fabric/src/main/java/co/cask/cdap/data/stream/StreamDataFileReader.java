@@ -234,7 +234,11 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
    */
   private StreamDataFileIndex getIndex() {
     if (index == null && indexInputSupplier != null) {
-      index = new StreamDataFileIndex(indexInputSupplier);
+      if (indexInputSupplier instanceof StreamIndexInputSupplier) {
+        index = ((StreamIndexInputSupplier) indexInputSupplier).getIndex();
+      } else {
+        index = new StreamDataFileIndex(indexInputSupplier);
+      }
     }
     return index;
   }
@@ -220,8 +220,12 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
         position += Bytes.SIZEOF_LONG;
       }
 
-      // Encodes the event data into buffer.
-      StreamEventDataCodec.encode(event, encoder);
+      // Encodes the event data into buffer. Events that are already encoded are copied to the buffer as is.
+      if (event instanceof EncodedStreamEvents) {
+        ((EncodedStreamEvents) event).writeTo(encoder);
+      } else {
+        StreamEventDataCodec.encode(event, encoder);
+      }
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.io.InputSupplier;
+import com.google.common.primitives.Longs;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An {@link InputSupplier} for stream index file. When used with {@link StreamDataFileReader}, the loaded index
+ * is shared through a size-bounded cache keyed by the index file URI and length, so that readers opened for the
+ * same index file, such as the ones for different splits of the same stream file, don't load the same index again.
+ */
+public final class StreamIndexInputSupplier implements InputSupplier<InputStream> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamIndexInputSupplier.class);
+
+  /**
+   * System property for the maximum size in bytes of the loaded indices to keep in the cache.
+   */
+  public static final String CACHE_SIZE_PROPERTY = "cdap.stream.index.cache.size";
+
+  // Each index entry is a pair of (timestamp, position) longs
+  private static final int ENTRY_SIZE = Longs.BYTES * 2;
+  private static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+  private static final Cache<CacheKey, StreamDataFileIndex> INDEX_CACHE = CacheBuilder.newBuilder()
+    .maximumWeight(Long.getLong(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE))
+    .weigher(new Weigher<CacheKey, StreamDataFileIndex>() {
+      @Override
+      public int weigh(CacheKey key, StreamDataFileIndex index) {
+        return ENTRY_SIZE * index.size();
+      }
+    })
+    .build();
+
+  private final FileSystem fs;
+  private final Path path;
+  private final InputSupplier<? extends InputStream> delegate;
+
+  /**
+   * Creates a new {@link StreamIndexInputSupplier} for the given index file path.
+   */
+  public static StreamIndexInputSupplier create(FileSystem fs, Path path) {
+    return new StreamIndexInputSupplier(fs, path);
+  }
+
+  private StreamIndexInputSupplier(FileSystem fs, Path path) {
+    this.fs = fs;
+    this.path = path;
+    this.delegate = Locations.newInputSupplier(fs, path);
+  }
+
+  @Override
+  public InputStream getInput() throws IOException {
+    return delegate.getInput();
+  }
+
+  /**
+   * Returns the {@link StreamDataFileIndex} of the index file, loading it if it is not in the cache.
+   * If failed to load the index, an empty index will be returned.
+   */
+  StreamDataFileIndex getIndex() {
+    try {
+      CacheKey cacheKey = new CacheKey(fs.makeQualified(path).toUri(), fs.getFileStatus(path).getLen());
+      return INDEX_CACHE.get(cacheKey, new Callable<StreamDataFileIndex>() {
+        @Override
+        public StreamDataFileIndex call() throws Exception {
+          return StreamDataFileIndex.load(delegate);
+        }
+      });
+    } catch (IOException | ExecutionException e) {
+      // Not caching the failure, so that the index will be loaded again next time.
+      LOG.error("Failed to load stream index {}. Default to empty index.", path,
+                e instanceof ExecutionException ? e.getCause() : e);
+      return StreamDataFileIndex.EMPTY;
+    }
+  }
+
+  /**
+   * Key of the index cache. The file length is part of the key since the index file of a stream file that is
+   * still being written grows over time.
+   */
+  private static final class CacheKey {
+    private final URI uri;
+    private final long length;
+
+    private CacheKey(URI uri, long length) {
+      this.uri = uri;
+      this.length = length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return length == other.length && uri.equals(other.uri);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(uri, length);
+    }
+  }
+}
@@ -137,7 +137,7 @@ final class StreamRecordReader<K, V> extends RecordReader<K, V> {
   private StreamDataFileReader createReader(FileSystem fs, StreamInputSplit inputSplit) {
     return StreamDataFileReader.createWithOffset(
       Locations.newInputSupplier(fs, inputSplit.getPath()),
-      inputSplit.getIndexPath() == null ? null : Locations.newInputSupplier(fs, inputSplit.getIndexPath()),
+      inputSplit.getIndexPath() == null ? null : StreamIndexInputSupplier.create(fs, inputSplit.getIndexPath()),
       inputSplit.getStart());
   }
 }
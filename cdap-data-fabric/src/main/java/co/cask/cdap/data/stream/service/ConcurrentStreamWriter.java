@@ -20,6 +20,7 @@ import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.data.file.FileWriter;
+import co.cask.cdap.data.stream.EncodedStreamEvents;
 import co.cask.cdap.data.stream.Refreshable;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
 import co.cask.cdap.data.stream.StreamDataFileConstants;
@@ -78,7 +79,8 @@ import javax.annotation.concurrent.ThreadSafe;
  * 2. Use CAS to set an AtomicBoolean flag to true.
  * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
  * 4. Keep polling StreamEventData from the concurrent queue and write to FileWriter with the current timestamp until
- *    the queue is empty.
+ *    the queue is empty or the max batch size is reached. If group commit is enabled, keep polling for up to
+ *    the linger time for more StreamEventData to join the batch.
  * 5. Perform a writer flush to make sure all data written are persisted.
  * 6. Set the state of each StreamEventData that are written to COMPLETED (succeed/failure).
  * 7. Set the AtomicBoolean flag back to false.
@@ -88,15 +90,21 @@ import javax.annotation.concurrent.ThreadSafe;
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
  *
+ * The linger time of group commit adapts to the write concurrency. It doubles, up to the configured maximum, whenever
+ * a batch contains concurrent write requests, and halves otherwise, so that a single writer doesn't pay for the linger
+ * while concurrent writers share fewer flushes.
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentStreamWriter.class);
+  private static final long MIN_LINGER_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
 
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final StreamAdmin streamAdmin;
   private final int workerThreads;
+  private final long maxLingerNanos;
+  private final int maxBatchSize;
   private final StreamMetricsCollectorFactory metricsCollectorFactory;
   private final ConcurrentMap<StreamId, EventQueue> eventQueues;
   private final StreamFileFactory streamFileFactory;
@@ -107,10 +115,13 @@ public final class ConcurrentStreamWriter implements Closeable {
 
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
+                         long maxLingerMicros, int maxBatchSize,
                          StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
     this.workerThreads = workerThreads;
+    this.maxLingerNanos = TimeUnit.MICROSECONDS.toNanos(maxLingerMicros);
+    this.maxBatchSize = maxBatchSize;
     this.metricsCollectorFactory = metricsCollectorFactory;
     this.eventQueues = new MapMaker().concurrencyLevel(workerThreads).makeMap();
     this.streamFileFactory = new StreamFileFactory(writerFactory, impersonator);
@@ -183,6 +194,21 @@ public final class ConcurrentStreamWriter implements Closeable {
     persistUntilCompleted(streamId, eventQueue, writeRequest);
   }
 
+  /**
+   * Writes a sequence of encoded events to the given stream. All events will be written with the same event timestamp
+   * and are guaranteed to be written in the same data block inside a stream file.
+   *
+   * @param streamId identifier of the stream
+   * @param events the encoded events to write
+   * @throws IOException if failed to write to stream
+   * @throws NotFoundException If the stream doesn't exists
+   */
+  public void enqueue(StreamId streamId, EncodedStreamEvents events) throws IOException, NotFoundException {
+    EventQueue eventQueue = getEventQueue(streamId);
+    WriteRequest writeRequest = eventQueue.append(events);
+    persistUntilCompleted(streamId, eventQueue, writeRequest);
+  }
+
   /**
    * Writes an event to the given stream asynchronously. This method returns when the new event is stored to
    * the in-memory event queue, but before persisted.
@@ -441,6 +467,8 @@ public final class ConcurrentStreamWriter implements Closeable {
     private final Function<StreamEventData, StreamEvent> eventTransformer;
     private FileWriter<StreamEventData> fileWriter;
     private boolean closed;
+    // Current linger time for group commit. Only accessed by the writer leader thread.
+    private long lingerNanos;
 
     EventQueue(StreamId streamId, StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
       this.streamId = streamId;
@@ -452,6 +480,9 @@ public final class ConcurrentStreamWriter implements Closeable {
       this.eventTransformer = new Function<StreamEventData, StreamEvent>() {
         @Override
         public StreamEvent apply(StreamEventData data) {
+          if (data instanceof EncodedStreamEvents) {
+            return ((EncodedStreamEvents) data).setTimestamp(streamEvent.getTimestamp());
+          }
           return streamEvent.setData(data);
         }
       };
@@ -483,6 +514,18 @@ public final class ConcurrentStreamWriter implements Closeable {
       return request;
     }
 
+    /**
+     * Adds a sequence of encoded events to the event queue.
+     *
+     * @param events the encoded events to be written
+     * @return A {@link WriteRequest} that contains the status of the request
+     */
+    WriteRequest append(EncodedStreamEvents events) {
+      WriteRequest request = new EncodedWriteRequest(events);
+      queue.add(request);
+      return request;
+    }
+
     /**
      * Attempts to append a file to the stream.
      *
@@ -529,6 +572,8 @@ public final class ConcurrentStreamWriter implements Closeable {
     boolean tryWrite() {
       int bytesWritten = 0;
       int eventsWritten = 0;
+      int requestsWritten = 0;
+      long flushNanos = 0;
 
       if (!writerFlag.compareAndSet(false, true)) {
         return false;
@@ -542,19 +587,24 @@ public final class ConcurrentStreamWriter implements Closeable {
         List<WriteRequest> processQueue = Lists.newArrayListWithExpectedSize(workerThreads);
         try {
           FileWriter<StreamEventData> writer = getFileWriter();
-          WriteRequest request = queue.poll();
           streamEvent.setTimestamp(System.currentTimeMillis());
-          while (request != null) {
-            processQueue.add(request);
-            request.write(writer, metrics);
-            request = queue.poll();
+          drainQueue(writer, processQueue);
+          if (maxLingerNanos > 0) {
+            linger(writer, processQueue);
+          }
+          // Requests polled by the previous writer leader were flushed already, hence no need to flush if nothing
+          // was written in this round.
+          if (!processQueue.isEmpty()) {
+            long flushStartTime = System.nanoTime();
+            writer.flush();
+            flushNanos = System.nanoTime() - flushStartTime;
           }
-          writer.flush();
           for (WriteRequest processed : processQueue) {
             processed.completed(null);
           }
           bytesWritten = metrics.bytesWritten;
           eventsWritten = metrics.eventsWritten;
+          requestsWritten = processQueue.size();
         } catch (Throwable t) {
           // On exception, remove this EventQueue from the map and close this event queue
           eventQueues.remove(streamId, this);
@@ -569,9 +619,52 @@ public final class ConcurrentStreamWriter implements Closeable {
       }
 
       metricsCollector.emitMetrics(bytesWritten, eventsWritten);
+      if (requestsWritten > 0) {
+        metricsCollector.emitBatchMetrics(bytesWritten, requestsWritten, TimeUnit.NANOSECONDS.toMicros(flushNanos));
+      }
       return true;
     }
 
+    /**
+     * Polls requests from the queue and writes them to the given {@link FileWriter} until the queue is empty
+     * or the batch reached the max batch size. This method should only be called from the writer leader thread.
+     */
+    private void drainQueue(FileWriter<StreamEventData> writer, List<WriteRequest> processQueue) throws IOException {
+      WriteRequest request = queue.poll();
+      while (request != null) {
+        processQueue.add(request);
+        request.write(writer, metrics);
+        if (metrics.bytesWritten >= maxBatchSize) {
+          return;
+        }
+        request = queue.poll();
+      }
+    }
+
+    /**
+     * Waits for up to the current linger time for more requests to join the current batch, and then adjusts the
+     * linger time for the next batch based on whether there were concurrent requests in this batch.
+     * This method should only be called from the writer leader thread.
+     */
+    private void linger(FileWriter<StreamEventData> writer, List<WriteRequest> processQueue) throws IOException {
+      boolean concurrent = processQueue.size() > 1;
+      long deadline = System.nanoTime() + lingerNanos;
+      while (metrics.bytesWritten < maxBatchSize && System.nanoTime() < deadline) {
+        if (queue.isEmpty()) {
+          Thread.yield();
+          continue;
+        }
+        drainQueue(writer, processQueue);
+        concurrent = true;
+      }
+
+      if (concurrent) {
+        lingerNanos = Math.min(maxLingerNanos, Math.max(lingerNanos * 2, MIN_LINGER_NANOS));
+      } else {
+        lingerNanos = lingerNanos / 2 < MIN_LINGER_NANOS ? 0 : lingerNanos / 2;
+      }
+    }
+
     /**
      * Attempts to refresh the underlying FileWriter, if it is {@link Refreshable}.
      */
@@ -717,8 +810,12 @@ public final class ConcurrentStreamWriter implements Closeable {
       }
 
       void increment(int bytesWritten) {
+        increment(bytesWritten, 1);
+      }
+
+      void increment(int bytesWritten, int eventsWritten) {
         this.bytesWritten += bytesWritten;
-        eventsWritten++;
+        this.eventsWritten += eventsWritten;
       }
     }
 
@@ -770,6 +867,24 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
   }
 
+  /**
+   * A {@link WriteRequest} that contains a sequence of encoded stream events.
+   */
+  private static final class EncodedWriteRequest extends WriteRequest {
+
+    private final EncodedStreamEvents events;
+
+    EncodedWriteRequest(EncodedStreamEvents events) {
+      this.events = events;
+    }
+
+    @Override
+    void write(FileWriter<StreamEventData> writer, Metrics metrics) throws IOException {
+      metrics.increment((int) events.getBodySize(), events.getEventCount());
+      writer.append(events);
+    }
+  }
+
   /**
    * A {@link WriteRequest} that contains a list of stream events.
    */
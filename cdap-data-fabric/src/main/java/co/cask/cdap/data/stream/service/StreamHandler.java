@@ -136,7 +136,6 @@ public final class StreamHandler extends AbstractHttpHandler {
     this.streamAdmin = streamAdmin;
     this.sizeCollector = sizeCollector;
     this.batchBufferThreshold = cConf.getLong(Constants.Stream.BATCH_BUFFER_THRESHOLD);
-    this.streamBodyConsumerFactory = new StreamBodyConsumerFactory();
     this.streamHandlerMetricsContext = metricsCollectionService.getContext(getStreamHandlerMetricsContext());
     streamMetricsCollectors = CacheBuilder.newBuilder()
       .build(new CacheLoader<NamespaceId, MetricsContext>() {
@@ -148,7 +147,10 @@ public final class StreamHandler extends AbstractHttpHandler {
     StreamMetricsCollectorFactory metricsCollectorFactory = createStreamMetricsCollectorFactory();
     this.streamWriter = new ConcurrentStreamWriter(streamCoordinatorClient, streamAdmin, writerFactory,
                                                    cConf.getInt(Constants.Stream.WORKER_THREADS),
+                                                   cConf.getLong(Constants.Stream.GROUP_COMMIT_MAX_LINGER_US),
+                                                   cConf.getInt(Constants.Stream.GROUP_COMMIT_MAX_BATCH_SIZE),
                                                    metricsCollectorFactory, impersonator);
+    this.streamBodyConsumerFactory = new StreamBodyConsumerFactory(streamWriter, batchBufferThreshold);
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.impersonator = impersonator;
     this.authorizationEnforcer = authorizationEnforcer;
@@ -362,6 +364,14 @@ public final class StreamHandler extends AbstractHttpHandler {
               childCollector.increment("collect.events", eventsWritten);
             }
           }
+
+          @Override
+          public void emitBatchMetrics(long batchBytes, int batchRequests, long flushMicros) {
+            childCollector.increment("collect.flushes", 1);
+            childCollector.increment("collect.flush.micros", flushMicros);
+            childCollector.gauge("collect.batch.bytes", batchBytes);
+            childCollector.gauge("collect.batch.requests", batchRequests);
+          }
         };
       }
     };
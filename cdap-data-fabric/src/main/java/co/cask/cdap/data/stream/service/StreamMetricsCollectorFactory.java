@@ -35,6 +35,15 @@ public interface StreamMetricsCollectorFactory {
      * @param eventsWritten number of events written to the stream
      */
     void emitMetrics(long bytesWritten, long eventsWritten);
+
+    /**
+     * Emit metrics about a batch of write requests that were flushed together.
+     *
+     * @param batchBytes number of bytes written in the batch
+     * @param batchRequests number of write requests in the batch
+     * @param flushMicros time in microseconds spent on flushing the batch
+     */
+    void emitBatchMetrics(long batchBytes, int batchRequests, long flushMicros);
   }
 
   /**
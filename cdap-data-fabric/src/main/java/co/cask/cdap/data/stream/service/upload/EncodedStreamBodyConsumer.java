@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service.upload;
+
+import co.cask.cdap.common.BadRequestException;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
+import co.cask.cdap.data.stream.EncodedStreamEvents;
+import co.cask.cdap.data.stream.service.ConcurrentStreamWriter;
+import co.cask.cdap.proto.id.StreamId;
+import co.cask.http.BodyConsumer;
+import co.cask.http.HttpResponder;
+import com.google.common.base.Throwables;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link BodyConsumer} for consuming a sequence of events encoded with the {@link StreamEventDataCodec}, which is
+ * the same format as the events inside a stream file data block. Each event is the Avro binary encoding of the
+ * event body as bytes, followed by the event headers as a map of nullable strings.
+ *
+ * The events are only validated for framing and are written to the stream file as is, without decoding them.
+ * Events are written in batches of up to the buffer threshold in size, with each batch written atomically.
+ */
+@NotThreadSafe
+final class EncodedStreamBodyConsumer extends BodyConsumer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EncodedStreamBodyConsumer.class);
+  private static final long INCOMPLETE = Long.MIN_VALUE;
+
+  private final StreamId streamId;
+  private final ConcurrentStreamWriter streamWriter;
+  private final long bufferThreshold;
+
+  // Buffer containing the content not yet written to the stream
+  private ChannelBuffer buffer = ChannelBuffers.EMPTY_BUFFER;
+  // Offset in the buffer up to where complete events were scanned
+  private int scanned;
+  private int scanIndex;
+  private int eventCount;
+  private long bodySize;
+  private boolean failed;
+
+  EncodedStreamBodyConsumer(StreamId streamId, ConcurrentStreamWriter streamWriter, long bufferThreshold) {
+    this.streamId = streamId;
+    this.streamWriter = streamWriter;
+    this.bufferThreshold = bufferThreshold;
+  }
+
+  @Override
+  public void chunk(ChannelBuffer chunk, HttpResponder responder) {
+    if (failed) {
+      return;
+    }
+
+    // No need to copy the chunk as the stream http service uses a ChannelBufferFactory that won't reuse buffer.
+    buffer = buffer.readable() ? ChannelBuffers.wrappedBuffer(buffer, chunk) : chunk;
+    try {
+      scanEvents();
+      if (scanned >= bufferThreshold) {
+        writeEvents();
+      }
+    } catch (Exception e) {
+      failed = true;
+      respondFailure(responder, e);
+
+      // Propagate the exception so that the netty http service will terminate the handling
+      throw Throwables.propagate(e);
+    }
+  }
+
+  @Override
+  public void finished(HttpResponder responder) {
+    try {
+      scanEvents();
+      if (scanned != buffer.readableBytes()) {
+        throw new BadRequestException("Incomplete event at the end of the request body");
+      }
+      writeEvents();
+      responder.sendStatus(HttpResponseStatus.OK);
+    } catch (Exception e) {
+      // Just log and response. No need to propagate since it's the end of upload already.
+      respondFailure(responder, e);
+    }
+  }
+
+  @Override
+  public void handleError(Throwable cause) {
+    // Nothing other than log
+    LOG.warn("Failed to handle upload to stream {}", streamId, cause);
+  }
+
+  private void respondFailure(HttpResponder responder, Exception e) {
+    if (e instanceof BadRequestException) {
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+    } else {
+      LOG.error("Failed to write upload content to stream {}", streamId, e);
+      responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Failed to write uploaded content");
+    }
+  }
+
+  /**
+   * Writes the complete events scanned so far to the stream as one batch.
+   */
+  private void writeEvents() throws Exception {
+    if (eventCount == 0) {
+      return;
+    }
+    ChannelBuffer events = buffer.slice(buffer.readerIndex(), scanned);
+    streamWriter.enqueue(streamId, new EncodedStreamEvents(events.toByteBuffers(), eventCount, bodySize));
+
+    buffer = buffer.slice(buffer.readerIndex() + scanned, buffer.readableBytes() - scanned);
+    scanned = 0;
+    eventCount = 0;
+    bodySize = 0;
+  }
+
+  /**
+   * Scans for complete events in the buffer, starting from the end of the last complete event scanned.
+   */
+  private void scanEvents() throws BadRequestException {
+    scanIndex = buffer.readerIndex() + scanned;
+    while (scanIndex < buffer.writerIndex()) {
+      long size = scanEvent();
+      if (size == INCOMPLETE) {
+        return;
+      }
+      scanned = scanIndex - buffer.readerIndex();
+      eventCount++;
+      bodySize += size;
+    }
+  }
+
+  /**
+   * Scans one encoded event starting at the scan index.
+   *
+   * @return the size of the event body or {@link #INCOMPLETE} if the buffer doesn't contain the complete event
+   */
+  private long scanEvent() throws BadRequestException {
+    long bodyLength = skipBytes();
+    if (bodyLength == INCOMPLETE) {
+      return INCOMPLETE;
+    }
+
+    // Headers are encoded as blocks of entries, terminated by an empty block
+    long entries = readInt();
+    while (entries != 0) {
+      if (entries == INCOMPLETE) {
+        return INCOMPLETE;
+      }
+      if (entries < 0) {
+        throw new BadRequestException("Invalid number of event headers " + entries);
+      }
+      for (long i = 0; i < entries; i++) {
+        // Header key, followed by the union index and the value if it is not null
+        if (skipBytes() == INCOMPLETE) {
+          return INCOMPLETE;
+        }
+        long unionIndex = readInt();
+        if (unionIndex == INCOMPLETE) {
+          return INCOMPLETE;
+        }
+        if (unionIndex == 0) {
+          if (skipBytes() == INCOMPLETE) {
+            return INCOMPLETE;
+          }
+        } else if (unionIndex != 1) {
+          throw new BadRequestException("Invalid event header value type " + unionIndex);
+        }
+      }
+      entries = readInt();
+    }
+    return bodyLength;
+  }
+
+  /**
+   * Skips a length prefixed byte array at the scan index.
+   *
+   * @return the length of the byte array or {@link #INCOMPLETE} if the buffer doesn't contain the whole byte array
+   */
+  private long skipBytes() throws BadRequestException {
+    long length = readInt();
+    if (length == INCOMPLETE) {
+      return INCOMPLETE;
+    }
+    if (length < 0) {
+      throw new BadRequestException("Invalid length " + length);
+    }
+    if (buffer.writerIndex() - scanIndex < length) {
+      return INCOMPLETE;
+    }
+    scanIndex += length;
+    return length;
+  }
+
+  /**
+   * Reads an Avro encoded int at the scan index.
+   *
+   * @return the int value or {@link #INCOMPLETE} if the buffer doesn't contain the complete encoded int
+   */
+  private long readInt() throws BadRequestException {
+    int value = 0;
+    int shift = 0;
+    while (scanIndex < buffer.writerIndex()) {
+      int b = buffer.getByte(scanIndex++) & 0xff;
+      value ^= (b & 0x7f) << shift;
+      if (b <= 0x7f) {
+        return (value >>> 1) ^ -(value & 1);
+      }
+      shift += 7;
+      if (shift > 28) {
+        throw new BadRequestException("Invalid encoded int");
+      }
+    }
+    return INCOMPLETE;
+  }
+}
@@ -16,6 +16,8 @@
 
 package co.cask.cdap.data.stream.service.upload;
 
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data.stream.service.ConcurrentStreamWriter;
 import co.cask.http.BodyConsumer;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
@@ -25,6 +27,20 @@ import org.jboss.netty.handler.codec.http.HttpRequest;
  */
 public class StreamBodyConsumerFactory {
 
+  private final ConcurrentStreamWriter streamWriter;
+  private final long bufferThreshold;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param streamWriter the {@link ConcurrentStreamWriter} for writing encoded events to stream directly
+   * @param bufferThreshold maximum size in bytes of encoded events to buffer before writing to stream
+   */
+  public StreamBodyConsumerFactory(ConcurrentStreamWriter streamWriter, long bufferThreshold) {
+    this.streamWriter = streamWriter;
+    this.bufferThreshold = bufferThreshold;
+  }
+
   /**
    * Creates a {@link BodyConsumer} to handle the given batch request.
    *
@@ -45,6 +61,9 @@ public class StreamBodyConsumerFactory {
     if (contentType.equals("avro/binary")) {
       return new AvroStreamBodyConsumer(contentWriterFactory);
     }
+    if (contentType.equals(Constants.Stream.ENCODED_EVENTS_CONTENT_TYPE)) {
+      return new EncodedStreamBodyConsumer(contentWriterFactory.getStream(), streamWriter, bufferThreshold);
+    }
     throw new UnsupportedOperationException("Unsupported content type " + contentType);
   }
 }
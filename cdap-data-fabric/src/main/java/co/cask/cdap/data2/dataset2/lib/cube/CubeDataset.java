@@ -56,9 +56,10 @@ public class CubeDataset extends AbstractDataset implements Cube {
     for (Integer resolution : resolutionTables.keySet()) {
       resolutions[index++] = resolution;
     }
+    // Tables are not thread safe, hence no concurrent scans
     this.cube = new DefaultCube(resolutions,
                                 new FactTableSupplierImpl(entityTable, resolutionTables),
-                                aggregations, ImmutableMap.<String, AggregationAlias>of());
+                                aggregations, ImmutableMap.<String, AggregationAlias>of(), 1);
   }
 
   @Override
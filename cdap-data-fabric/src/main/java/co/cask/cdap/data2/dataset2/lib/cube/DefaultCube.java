@@ -16,7 +16,6 @@
 
 package co.cask.cdap.data2.dataset2.lib.cube;
 
-import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.Cube;
 import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeExploreQuery;
@@ -24,34 +23,36 @@ import co.cask.cdap.api.dataset.lib.cube.CubeFact;
 import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
-import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.metrics.MeteredDataset;
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.timeseries.Fact;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
-import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
-import com.google.common.collect.HashBasedTable;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -61,12 +62,16 @@ public class DefaultCube implements Cube, MeteredDataset {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultCube.class);
 
   private static final DimensionValueComparator DIMENSION_VALUE_COMPARATOR = new DimensionValueComparator();
-  // hard-limit on max records to scan
-  private static final int MAX_RECORDS_TO_SCAN = 100 * 1000;
+  // default max number of concurrent scans for a single query
+  private static final int DEFAULT_MAX_SCAN_PARALLELISM = 8;
 
   private final Map<Integer, FactTable> resolutionToFactTable;
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
+  private final int maxScanParallelism;
+  // executor for scanning fact tables concurrently, null if parallel scans are disabled
+  @Nullable
+  private final ExecutorService scanExecutor;
 
   @Nullable
   private MetricsCollector metrics;
@@ -74,12 +79,36 @@ public class DefaultCube implements Cube, MeteredDataset {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, DEFAULT_MAX_SCAN_PARALLELISM);
+  }
+
+  /**
+   * Creates an instance of {@link DefaultCube}.
+   *
+   * @param maxScanParallelism max number of concurrent scans used for a single query, which further limits the
+   *                           parallelism requested by the {@link CubeQuery}. Use 1 if the fact tables provided by
+   *                           the factTableSupplier don't support concurrent scans.
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap, int maxScanParallelism) {
     this.aggregations = aggregations;
     this.resolutionToFactTable = Maps.newHashMap();
     for (int resolution : resolutions) {
       resolutionToFactTable.put(resolution, factTableSupplier.get(resolution, 3600));
     }
     this.aggregationAliasMap = aggregationAliasMap;
+    this.maxScanParallelism = maxScanParallelism;
+    if (maxScanParallelism > 1) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(maxScanParallelism, maxScanParallelism,
+                                                           60, TimeUnit.SECONDS,
+                                                           new LinkedBlockingQueue<Runnable>(),
+                                                           Threads.newDaemonThreadFactory("cube-fact-scan"));
+      executor.allowCoreThreadTimeOut(true);
+      this.scanExecutor = executor;
+    } else {
+      this.scanExecutor = null;
+    }
   }
 
   @Override
@@ -158,8 +187,9 @@ public class DefaultCube implements Cube, MeteredDataset {
       'measureName'='read.ops'
       'measureType'='COUNTER'
 
-      3) While scanning build a table: dimension values -> time -> value. Use measureType as values aggregate
-         function if needed.
+      3) While scanning aggregate: dimension values -> measure -> time -> value. Use measureType as values
+         aggregate function if needed. If parallelism is requested, the scan is split by time range, the splits are
+         scanned and aggregated concurrently, and the partial aggregates are merged.
     */
 
     incrementMetric("cube.query.request.count", 1);
@@ -209,13 +239,15 @@ public class DefaultCube implements Cube, MeteredDataset {
 
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
-    FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    List<FactScan> scans = table.splitScan(scan, Math.min(query.getParallelism(), maxScanParallelism));
+    TimeSeriesAggregator aggregator = scans.size() == 1
+      ? getTimeSeries(query, table.scan(scan))
+      : getTimeSeries(query, table, scans);
 
     incrementMetric("cube.query.request.success.count", 1);
-    incrementMetric("cube.query.result.size", resultMap.size());
+    incrementMetric("cube.query.result.size", aggregator.getSeriesCount());
 
-    Collection<TimeSeries> timeSeries = convertToQueryResult(query, resultMap);
+    Collection<TimeSeries> timeSeries = aggregator.getTimeSeries();
     incrementMetric("cube.query.result.timeseries.count", timeSeries.size());
 
     return timeSeries;
@@ -329,107 +361,58 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
-    // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
-
-    int count = 0;
-    while (scanner.hasNext()) {
-      FactScanResult next = scanner.next();
-      incrementMetric("cube.query.scan.records.count", 1);
-
-      boolean skip = false;
-      // using tree map, as we are using it as a key for a map
-      Map<String, String> seriesDimensions = Maps.newTreeMap();
-      for (String dimensionName : query.getGroupByDimensions()) {
-        // todo: use Map<String, String> instead of List<DimensionValue> into a String, String, everywhere
-        for (DimensionValue dimensionValue : next.getDimensionValues()) {
-          if (dimensionName.equals(dimensionValue.getName())) {
-            if (dimensionValue.getValue() == null) {
-              // Currently, we do NOT return null as grouped by value.
-              // Depending on whether dimension is required or not the records with null value in it may or may not be
-              // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
-              // potentially null may or may not be included in results, depending on the aggregation selected
-              // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
-              // so don't return nulls in any of those cases.
-              skip = true;
-              continue;
-            }
-            seriesDimensions.put(dimensionName, dimensionValue.getValue());
-            break;
+  private TimeSeriesAggregator getTimeSeries(final CubeQuery query, final FactTable table, List<FactScan> scans) {
+    List<Future<TimeSeriesAggregator>> futures = Lists.newArrayListWithCapacity(scans.size());
+    try {
+      for (final FactScan scan : scans) {
+        futures.add(scanExecutor.submit(new Callable<TimeSeriesAggregator>() {
+          @Override
+          public TimeSeriesAggregator call() throws Exception {
+            return getTimeSeries(query, table.scan(scan));
           }
-        }
+        }));
       }
 
-      if (skip) {
-        incrementMetric("cube.query.scan.skipped.count", 1);
-        continue;
-      }
-
-      for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
-        if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
-        }
-
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
+      TimeSeriesAggregator result = null;
+      for (Future<TimeSeriesAggregator> future : futures) {
+        TimeSeriesAggregator partial = future.get();
+        if (result == null) {
+          result = partial;
         } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
+          result.merge(partial);
         }
       }
-      if (++count >= MAX_RECORDS_TO_SCAN) {
-        break;
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      // no-op for completed scans, stops remaining scans on failure
+      for (Future<TimeSeriesAggregator> future : futures) {
+        future.cancel(true);
       }
     }
-    return result;
   }
 
-  private Collection<TimeSeries> convertToQueryResult(CubeQuery query,
-                                                      Table<Map<String, String>, String,
-                                                        Map<Long, Long>> resultTable) {
-
-    List<TimeSeries> result = Lists.newArrayList();
-    // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
-      // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
-        // generating time series for a grouping and a measure
-        int count = 0;
-        List<TimeValue> timeValues = Lists.newArrayList();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
+  private TimeSeriesAggregator getTimeSeries(CubeQuery query, FactScanner scanner) {
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(query);
+    long scanned = 0;
+    long skipped = 0;
+    try {
+      while (scanner.hasNext()) {
+        scanned++;
+        if (!aggregator.add(scanner.next())) {
+          skipped++;
         }
-        Collections.sort(timeValues);
-        PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-          new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
-        List<TimeValue> resultTimeValues = Lists.newArrayList();
-        while (timeValueItor.hasNext()) {
-          TimeValue timeValue = timeValueItor.next();
-          resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
-          if (++count >= query.getLimit()) {
-            break;
-          }
-        }
-        result.add(new TimeSeries(measureEntry.getKey(), row.getKey(), resultTimeValues));
       }
+    } finally {
+      scanner.close();
+      incrementMetric("cube.query.scan.records.count", scanned);
+      incrementMetric("cube.query.scan.skipped.count", skipped);
     }
-    return result;
+    return aggregator;
   }
 
   @Override
@@ -439,6 +422,9 @@ public class DefaultCube implements Cube, MeteredDataset {
 
   @Override
   public void close() throws IOException {
+    if (scanExecutor != null) {
+      scanExecutor.shutdownNow();
+    }
     for (FactTable factTable : resolutionToFactTable.values()) {
       factTable.close();
     }
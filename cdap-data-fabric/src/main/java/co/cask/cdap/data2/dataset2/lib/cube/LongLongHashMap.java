@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long to primitive long, using open addressing with linear probing.
+ * It is used for aggregating time series values without boxing timestamps and values.
+ */
+final class LongLongHashMap {
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  private long[] keys;
+  private long[] values;
+  private boolean[] used;
+  private int size;
+  private int shift;
+
+  LongLongHashMap() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the value of the given key, or the given default value if the key is not in the map.
+   */
+  long get(long key, long defaultValue) {
+    int slot = findSlot(key);
+    return used[slot] ? values[slot] : defaultValue;
+  }
+
+  void put(long key, long value) {
+    int slot = findSlot(key);
+    if (!used[slot]) {
+      slot = insert(slot, key);
+    }
+    values[slot] = value;
+  }
+
+  /**
+   * Adds the given value to the value of the given key, treating an absent key as having value 0.
+   */
+  void add(long key, long value) {
+    int slot = findSlot(key);
+    if (!used[slot]) {
+      slot = insert(slot, key);
+    }
+    values[slot] += value;
+  }
+
+  /**
+   * Sets the value of the given key to the maximum of the given value and the existing value, if any.
+   */
+  void max(long key, long value) {
+    int slot = findSlot(key);
+    if (!used[slot]) {
+      values[insert(slot, key)] = value;
+    } else if (value > values[slot]) {
+      values[slot] = value;
+    }
+  }
+
+  /**
+   * Sets the value of the given key to the minimum of the given value and the existing value, if any.
+   */
+  void min(long key, long value) {
+    int slot = findSlot(key);
+    if (!used[slot]) {
+      values[insert(slot, key)] = value;
+    } else if (value < values[slot]) {
+      values[slot] = value;
+    }
+  }
+
+  /**
+   * Returns all the keys in the map, in no particular order.
+   */
+  long[] keys() {
+    long[] result = new long[size];
+    int idx = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (used[i]) {
+        result[idx++] = keys[i];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns all the keys in the map, in ascending order.
+   */
+  long[] sortedKeys() {
+    long[] result = keys();
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Returns the slot that contains the given key, or the empty slot where the key should be inserted.
+   */
+  private int findSlot(long key) {
+    int mask = keys.length - 1;
+    int slot = (int) ((key * HASH_MULTIPLIER) >>> shift);
+    while (used[slot] && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Inserts the given key at the given empty slot, growing the map if needed.
+   *
+   * @return the slot of the inserted key
+   */
+  private int insert(int slot, long key) {
+    // keep the load factor at most 0.5
+    if ((size + 1) * 2 > keys.length) {
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      boolean[] oldUsed = used;
+      allocate(keys.length * 2);
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldUsed[i]) {
+          int newSlot = findSlot(oldKeys[i]);
+          used[newSlot] = true;
+          keys[newSlot] = oldKeys[i];
+          values[newSlot] = oldValues[i];
+        }
+      }
+      slot = findSlot(key);
+    }
+    used[slot] = true;
+    keys[slot] = key;
+    values[slot] = 0L;
+    size++;
+    return slot;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new long[capacity];
+    used = new boolean[capacity];
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+  }
+}
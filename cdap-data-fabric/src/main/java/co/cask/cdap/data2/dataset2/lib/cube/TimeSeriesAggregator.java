@@ -0,0 +1,299 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the facts scanned for a {@link CubeQuery} into time series, one for each combination of
+ * group by dimension values and measure name. Facts are aggregated as they are added, so that memory usage only
+ * depends on the number of distinct timestamps in the resulting time series, not on the number of facts scanned.
+ *
+ * Group by dimension values are interned into group keys, and the values of each time series are aggregated
+ * in a {@link LongLongHashMap} from timestamp to value.
+ */
+final class TimeSeriesAggregator {
+
+  private final CubeQuery query;
+  private final List<String> groupByDimensions;
+  // index in the fact dimension values where each group by dimension was last found
+  private final int[] dimensionIndexes;
+  // key reused for looking up the group of each fact
+  private final GroupKey lookupKey;
+  // group key -> measure name -> timestamp -> value
+  private final Map<GroupKey, Map<String, LongLongHashMap>> groups;
+  private int seriesCount;
+
+  TimeSeriesAggregator(CubeQuery query) {
+    this.query = query;
+    this.groupByDimensions = new ArrayList<>(query.getGroupByDimensions());
+    this.dimensionIndexes = new int[groupByDimensions.size()];
+    this.lookupKey = new GroupKey(new String[groupByDimensions.size()]);
+    this.groups = new HashMap<>();
+  }
+
+  /**
+   * Adds the time values of the given fact to the time series it belongs to.
+   *
+   * @return {@code true} if the fact was added, {@code false} if it was skipped because it has a {@code null} value
+   *         for a group by dimension
+   */
+  boolean add(FactScanResult fact) {
+    List<DimensionValue> dimensionValues = fact.getDimensionValues();
+    for (int i = 0; i < dimensionIndexes.length; i++) {
+      int idx = findDimension(i, dimensionValues);
+      String value = null;
+      if (idx >= 0) {
+        value = dimensionValues.get(idx).getValue();
+        if (value == null) {
+          // Currently, we do NOT return null as grouped by value.
+          // Depending on whether dimension is required or not the records with null value in it may or may not be
+          // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
+          // potentially null may or may not be included in results, depending on the aggregation selected
+          // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
+          // so don't return nulls in any of those cases.
+          return false;
+        }
+      }
+      lookupKey.values[i] = value;
+    }
+
+    Iterator<TimeValue> timeValues = fact.iterator();
+    if (!timeValues.hasNext()) {
+      return true;
+    }
+
+    String measureName = fact.getMeasureName();
+    AggregationFunction function = query.getMeasurements().get(measureName);
+    if (function == null) {
+      // should never happen: developer error
+      throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+
+    lookupKey.computeHash();
+    Map<String, LongLongHashMap> measures = groups.get(lookupKey);
+    if (measures == null) {
+      measures = new HashMap<>();
+      groups.put(lookupKey.copy(), measures);
+    }
+    LongLongHashMap series = measures.get(measureName);
+    if (series == null) {
+      series = new LongLongHashMap();
+      measures.put(measureName, series);
+      seriesCount++;
+    }
+
+    switch (function) {
+      case SUM:
+        while (timeValues.hasNext()) {
+          TimeValue timeValue = timeValues.next();
+          series.add(timeValue.getTimestamp(), timeValue.getValue());
+        }
+        break;
+      case MAX:
+        while (timeValues.hasNext()) {
+          TimeValue timeValue = timeValues.next();
+          series.max(timeValue.getTimestamp(), timeValue.getValue());
+        }
+        break;
+      case MIN:
+        while (timeValues.hasNext()) {
+          TimeValue timeValue = timeValues.next();
+          series.min(timeValue.getTimestamp(), timeValue.getValue());
+        }
+        break;
+      case LATEST:
+        while (timeValues.hasNext()) {
+          TimeValue timeValue = timeValues.next();
+          series.put(timeValue.getTimestamp(), timeValue.getValue());
+        }
+        break;
+      default:
+        // should never happen: developer error
+        throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+    return true;
+  }
+
+  /**
+   * Merges the time series aggregated by another aggregator of the same query into this one. For the
+   * {@link AggregationFunction#LATEST} function, values of the other aggregator are taken as the latest ones.
+   */
+  void merge(TimeSeriesAggregator other) {
+    for (Map.Entry<GroupKey, Map<String, LongLongHashMap>> group : other.groups.entrySet()) {
+      Map<String, LongLongHashMap> measures = groups.get(group.getKey());
+      if (measures == null) {
+        measures = new HashMap<>();
+        groups.put(group.getKey(), measures);
+      }
+      for (Map.Entry<String, LongLongHashMap> measureEntry : group.getValue().entrySet()) {
+        LongLongHashMap series = measures.get(measureEntry.getKey());
+        if (series == null) {
+          measures.put(measureEntry.getKey(), measureEntry.getValue());
+          seriesCount++;
+        } else {
+          merge(query.getMeasurements().get(measureEntry.getKey()), series, measureEntry.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of time series aggregated so far.
+   */
+  int getSeriesCount() {
+    return seriesCount;
+  }
+
+  /**
+   * Returns the aggregated time series, interpolated and limited as specified by the query.
+   */
+  Collection<TimeSeries> getTimeSeries() {
+    List<TimeSeries> result = Lists.newArrayList();
+    // iterating each group of dimension values
+    for (Map.Entry<GroupKey, Map<String, LongLongHashMap>> group : groups.entrySet()) {
+      // using tree map, to have the same dimension values map as the one used for grouping before
+      Map<String, String> seriesDimensions = Maps.newTreeMap();
+      String[] values = group.getKey().values;
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          seriesDimensions.put(groupByDimensions.get(i), values[i]);
+        }
+      }
+
+      // iterating each measure
+      for (Map.Entry<String, LongLongHashMap> measureEntry : group.getValue().entrySet()) {
+        LongLongHashMap series = measureEntry.getValue();
+        long[] timestamps = series.sortedKeys();
+        List<TimeValue> timeValues = new ArrayList<>(timestamps.length);
+        for (long timestamp : timestamps) {
+          timeValues.add(new TimeValue(timestamp, series.get(timestamp, 0L)));
+        }
+
+        // generating time series for a grouping and a measure
+        List<TimeValue> resultTimeValues = Lists.newArrayList();
+        int count = 0;
+        for (TimeValue timeValue : new TimeSeriesInterpolator(timeValues, query.getInterpolator(),
+                                                              query.getResolution())) {
+          resultTimeValues.add(timeValue);
+          if (++count >= query.getLimit()) {
+            break;
+          }
+        }
+        result.add(new TimeSeries(measureEntry.getKey(), seriesDimensions, resultTimeValues));
+      }
+    }
+    return result;
+  }
+
+  private void merge(AggregationFunction function, LongLongHashMap series, LongLongHashMap other) {
+    for (long timestamp : other.keys()) {
+      long value = other.get(timestamp, 0L);
+      switch (function) {
+        case SUM:
+          series.add(timestamp, value);
+          break;
+        case MAX:
+          series.max(timestamp, value);
+          break;
+        case MIN:
+          series.min(timestamp, value);
+          break;
+        case LATEST:
+          series.put(timestamp, value);
+          break;
+        default:
+          // should never happen: developer error
+          throw new RuntimeException("Unknown MeasureType: " + function);
+      }
+    }
+  }
+
+  /**
+   * Finds the index of the i-th group by dimension in the given dimension values, or -1 if it is not there.
+   * Facts scanned from the same aggregation have their dimensions in the same order, hence the index where the
+   * dimension was found last time is checked first.
+   */
+  private int findDimension(int i, List<DimensionValue> dimensionValues) {
+    String dimensionName = groupByDimensions.get(i);
+    int idx = dimensionIndexes[i];
+    if (idx < dimensionValues.size() && dimensionName.equals(dimensionValues.get(idx).getName())) {
+      return idx;
+    }
+    for (idx = 0; idx < dimensionValues.size(); idx++) {
+      if (dimensionName.equals(dimensionValues.get(idx).getName())) {
+        dimensionIndexes[i] = idx;
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Values of the group by dimensions of a time series, with {@code null} for dimensions the facts don't have.
+   */
+  private static final class GroupKey {
+    private final String[] values;
+    private int hash;
+
+    GroupKey(String[] values) {
+      this.values = values;
+    }
+
+    void computeHash() {
+      hash = Arrays.hashCode(values);
+    }
+
+    GroupKey copy() {
+      GroupKey key = new GroupKey(values.clone());
+      key.hash = hash;
+      return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      GroupKey other = (GroupKey) o;
+      return hash == other.hash && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -53,6 +53,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 
@@ -73,8 +75,11 @@ import javax.annotation.Nullable;
  *       not in in-memory buffer twice, two times it will try to fetch it from persistent store.
  *       Given the snapshot isolation tx model, this can be improved in future implementations.
  * <p>
- * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
- *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ * NOTE: by default changes are persisted only at the end of transaction. Beware of OOME. For tables that write a lot
+ *       of data in a single transaction (e.g. MapReduce), a limit for the in-memory buffer size can be set with
+ *       {@link Constants.Dataset#TABLE_BUFFER_SIZE_LIMIT}. When the buffer exceeds that limit, it is spilled to the
+ *       persisted store before the transaction commits. Spilled changes are visible to the transaction itself only,
+ *       and are undone when the transaction rolls back.
  * <p>
  * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
  *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
@@ -102,6 +107,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
 
+  // Maximum size in bytes of the in-memory buffer before it gets spilled to the persisted store. 0 means no limit.
+  private final long bufferSizeLimit;
+  // Approximate size in bytes of the data in the in-memory buffer
+  private long bufferSize;
+  // Tx changes of the data that was spilled to the persisted store in the current transaction
+  private final Set<byte[]> spilledTxChanges;
+
   // Report data ops metrics to
   private MetricsCollector metricsCollector;
 
@@ -145,6 +157,16 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     this.name = name;
     this.conflictLevel = TableProperties.getConflictDetectionLevel(properties, ConflictDetection.ROW);
     this.enableReadlessIncrements = enableReadlessIncrements;
+    long sizeLimit = TableProperties.getBufferSizeLimit(properties);
+    if (sizeLimit > 0 && enableReadlessIncrements) {
+      // Spilled and buffered readless increments of the same cell would be written with the same version,
+      // which would lose the spilled increments.
+      LOG.warn("Buffer size limit {} is ignored for table {} since it has readless increments enabled.",
+               sizeLimit, name);
+      sizeLimit = 0L;
+    }
+    this.bufferSizeLimit = sizeLimit;
+    this.spilledTxChanges = new TreeSet<>(Bytes.BYTES_COMPARATOR);
     // TODO: having central dataset management service will allow us to use table ids instead of names, which will
     //       reduce changeset size transferred to/from server
     // we want it to be of format length+value to avoid conflicts like table="ab", row="cd" vs table="abc", row="d"
@@ -272,7 +294,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       throw new IllegalStateException(msg);
     }
     // starting with fresh buffer when tx starts
-    buff.clear();
+    clearBuffer();
     toUndo = null;
     this.tx = tx;
   }
@@ -294,6 +316,16 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public Collection<byte[]> getTxChanges() {
+    if (spilledTxChanges.isEmpty()) {
+      return getBufferTxChanges();
+    }
+    Set<byte[]> changes = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    changes.addAll(spilledTxChanges);
+    changes.addAll(getBufferTxChanges());
+    return changes;
+  }
+
+  private Collection<byte[]> getBufferTxChanges() {
     switch (conflictLevel) {
       case NONE:
         return Collections.emptyList();
@@ -338,32 +370,21 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public boolean commitTx() throws Exception {
-    if (!buff.isEmpty()) {
-      // We first assume that all data will be persisted. So that if exception happen during persist we try to
-      // rollback everything we had in in-memory buffer.
-      toUndo = buff;
-      // clearing up in-memory buffer by initializing new map.
-      // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
-      // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
-      buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
-      // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
-      //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
-      persist(toUndo);
-    }
+    flushBuffer();
     return true;
   }
 
   @Override
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
-    buff.clear();
+    clearBuffer();
     toUndo = null;
     tx = null;
   }
 
   @Override
   public boolean rollbackTx() throws Exception {
-    buff.clear();
+    clearBuffer();
     if (toUndo != null) {
       undo(toUndo);
       toUndo = null;
@@ -372,6 +393,68 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return true;
   }
 
+  /**
+   * Persists the in-memory buffer and adds the persisted changes to the ones to undo on rollback.
+   */
+  private void flushBuffer() throws Exception {
+    if (buff.isEmpty()) {
+      return;
+    }
+    NavigableMap<byte[], NavigableMap<byte[], Update>> toPersist = buff;
+    // We first assume that all data will be persisted. So that if exception happen during persist we try to
+    // rollback everything we had in in-memory buffer.
+    addToUndo(toPersist);
+    // clearing up in-memory buffer by initializing new map.
+    // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
+    // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
+    buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    bufferSize = 0L;
+    // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
+    //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
+    persist(toPersist);
+  }
+
+  private void addToUndo(NavigableMap<byte[], NavigableMap<byte[], Update>> persisted) {
+    if (toUndo == null) {
+      toUndo = persisted;
+      return;
+    }
+    // Only the row and column keys are needed for undo, hence the values of later changes can replace earlier ones
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : persisted.entrySet()) {
+      NavigableMap<byte[], Update> undoColumns = toUndo.get(row.getKey());
+      if (undoColumns == null) {
+        toUndo.put(row.getKey(), row.getValue());
+      } else {
+        undoColumns.putAll(row.getValue());
+      }
+    }
+  }
+
+  /**
+   * Spills the in-memory buffer to the persisted store if its size exceeds the limit.
+   */
+  private void spillBufferIfNeeded() {
+    if (bufferSizeLimit <= 0 || bufferSize <= bufferSizeLimit) {
+      return;
+    }
+    LOG.debug("Spilling {} bytes of buffered changes of table {} to persisted store.",
+              bufferSize, getTransactionAwareName());
+    // tx changes are computed from the buffer, hence need to be remembered before the buffer is cleared
+    spilledTxChanges.addAll(getBufferTxChanges());
+    try {
+      flushBuffer();
+    } catch (Exception e) {
+      LOG.debug("spill failed for table: " + getTransactionAwareName(), e);
+      throw new DataSetException("spill failed", e);
+    }
+  }
+
+  private void clearBuffer() {
+    buff.clear();
+    bufferSize = 0L;
+    spilledTxChanges.clear();
+  }
+
   protected void ensureTransactionIsStarted() {
     if (tx == null) {
       throw new DataSetException("Attempt to perform a data operation without a transaction");
@@ -461,19 +544,23 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         Get get = getIter.next();
         Map<byte[], byte[]> persistedRow = persistedRowsIter.next();
 
+        byte[] row = get.getRow();
+        NavigableMap<byte[], Update> buffCols = buff.get(row);
+
+        // nothing buffered for the row, the persisted row can be returned as is
+        if (buffCols == null && !hasDeletes(persistedRow)) {
+          result.add(new Result(row, persistedRow));
+          continue;
+        }
+
         // navigable copy of the persisted data. Implementation may return immutable or unmodifiable maps,
         // so we make a copy here.
         NavigableMap<byte[], byte[]> rowColumns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
         rowColumns.putAll(persistedRow);
 
-        byte[] row = get.getRow();
-        NavigableMap<byte[], Update> buffCols = buff.get(row);
-
         // merge what was in the buffer and what was persisted
         if (buffCols != null) {
-          List<byte[]> getColumns = get.getColumns();
-          byte[][] columns = getColumns == null ? null : getColumns.toArray(new byte[getColumns.size()][]);
-          mergeToPersisted(rowColumns, buffCols, columns);
+          mergeToPersisted(rowColumns, buffCols, get.getColumns());
         }
 
         result.add(new Result(row, unwrapDeletes(rowColumns)));
@@ -517,7 +604,10 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     if (newRow) {
       // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
       buff.put(copy(row), colVals);
+      bufferSize += getSize(row);
     }
+    bufferSize += getSize(columns) + getSize(values);
+    spillBufferIfNeeded();
   }
 
   /**
@@ -800,7 +890,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
 
     // overlay buffered values on persisted, applying increments where necessary
-    mergeToPersisted(result, buffCols, columns);
+    mergeToPersisted(result, buffCols, Arrays.asList(columns));
 
     return unwrapDeletes(result);
   }
@@ -810,11 +900,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
    * with the updated values.
    * @param persisted The map to modify with the buffered values.
    * @param buffered The buffered values to overlay on the persisted map.
+   * @param columns The columns to overlay, or {@code null} to overlay all buffered columns.
    */
-  private static void mergeToPersisted(Map<byte[], byte[]> persisted, Map<byte[], Update> buffered, byte[][] columns) {
+  private static void mergeToPersisted(Map<byte[], byte[]> persisted, Map<byte[], Update> buffered,
+                                       @Nullable List<byte[]> columns) {
     List<byte[]> columnKeys;
     if (columns != null) {
-      columnKeys = Arrays.asList(columns);
+      columnKeys = columns;
     } else {
       // NOTE: we want to copy key's byte array because it may be leaked to table's client and we don't want client
       //       to affect the buffer by changing it in place
@@ -921,6 +1013,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return result;
   }
 
+  /**
+   * Returns {@code true} if the given row map contains any column with the delete marker as value.
+   */
+  private static boolean hasDeletes(Map<byte[], byte[]> rowMap) {
+    for (byte[] value : rowMap.values()) {
+      if (unwrapDeleteIfNeeded(value) == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void reportWrite(int numOps, int dataSize) {
     if (metricsCollector != null) {
       metricsCollector.increment(Constants.Metrics.Name.Dataset.WRITE_COUNT, numOps);
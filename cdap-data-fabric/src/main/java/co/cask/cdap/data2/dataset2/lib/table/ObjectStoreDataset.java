@@ -34,7 +34,10 @@ import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.dataset.lib.ObjectStore;
 import co.cask.cdap.common.io.BinaryDecoder;
 import co.cask.cdap.common.io.BinaryEncoder;
-import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.ReflectionDatumWriter;
 import co.cask.cdap.internal.io.TypeRepresentation;
 import com.google.common.base.Preconditions;
@@ -45,6 +48,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -54,6 +58,11 @@ import javax.annotation.Nullable;
 @Beta
 public class ObjectStoreDataset<T> extends AbstractDataset implements ObjectStore<T> {
 
+  // Shared by all instances, so that the generated DatumReader classes are reused by datasets of the same type.
+  // Classes not used for a while are discarded, so that types of programs no longer running can be unloaded.
+  private static final DatumReaderFactory DATUM_READER_FACTORY =
+    new ASMDatumReaderFactory(new ASMFieldAccessorFactory(1, TimeUnit.HOURS), 1, TimeUnit.HOURS);
+
   private final KeyValueTable kvTable;
   private final TypeRepresentation typeRep;
   private final Schema schema;
@@ -62,7 +71,7 @@ public class ObjectStoreDataset<T> extends AbstractDataset implements ObjectStor
   // we get this lazily, since we may not have the actual Type when simply instantiating this class (for instance, when
   // datasets are instantiated in DatasetSystemMetadataWriter for checking RecordScannable/BatchWritable/etc.),
   // but we do expect to have it when using it in a program context
-  private ReflectionDatumReader<T> datumReader;
+  private DatumReader<T> datumReader;
 
   public ObjectStoreDataset(String name, KeyValueTable kvTable, TypeRepresentation typeRep,
                             Schema schema, @Nullable ClassLoader classLoader) {
@@ -150,9 +159,9 @@ public class ObjectStoreDataset<T> extends AbstractDataset implements ObjectStor
   }
 
   @SuppressWarnings("unchecked")
-  private ReflectionDatumReader<T> getReflectionDatumReader() {
+  private DatumReader<T> getDatumReader() {
     if (datumReader == null) {
-      datumReader = new ReflectionDatumReader<>(schema, (TypeToken<T>) TypeToken.of(this.typeRep.toType()));
+      datumReader = DATUM_READER_FACTORY.create((TypeToken<T>) TypeToken.of(this.typeRep.toType()), schema);
     }
     return datumReader;
   }
@@ -165,7 +174,7 @@ public class ObjectStoreDataset<T> extends AbstractDataset implements ObjectStor
     ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
     BinaryDecoder decoder = new BinaryDecoder(bis);
     try {
-      return getReflectionDatumReader().read(decoder, this.schema);
+      return getDatumReader().read(decoder, this.schema);
     } catch (IOException e) {
       // SHOULD NEVER happen
       throw new DataSetException("Failed to decode read object: " + e.getMessage(), e);
@@ -90,6 +90,28 @@ public class TableProperties {
     return !"true".equalsIgnoreCase(props.get(Constants.Dataset.TABLE_TX_DISABLED));
   }
 
+  /**
+   * Returns the maximum size in bytes of the in-memory buffer of uncommitted changes, as being set in the given
+   * specification. Defaults to 0, which means no limit.
+   *
+   * @throws IllegalArgumentException if the property value is not a valid size.
+   */
+  public static long getBufferSizeLimit(Map<String, String> props) {
+    String value = props.get(Constants.Dataset.TABLE_BUFFER_SIZE_LIMIT);
+    if (value == null) {
+      return 0L;
+    }
+    try {
+      long limit = Long.parseLong(value);
+      if (limit >= 0) {
+        return limit;
+      }
+    } catch (NumberFormatException e) {
+      // fall through to throw below
+    }
+    throw new IllegalArgumentException("Invalid buffer size limit: " + value);
+  }
+
   /**
    * Returns the column family as being set in the given specification.
    * If it is not set, the {@link #DEFAULT_DATA_COLUMN_FAMILY} will be returned.
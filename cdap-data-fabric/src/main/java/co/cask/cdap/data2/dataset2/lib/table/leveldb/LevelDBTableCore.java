@@ -26,7 +26,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import org.apache.tephra.Transaction;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
@@ -40,8 +42,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -77,10 +81,13 @@ public class LevelDBTableCore {
 
   private final String tableName;
   private final LevelDBTableService service;
+  // Locks for serializing read-modify-write operations on the same row. Shared by all instances of the same table.
+  private final Striped<Lock> rowLocks;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
     this.tableName = tableName;
     this.service = service;
+    this.rowLocks = service.getRowLocks(tableName);
   }
 
   private DB getDB() throws IOException {
@@ -92,53 +99,121 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)),
+                System.currentTimeMillis());
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+  }
+
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      NavigableMap<byte[], byte[]> existing =
+        getRow(row, increments.keySet().toArray(new byte[increments.size()][]), null, null, -1, null);
+      Map<byte[], Long> result = getResultMap(row, increments, existing);
+      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      }
+      persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
+      return result;
+    } finally {
+      lock.unlock();
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    if (updates.isEmpty()) {
+      return;
+    }
+    // Striped.bulkGet returns the locks in a consistent order, hence acquiring them in order is deadlock free.
+    List<Integer> rowHashes = Lists.newArrayListWithCapacity(updates.size());
+    for (byte[] row : updates.keySet()) {
+      rowHashes.add(Bytes.hashCode(row));
+    }
+    List<Lock> locks = Lists.newArrayList(rowLocks.bulkGet(rowHashes));
+    int locked = 0;
+    try {
+      for (Lock lock : locks) {
+        lock.lock();
+        locked++;
+      }
+
+      Map<byte[], NavigableMap<byte[], byte[]>> existingRows = getRows(updates);
+      Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
+      for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+        Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        Map<byte[], Long> result = getResultMap(row.getKey(), row.getValue(), existingRows.get(row.getKey()));
+        for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+          replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+        }
+        resultMap.put(row.getKey(), replacing);
+      }
+      persist(resultMap, System.currentTimeMillis());
+    } finally {
+      // Unlock in reverse order of locking. The same Lock could appear multiple times, as multiple rows can map
+      // to the same stripe, which is fine since the locks are reentrant.
+      for (int i = locked - 1; i >= 0; i--) {
+        locks.get(i).unlock();
+      }
     }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
   }
 
+  private Lock getRowLock(byte[] row) {
+    return rowLocks.get(Bytes.hashCode(row));
+  }
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  /**
+   * Reads the given columns of multiple rows using a single {@link DBIterator}. Since the rows are sorted,
+   * each seek moves the iterator forward, which is cheaper than opening one iterator per row.
+   *
+   * @param rowColumns map from row key to columns to read. The keys must be sorted by {@link Bytes#BYTES_COMPARATOR}.
+   * @return a map from row key to the columns read
+   */
+  private Map<byte[], NavigableMap<byte[], byte[]>> getRows(NavigableMap<byte[], ? extends Map<byte[], ?>> rowColumns)
+    throws IOException {
+    Map<byte[], NavigableMap<byte[], byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    try (DBIterator iterator = getDB().iterator()) {
+      for (Map.Entry<byte[], ? extends Map<byte[], ?>> entry : rowColumns.entrySet()) {
+        byte[] row = entry.getKey();
+        if (entry.getValue().isEmpty()) {
+          result.put(row, EMPTY_ROW_MAP);
+          continue;
+        }
+        byte[][] columns = entry.getValue().keySet().toArray(new byte[entry.getValue().size()][]);
+        Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
+
+        iterator.seek(createStartKey(row, columns[0]));
+        byte[] endKey = createEndKey(row, upperBound(columns[columns.length - 1]));
+        result.put(row, getRow(iterator, endKey, null, false, columns, columns.length).getSecond());
       }
-      resultMap.put(row.getKey(), replacing);
     }
-    persist(resultMap, System.currentTimeMillis());
+    return result;
   }
 
-  private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
-    NavigableMap<byte[], byte[]> existing =
-      getRow(row, increments.keySet().toArray(new byte[increments.size()][]), null, null, -1, null);
+  private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments,
+                                         Map<byte[], byte[]> existing) {
     Map<byte[], Long> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
       long existingValue = 0L;
@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.iq80.leveldb.DB;
@@ -43,6 +44,7 @@ import java.net.URLEncoder;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -58,8 +60,10 @@ public class LevelDBTableService {
   private long cacheSize;
   private String basePath;
   private WriteOptions writeOptions;
+  private int rowLockStripes = Constants.DEFAULT_DATA_LEVELDB_ROW_LOCK_STRIPES;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Striped<Lock>> rowLocks = Maps.newConcurrentMap();
 
   private static final LevelDBTableService SINGLETON = new LevelDBTableService();
 
@@ -86,6 +90,8 @@ public class LevelDBTableService {
     cacheSize = config.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE);
     writeOptions = new WriteOptions().sync(
       config.getBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, Constants.DEFAULT_DATA_LEVELDB_FSYNC));
+    rowLockStripes = config.getInt(Constants.CFG_DATA_LEVELDB_ROW_LOCK_STRIPES,
+                                   Constants.DEFAULT_DATA_LEVELDB_ROW_LOCK_STRIPES);
   }
 
   /**
@@ -153,6 +159,21 @@ public class LevelDBTableService {
     return writeOptions;
   }
 
+  /**
+   * Returns the striped row locks of the given table. The same instance is returned for the same table name,
+   * so that read-modify-write operations on the same row are serialized across all
+   * {@link LevelDBTableCore} instances of the table.
+   */
+  public Striped<Lock> getRowLocks(String tableName) {
+    Striped<Lock> locks = rowLocks.get(tableName);
+    if (locks == null) {
+      locks = Striped.lock(rowLockStripes);
+      Striped<Lock> existing = rowLocks.putIfAbsent(tableName, locks);
+      locks = existing == null ? locks : existing;
+    }
+    return locks;
+  }
+
   public DB getTable(String tableName) throws IOException {
     DB db = tables.get(tableName);
     if (db == null) {
@@ -167,6 +167,37 @@ public final class FactTable implements Closeable {
     return new FactScanner(getScanner(scan), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames());
   }
 
+  /**
+   * Splits the given scan into at most the given number of scans over consecutive time ranges. Time ranges are
+   * aligned to the time base of the rows, so that the row key ranges of the resulting scans don't overlap and
+   * every fact of the given scan is returned by exactly one of the resulting scans.
+   *
+   * @param scan the scan to split
+   * @param maxSplits maximum number of scans to return
+   * @return list of scans, in the order of their time ranges
+   */
+  public List<FactScan> splitScan(FactScan scan, int maxSplits) {
+    // same as the time base in the row key, see FactCodec
+    long startTimeBase = scan.getStartTs() / resolution * resolution / rollTime * rollTime;
+    long endTimeBase = scan.getEndTs() / resolution * resolution / rollTime * rollTime;
+    long rows = (endTimeBase - startTimeBase) / rollTime + 1;
+    if (maxSplits <= 1 || rows <= 1) {
+      return Collections.singletonList(scan);
+    }
+
+    int splits = (int) Math.min(maxSplits, rows);
+    long rowsPerSplit = (rows + splits - 1) / splits;
+    List<FactScan> result = new ArrayList<>(splits);
+    long startTs = scan.getStartTs();
+    for (long timeBase = startTimeBase; timeBase <= endTimeBase; timeBase += rowsPerSplit * rollTime) {
+      long nextTimeBase = timeBase + rowsPerSplit * rollTime;
+      long endTs = nextTimeBase > endTimeBase ? scan.getEndTs() : nextTimeBase - 1;
+      result.add(new FactScan(startTs, endTs, scan.getMeasureNames(), scan.getDimensionValues()));
+      startTs = nextTimeBase;
+    }
+    return result;
+  }
+
   private List<String> getSortedMeasures(Collection<String> measures) {
     Map<String, Long> measureToEntityMap = new HashMap<>();
     List<String> measureNames = new ArrayList<>();
@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.AbstractDataset;
 import co.cask.cdap.api.dataset.lib.IndexedTable;
 import co.cask.cdap.api.dataset.table.Delete;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
@@ -82,6 +83,8 @@ public class MetadataDataset extends AbstractDataset {
   private static final String HISTORY_COLUMN = "h"; // column for metadata history
   private static final String VALUE_COLUMN = "v";  // column for metadata value
   private static final String TAGS_SEPARATOR = ",";
+  // Maximum number of metadata values to read with one multi-get in search
+  private static final int SEARCH_BATCH_SIZE = 1000;
 
   // Fuzzy key is of form <row key, key mask>. We want to compare row keys.
   private static final Comparator<ImmutablePair<byte[], byte[]>> FUZZY_KEY_COMPARATOR =
@@ -513,63 +516,134 @@ public class MetadataDataset extends AbstractDataset {
    * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
    */
   public List<MetadataEntry> search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types) {
-    boolean includeAllTypes = types.isEmpty() || types.contains(MetadataSearchTargetType.ALL);
     List<MetadataEntry> results = new ArrayList<>();
-    for (String searchTerm : getSearchTerms(namespaceId, searchQuery)) {
-      Scanner scanner;
-      if (searchTerm.endsWith("*")) {
-        // if prefixed search get start and stop key
-        byte[] startKey = Bytes.toBytes(searchTerm.substring(0, searchTerm.lastIndexOf("*")));
-        byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
-        scanner = indexedTable.scanByIndex(Bytes.toBytes(INDEX_COLUMN), startKey, stopKey);
-      } else {
-        byte[] value = Bytes.toBytes(searchTerm);
-        scanner = indexedTable.readByIndex(Bytes.toBytes(INDEX_COLUMN), value);
-      }
-      try {
-        Row next;
-        while ((next = scanner.next()) != null) {
-          String rowValue = next.getString(INDEX_COLUMN);
-          if (rowValue == null) {
-            continue;
+    List<ImmutablePair<NamespacedEntityId, String>> hits = new ArrayList<>();
+    for (String queryTerm : getQueryTerms(searchQuery)) {
+      for (String searchTerm : getSearchTerms(namespaceId, queryTerm)) {
+        try (Scanner scanner = scanIndex(searchTerm)) {
+          Row next;
+          while ((next = scanner.next()) != null) {
+            ImmutablePair<NamespacedEntityId, String> hit = getSearchHit(next, types);
+            if (hit == null) {
+              continue;
+            }
+            hits.add(hit);
+            if (hits.size() >= SEARCH_BATCH_SIZE) {
+              addSearchResults(hits, results);
+            }
           }
+        }
+      }
+    }
+    addSearchResults(hits, results);
+    return results;
+  }
 
-          final byte[] rowKey = next.getRow();
-          String targetType = MdsKey.getTargetType(rowKey);
-
-          // Filter on target type if not set to include all types
-          if (!includeAllTypes &&
-            !types.contains(MetadataSearchTargetType.valueOfSerializedForm(targetType))) {
-            continue;
+  /**
+   * Searches entities that match the terms of the specified search query in the specified namespace and
+   * {@link NamespaceId#SYSTEM} for the specified {@link MetadataSearchTargetType}. Unlike
+   * {@link #search(String, String, Set)}, only the indexes are scanned and the metadata values are not read.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, same as {@link #search(String, String, Set)}
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @return for each term of the search query in order, the number of metadata entries that match the term for
+   *         each matching entity
+   */
+  public List<Map<NamespacedEntityId, Integer>> searchEntities(String namespaceId, String searchQuery,
+                                                              Set<MetadataSearchTargetType> types) {
+    List<Map<NamespacedEntityId, Integer>> results = new ArrayList<>();
+    for (String queryTerm : getQueryTerms(searchQuery)) {
+      Map<NamespacedEntityId, Integer> matches = new HashMap<>();
+      for (String searchTerm : getSearchTerms(namespaceId, queryTerm)) {
+        try (Scanner scanner = scanIndex(searchTerm)) {
+          Row next;
+          while ((next = scanner.next()) != null) {
+            ImmutablePair<NamespacedEntityId, String> hit = getSearchHit(next, types);
+            if (hit == null) {
+              continue;
+            }
+            Integer count = matches.get(hit.getFirst());
+            matches.put(hit.getFirst(), count == null ? 1 : count + 1);
           }
-
-          NamespacedEntityId targetId = MdsKey.getNamespacedIdFromKey(targetType, rowKey);
-          String key = MdsKey.getMetadataKey(targetType, rowKey);
-          MetadataEntry entry = getMetadata(targetId, key);
-          results.add(entry);
         }
-      } finally {
-        scanner.close();
       }
+      results.add(matches);
     }
     return results;
   }
 
   /**
-   * Prepares search terms from the specified search query by
+   * Returns a {@link Scanner} over the index rows matching the given search term.
+   */
+  private Scanner scanIndex(String searchTerm) {
+    if (searchTerm.endsWith("*")) {
+      // if prefixed search get start and stop key
+      byte[] startKey = Bytes.toBytes(searchTerm.substring(0, searchTerm.lastIndexOf("*")));
+      byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
+      return indexedTable.scanByIndex(Bytes.toBytes(INDEX_COLUMN), startKey, stopKey);
+    }
+    return indexedTable.readByIndex(Bytes.toBytes(INDEX_COLUMN), Bytes.toBytes(searchTerm));
+  }
+
+  /**
+   * Returns the entity and the metadata key of an index row,
+   * or {@code null} if the row is not a valid index of any of the given types.
+   */
+  @Nullable
+  private ImmutablePair<NamespacedEntityId, String> getSearchHit(Row row, Set<MetadataSearchTargetType> types) {
+    String rowValue = row.getString(INDEX_COLUMN);
+    if (rowValue == null) {
+      return null;
+    }
+
+    final byte[] rowKey = row.getRow();
+    String targetType = MdsKey.getTargetType(rowKey);
+
+    // Filter on target type if not set to include all types
+    boolean includeAllTypes = types.isEmpty() || types.contains(MetadataSearchTargetType.ALL);
+    if (!includeAllTypes && !types.contains(MetadataSearchTargetType.valueOfSerializedForm(targetType))) {
+      return null;
+    }
+
+    NamespacedEntityId targetId = MdsKey.getNamespacedIdFromKey(targetType, rowKey);
+    String key = MdsKey.getMetadataKey(targetType, rowKey);
+    return new ImmutablePair<>(targetId, key);
+  }
+
+  /**
+   * Reads the metadata values of the given search hits with one multi-get, adds them to the results and
+   * clears the hits. A {@code null} is added for a hit without value, same as {@link #getMetadata}.
+   */
+  private void addSearchResults(List<ImmutablePair<NamespacedEntityId, String>> hits, List<MetadataEntry> results) {
+    if (hits.isEmpty()) {
+      return;
+    }
+    List<Get> gets = new ArrayList<>(hits.size());
+    for (ImmutablePair<NamespacedEntityId, String> hit : hits) {
+      gets.add(new Get(MdsKey.getMDSValueKey(hit.getFirst(), hit.getSecond()).getKey(), Bytes.toBytes(VALUE_COLUMN)));
+    }
+    List<Row> rows = indexedTable.get(gets);
+    for (int i = 0; i < hits.size(); i++) {
+      byte[] value = rows.get(i).get(VALUE_COLUMN);
+      results.add(value == null ? null : new MetadataEntry(hits.get(i).getFirst(), hits.get(i).getSecond(),
+                                                           Bytes.toString(value)));
+    }
+    hits.clear();
+  }
+
+  /**
+   * Prepares query terms from the specified search query by
    * <ol>
    *   <li>Splitting on {@link #SPACE_SEPARATOR_PATTERN} and trimming</li>
    *   <li>Handling {@link #KEYVALUE_SEPARATOR}, so searches of the pattern key:value* can be supported</li>
-   *   <li>Prepending the result with the specified namespaceId and {@link NamespaceId#SYSTEM} so the search can
-   *   be restricted to entities in the specified namespace and {@link NamespaceId#SYSTEM}.</li>
-   * </ol>t
+   * </ol>
    *
-   * @param namespaceId the namespaceId to search in
    * @param searchQuery the user specified search query
-   * @return formatted search query which is namespaced
+   * @return the terms of the search query
    */
-  private Iterable<String> getSearchTerms(String namespaceId, String searchQuery) {
-    List<String> searchTerms = new ArrayList<>();
+  private static List<String> getQueryTerms(String searchQuery) {
+    List<String> queryTerms = new ArrayList<>();
     for (String term : Splitter.on(SPACE_SEPARATOR_PATTERN).omitEmptyStrings().trimResults().split(searchQuery)) {
       String formattedSearchTerm = term.toLowerCase();
       // if this is a key:value search remove  spaces around the separator too
@@ -578,12 +652,27 @@ public class MetadataDataset extends AbstractDataset {
         String[] split = formattedSearchTerm.split(KEYVALUE_SEPARATOR, 2);
         formattedSearchTerm = split[0].trim() + KEYVALUE_SEPARATOR + split[1].trim();
       }
-      searchTerms.add(namespaceId + KEYVALUE_SEPARATOR + formattedSearchTerm);
-      // for non-system namespaces, also add the system namespace, so entities from system namespace are surfaced
-      // in the search results as well
-      if (!NamespaceId.SYSTEM.getEntityName().equals(namespaceId)) {
-        searchTerms.add(NamespaceId.SYSTEM.getEntityName() + KEYVALUE_SEPARATOR + formattedSearchTerm);
-      }
+      queryTerms.add(formattedSearchTerm);
+    }
+    return queryTerms;
+  }
+
+  /**
+   * Prepares search terms for a query term by prepending it with the specified namespaceId and
+   * {@link NamespaceId#SYSTEM} so the search can be restricted to entities in the specified namespace and
+   * {@link NamespaceId#SYSTEM}.
+   *
+   * @param namespaceId the namespaceId to search in
+   * @param queryTerm a term of the search query as returned by {@link #getQueryTerms(String)}
+   * @return formatted search terms which are namespaced
+   */
+  private static List<String> getSearchTerms(String namespaceId, String queryTerm) {
+    List<String> searchTerms = new ArrayList<>(2);
+    searchTerms.add(namespaceId + KEYVALUE_SEPARATOR + queryTerm);
+    // for non-system namespaces, also add the system namespace, so entities from system namespace are surfaced
+    // in the search results as well
+    if (!NamespaceId.SYSTEM.getEntityName().equals(namespaceId)) {
+      searchTerms.add(NamespaceId.SYSTEM.getEntityName() + KEYVALUE_SEPARATOR + queryTerm);
     }
     return searchTerms;
   }
@@ -39,6 +39,7 @@ import org.apache.twill.api.RunId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -217,6 +218,32 @@ public class LineageDataset extends AbstractDataset {
                          filter);
   }
 
+  /**
+   * Fetch program-data access information for multiple datasets, streams and programs for a given period.
+   *
+   * @param entities datasets, streams or programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return access information of each of the given entities
+   */
+  public Map<NamespacedEntityId, Set<Relation>> getRelations(Collection<? extends NamespacedEntityId> entities,
+                                                             long start, long end, Predicate<Relation> filter) {
+    Map<NamespacedEntityId, Set<Relation>> relations = new HashMap<>();
+    for (NamespacedEntityId entity : entities) {
+      if (entity instanceof DatasetId) {
+        relations.put(entity, getRelations((DatasetId) entity, start, end, filter));
+      } else if (entity instanceof StreamId) {
+        relations.put(entity, getRelations((StreamId) entity, start, end, filter));
+      } else if (entity instanceof ProgramId) {
+        relations.put(entity, getRelations((ProgramId) entity, start, end, filter));
+      } else {
+        throw new IllegalArgumentException("Unsupported entity type for lineage " + entity);
+      }
+    }
+    return relations;
+  }
+
   /**
    * @return a set of access times (for program and data it accesses) associated with a program run.
    */
@@ -36,7 +36,9 @@ import org.apache.tephra.TransactionExecutor;
 import org.apache.tephra.TransactionExecutorFactory;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -205,6 +207,27 @@ public class LineageStore implements LineageStoreReader, LineageStoreWriter {
     });
   }
 
+  /**
+   * Fetch program-data access information for multiple datasets, streams and programs for a given period.
+   *
+   * @param entities datasets, streams or programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return access information of each of the given entities
+   */
+  @Override
+  public Map<NamespacedEntityId, Set<Relation>> getRelations(final Collection<? extends NamespacedEntityId> entities,
+                                                             final long start, final long end,
+                                                             final Predicate<Relation> filter) {
+    return execute(new TransactionExecutor.Function<LineageDataset, Map<NamespacedEntityId, Set<Relation>>>() {
+      @Override
+      public Map<NamespacedEntityId, Set<Relation>> apply(LineageDataset input) throws Exception {
+        return input.getRelations(entities, start, end, filter);
+      }
+    });
+  }
+
   /**
    * @return a set of access times (for program and data it accesses) associated with a program run.
    */
@@ -23,6 +23,8 @@ import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.proto.id.StreamId;
 import com.google.common.base.Predicate;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -71,4 +73,17 @@ public interface LineageStoreReader {
    */
   Set<Relation> getRelations(ProgramId program, long start, long end,
                              Predicate<Relation> filter);
+
+  /**
+   * Fetch program-data access information for multiple datasets, streams and programs for a given period.
+   * All of the entities are read in the same transaction.
+   *
+   * @param entities datasets, streams or programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return access information of each of the given entities
+   */
+  Map<NamespacedEntityId, Set<Relation>> getRelations(Collection<? extends NamespacedEntityId> entities,
+                                                      long start, long end, Predicate<Relation> filter);
 }
@@ -30,6 +30,7 @@ import co.cask.cdap.data2.metadata.dataset.MetadataEntry;
 import co.cask.cdap.data2.metadata.indexer.Indexer;
 import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.proto.audit.AuditType;
+import co.cask.cdap.proto.element.EntityType;
 import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.NamespacedEntityId;
@@ -37,9 +38,15 @@ import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import org.apache.tephra.TransactionExecutor;
@@ -411,6 +418,106 @@ public class DefaultMetadataStore implements MetadataStore {
     return addMetadataToResults(resultList, systemMetadata, userMetadata);
   }
 
+  @Override
+  public MetadataSearchPage searchMetadataRanked(final String namespaceId, final String searchQuery,
+                                                 final Set<MetadataSearchTargetType> types, boolean matchAllTerms,
+                                                 Predicate<NamespacedEntityId> filter, @Nullable String cursor,
+                                                 int limit) {
+    Preconditions.checkArgument(limit > 0, "Limit must be positive: %s", limit);
+    RankedResult after = cursor == null ? null : RankedResult.fromCursor(cursor);
+
+    // Find the entities matching each term in both scopes. Only the indexes are read.
+    TransactionExecutor.Function<MetadataDataset, List<Map<NamespacedEntityId, Integer>>> search =
+      new TransactionExecutor.Function<MetadataDataset, List<Map<NamespacedEntityId, Integer>>>() {
+        @Override
+        public List<Map<NamespacedEntityId, Integer>> apply(MetadataDataset input) throws Exception {
+          return input.searchEntities(namespaceId, searchQuery, types);
+        }
+      };
+    List<Map<NamespacedEntityId, Integer>> termMatches = execute(search, MetadataScope.USER);
+    List<Map<NamespacedEntityId, Integer>> systemTermMatches = execute(search, MetadataScope.SYSTEM);
+    for (int i = 0; i < termMatches.size(); i++) {
+      Map<NamespacedEntityId, Integer> matches = termMatches.get(i);
+      for (Map.Entry<NamespacedEntityId, Integer> entry : systemTermMatches.get(i).entrySet()) {
+        Integer count = matches.get(entry.getKey());
+        matches.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+      }
+    }
+
+    // Rank the entities that pass the filter
+    List<RankedResult> ranked = new ArrayList<>();
+    for (NamespacedEntityId entityId : getMatchingEntities(termMatches, matchAllTerms)) {
+      if (!filter.apply(entityId)) {
+        continue;
+      }
+      int terms = 0;
+      int entries = 0;
+      for (Map<NamespacedEntityId, Integer> matches : termMatches) {
+        Integer count = matches.get(entityId);
+        if (count != null) {
+          terms++;
+          entries += count;
+        }
+      }
+      ranked.add(new RankedResult(entityId, terms, entries));
+    }
+    Collections.sort(ranked);
+
+    // Find the page after the cursor
+    int start = 0;
+    if (after != null) {
+      int idx = Collections.binarySearch(ranked, after);
+      start = idx >= 0 ? idx + 1 : -idx - 1;
+    }
+    List<RankedResult> page = ranked.subList(start, start + Math.min(ranked.size() - start, limit));
+    String nextCursor = start + page.size() < ranked.size() ? page.get(page.size() - 1).toCursor() : null;
+
+    // Only fetch metadata for the entities in the page
+    List<Map.Entry<NamespacedEntityId, Integer>> results = new ArrayList<>(page.size());
+    for (RankedResult result : page) {
+      results.add(Maps.immutableEntry(result.entityId, result.terms));
+    }
+    Set<NamespacedEntityId> entityIds = new HashSet<>();
+    for (RankedResult result : page) {
+      entityIds.add(result.entityId);
+    }
+    Map<NamespacedEntityId, Metadata> systemMetadata = fetchMetadata(entityIds, MetadataScope.SYSTEM);
+    Map<NamespacedEntityId, Metadata> userMetadata = fetchMetadata(entityIds, MetadataScope.USER);
+    return new MetadataSearchPage(addMetadataToResults(results, systemMetadata, userMetadata),
+                                  ranked.size(), nextCursor);
+  }
+
+  /**
+   * Returns the entities that match any or all of the terms, given the entities matching each term.
+   */
+  private Set<NamespacedEntityId> getMatchingEntities(List<Map<NamespacedEntityId, Integer>> termMatches,
+                                                      boolean matchAllTerms) {
+    if (termMatches.isEmpty()) {
+      return Collections.emptySet();
+    }
+    if (!matchAllTerms) {
+      Set<NamespacedEntityId> result = new HashSet<>();
+      for (Map<NamespacedEntityId, Integer> matches : termMatches) {
+        result.addAll(matches.keySet());
+      }
+      return result;
+    }
+
+    // Intersect starting from the term with the fewest matches, so that the intersection stays small
+    List<Map<NamespacedEntityId, Integer>> sorted = new ArrayList<>(termMatches);
+    Collections.sort(sorted, new Comparator<Map<NamespacedEntityId, Integer>>() {
+      @Override
+      public int compare(Map<NamespacedEntityId, Integer> o1, Map<NamespacedEntityId, Integer> o2) {
+        return Integer.compare(o1.size(), o2.size());
+      }
+    });
+    Set<NamespacedEntityId> result = new HashSet<>(sorted.get(0).keySet());
+    for (int i = 1; i < sorted.size() && !result.isEmpty(); i++) {
+      result.retainAll(sorted.get(i).keySet());
+    }
+    return result;
+  }
+
   private Map<NamespacedEntityId, Metadata> fetchMetadata(final Set<NamespacedEntityId> namespacedEntityIds,
                                                           MetadataScope scope) {
     Set<Metadata> metadataSet =
@@ -565,4 +672,78 @@ public class DefaultMetadataStore implements MetadataStore {
     framework.addInstance(MetadataDataset.class.getName(), BUSINESS_METADATA_INSTANCE_ID, DatasetProperties.EMPTY);
     framework.addInstance(MetadataDataset.class.getName(), SYSTEM_METADATA_INSTANCE_ID, DatasetProperties.EMPTY);
   }
+
+  /**
+   * An entity matched by a ranked search, ordered by rank. The order is total, so that a result can be used as
+   * the cursor of the following page.
+   */
+  private static final class RankedResult implements Comparable<RankedResult> {
+
+    // Type weights, for ranking the entities that users search for the most first
+    private static final Map<EntityType, Integer> TYPE_WEIGHTS = ImmutableMap.<EntityType, Integer>builder()
+      .put(EntityType.APPLICATION, 3)
+      .put(EntityType.DATASET, 3)
+      .put(EntityType.STREAM, 3)
+      .put(EntityType.PROGRAM, 2)
+      .put(EntityType.ARTIFACT, 1)
+      .put(EntityType.STREAM_VIEW, 1)
+      .build();
+    private static final Splitter CURSOR_SPLITTER = Splitter.on(':').limit(4);
+    private static final Joiner CURSOR_JOINER = Joiner.on(':');
+
+    private final NamespacedEntityId entityId;
+    private final String entityName;
+    private final int terms;
+    private final int entries;
+    private final int typeWeight;
+
+    RankedResult(NamespacedEntityId entityId, int terms, int entries) {
+      this(entityId, entityId.toString(), terms, entries,
+           TYPE_WEIGHTS.containsKey(entityId.getEntityType()) ? TYPE_WEIGHTS.get(entityId.getEntityType()) : 0);
+    }
+
+    private RankedResult(@Nullable NamespacedEntityId entityId, String entityName,
+                         int terms, int entries, int typeWeight) {
+      this.entityId = entityId;
+      this.entityName = entityName;
+      this.terms = terms;
+      this.entries = entries;
+      this.typeWeight = typeWeight;
+    }
+
+    /**
+     * Decodes a result from a cursor as returned by {@link #toCursor()}. Only the ordering fields are decoded.
+     */
+    static RankedResult fromCursor(String cursor) {
+      List<String> parts = ImmutableList.copyOf(CURSOR_SPLITTER.split(cursor));
+      try {
+        if (parts.size() == 4) {
+          return new RankedResult(null, parts.get(3), Integer.parseInt(parts.get(0)),
+                                  Integer.parseInt(parts.get(1)), Integer.parseInt(parts.get(2)));
+        }
+      } catch (NumberFormatException e) {
+        // Fall through to throw below
+      }
+      throw new IllegalArgumentException("Invalid search cursor: " + cursor);
+    }
+
+    String toCursor() {
+      return CURSOR_JOINER.join(terms, entries, typeWeight, entityName);
+    }
+
+    @Override
+    public int compareTo(RankedResult other) {
+      // Descending on the scores, then ascending on the name
+      if (terms != other.terms) {
+        return Integer.compare(other.terms, terms);
+      }
+      if (entries != other.entries) {
+        return Integer.compare(other.entries, entries);
+      }
+      if (typeWeight != other.typeWeight) {
+        return Integer.compare(other.typeWeight, typeWeight);
+      }
+      return entityName.compareTo(other.entityName);
+    }
+  }
 }
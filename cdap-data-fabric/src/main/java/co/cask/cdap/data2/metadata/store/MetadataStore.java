@@ -23,6 +23,7 @@ import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import com.google.common.base.Predicate;
 
 import java.util.Map;
 import java.util.Set;
@@ -197,6 +198,26 @@ public interface MetadataStore {
   Set<MetadataSearchResultRecord> searchMetadataOnType(MetadataScope scope, String namespaceId, String searchQuery,
                                                        Set<MetadataSearchTargetType> types);
 
+  /**
+   * Search the Metadata Dataset for the specified target types in both {@link MetadataScope#USER} and
+   * {@link MetadataScope#SYSTEM}, and returns one page of the results ranked by relevance. Entities that match
+   * more terms of the search query rank higher, followed by the ones with more matching metadata entries and
+   * then by the type of the entity.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value]
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @param matchAllTerms {@code true} to only return entities that match all terms of the search query,
+   *                      {@code false} to return entities that match any of them
+   * @param filter the filter that a result has to pass to be returned
+   * @param cursor the cursor returned with the previous page, or {@code null} for the first page
+   * @param limit the maximum number of results in the page
+   * @throws IllegalArgumentException if the cursor is not valid
+   */
+  MetadataSearchPage searchMetadataRanked(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                                          boolean matchAllTerms, Predicate<NamespacedEntityId> filter,
+                                          @Nullable String cursor, int limit);
+
   /**
    * Returns the snapshot of the metadata for entities on or before the given time in both {@link MetadataScope#USER}
    * and {@link MetadataScope#SYSTEM}.
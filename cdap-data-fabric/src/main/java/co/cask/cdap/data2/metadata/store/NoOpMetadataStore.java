@@ -21,11 +21,13 @@ import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
 
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MetadataStore} used in memory mode.
@@ -137,6 +139,14 @@ public class NoOpMetadataStore implements MetadataStore {
     return Collections.emptySet();
   }
 
+  @Override
+  public MetadataSearchPage searchMetadataRanked(String namespaceId, String searchQuery,
+                                                 Set<MetadataSearchTargetType> types, boolean matchAllTerms,
+                                                 Predicate<NamespacedEntityId> filter, @Nullable String cursor,
+                                                 int limit) {
+    return new MetadataSearchPage(Collections.<MetadataSearchResultRecord>emptySet(), 0, null);
+  }
+
   @Override
   public Set<MetadataRecord> getSnapshotBeforeTime(Set<NamespacedEntityId> namespacedEntityIds, long timeMillis) {
     return ImmutableSet.<MetadataRecord>builder()
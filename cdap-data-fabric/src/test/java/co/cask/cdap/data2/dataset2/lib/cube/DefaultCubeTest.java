@@ -16,14 +16,23 @@
 
 package co.cask.cdap.data2.dataset2.lib.cube;
 
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -48,4 +57,44 @@ public class DefaultCubeTest extends AbstractCubeTest {
 
     return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
   }
+
+  @Test
+  public void testParallelQuery() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+    Cube cube = getCube("parallelQueryCube", new int[] {1, 60}, ImmutableMap.of("agg", agg));
+
+    // write facts spanning many row time bases
+    for (int i = 0; i < 5000; i++) {
+      long ts = i * 7;
+      writeInc(cube, "metric1", ts, i, "value" + (i % 3), "value" + (i % 5));
+      writeGauge(cube, "metric2", ts, i % 11, "value" + (i % 3), "value" + (i % 5));
+    }
+
+    for (AggregationFunction function : AggregationFunction.values()) {
+      for (int resolution : new int[] {1, 60}) {
+        Collection<TimeSeries> expected = cube.query(buildQuery(function, resolution, 1));
+        Assert.assertFalse(expected.isEmpty());
+        for (int parallelism : new int[] {2, 3, 16}) {
+          Collection<TimeSeries> result = cube.query(buildQuery(function, resolution, parallelism));
+          Assert.assertEquals(ImmutableSet.copyOf(expected), ImmutableSet.copyOf(result));
+        }
+      }
+    }
+  }
+
+  private CubeQuery buildQuery(AggregationFunction function, int resolution, int parallelism) {
+    return CubeQuery.builder()
+      .select()
+        .measurement("metric1", function)
+        .measurement("metric2", function)
+      .from().resolution(resolution, TimeUnit.SECONDS)
+      .where()
+        .dimension("dim2", "value1")
+        .timeRange(0, 35000)
+      .groupBy()
+        .dimension("dim1")
+      .limit(Integer.MAX_VALUE)
+      .parallelism(parallelism)
+      .build();
+  }
 }
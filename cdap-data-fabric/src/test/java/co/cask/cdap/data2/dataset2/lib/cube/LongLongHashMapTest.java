@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Unit-test for {@link LongLongHashMap}.
+ */
+public class LongLongHashMapTest {
+
+  @Test
+  public void testAggregate() {
+    LongLongHashMap map = new LongLongHashMap();
+    Assert.assertEquals(0, map.size());
+    Assert.assertEquals(-1L, map.get(10L, -1L));
+
+    map.add(10L, 5L);
+    map.add(10L, 7L);
+    map.max(20L, 3L);
+    map.max(20L, 1L);
+    map.max(20L, 8L);
+    map.min(30L, 3L);
+    map.min(30L, 5L);
+    map.min(30L, -2L);
+    map.put(40L, 4L);
+    map.put(40L, 2L);
+
+    Assert.assertEquals(4, map.size());
+    Assert.assertEquals(12L, map.get(10L, -1L));
+    Assert.assertEquals(8L, map.get(20L, -1L));
+    Assert.assertEquals(-2L, map.get(30L, -1L));
+    Assert.assertEquals(2L, map.get(40L, -1L));
+    Assert.assertArrayEquals(new long[] { 10L, 20L, 30L, 40L }, map.sortedKeys());
+  }
+
+  @Test
+  public void testGrow() {
+    LongLongHashMap map = new LongLongHashMap();
+    Map<Long, Long> expected = new HashMap<>();
+    Random random = new Random();
+    for (int i = 0; i < 100000; i++) {
+      // timestamps are typically multiples of the resolution, also include negative and colliding keys
+      long key = random.nextBoolean() ? random.nextInt(50000) * 60L : random.nextLong();
+      long value = random.nextInt(1000);
+      map.add(key, value);
+      Long current = expected.get(key);
+      expected.put(key, current == null ? value : current + value);
+    }
+
+    Assert.assertEquals(expected.size(), map.size());
+    long[] keys = map.sortedKeys();
+    Assert.assertEquals(expected.size(), keys.length);
+    int i = 0;
+    for (Map.Entry<Long, Long> entry : new TreeMap<>(expected).entrySet()) {
+      Assert.assertEquals(entry.getKey().longValue(), keys[i++]);
+      Assert.assertEquals(entry.getValue().longValue(), map.get(entry.getKey(), -1L));
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Get;
+import co.cask.cdap.api.dataset.table.Put;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import com.google.common.collect.Lists;
+import org.apache.tephra.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the read paths of {@link BufferingTable}, using {@link InMemoryTable} as the persisted store.
+ * Run the {@link #main(String[])} method to get the throughput together with the allocation rate per call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BufferingTableBenchmark {
+
+  private static final String TABLE_NAME = "benchmark";
+  private static final byte[] C1 = Bytes.toBytes("c1");
+  private static final byte[] C2 = Bytes.toBytes("c2");
+  private static final byte[] C3 = Bytes.toBytes("c3");
+
+  @Param({ "1000" })
+  private int rows;
+
+  // Percentage of the rows that have buffered changes in the transaction being benchmarked
+  @Param({ "0", "10" })
+  private int bufferedPercent;
+
+  private InMemoryTable table;
+  private List<Get> gets;
+  private byte[][] columns;
+  private long nextTxId;
+  private int nextRow;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    InMemoryTableService.create(TABLE_NAME);
+    table = new InMemoryTable(TABLE_NAME);
+
+    startTx();
+    for (int i = 0; i < rows; i++) {
+      table.put(new Put(getRow(i)).add(C1, i).add(C2, "value" + i).add(C3, (long) i));
+    }
+    table.commitTx();
+    table.postTxCommit();
+
+    gets = Lists.newArrayListWithCapacity(rows);
+    for (int i = 0; i < rows; i++) {
+      gets.add(new Get(getRow(i)).add(C1).add(C2));
+    }
+    columns = new byte[][] { C1, C2 };
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() throws Exception {
+    startTx();
+    if (bufferedPercent > 0) {
+      int step = 100 / bufferedPercent;
+      for (int i = 0; i < rows; i += step) {
+        table.put(getRow(i), C2, Bytes.toBytes("buffered" + i));
+      }
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void endIteration() throws Exception {
+    table.rollbackTx();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    table.close();
+    InMemoryTableService.drop(TABLE_NAME);
+  }
+
+  @Benchmark
+  public Row get() {
+    nextRow = (nextRow + 1) % rows;
+    return table.get(getRow(nextRow), columns);
+  }
+
+  @Benchmark
+  public List<Row> multiGet() {
+    return table.get(gets);
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) {
+    try (Scanner scanner = table.scan(null, null)) {
+      Row row = scanner.next();
+      while (row != null) {
+        blackhole.consume(row);
+        row = scanner.next();
+      }
+    }
+  }
+
+  private void startTx() {
+    long txId = ++nextTxId;
+    table.startTx(new Transaction(txId - 1, txId, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS));
+  }
+
+  private static byte[] getRow(int i) {
+    return Bytes.toBytes(String.format("row%06d", i));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(BufferingTableBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
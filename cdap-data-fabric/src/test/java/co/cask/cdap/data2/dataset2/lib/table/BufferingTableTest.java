@@ -24,6 +24,7 @@ import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.TableAssert;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -501,6 +502,53 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testBufferSpill() throws Exception {
+    // a limit small enough to have every row spilled when the next one is written
+    DatasetProperties props = DatasetProperties.builder()
+      .add(Constants.Dataset.TABLE_BUFFER_SIZE_LIMIT, "8")
+      .build();
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE, props);
+    admin.create();
+    try {
+      BufferingTable table = getTable(CONTEXT1, MY_TABLE, props);
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      table.put(R1, a(C1, C2), a(V1, V2));
+      table.put(R2, a(C1), a(V1));
+      table.delete(R1, a(C2));
+      table.put(R3, C1, V3);
+
+      // spilled changes should have been persisted, but are still visible to the tx only
+      TableAssert.assertScan(a(R1, R2, R3), aa(a(C1, V1), a(C1, V1), a(C1, V3)), table.scan(R1, R4));
+      Assert.assertEquals(3, table.getTxChanges().size());
+
+      // pretend there was a write conflict and rollback changes
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx1);
+
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+      TableAssert.assertScan(new byte[0][], new byte[0][][], table.scan(R1, R4));
+      table.put(R1, a(C1, C2), a(V1, V2));
+      table.put(R2, a(C1), a(V1));
+      table.put(R1, a(C2), a(V3));
+      Assert.assertTrue(txClient.canCommit(tx2, table.getTxChanges()));
+      Assert.assertTrue(table.commitTx());
+      Assert.assertTrue(txClient.commit(tx2));
+      table.postTxCommit();
+
+      // all changes should be visible after commit
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      TableAssert.assertScan(a(R1, R2), aa(a(C1, V1, C2, V3), a(C1, V1)), table.scan(R1, R4));
+      Assert.assertTrue(table.commitTx());
+      Assert.assertTrue(txClient.commit(tx3));
+    } finally {
+      admin.drop();
+    }
+  }
+
   private void verify123(BufferingTable table) throws Exception {
     byte[] row = new byte[] {1};
     byte[] col = new byte[] {2};
@@ -1152,6 +1152,52 @@ public abstract class TableTest<T extends Table> {
     }
   }
 
+  @Test
+  public void testMultiGetWithBufferedChanges() throws Exception {
+    String testMultiGet = "testMultiGetBuffered";
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, testMultiGet);
+    admin.create();
+    try {
+      Transaction tx = txClient.startShort();
+      Table table = getTable(CONTEXT1, testMultiGet);
+      ((TransactionAware) table).startTx(tx);
+      table.put(new Put(R1).add(C1, V1).add(C2, V2));
+      table.put(new Put(R2).add(C1, V1));
+      table.put(new Put(R3).add(C1, V1).add(C2, V2));
+      Assert.assertTrue(txClient.canCommit(tx, ((TransactionAware) table).getTxChanges()));
+      Assert.assertTrue(((TransactionAware) table).commitTx());
+      Assert.assertTrue(txClient.commit(tx));
+
+      // multi-get in a tx that has buffered changes for some of the rows
+      Transaction tx2 = txClient.startShort();
+      ((TransactionAware) table).startTx(tx2);
+      table.put(R1, C2, V3);
+      table.delete(R2, C1);
+      List<Row> results = table.get(ImmutableList.of(new Get(R1), new Get(R2), new Get(R3).add(C2), new Get(R4)));
+      Assert.assertEquals(4, results.size());
+
+      Assert.assertArrayEquals(R1, results.get(0).getRow());
+      Assert.assertEquals(2, results.get(0).getColumns().size());
+      Assert.assertArrayEquals(V1, results.get(0).get(C1));
+      Assert.assertArrayEquals(V3, results.get(0).get(C2));
+
+      Assert.assertArrayEquals(R2, results.get(1).getRow());
+      Assert.assertTrue(results.get(1).isEmpty());
+
+      Assert.assertArrayEquals(R3, results.get(2).getRow());
+      Assert.assertEquals(1, results.get(2).getColumns().size());
+      Assert.assertArrayEquals(V2, results.get(2).get(C2));
+
+      Assert.assertArrayEquals(R4, results.get(3).getRow());
+      Assert.assertTrue(results.get(3).isEmpty());
+
+      Assert.assertTrue(((TransactionAware) table).rollbackTx());
+      txClient.abort(tx2);
+    } finally {
+      admin.drop();
+    }
+  }
+
   @Test
   public void testScanAndDelete() throws Exception {
     DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
@@ -1791,6 +1837,11 @@ public abstract class TableTest<T extends Table> {
       public void gauge(String metricName, long value) {
         metrics.put(metricName, value);
       }
+
+      @Override
+      public void distribution(String metricName, long value) {
+        // no-op
+      }
     });
 
     // Note that we don't need to finish tx for metrics to be reported
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
@@ -31,6 +32,7 @@ import co.cask.cdap.data2.dataset2.lib.table.BufferingTableTest;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -40,6 +42,17 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * test for LevelDB tables.
@@ -92,6 +105,111 @@ public class LevelDBTableTest extends BufferingTableTest<LevelDBTable> {
     return false;
   }
 
+  @Test
+  public void testConcurrentIncrementAndSwap() throws Exception {
+    String tableName = "concurrentIncrement";
+    service.ensureTableExists(tableName);
+    final LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+
+    final int threads = 8;
+    final int iterations = 200;
+    final int rows = 5;
+    final byte[] counter = Bytes.toBytes("c");
+    final byte[] swapped = Bytes.toBytes("s");
+    final byte[] swapRow = Bytes.toBytes("swap");
+    final AtomicLongArray expected = new AtomicLongArray(rows);
+    Assert.assertTrue(core.swap(swapRow, swapped, null, Bytes.toBytes(0L)));
+
+    // All threads increment the same rows, both row by row and in batches of adjacent rows,
+    // and do compare and swap on the same cell
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        final int threadId = i;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            barrier.await();
+            for (int j = 0; j < iterations; j++) {
+              int row = (threadId + j) % rows;
+              core.increment(Bytes.toBytes("row" + row), ImmutableMap.of(counter, 1L));
+              expected.incrementAndGet(row);
+
+              int nextRow = (row + 1) % rows;
+              NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+              updates.put(Bytes.toBytes("row" + row), singleColumn(counter, 1L));
+              updates.put(Bytes.toBytes("row" + nextRow), singleColumn(counter, 2L));
+              core.increment(updates);
+              expected.addAndGet(row, 1L);
+              expected.addAndGet(nextRow, 2L);
+
+              boolean success = false;
+              while (!success) {
+                byte[] value = core.getRow(swapRow, new byte[][] { swapped }, null, null, -1, null).get(swapped);
+                success = core.swap(swapRow, swapped, value, Bytes.toBytes(Bytes.toLong(value) + 1));
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int i = 0; i < rows; i++) {
+      Assert.assertEquals(expected.get(i), getLong(core, Bytes.toBytes("row" + i), counter));
+    }
+    Assert.assertEquals((long) threads * iterations, getLong(core, swapRow, swapped));
+  }
+
+  @Test
+  public void testMultiRowIncrement() throws Exception {
+    String tableName = "multiRowIncrement";
+    service.ensureTableExists(tableName);
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+
+    byte[] colX = Bytes.toBytes("x");
+    byte[] colY = Bytes.toBytes("y");
+    core.increment(Bytes.toBytes("b"), ImmutableMap.of(colX, 5L));
+    core.increment(Bytes.toBytes("d"), ImmutableMap.of(colY, 7L));
+
+    // Increment rows that exist, with existing and new columns, and rows that don't exist, interleaved
+    NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    updates.put(Bytes.toBytes("a"), singleColumn(colX, 1L));
+    updates.put(Bytes.toBytes("b"), singleColumn(colX, 2L));
+    updates.get(Bytes.toBytes("b")).put(colY, 3L);
+    updates.put(Bytes.toBytes("c"), singleColumn(colY, 4L));
+    updates.put(Bytes.toBytes("d"), singleColumn(colY, 5L));
+    updates.put(Bytes.toBytes("e"), singleColumn(colX, 6L));
+    core.increment(updates);
+
+    Assert.assertEquals(1L, getLong(core, Bytes.toBytes("a"), colX));
+    Assert.assertEquals(7L, getLong(core, Bytes.toBytes("b"), colX));
+    Assert.assertEquals(3L, getLong(core, Bytes.toBytes("b"), colY));
+    Assert.assertEquals(4L, getLong(core, Bytes.toBytes("c"), colY));
+    Assert.assertEquals(12L, getLong(core, Bytes.toBytes("d"), colY));
+    Assert.assertEquals(6L, getLong(core, Bytes.toBytes("e"), colX));
+    Assert.assertNull(core.getRow(Bytes.toBytes("c"), new byte[][] { colX }, null, null, -1, null).get(colX));
+  }
+
+  private static NavigableMap<byte[], Long> singleColumn(byte[] column, long value) {
+    NavigableMap<byte[], Long> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    columns.put(column, value);
+    return columns;
+  }
+
+  private static long getLong(LevelDBTableCore core, byte[] row, byte[] column) throws IOException {
+    byte[] value = core.getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+    Assert.assertNotNull(value);
+    return Bytes.toLong(value);
+  }
+
   @Test
   public void testTablesSurviveAcrossRestart() throws Exception {
     // todo make this test run for hbase, too - requires refactoring of their injection
@@ -562,6 +562,55 @@ public class FactTableTest {
     Assert.assertEquals(3, splitsWithRows.size());
   }
 
+  @Test
+  public void testSplitScan() throws Exception {
+    InMemoryTableService.create("SplitScanEntityTable");
+    InMemoryTableService.create("SplitScanDataTable");
+    int resolution = 1;
+    int rollTimebaseInterval = 100;
+
+    FactTable table = new FactTable(new InMemoryMetricsTable("SplitScanDataTable"),
+                                    new EntityTable(new InMemoryMetricsTable("SplitScanEntityTable")),
+                                    resolution, rollTimebaseInterval);
+
+    long sum = 0;
+    for (int i = 10; i < 1000; i += 7) {
+      writeInc(table, "metric1", i, i, "dim1", "value" + (i % 3));
+      sum += i;
+    }
+
+    FactScan scan = new FactScan(10, 999, "metric1", dimValues("dim1", null));
+    // should be a single scan if covering a single row time base
+    Assert.assertEquals(1, table.splitScan(new FactScan(110, 199, "metric1", dimValues("dim1", null)), 4).size());
+    Assert.assertEquals(1, table.splitScan(scan, 1).size());
+
+    // 10 row time bases split into 4 scans of at most 3 time bases each
+    List<FactScan> scans = table.splitScan(scan, 4);
+    Assert.assertEquals(4, scans.size());
+    long[][] expectedRanges = new long[][] { {10, 299}, {300, 599}, {600, 899}, {900, 999} };
+    long scannedSum = 0;
+    for (int i = 0; i < scans.size(); i++) {
+      FactScan split = scans.get(i);
+      Assert.assertEquals(expectedRanges[i][0], split.getStartTs());
+      Assert.assertEquals(expectedRanges[i][1], split.getEndTs());
+
+      FactScanner scanner = table.scan(split);
+      try {
+        while (scanner.hasNext()) {
+          for (TimeValue timeValue : scanner.next()) {
+            Assert.assertTrue(timeValue.getTimestamp() >= split.getStartTs());
+            Assert.assertTrue(timeValue.getTimestamp() <= split.getEndTs());
+            scannedSum += timeValue.getValue();
+          }
+        }
+      } finally {
+        scanner.close();
+      }
+    }
+    // every fact should be scanned exactly once
+    Assert.assertEquals(sum, scannedSum);
+  }
+
   private List<TimeValue> timeValues(long ts, int resolution, long... values) {
     List<TimeValue> timeValues = Lists.newArrayList();
     for (int i = 0; i < values.length; i++) {
@@ -793,6 +793,41 @@ public class MetadataDatasetTest {
     });
   }
 
+  @Test
+  public void testSearchEntities() throws Exception {
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.addTags(flow1, "tag1", "tag2");
+        dataset.setProperty(flow1, "key1", "tag1");
+        dataset.addTags(app1, "tag1");
+        dataset.addTags(appNs2, "tag1");
+      }
+    });
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        // Number of matching entries for each term, in the order of the terms in the query
+        Set<MetadataSearchTargetType> allTypes = Collections.emptySet();
+        List<Map<NamespacedEntityId, Integer>> expected = ImmutableList.<Map<NamespacedEntityId, Integer>>of(
+          ImmutableMap.<NamespacedEntityId, Integer>of(flow1, 2, app1, 1),
+          ImmutableMap.<NamespacedEntityId, Integer>of(flow1, 1),
+          ImmutableMap.<NamespacedEntityId, Integer>of(flow1, 1),
+          ImmutableMap.<NamespacedEntityId, Integer>of()
+        );
+        Assert.assertEquals(expected, dataset.searchEntities("ns1", "tag1 tag2 key1:tag1 tag3", allTypes));
+
+        // Prefix search also matches the key:value indexes of the tags
+        expected = ImmutableList.<Map<NamespacedEntityId, Integer>>of(
+          ImmutableMap.<NamespacedEntityId, Integer>of(app1, 2)
+        );
+        Assert.assertEquals(expected, dataset.searchEntities("ns1", "tag*",
+                                                             ImmutableSet.of(MetadataSearchTargetType.APP)));
+      }
+    });
+  }
+
   @Test
   public void testDelete() throws Exception {
     txnl.execute(new TransactionExecutor.Subroutine() {
@@ -29,6 +29,7 @@ import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.proto.id.StreamId;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TransactionExecutor;
@@ -164,6 +165,22 @@ public class LineageDatasetTest {
           lineageDataset.getRelations(program2, 0, 100000, Predicates.<Relation>alwaysTrue())
         );
 
+        // Multiple entities of different types
+        Assert.assertEquals(
+          ImmutableMap.of(
+            datasetInstance1,
+            ImmutableSet.of(new Relation(datasetInstance1, program1, AccessType.READ, runId1,
+                                         ImmutableSet.of(flowlet1))),
+            stream1,
+            ImmutableSet.of(new Relation(stream1, program2, AccessType.READ, runId2)),
+            program3,
+            ImmutableSet.of(new Relation(datasetInstance2, program3, AccessType.READ_WRITE, runId4),
+                            new Relation(stream2, program3, AccessType.UNKNOWN, runId4))
+          ),
+          lineageDataset.getRelations(ImmutableList.of(datasetInstance1, stream1, program3), 0, 100000,
+                                      Predicates.<Relation>alwaysTrue())
+        );
+
         // Reduced time range
         Assert.assertEquals(
           ImmutableSet.of(new Relation(datasetInstance2, program2, AccessType.WRITE, runId2),
@@ -38,9 +38,11 @@ import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.metadata.Metadata;
 import co.cask.cdap.proto.metadata.MetadataScope;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
+import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -313,11 +315,82 @@ public class MetadataStoreTest {
     Assert.assertTrue(actual.containsAll(expected));
   }
 
+  @Test
+  public void testRankedSearch() throws Exception {
+    ApplicationId app1 = new ApplicationId("rank", "app1");
+    DatasetId dataset1 = new DatasetId("rank", "ds1");
+    ProgramId flow1 = new ProgramId("rank", "app1", ProgramType.FLOW, "flow1");
+    StreamId stream1 = new StreamId("rank", "s1");
+
+    store.addTags(MetadataScope.USER, app1, "alpha", "beta");
+    store.addTags(MetadataScope.USER, dataset1, "alpha", "beta");
+    store.setProperties(MetadataScope.SYSTEM, dataset1, ImmutableMap.of("key", "alpha"));
+    store.addTags(MetadataScope.USER, flow1, "alpha");
+    store.addTags(MetadataScope.USER, stream1, "beta");
+
+    // Ranked by number of terms matched, then by number of entries matched, then by entity type
+    Set<MetadataSearchTargetType> allTypes = Collections.emptySet();
+    MetadataSearchPage page = store.searchMetadataRanked("rank", "alpha beta", allTypes, false,
+                                                         Predicates.<NamespacedEntityId>alwaysTrue(), null, 2);
+    Assert.assertEquals(4, page.getTotal());
+    Assert.assertEquals(ImmutableList.of(dataset1, app1), getEntityIds(page));
+    Assert.assertNotNull(page.getCursor());
+
+    page = store.searchMetadataRanked("rank", "alpha beta", allTypes, false,
+                                      Predicates.<NamespacedEntityId>alwaysTrue(), page.getCursor(), 2);
+    Assert.assertEquals(4, page.getTotal());
+    Assert.assertEquals(ImmutableList.of(stream1, flow1), getEntityIds(page));
+    Assert.assertNull(page.getCursor());
+
+    // Metadata of both scopes should be in the results
+    page = store.searchMetadataRanked("rank", "alpha", allTypes, false,
+                                      Predicates.<NamespacedEntityId>alwaysTrue(), null, 1);
+    Assert.assertEquals(3, page.getTotal());
+    Assert.assertEquals(
+      ImmutableMap.of(MetadataScope.USER, new Metadata(EMPTY_PROPERTIES, ImmutableSet.of("alpha", "beta")),
+                      MetadataScope.SYSTEM, new Metadata(ImmutableMap.of("key", "alpha"), EMPTY_TAGS)),
+      page.getResults().iterator().next().getMetadata());
+
+    // Only entities matching all terms
+    page = store.searchMetadataRanked("rank", "alpha beta", allTypes, true,
+                                      Predicates.<NamespacedEntityId>alwaysTrue(), null, 10);
+    Assert.assertEquals(2, page.getTotal());
+    Assert.assertEquals(ImmutableList.of(dataset1, app1), getEntityIds(page));
+    Assert.assertNull(page.getCursor());
+
+    // Filtered entities should not be counted
+    page = store.searchMetadataRanked("rank", "alpha beta", allTypes, false,
+                                      Predicates.not(Predicates.<NamespacedEntityId>equalTo(dataset1)), null, 2);
+    Assert.assertEquals(3, page.getTotal());
+    Assert.assertEquals(ImmutableList.of(app1, stream1), getEntityIds(page));
+
+    // Target types are applied
+    page = store.searchMetadataRanked("rank", "alpha beta", ImmutableSet.of(MetadataSearchTargetType.PROGRAM), false,
+                                      Predicates.<NamespacedEntityId>alwaysTrue(), null, 10);
+    Assert.assertEquals(ImmutableList.of(flow1), getEntityIds(page));
+
+    try {
+      store.searchMetadataRanked("rank", "alpha beta", allTypes, false,
+                                 Predicates.<NamespacedEntityId>alwaysTrue(), "invalid", 2);
+      Assert.fail("Expected invalid cursor to fail the search");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   @AfterClass
   public static void teardown() {
     txManager.stopAndWait();
   }
 
+  private List<NamespacedEntityId> getEntityIds(MetadataSearchPage page) {
+    List<NamespacedEntityId> entityIds = new ArrayList<>();
+    for (MetadataSearchResultRecord result : page.getResults()) {
+      entityIds.add(result.getEntityId());
+    }
+    return entityIds;
+  }
+
   private void generateMetadataUpdates() {
     store.addTags(MetadataScope.USER, dataset, datasetTags.iterator().next());
     store.setProperties(MetadataScope.USER, app, appProperties);
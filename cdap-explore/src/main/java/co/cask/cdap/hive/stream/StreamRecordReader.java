@@ -20,6 +20,7 @@ import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.cdap.data.stream.PositionStreamEvent;
 import co.cask.cdap.data.stream.StreamDataFileReader;
+import co.cask.cdap.data.stream.StreamIndexInputSupplier;
 import co.cask.cdap.data.stream.TimeRangeReadFilter;
 import co.cask.cdap.hive.context.ContextManager;
 import co.cask.cdap.proto.id.StreamId;
@@ -141,7 +142,7 @@ final class StreamRecordReader implements RecordReader<Void, ObjectWritable> {
   private StreamDataFileReader createReader(FileSystem fs, StreamInputSplit inputSplit) throws IOException {
     StreamDataFileReader reader = StreamDataFileReader.createWithOffset(
       Locations.newInputSupplier(fs, inputSplit.getEventPath()),
-      inputSplit.getIndexPath() == null ? null : Locations.newInputSupplier(fs, inputSplit.getIndexPath()),
+      inputSplit.getIndexPath() == null ? null : StreamIndexInputSupplier.create(fs, inputSplit.getIndexPath()),
       inputSplit.getStart());
     try {
       reader.initialize();
@@ -16,14 +16,20 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
+import co.cask.cdap.gateway.router.handlers.BackendConnectionPool;
 import co.cask.cdap.gateway.router.handlers.HttpRequestHandler;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
 import co.cask.cdap.gateway.router.handlers.IdleEventProcessor;
+import co.cask.cdap.gateway.router.handlers.InboundIdleEventProcessor;
 import co.cask.cdap.gateway.router.handlers.SecurityAuthenticationHttpHandler;
+import co.cask.cdap.proto.Id;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.cdap.security.tools.SSLHandlerFactory;
@@ -99,11 +105,14 @@ public class NettyRouter extends AbstractIdleService {
   private final boolean sslEnabled;
   private final SSLHandlerFactory sslHandlerFactory;
   private final int connectionTimeout;
+  private final int maxIdleConnections;
 
   private Timer timer;
   private ServerBootstrap serverBootstrap;
   private ClientBootstrap clientBootstrap;
+  private BackendConnectionPool connectionPool;
   private DiscoveryServiceClient discoveryServiceClient;
+  private MetricsCollectionService metricsCollectionService;
 
   @Inject
   public NettyRouter(CConfiguration cConf, SConfiguration sConf, @Named(Constants.Router.ADDRESS) InetAddress hostname,
@@ -155,10 +164,20 @@ public class NettyRouter extends AbstractIdleService {
       this.sslHandlerFactory = null;
     }
     this.connectionTimeout = cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS);
+    this.maxIdleConnections = cConf.getInt(Constants.Router.BACKEND_POOL_MAX_IDLE_CONNECTIONS);
     LOG.info("Using connection timeout: {}", connectionTimeout);
     LOG.info("Service to Port Mapping - {}", this.serviceToPortMap);
   }
 
+  /**
+   * Sets the {@link MetricsCollectionService} for emitting the backend connection pool metrics.
+   */
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsCollectionService = metricsCollectionService;
+  }
+
   @Override
   protected void startUp() throws Exception {
     ChannelUpstreamHandler connectionTracker = new SimpleChannelUpstreamHandler() {
@@ -250,6 +269,8 @@ public class NettyRouter extends AbstractIdleService {
             pipeline.addLast("ssl", sslHandlerFactory.create());
           }
           pipeline.addLast("tracker", connectionTracker);
+          pipeline.addLast("idle-event-generator", new IdleStateHandler(timer, 0, 0, connectionTimeout));
+          pipeline.addLast("idle-event-processor", new InboundIdleEventProcessor());
           pipeline.addLast("http-response-encoder", new HttpResponseEncoder());
           pipeline.addLast("http-decoder", new HttpRequestDecoder());
           pipeline.addLast("http-status-request-handler", new HttpStatusRequestHandler());
@@ -259,7 +280,7 @@ public class NettyRouter extends AbstractIdleService {
           }
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
           pipeline.addLast("http-request-handler",
-                           new HttpRequestHandler(clientBootstrap, serviceLookup, ImmutableList.<ProxyRule>of()));
+                           new HttpRequestHandler(connectionPool, serviceLookup, ImmutableList.<ProxyRule>of()));
           return pipeline;
         }
       }
@@ -330,6 +351,13 @@ public class NettyRouter extends AbstractIdleService {
     });
 
     clientBootstrap.setOption("bufferFactory", new DirectChannelBufferFactory());
+
+    MetricsContext metricsContext = metricsCollectionService == null
+      ? new NoopMetricsContext()
+      : metricsCollectionService.getContext(ImmutableMap.of(
+          Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+          Constants.Metrics.Tag.COMPONENT, Constants.Service.GATEWAY));
+    connectionPool = new BackendConnectionPool(clientBootstrap, maxIdleConnections, metricsContext);
   }
 
   private boolean isSSLEnabled() {
@@ -20,10 +20,16 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.ServiceDiscoverable;
 import co.cask.http.AbstractHttpHandler;
 import org.apache.commons.lang.StringUtils;
+import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
 /**
  * Class to match the request path to corresponding service like app-fabric, or metrics service.
+ * The v3 routes are compiled once into a {@link RoutingTrie}.
  */
 public final class RouterPathLookup extends AbstractHttpHandler {
 
@@ -41,6 +47,11 @@ public final class RouterPathLookup extends AbstractHttpHandler {
   public static final RouteDestination STREAMS_SERVICE = new RouteDestination(Constants.Service.STREAMS);
   public static final RouteDestination PREVIEW_HTTP = new RouteDestination(Constants.Service.PREVIEW_HTTP);
 
+  private static final RoutingTrie V3_ROUTES = createV3Routes();
+
+  // Destinations of the fallback services, to avoid creating new object for every request to the webapp
+  private final ConcurrentMap<String, RouteDestination> fallbackDestinations = new ConcurrentHashMap<>();
+
   /**
    * Returns the CDAP service which will handle the HttpRequest
    *
@@ -52,7 +63,8 @@ public final class RouterPathLookup extends AbstractHttpHandler {
   public RouteDestination getRoutingService(String fallbackService, String requestPath, HttpRequest httpRequest) {
     try {
       String method = httpRequest.getMethod().getName();
-      AllowedMethod requestMethod = AllowedMethod.valueOf(method);
+      // Only route the allowed methods
+      AllowedMethod.valueOf(method);
       String[] uriParts = StringUtils.split(requestPath, '/');
 
       //Check if the call should go to webapp
@@ -60,11 +72,12 @@ public final class RouterPathLookup extends AbstractHttpHandler {
       //WebApp serves only static files (HTML, CSS, JS) and so /<appname> calls should go to WebApp
       //But stream calls issued by the UI should be routed to the appropriate CDAP service
       if (fallbackService.contains("$HOST") && (uriParts.length >= 1)
-        && !("/" + uriParts[0]).equals(Constants.Gateway.API_VERSION_3)) {
-        return new RouteDestination(fallbackService);
+        && !uriParts[0].equals(Constants.Gateway.API_VERSION_3_TOKEN)) {
+        return getFallbackDestination(fallbackService);
       }
       if (uriParts[0].equals(Constants.Gateway.API_VERSION_3_TOKEN)) {
-        return getV3RoutingService(uriParts, requestMethod);
+        RoutingTrie.Destination destination = V3_ROUTES.lookup(uriParts, httpRequest.getMethod());
+        return destination == null ? APP_FABRIC_HTTP : destination.get(uriParts);
       }
     } catch (Exception e) {
       // Ignore exception. Default routing to app-fabric.
@@ -72,130 +85,122 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     return APP_FABRIC_HTTP;
   }
 
-  private RouteDestination getV3RoutingService(String [] uriParts, AllowedMethod requestMethod) {
-    if ((uriParts.length >= 2) && uriParts[1].equals("feeds")) {
-      // TODO find a better way to handle that - this looks hackish
-      return null;
-    } else if ((uriParts.length >= 11) && "versions".equals(uriParts[5]) && "services".equals(uriParts[7])
-      && "methods".equals(uriParts[9])) {
-      // User defined services (version specific) handle methods on them:
-      //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/versions/{version-id}/services/{service-id}/methods/
-      //       <user-defined-method-path>"
-      String serviceName = ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[8]);
-      String version = uriParts[6];
-      // TODO: Optimize this instead of creating new object every time
-      return new RouteDestination(serviceName, version);
-    } else if ((uriParts.length >= 9) && "services".equals(uriParts[5]) && "methods".equals(uriParts[7])) {
-      //User defined services handle methods on them:
-      //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
-      return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[6]));
-    } else if (matches(uriParts, "v3", "system", "services", null, "logs")) {
-      //Log Handler Path /v3/system/services/<service-id>/logs
-      return METRICS;
-    } else if (matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata") ||
-
-      matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata", "properties") ||
-
-      matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata", "tags") ||
-
-      matches(uriParts, "v3", "namespaces", null, "metadata", "search") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "lineage") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "lineage") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "runs", null, "metadata")) {
-      return METADATA_SERVICE;
-    } else if (matches(uriParts, "v3", "security", "authorization") ||
-      matches(uriParts, "v3", "namespaces", null, "securekeys")) {
-      // Authorization and Secure Store Handlers currently run in App Fabric
-      return APP_FABRIC_HTTP;
-    } else if (matches(uriParts, "v3", "security", "store", "namespaces", null)) {
-      return APP_FABRIC_HTTP;
-    } else if ((matches(uriParts, "v3", "namespaces", null, "streams", null, "programs")
-      || matches(uriParts, "v3", "namespaces", null, "data", "datasets", null, "programs")) &&
-      requestMethod.equals(AllowedMethod.GET)) {
-      return APP_FABRIC_HTTP;
-    } else if (matches(uriParts, "v3", "namespaces", null, "previews")) {
-      return PREVIEW_HTTP;
-    } else if (matches(uriParts, "v3", "system", "serviceproviders")) {
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[1].equals("namespaces") && uriParts[3].equals("streams")) {
-      return STREAMS_SERVICE;
-    } else if ((uriParts.length >= 8 && uriParts[7].equals("logs")) ||
-      (uriParts.length >= 10 && uriParts[9].equals("logs")) ||
-      (uriParts.length >= 6 && uriParts[5].equals("logs"))) {
-      //Log Handler Paths:
-      // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
-      // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
-      return METRICS;
-    } else if (uriParts.length >= 2 && uriParts[1].equals("metrics")) {
-      //Metrics Search Handler Path /v3/metrics
-      return METRICS;
-    } else if (uriParts.length >= 5 && uriParts[1].equals("data") && uriParts[2].equals("explore") &&
-      (uriParts[3].equals("queries") || uriParts[3].equals("jdbc") || uriParts[3].equals("namespaces"))) {
-      // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length >= 6 && uriParts[3].equals("data") && uriParts[4].equals("explore") &&
-      (uriParts[5].equals("queries") || uriParts[5].equals("streams") || uriParts[5].equals("datasets")
-        || uriParts[5].equals("tables") || uriParts[5].equals("jdbc"))) {
-      // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/streams/{stream}/enable
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if ((uriParts.length == 3) && uriParts[1].equals("explore") && uriParts[2].equals("status")) {
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length == 7 && uriParts[3].equals("data") && uriParts[4].equals("datasets") &&
-      (uriParts[6].equals("flows") || uriParts[6].equals("workers") || uriParts[6].equals("mapreduce"))) {
-      // namespaced app fabric data operations:
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[3].equals("data")) {
-      // other data operations. For example:
-      // /v3/namespaces/{namespace-id}/data/datasets
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
-      return DATASET_MANAGER;
+  private RouteDestination getFallbackDestination(String fallbackService) {
+    RouteDestination destination = fallbackDestinations.get(fallbackService);
+    if (destination == null) {
+      destination = new RouteDestination(fallbackService);
+      RouteDestination existing = fallbackDestinations.putIfAbsent(fallbackService, destination);
+      destination = existing == null ? destination : existing;
     }
-    return APP_FABRIC_HTTP;
+    return destination;
   }
 
   /**
-   * Determines if actual matches expected.
-   *
-   * - actual may be longer than expected, but we'll return true as long as expected was found
-   * - null in expected means "accept any string"
-   *
-   * @param actual actual string array to check
-   * @param expected expected string array format
-   * @return true if actual matches expected
+   * Creates the routes of the v3 APIs. Routes are matched in the order they are added, and paths
+   * that no route matches go to app-fabric.
    */
-  private boolean matches(String[] actual, String... expected) {
-    if (actual.length < expected.length) {
-      return false;
-    }
+  private static RoutingTrie createV3Routes() {
+    RoutingTrie.Destination appFabric = constant(APP_FABRIC_HTTP);
+    RoutingTrie.Destination metrics = constant(METRICS);
+    RoutingTrie.Destination metadata = constant(METADATA_SERVICE);
+    RoutingTrie.Destination explore = constant(EXPLORE_HTTP_USER_SERVICE);
+
+    RoutingTrie.Builder builder = RoutingTrie.builder();
+
+    // TODO find a better way to handle that - this looks hackish
+    builder.add(constant(null), "v3", "feeds");
 
-    for (int i = 0; i < expected.length; i++) {
-      if (expected[i] == null) {
-        continue;
+    // User defined services (version specific) handle methods on them:
+    //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/versions/{version-id}/services/{service-id}/methods/
+    //       <user-defined-method-path>"
+    builder.add(new RoutingTrie.Destination() {
+      @Override
+      public RouteDestination get(String[] uriParts) {
+        return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[8]), uriParts[6]);
       }
-      if (!expected[i].equals(actual[i])) {
-        return false;
+    }, "v3", null, null, null, null, "versions", null, "services", null, "methods", null);
+
+    //User defined services handle methods on them:
+    //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
+    builder.add(new RoutingTrie.Destination() {
+      @Override
+      public RouteDestination get(String[] uriParts) {
+        return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[6]));
       }
+    }, "v3", null, null, null, null, "services", null, "methods", null);
+
+    //Log Handler Path /v3/system/services/<service-id>/logs
+    builder.add(metrics, "v3", "system", "services", null, "logs");
+
+    // Metadata paths, including the properties and tags under them
+    builder
+      .add(metadata, "v3", "namespaces", null, "apps", null, "metadata")
+      .add(metadata, "v3", "namespaces", null, "apps", null, null, null, "metadata")
+      .add(metadata, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata")
+      .add(metadata, "v3", "namespaces", null, "datasets", null, "metadata")
+      .add(metadata, "v3", "namespaces", null, "streams", null, "metadata")
+      .add(metadata, "v3", "namespaces", null, "streams", null, "views", null, "metadata")
+      .add(metadata, "v3", "namespaces", null, "metadata", "search")
+      .add(metadata, "v3", "namespaces", null, "datasets", null, "lineage")
+      .add(metadata, "v3", "namespaces", null, "streams", null, "lineage")
+      .add(metadata, "v3", "namespaces", null, "apps", null, null, null, "runs", null, "metadata");
+
+    // Authorization and Secure Store Handlers currently run in App Fabric
+    builder
+      .add(appFabric, "v3", "security", "authorization")
+      .add(appFabric, "v3", "namespaces", null, "securekeys")
+      .add(appFabric, "v3", "security", "store", "namespaces", null)
+      .add(HttpMethod.GET, appFabric, "v3", "namespaces", null, "streams", null, "programs")
+      .add(HttpMethod.GET, appFabric, "v3", "namespaces", null, "data", "datasets", null, "programs")
+      .add(constant(PREVIEW_HTTP), "v3", "namespaces", null, "previews")
+      .add(appFabric, "v3", "system", "serviceproviders")
+      .add(constant(STREAMS_SERVICE), "v3", "namespaces", null, "streams");
+
+    //Log Handler Paths:
+    // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
+    // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
+    builder
+      .add(metrics, "v3", null, null, null, null, null, null, "logs")
+      .add(metrics, "v3", null, null, null, null, null, null, null, null, "logs")
+      .add(metrics, "v3", null, null, null, null, "logs");
+
+    //Metrics Search Handler Path /v3/metrics
+    builder.add(metrics, "v3", "metrics");
+
+    // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
+    for (String type : new String[] { "queries", "jdbc", "namespaces" }) {
+      builder.add(explore, "v3", "data", "explore", type, null);
+    }
+    // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/streams/{stream}/enable
+    for (String type : new String[] { "queries", "streams", "datasets", "tables", "jdbc" }) {
+      builder.add(explore, "v3", null, null, "data", "explore", type);
+    }
+    builder.addExact(explore, "v3", "explore", "status");
+
+    // namespaced app fabric data operations:
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
+    for (String type : new String[] { "flows", "workers", "mapreduce" }) {
+      builder.addExact(appFabric, "v3", null, null, "data", "datasets", null, type);
     }
-    return true;
+
+    // other data operations. For example:
+    // /v3/namespaces/{namespace-id}/data/datasets
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
+    builder.add(constant(DATASET_MANAGER), "v3", null, null, "data");
+
+    return builder.build();
+  }
+
+  private static RoutingTrie.Destination constant(@Nullable final RouteDestination destination) {
+    return new RoutingTrie.Destination() {
+      @Override
+      public RouteDestination get(String[] uriParts) {
+        return destination;
+      }
+    };
   }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router;
+
+import com.google.common.base.Preconditions;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A route table compiled into a trie of path segments, for finding the route of a split request path with a single
+ * walk over the path segments.
+ *
+ * Each route is a pattern of path segments, where {@code null} matches any segment. A route matches a path that
+ * starts with its pattern, or only a path of exactly the same length if the route is exact. A route can also be
+ * restricted to one {@link HttpMethod}. When multiple routes match a path, the one added first to the
+ * {@link Builder} wins, same as evaluating the routes one by one in the order they were added.
+ *
+ * Wildcard segments are resolved when the trie is built, by merging the routes under a wildcard into the routes
+ * under every literal segment at the same position, such that a lookup never backtracks.
+ */
+final class RoutingTrie {
+
+  private static final Comparator<Route> PRIORITY_COMPARATOR = new Comparator<Route>() {
+    @Override
+    public int compare(Route route1, Route route2) {
+      return route1.priority < route2.priority ? -1 : (route1.priority == route2.priority ? 0 : 1);
+    }
+  };
+
+  /**
+   * Resolves the {@link RouteDestination} of a path matched by a route.
+   */
+  interface Destination {
+
+    /**
+     * Returns the destination for the given path segments, or {@code null} if the path should not be routed.
+     */
+    @Nullable
+    RouteDestination get(String[] uriParts);
+  }
+
+  /**
+   * Returns a {@link Builder} for building a {@link RoutingTrie}.
+   */
+  static Builder builder() {
+    return new Builder();
+  }
+
+  private final State root;
+
+  private RoutingTrie(State root) {
+    this.root = root;
+  }
+
+  /**
+   * Finds the {@link Destination} of the first route that matches the given path.
+   *
+   * @param uriParts the path segments
+   * @param method the request method
+   * @return the {@link Destination} of the matching route or {@code null} if no route matches
+   */
+  @Nullable
+  Destination lookup(String[] uriParts, HttpMethod method) {
+    Route best = null;
+    State state = root;
+    for (int i = 0; ; i++) {
+      best = first(best, state.prefixRoutes, method);
+      if (i == uriParts.length) {
+        best = first(best, state.exactRoutes, method);
+        break;
+      }
+      State next = state.children.get(uriParts[i]);
+      if (next == null) {
+        next = state.wildcard;
+      }
+      if (next == null) {
+        break;
+      }
+      state = next;
+    }
+    return best == null ? null : best.destination;
+  }
+
+  /**
+   * Returns the one with the highest priority between the given route and the first route in the given array
+   * that allows the given method.
+   */
+  @Nullable
+  private static Route first(@Nullable Route best, Route[] routes, HttpMethod method) {
+    for (Route route : routes) {
+      if (best != null && best.priority < route.priority) {
+        return best;
+      }
+      if (route.method == null || route.method.equals(method)) {
+        return route;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Builder for {@link RoutingTrie}.
+   */
+  static final class Builder {
+
+    private final Node root = new Node();
+    private int priority;
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a route that matches paths starting with the given pattern.
+     */
+    Builder add(Destination destination, String... pattern) {
+      return add(null, false, destination, pattern);
+    }
+
+    /**
+     * Adds a route that matches paths starting with the given pattern, for the given method only.
+     */
+    Builder add(HttpMethod method, Destination destination, String... pattern) {
+      return add(method, false, destination, pattern);
+    }
+
+    /**
+     * Adds a route that matches paths of the same length as the given pattern only.
+     */
+    Builder addExact(Destination destination, String... pattern) {
+      return add(null, true, destination, pattern);
+    }
+
+    RoutingTrie build() {
+      return new RoutingTrie(compile(Collections.singleton(root), new HashMap<Set<Node>, State>()));
+    }
+
+    private Builder add(@Nullable HttpMethod method, boolean exact, Destination destination, String... pattern) {
+      Preconditions.checkArgument(pattern.length > 0, "Route pattern cannot be empty");
+      Node node = root;
+      for (String segment : pattern) {
+        node = node.getChild(segment);
+      }
+      Route route = new Route(priority++, method, destination);
+      if (exact) {
+        node.exactRoutes.add(route);
+      } else {
+        node.prefixRoutes.add(route);
+      }
+      return this;
+    }
+
+    /**
+     * Compiles the set of trie nodes that a path prefix reaches into a {@link State}.
+     */
+    private State compile(Set<Node> nodes, Map<Set<Node>, State> states) {
+      State state = states.get(nodes);
+      if (state != null) {
+        return state;
+      }
+
+      List<Route> prefixRoutes = new ArrayList<>();
+      List<Route> exactRoutes = new ArrayList<>();
+      Set<Node> wildcards = new HashSet<>();
+      Set<String> segments = new HashSet<>();
+      for (Node node : nodes) {
+        prefixRoutes.addAll(node.prefixRoutes);
+        exactRoutes.addAll(node.exactRoutes);
+        if (node.wildcard != null) {
+          wildcards.add(node.wildcard);
+        }
+        segments.addAll(node.children.keySet());
+      }
+      Collections.sort(prefixRoutes, PRIORITY_COMPARATOR);
+      Collections.sort(exactRoutes, PRIORITY_COMPARATOR);
+
+      state = new State(prefixRoutes.toArray(new Route[prefixRoutes.size()]),
+                        exactRoutes.toArray(new Route[exactRoutes.size()]));
+      states.put(nodes, state);
+
+      // A literal segment reaches both the literal children and the wildcard children
+      for (String segment : segments) {
+        Set<Node> children = new HashSet<>(wildcards);
+        for (Node node : nodes) {
+          Node child = node.children.get(segment);
+          if (child != null) {
+            children.add(child);
+          }
+        }
+        state.children.put(segment, compile(children, states));
+      }
+      if (!wildcards.isEmpty()) {
+        state.wildcard = compile(wildcards, states);
+      }
+      return state;
+    }
+  }
+
+  /**
+   * A route added to the trie.
+   */
+  private static final class Route {
+    private final int priority;
+    private final HttpMethod method;
+    private final Destination destination;
+
+    private Route(int priority, @Nullable HttpMethod method, Destination destination) {
+      this.priority = priority;
+      this.method = method;
+      this.destination = destination;
+    }
+  }
+
+  /**
+   * A node of the trie of route patterns, as added to the {@link Builder}.
+   */
+  private static final class Node {
+    private final Map<String, Node> children = new HashMap<>();
+    private final List<Route> prefixRoutes = new ArrayList<>();
+    private final List<Route> exactRoutes = new ArrayList<>();
+    private Node wildcard;
+
+    private Node getChild(@Nullable String segment) {
+      if (segment == null) {
+        if (wildcard == null) {
+          wildcard = new Node();
+        }
+        return wildcard;
+      }
+      Node child = children.get(segment);
+      if (child == null) {
+        child = new Node();
+        children.put(segment, child);
+      }
+      return child;
+    }
+  }
+
+  /**
+   * A state of the compiled trie, reached by a path prefix. It contains all the routes whose pattern matches
+   * the path prefix, sorted by priority.
+   */
+  private static final class State {
+    private final Map<String, State> children = new HashMap<>();
+    private final Route[] prefixRoutes;
+    private final Route[] exactRoutes;
+    private State wildcard;
+
+    private State(Route[] prefixRoutes, Route[] exactRoutes) {
+      this.prefixRoutes = prefixRoutes;
+      this.exactRoutes = exactRoutes;
+    }
+  }
+}
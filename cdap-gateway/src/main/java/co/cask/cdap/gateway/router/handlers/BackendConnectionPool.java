@@ -0,0 +1,304 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.MetricHandle;
+import co.cask.cdap.api.metrics.MetricsContext;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A pool of keep-alive connections to backend services, shared by all client connections of the router.
+ *
+ * A connection is leased to a client connection for a request, together with the requests that the client pipelines
+ * after it, and is returned to the pool when all responses are received. Up to a configured number of idle
+ * connections are kept for each {@link WrappedDiscoverable}, and connections that are closed, either by the backend
+ * or by the idle timeout of the router, are evicted from the pool. When a connection to a backend fails, all idle
+ * connections to it are closed as well, since they are likely to fail too.
+ */
+@ThreadSafe
+public final class BackendConnectionPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BackendConnectionPool.class);
+
+  private final ClientBootstrap clientBootstrap;
+  private final int maxIdlePerEndpoint;
+  private final LoadingCache<WrappedDiscoverable, Endpoint> endpoints;
+  private final AtomicInteger activeConnections = new AtomicInteger();
+  private final AtomicInteger idleConnections = new AtomicInteger();
+
+  private final MetricHandle createdMetric;
+  private final MetricHandle reusedMetric;
+  private final MetricHandle evictedMetric;
+  private final MetricHandle activeMetric;
+  private final MetricHandle idleMetric;
+
+  /**
+   * Creates a pool.
+   *
+   * @param clientBootstrap the {@link ClientBootstrap} for connecting to backends
+   * @param maxIdlePerEndpoint maximum number of idle connections to keep for each backend
+   * @param metricsContext the {@link MetricsContext} for emitting the pool utilization metrics
+   */
+  public BackendConnectionPool(ClientBootstrap clientBootstrap, int maxIdlePerEndpoint,
+                               MetricsContext metricsContext) {
+    this.clientBootstrap = clientBootstrap;
+    this.maxIdlePerEndpoint = maxIdlePerEndpoint;
+    // Idle connections are closed by the idle timeout, hence an endpoint not used for a while has no connection
+    this.endpoints = CacheBuilder.newBuilder()
+      .expireAfterAccess(1, TimeUnit.HOURS)
+      .build(new CacheLoader<WrappedDiscoverable, Endpoint>() {
+        @Override
+        public Endpoint load(WrappedDiscoverable key) {
+          return new Endpoint();
+        }
+      });
+    this.createdMetric = metricsContext.getMetricHandle("router.connections.created");
+    this.reusedMetric = metricsContext.getMetricHandle("router.connections.reused");
+    this.evictedMetric = metricsContext.getMetricHandle("router.connections.evicted");
+    this.activeMetric = metricsContext.getMetricHandle("router.connections.active");
+    this.idleMetric = metricsContext.getMetricHandle("router.connections.idle");
+  }
+
+  /**
+   * Leases a connection to the given backend for a request from the given client channel. An idle connection is
+   * reused if there is one, otherwise a new connection is opened.
+   */
+  PooledConnection.Lease acquire(WrappedDiscoverable discoverable, Channel inboundChannel) {
+    Endpoint endpoint = endpoints.getUnchecked(discoverable);
+    PooledConnection connection = endpoint.poll();
+    while (connection != null) {
+      idleConnections.decrementAndGet();
+      if (connection.getChannel().isConnected()) {
+        PooledConnection.Lease lease = connection.lease(inboundChannel);
+        reusedMetric.increment(1);
+        activeMetric.gauge(activeConnections.incrementAndGet());
+        idleMetric.gauge(idleConnections.get());
+        return lease;
+      }
+      connection = endpoint.poll();
+    }
+    idleMetric.gauge(idleConnections.get());
+
+    connection = connect(discoverable);
+    PooledConnection.Lease lease = connection.lease(inboundChannel);
+    createdMetric.increment(1);
+    activeMetric.gauge(activeConnections.incrementAndGet());
+    return lease;
+  }
+
+  /**
+   * Returns a connection that has no more request in progress to the pool.
+   */
+  void release(PooledConnection connection) {
+    activeMetric.gauge(activeConnections.decrementAndGet());
+
+    Endpoint endpoint = endpoints.getUnchecked(connection.getDiscoverable());
+    if (!connection.getChannel().isConnected() || !endpoint.offer(connection)) {
+      evictedMetric.increment(1);
+      connection.getChannel().close();
+      return;
+    }
+    idleConnections.incrementAndGet();
+    // The channel may get closed before it was added to the pool
+    if (!connection.getChannel().isOpen() && endpoint.remove(connection)) {
+      idleConnections.decrementAndGet();
+    }
+    idleMetric.gauge(idleConnections.get());
+  }
+
+  /**
+   * Closes a connection whose lease ended without completing the requests in progress.
+   */
+  void discard(PooledConnection connection) {
+    activeMetric.gauge(activeConnections.decrementAndGet());
+    HttpRequestHandler.closeOnFlush(connection.getChannel());
+  }
+
+  /**
+   * Closes all idle connections to the given backend.
+   */
+  void evict(WrappedDiscoverable discoverable) {
+    Endpoint endpoint = endpoints.getIfPresent(discoverable);
+    if (endpoint == null) {
+      return;
+    }
+    PooledConnection connection = endpoint.poll();
+    while (connection != null) {
+      LOG.trace("Evicting idle connection {} to {}", connection.getChannel(), discoverable.getSocketAddress());
+      idleConnections.decrementAndGet();
+      evictedMetric.increment(1);
+      connection.getChannel().close();
+      connection = endpoint.poll();
+    }
+    idleMetric.gauge(idleConnections.get());
+  }
+
+  private PooledConnection connect(final WrappedDiscoverable discoverable) {
+    ChannelFuture future = clientBootstrap.connect(discoverable.getSocketAddress());
+    final PooledConnection connection = new PooledConnection(this, discoverable, future);
+    Channel outboundChannel = future.getChannel();
+    outboundChannel.getPipeline().addAfter("request-encoder", "outbound-handler", new OutboundHandler(connection));
+    outboundChannel.getPipeline().addLast("response-tracker", new ResponseTracker(connection));
+
+    future.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        if (!future.isSuccess()) {
+          LOG.debug("Failed to connect to {}", discoverable.getSocketAddress(), future.getCause());
+          evict(discoverable);
+        }
+      }
+    });
+    outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        closed(connection);
+      }
+    });
+    return connection;
+  }
+
+  /**
+   * Called when a connection is closed, to remove it from the pool, or to close the client channel
+   * if the connection carries its request in progress.
+   */
+  private void closed(PooledConnection connection) {
+    Endpoint endpoint = endpoints.getIfPresent(connection.getDiscoverable());
+    if (endpoint != null && endpoint.remove(connection)) {
+      idleMetric.gauge(idleConnections.decrementAndGet());
+      return;
+    }
+
+    final PooledConnection.Lease lease = connection.closed();
+    if (lease == null) {
+      return;
+    }
+    activeMetric.gauge(activeConnections.decrementAndGet());
+    final Channel inboundChannel = lease.getInboundChannel();
+    inboundChannel.getPipeline().execute(new Runnable() {
+      @Override
+      public void run() {
+        // Close the inbound channel as well if it carries the in-flight request
+        if (lease.equals(inboundChannel.getAttachment())) {
+          HttpRequestHandler.closeOnFlush(inboundChannel);
+        }
+      }
+    });
+  }
+
+  /**
+   * Idle connections of a backend, with the most recently used one first.
+   */
+  private final class Endpoint {
+    private final Deque<PooledConnection> connections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    PooledConnection poll() {
+      PooledConnection connection = connections.pollFirst();
+      if (connection != null) {
+        size.decrementAndGet();
+      }
+      return connection;
+    }
+
+    boolean offer(PooledConnection connection) {
+      if (size.incrementAndGet() > maxIdlePerEndpoint) {
+        size.decrementAndGet();
+        return false;
+      }
+      connections.offerFirst(connection);
+      return true;
+    }
+
+    boolean remove(PooledConnection connection) {
+      if (connections.remove(connection)) {
+        size.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Tracks the end of responses decoded from a backend connection.
+   */
+  private static final class ResponseTracker extends SimpleChannelUpstreamHandler {
+
+    private final PooledConnection connection;
+
+    ResponseTracker(PooledConnection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+      Object message = e.getMessage();
+      if (message instanceof HttpResponse) {
+        HttpResponse response = (HttpResponse) message;
+        // Informational responses are followed by the actual response
+        if (response.getStatus().getCode() < 200) {
+          return;
+        }
+        if (!HttpHeaders.isKeepAlive(response)) {
+          PooledConnection.Lease lease = connection.getLease();
+          if (lease != null) {
+            lease.setNotReusable();
+          }
+        }
+        if (!response.isChunked()) {
+          connection.responseCompleted();
+        }
+      } else if (message instanceof HttpChunk && ((HttpChunk) message).isLast()) {
+        connection.responseCompleted();
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+      // Responses cannot be tracked anymore, hence the connection cannot be reused
+      LOG.debug("Failed to decode response from {}", ctx.getChannel(), e.getCause());
+      PooledConnection.Lease lease = connection.getLease();
+      if (lease != null) {
+        lease.setNotReusable();
+      } else {
+        ctx.getChannel().close();
+      }
+    }
+  }
+}
@@ -23,7 +23,6 @@ import co.cask.cdap.gateway.router.RouterServiceLookup;
 import com.google.common.collect.Queues;
 import com.google.common.io.Closeables;
 import org.apache.twill.discovery.Discoverable;
-import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
@@ -55,15 +54,16 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handler that handles HTTP requests and forwards to appropriate services. The service discovery is
- * performed using Discovery service for forwarding.
+ * performed using Discovery service for forwarding. Requests are forwarded through connections leased
+ * from the {@link BackendConnectionPool}.
  */
 public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestHandler.class);
 
-  private final ClientBootstrap clientBootstrap;
+  private final BackendConnectionPool connectionPool;
   private final RouterServiceLookup serviceLookup;
-  // Data structure is used to clean up the channel futures on connection close.
+  // Data structure is used to send pipelined requests in order and to clean up the leases on connection close.
   private final Map<WrappedDiscoverable, MessageSender> discoveryLookup;
   private final List<ProxyRule> proxyRules;
 
@@ -71,10 +71,10 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
   private MessageSender chunkSender;
   private volatile boolean channelClosed;
 
-  public HttpRequestHandler(ClientBootstrap clientBootstrap,
+  public HttpRequestHandler(BackendConnectionPool connectionPool,
                             RouterServiceLookup serviceLookup,
                             List<ProxyRule> proxyRules) {
-    this.clientBootstrap = clientBootstrap;
+    this.connectionPool = connectionPool;
     this.serviceLookup = serviceLookup;
     this.discoveryLookup = new HashMap<>();
     this.proxyRules = proxyRules;
@@ -97,6 +97,9 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
                                    "Chunk received and event sender is null");
       }
       chunkSender.send(msg);
+      if (((HttpChunk) msg).isLast()) {
+        chunkSender.requestCompleted();
+      }
 
     } else if (msg instanceof HttpRequest) {
       // Discover and forward event.
@@ -108,41 +111,15 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       WrappedDiscoverable discoverable = getDiscoverable(request,
                                                          (InetSocketAddress) inboundChannel.getLocalAddress());
 
-      // If no event sender, make new connection, otherwise reuse existing one.
-      MessageSender sender =  discoveryLookup.get(discoverable);
-      if (sender == null || !sender.isConnected()) {
-        InetSocketAddress address = discoverable.getSocketAddress();
-
-        ChannelFuture future = clientBootstrap.connect(address);
-        final Channel outboundChannel = future.getChannel();
-        outboundChannel.getPipeline().addAfter("request-encoder",
-                                               "outbound-handler", new OutboundHandler(inboundChannel));
-        sender = new MessageSender(inboundChannel, future);
+      // Requests pipelined to the same service are sent through the lease that has requests in progress,
+      // so that the responses are returned in order. Otherwise, lease a connection from the pool.
+      MessageSender sender = discoveryLookup.get(discoverable);
+      if (sender == null || !sender.retain()) {
+        sender = new MessageSender(inboundChannel, connectionPool.acquire(discoverable, inboundChannel));
         discoveryLookup.put(discoverable, sender);
-
-        // Remember the in-flight outbound channel
-        inboundChannel.setAttachment(outboundChannel);
-        outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            inboundChannel.getPipeline().execute(new Runnable() {
-              @Override
-              public void run() {
-                // When the outbound channel closed,
-                // close the inbound channel as well if it carries the in-flight request
-                if (outboundChannel.equals(inboundChannel.getAttachment())) {
-                  closeOnFlush(inboundChannel);
-                }
-              }
-            });
-          }
-        });
       } else {
-        Channel outboundChannel = (Channel) inboundChannel.getAttachment();
-        if (outboundChannel != null) {
-          // Set outbound channel to be readable in case previous request has set it as non-readable
-          outboundChannel.setReadable(true);
-        }
+        // Set outbound channel to be readable in case previous request has set it as non-readable
+        sender.getOutboundChannel().setReadable(true);
       }
 
       // Send the message.
@@ -169,11 +146,17 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   @Override
   public void channelInterestChanged(ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
-    final Channel outboundChannel = (Channel) e.getChannel().getAttachment();
-    if (outboundChannel != null) {
+    Object attachment = e.getChannel().getAttachment();
+    if (attachment instanceof PooledConnection.Lease) {
+      final PooledConnection.Lease lease = (PooledConnection.Lease) attachment;
+      final Channel outboundChannel = lease.getConnection().getChannel();
       outboundChannel.getPipeline().execute(new Runnable() {
         @Override
         public void run() {
+          // The connection may have been returned to the pool in the meantime
+          if (!lease.isActive()) {
+            return;
+          }
           // If inboundChannel is not saturated anymore, continue accepting
           // the outbound traffic from the outboundChannel.
           if (e.getChannel().isWritable()) {
@@ -222,7 +205,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   @Override
   public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-    // Close all event sender
+    // Close all event sender. Connections with requests in progress are closed, the others are in the pool already.
     LOG.trace("Channel closed {}", ctx.getChannel());
     for (Closeable c : discoveryLookup.values()) {
       Closeables.closeQuietly(c);
@@ -260,7 +243,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
   }
 
   /**
-   * For sending messages to outbound channel while maintaining the order of messages according to
+   * For sending messages through a {@link PooledConnection.Lease} while maintaining the order of messages according to
    * the order that {@link #send(Object)} method is called.
    *
    * It uses a lock-free algorithm similar to the one
@@ -269,24 +252,45 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
    */
   private static final class MessageSender implements Closeable {
     private final Channel inBoundChannel;
+    private final PooledConnection.Lease lease;
     private final ChannelFuture channelFuture;
     private final Queue<OutboundMessage> messages;
     private final AtomicBoolean writer;
 
-    private MessageSender(Channel inBoundChannel, ChannelFuture channelFuture) {
+    private MessageSender(Channel inBoundChannel, PooledConnection.Lease lease) {
       this.inBoundChannel = inBoundChannel;
-      this.channelFuture = channelFuture;
+      this.lease = lease;
+      this.channelFuture = lease.getConnection().getConnectFuture();
       this.messages = Queues.newConcurrentLinkedQueue();
       this.writer = new AtomicBoolean(false);
     }
 
-    private boolean isConnected() {
-      return channelFuture.getChannel().isConnected();
+    /**
+     * Adds a request to the lease of this sender.
+     *
+     * @return {@code true} if the request can be sent through this sender, {@code false} if the lease already ended
+     */
+    private boolean retain() {
+      return lease.retain();
+    }
+
+    /**
+     * Completes the sending of a chunked request.
+     */
+    private void requestCompleted() {
+      lease.release();
+    }
+
+    private Channel getOutboundChannel() {
+      return channelFuture.getChannel();
     }
 
     private void send(Object msg) {
-      // Attach the outbound channel to the inbound to indicate the in-flight request outbound.
-      inBoundChannel.setAttachment(channelFuture.getChannel());
+      // Attach the lease to the inbound to indicate the in-flight request outbound.
+      inBoundChannel.setAttachment(lease);
+      if (msg instanceof HttpRequest) {
+        lease.requestSent((HttpRequest) msg);
+      }
 
       final OutboundMessage message = new OutboundMessage(msg);
       messages.add(message);
@@ -336,7 +340,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
     @Override
     public void close() throws IOException {
-      closeOnFlush(channelFuture.getChannel());
+      lease.close();
     }
   }
 
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router.handlers;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.timeout.IdleState;
+import org.jboss.netty.handler.timeout.IdleStateAwareChannelHandler;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles states when a client channel has been idle for a configured time interval, by closing the channel if it
+ * has no request in progress to a backend service. Backend connections are pooled independently of the client
+ * channels, hence closing an idle backend connection doesn't close the client channel that used it.
+ */
+public class InboundIdleEventProcessor extends IdleStateAwareChannelHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(InboundIdleEventProcessor.class);
+
+  @Override
+  public void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e) throws Exception {
+    if (IdleState.ALL_IDLE != e.getState()) {
+      return;
+    }
+    Channel channel = ctx.getChannel();
+    Object attachment = channel.getAttachment();
+    if (attachment instanceof PooledConnection.Lease && ((PooledConnection.Lease) attachment).isActive()) {
+      LOG.trace("Request is in progress, so not closing channel.");
+      return;
+    }
+    // No data has been sent or received for a while. Close channel.
+    channel.close();
+    LOG.trace("No data has been sent or received for channel '{}' for more than the configured idle timeout. " +
+                "Closing the channel. Local Address: {}, Remote Address: {}",
+              channel, channel.getLocalAddress(), channel.getRemoteAddress());
+  }
+}
@@ -29,27 +29,41 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Handles requests to and from a discoverable endpoint.
+ * Handles requests to and from a discoverable endpoint, through a {@link PooledConnection}. Responses are forwarded
+ * to the client channel that the connection is currently leased to.
  */
 public class OutboundHandler extends SimpleChannelUpstreamHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  private final PooledConnection connection;
 
-  public OutboundHandler(Channel inboundChannel) {
-    this.inboundChannel = inboundChannel;
+  OutboundHandler(PooledConnection connection) {
+    this.connection = connection;
   }
 
   @Override
   public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) throws Exception {
-    // write the channel buffer to inbound channel
+    Channel inboundChannel = connection.getInboundChannel();
+    if (inboundChannel == null) {
+      // Data received on an idle connection. The connection is not usable anymore.
+      LOG.debug("Unexpected data received on idle connection {}", ctx.getChannel());
+      ctx.getChannel().close();
+      return;
+    }
     ChannelBuffer wrappedMessage = ChannelBuffers.wrappedBuffer((ChannelBuffer) event.getMessage());
-    Channels.write(inboundChannel, wrappedMessage);
+    // Decode the response before forwarding it, so that the connection is back in the pool
+    // by the time the client receives the end of the response.
     super.messageReceived(ctx, event);
+    // write the channel buffer to inbound channel
+    Channels.write(inboundChannel, wrappedMessage);
   }
 
   @Override
   public void channelInterestChanged(ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+    final Channel inboundChannel = connection.getInboundChannel();
+    if (inboundChannel == null) {
+      return;
+    }
     inboundChannel.getPipeline().execute(new Runnable() {
       @Override
       public void run() {
@@ -70,6 +84,8 @@ public class OutboundHandler extends SimpleChannelUpstreamHandler {
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
     LOG.error("Got exception {}", ctx.getChannel(), e.getCause());
+    // The backend may be unhealthy, hence don't reuse other connections to it
+    connection.getPool().evict(connection.getDiscoverable());
     HttpRequestHandler.closeOnFlush(e.getChannel());
   }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router.handlers;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A connection to a backend service managed by {@link BackendConnectionPool}. At any time, the connection is either
+ * idle in the pool, or leased to a client connection through a {@link Lease}.
+ */
+final class PooledConnection {
+
+  private final BackendConnectionPool pool;
+  private final WrappedDiscoverable discoverable;
+  private final ChannelFuture connectFuture;
+  private volatile Lease lease;
+
+  PooledConnection(BackendConnectionPool pool, WrappedDiscoverable discoverable, ChannelFuture connectFuture) {
+    this.pool = pool;
+    this.discoverable = discoverable;
+    this.connectFuture = connectFuture;
+  }
+
+  BackendConnectionPool getPool() {
+    return pool;
+  }
+
+  WrappedDiscoverable getDiscoverable() {
+    return discoverable;
+  }
+
+  ChannelFuture getConnectFuture() {
+    return connectFuture;
+  }
+
+  Channel getChannel() {
+    return connectFuture.getChannel();
+  }
+
+  /**
+   * Returns the current lease of this connection or {@code null} if the connection is not leased.
+   */
+  @Nullable
+  Lease getLease() {
+    return lease;
+  }
+
+  /**
+   * Returns the client channel that this connection is leased to or {@code null} if the connection is not leased.
+   */
+  @Nullable
+  Channel getInboundChannel() {
+    Lease lease = this.lease;
+    return lease == null ? null : lease.getInboundChannel();
+  }
+
+  /**
+   * Leases this connection to the given client channel for one request.
+   */
+  Lease lease(Channel inboundChannel) {
+    Lease lease = new Lease(inboundChannel);
+    this.lease = lease;
+    return lease;
+  }
+
+  /**
+   * Called when a complete response was received from the backend.
+   */
+  void responseCompleted() {
+    Lease lease = this.lease;
+    if (lease != null) {
+      lease.release();
+    }
+  }
+
+  /**
+   * Ends the current lease because the connection is closed.
+   *
+   * @return the lease that was ended or {@code null} if the connection was not leased
+   */
+  @Nullable
+  Lease closed() {
+    Lease lease = this.lease;
+    if (lease != null && lease.end()) {
+      this.lease = null;
+      return lease;
+    }
+    return null;
+  }
+
+  /**
+   * Lease of a {@link PooledConnection} to a client channel. A lease counts the requests that are in progress,
+   * which are the requests without a complete response, plus the chunked requests that are still being sent.
+   * Requests pipelined by the client are sent through the same lease, so that the responses are returned in order.
+   * When there is no more request in progress, the connection is returned to the pool, unless it cannot be reused,
+   * in which case it stays with the client channel until either of them is closed.
+   */
+  final class Lease {
+
+    private final Channel inboundChannel;
+    // Number of requests in progress, or -1 if the lease ended
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private volatile boolean reusable = true;
+
+    private Lease(Channel inboundChannel) {
+      this.inboundChannel = inboundChannel;
+    }
+
+    PooledConnection getConnection() {
+      return PooledConnection.this;
+    }
+
+    Channel getInboundChannel() {
+      return inboundChannel;
+    }
+
+    /**
+     * Returns {@code true} if the lease has not ended.
+     */
+    boolean isActive() {
+      return pending.get() >= 0;
+    }
+
+    /**
+     * Adds a request to this lease.
+     *
+     * @return {@code true} if the request is added; {@code false} if the lease already ended
+     */
+    boolean retain() {
+      while (true) {
+        int count = pending.get();
+        if (count < 0) {
+          return false;
+        }
+        if (pending.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Called when a request is sent through this lease, after it was added by either {@link #lease(Channel)} or
+     * {@link #retain()}.
+     */
+    void requestSent(HttpRequest request) {
+      // The response decoder cannot tell the end of a response to a HEAD or CONNECT request,
+      // hence the connection cannot be reused.
+      if (!HttpHeaders.isKeepAlive(request)
+        || HttpMethod.HEAD.equals(request.getMethod()) || HttpMethod.CONNECT.equals(request.getMethod())) {
+        reusable = false;
+      }
+      // Hold the lease until the last chunk is sent
+      if (request.isChunked()) {
+        retain();
+      }
+    }
+
+    /**
+     * Marks the connection as not reusable, e.g. because the backend is closing it.
+     */
+    void setNotReusable() {
+      reusable = false;
+    }
+
+    /**
+     * Completes a request, or the sending of a chunked request, and returns the connection to the pool if there
+     * is no more request in progress.
+     */
+    void release() {
+      while (true) {
+        int count = pending.get();
+        if (count <= 0) {
+          return;
+        }
+        if (count == 1 && reusable) {
+          if (pending.compareAndSet(1, -1)) {
+            PooledConnection.this.lease = null;
+            if (inboundChannel.getAttachment() == this) {
+              inboundChannel.setAttachment(null);
+            }
+            pool.release(PooledConnection.this);
+            return;
+          }
+        } else if (pending.compareAndSet(count, count - 1)) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Ends this lease without returning the connection to the pool, and closes the connection.
+     * This is called when the client channel is closed.
+     */
+    void close() {
+      if (end()) {
+        PooledConnection.this.lease = null;
+        pool.discard(PooledConnection.this);
+      }
+    }
+
+    private boolean end() {
+      return pending.getAndSet(-1) >= 0;
+    }
+  }
+}
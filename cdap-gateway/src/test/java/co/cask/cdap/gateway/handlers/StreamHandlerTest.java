@@ -20,8 +20,11 @@ import co.cask.cdap.api.data.format.FormatSpecification;
 import co.cask.cdap.api.data.format.Formats;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.NamespaceNotFoundException;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
@@ -49,18 +52,21 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import org.apache.commons.lang3.ArrayUtils;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
@@ -207,6 +213,53 @@ public class StreamHandlerTest extends GatewayTestBase {
     urlConn.disconnect();
   }
 
+  @Test
+  public void testEncodedBatchEnqueue() throws Exception {
+    // Create new stream.
+    HttpURLConnection urlConn = openURL(createURL("streams/test_encoded_batch"), HttpMethod.PUT);
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // Encode 10 events, with headers on the even ones
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = new BinaryEncoder(os);
+    for (int i = 0; i < 10; i++) {
+      Map<String, String> headers = i % 2 == 0 ? ImmutableMap.of("header1", Integer.toString(i))
+                                               : ImmutableMap.<String, String>of();
+      StreamEventDataCodec.encode(new StreamEventData(headers, Charsets.UTF_8.encode(Integer.toString(i))), encoder);
+    }
+    byte[] content = os.toByteArray();
+
+    urlConn = openURL(createURL("streams/test_encoded_batch/batch"), HttpMethod.POST);
+    urlConn.setDoOutput(true);
+    urlConn.setRequestProperty(HttpHeaders.Names.CONTENT_TYPE, Constants.Stream.ENCODED_EVENTS_CONTENT_TYPE);
+    urlConn.getOutputStream().write(content);
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // A request body with an incomplete event should be rejected
+    urlConn = openURL(createURL("streams/test_encoded_batch/batch"), HttpMethod.POST);
+    urlConn.setDoOutput(true);
+    urlConn.setRequestProperty(HttpHeaders.Names.CONTENT_TYPE, Constants.Stream.ENCODED_EVENTS_CONTENT_TYPE);
+    urlConn.getOutputStream().write(content, 0, content.length - 1);
+    Assert.assertEquals(HttpResponseStatus.BAD_REQUEST.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // Fetch the events, there should be only the 10 events from the first request
+    urlConn = openURL(createURL("streams/test_encoded_batch/events"), HttpMethod.GET);
+    List<StreamEvent> events = GSON.fromJson(new String(ByteStreams.toByteArray(urlConn.getInputStream()),
+                                                        Charsets.UTF_8),
+                                             new TypeToken<List<StreamEvent>>() { }.getType());
+    urlConn.disconnect();
+
+    Assert.assertEquals(10, events.size());
+    for (int i = 0; i < 10; i++) {
+      StreamEvent event = events.get(i);
+      Assert.assertEquals(i, Integer.parseInt(Charsets.UTF_8.decode(event.getBody()).toString()));
+      Assert.assertEquals(i % 2 == 0 ? Integer.toString(i) : null, event.getHeaders().get("header1"));
+    }
+  }
+
   @Test
   public void testListStreams() throws Exception {
     List<StreamDetail> specs = listStreams(NamespaceId.DEFAULT);
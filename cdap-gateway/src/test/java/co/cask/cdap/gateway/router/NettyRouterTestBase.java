@@ -433,6 +433,25 @@ public abstract class NettyRouterTestBase {
     Assert.assertEquals(1, defaultServer1.getNumConnectionsClosed() + defaultServer2.getNumConnectionsClosed());
   }
 
+  @Test(timeout = 10000)
+  public void testBackendConnectionReuse() throws Exception {
+    defaultServer2.cancelRegistration();
+
+    URI uri = new URI(resolveURI(Constants.Router.GATEWAY_DISCOVERY_NAME, "/v2/ping"));
+
+    // Requests from different client connections should reuse the same keep-alive backend connection
+    for (int i = 0; i < 3; i++) {
+      try (Socket socket = getSocketFactory().createSocket(uri.getHost(), uri.getPort())) {
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        Assert.assertEquals("HTTP/1.1 200 OK\r", makeRequest(uri, out, socket.getInputStream()));
+      }
+    }
+
+    Assert.assertEquals(3, defaultServer1.getNumRequests());
+    Assert.assertEquals(1, defaultServer1.getNumConnectionsOpened());
+    Assert.assertEquals(0, defaultServer1.getNumConnectionsClosed());
+  }
+
   private String makeRequest(URI uri, PrintWriter out, InputStream inputStream) throws IOException {
 
     //Send request
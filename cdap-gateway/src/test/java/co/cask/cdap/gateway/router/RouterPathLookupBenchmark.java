@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router;
+
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for {@link RouterPathLookup}, over a mix of paths to the different CDAP services.
+ * Run the {@link #main(String[])} method to get the throughput together with the allocation rate per call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouterPathLookupBenchmark {
+
+  private static final String FALLBACK_SERVICE = "gateway";
+
+  // Roughly weighted by how often the UI and clients call them
+  private static final String[][] REQUESTS = {
+    { "GET", "/v3/namespaces/default/apps" },
+    { "GET", "/v3/namespaces/default/apps/PurchaseHistory/flows/PurchaseFlow/runs" },
+    { "GET", "/v3/namespaces/default/apps/PurchaseHistory/flows/PurchaseFlow/status" },
+    { "POST", "/v3/namespaces/default/apps/PurchaseHistory/workflows/PurchaseHistoryWorkflow/start" },
+    { "GET", "/v3/namespaces/default/apps/PurchaseHistory/services/PurchaseHistoryService/methods/history/joe" },
+    { "GET", "/v3/namespaces/default/apps/PurchaseHistory/services/PurchaseHistoryService/methods/history/jane" },
+    { "GET", "/v3/namespaces/default/apps/PurchaseHistory/versions/1.0/services/CatalogLookup/methods/product/1" },
+    { "POST", "/v3/namespaces/default/streams/purchaseStream" },
+    { "POST", "/v3/namespaces/default/streams/purchaseStream" },
+    { "POST", "/v3/namespaces/default/streams/purchaseStream/batch" },
+    { "GET", "/v3/namespaces/default/streams/purchaseStream/programs" },
+    { "POST", "/v3/metrics/query" },
+    { "POST", "/v3/metrics/query" },
+    { "POST", "/v3/metrics/search" },
+    { "GET", "/v3/namespaces/default/apps/PurchaseHistory/flows/PurchaseFlow/logs" },
+    { "GET", "/v3/namespaces/default/apps/PurchaseHistory/workflows/PurchaseHistoryWorkflow/runs/abc/logs" },
+    { "GET", "/v3/system/services/appfabric/logs" },
+    { "GET", "/v3/namespaces/default/apps/PurchaseHistory/metadata/tags" },
+    { "GET", "/v3/namespaces/default/datasets/history/metadata/properties" },
+    { "GET", "/v3/namespaces/default/metadata/search" },
+    { "GET", "/v3/namespaces/default/datasets/history/lineage" },
+    { "GET", "/v3/namespaces/default/data/datasets" },
+    { "GET", "/v3/namespaces/default/data/datasets/history/properties" },
+    { "GET", "/v3/namespaces/default/data/datasets/history/flows" },
+    { "POST", "/v3/namespaces/default/data/explore/tables/dataset_history/info" },
+    { "GET", "/v3/data/explore/queries/abc/next" },
+    { "GET", "/v3/explore/status" },
+    { "GET", "/v3/namespaces/default/previews/abc/status" },
+    { "GET", "/v3/security/authorization/privileges" },
+    { "GET", "/v3/namespaces" },
+  };
+
+  private RouterPathLookup pathLookup;
+  private String[] paths;
+  private HttpRequest[] requests;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    pathLookup = new RouterPathLookup();
+    paths = new String[REQUESTS.length];
+    requests = new HttpRequest[REQUESTS.length];
+    for (int i = 0; i < REQUESTS.length; i++) {
+      paths[i] = REQUESTS[i][1];
+      requests[i] = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.valueOf(REQUESTS[i][0]), paths[i]);
+    }
+  }
+
+  @Benchmark
+  public RouteDestination route() {
+    next = (next + 1) % paths.length;
+    return pathLookup.getRoutingService(FALLBACK_SERVICE, paths[next], requests[next]);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(RouterPathLookupBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
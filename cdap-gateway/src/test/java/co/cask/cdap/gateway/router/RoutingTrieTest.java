@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router;
+
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+
+/**
+ * Unit test for {@link RoutingTrie}.
+ */
+public class RoutingTrieTest {
+
+  private static final RouteDestination FIRST = new RouteDestination("first");
+  private static final RouteDestination SECOND = new RouteDestination("second");
+  private static final RouteDestination THIRD = new RouteDestination("third");
+
+  @Test
+  public void testPriority() {
+    // The wildcard route is added first, hence it wins over the literal one for the paths both of them match
+    RoutingTrie trie = RoutingTrie.builder()
+      .add(destination(FIRST), "a", null, "c")
+      .add(destination(SECOND), "a", "b")
+      .add(destination(THIRD), "a")
+      .build();
+
+    Assert.assertEquals(FIRST, lookup(trie, HttpMethod.GET, "a", "b", "c"));
+    Assert.assertEquals(FIRST, lookup(trie, HttpMethod.GET, "a", "x", "c", "d"));
+    Assert.assertEquals(SECOND, lookup(trie, HttpMethod.GET, "a", "b"));
+    Assert.assertEquals(SECOND, lookup(trie, HttpMethod.GET, "a", "b", "d"));
+    Assert.assertEquals(THIRD, lookup(trie, HttpMethod.GET, "a", "x", "d"));
+    Assert.assertEquals(THIRD, lookup(trie, HttpMethod.GET, "a"));
+    Assert.assertNull(trie.lookup(new String[] { "b" }, HttpMethod.GET));
+  }
+
+  @Test
+  public void testExactAndMethod() {
+    RoutingTrie trie = RoutingTrie.builder()
+      .addExact(destination(FIRST), "a", null)
+      .add(HttpMethod.GET, destination(SECOND), "a", null, "c")
+      .add(destination(THIRD), null, null)
+      .build();
+
+    Assert.assertEquals(FIRST, lookup(trie, HttpMethod.PUT, "a", "b"));
+    Assert.assertEquals(SECOND, lookup(trie, HttpMethod.GET, "a", "b", "c"));
+    Assert.assertEquals(THIRD, lookup(trie, HttpMethod.PUT, "a", "b", "c"));
+    Assert.assertEquals(THIRD, lookup(trie, HttpMethod.GET, "x", "b"));
+    Assert.assertNull(trie.lookup(new String[] { "a" }, HttpMethod.GET));
+  }
+
+  @Nullable
+  private RouteDestination lookup(RoutingTrie trie, HttpMethod method, String... uriParts) {
+    RoutingTrie.Destination destination = trie.lookup(uriParts, method);
+    Assert.assertNotNull(destination);
+    return destination.get(uriParts);
+  }
+
+  private RoutingTrie.Destination destination(final RouteDestination destination) {
+    return new RoutingTrie.Destination() {
+      @Override
+      public RouteDestination get(String[] uriParts) {
+        return destination;
+      }
+    };
+  }
+}
@@ -22,6 +22,7 @@ import co.cask.cdap.messaging.data.MessageId;
 import org.apache.tephra.Transaction;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -37,6 +38,9 @@ public abstract class MessageFetcher {
   // by default there is virtually no limit
   private int limit = Integer.MAX_VALUE;
 
+  // by default the fetch returns immediately
+  private long maxWaitNanos;
+
   /**
    * Setup the message fetching starting point based on the given {@link MessageId}. Calling this method
    * will clear the start time set by the {@link #setStartTime(long)} method.
@@ -94,6 +98,22 @@ public abstract class MessageFetcher {
     return this;
   }
 
+  /**
+   * Sets the maximum time to wait for new messages to be published if there is no message available at the time
+   * of fetching. By default, this is set to {@code 0}, meaning the fetch returns immediately.
+   *
+   * @param maxWait maximum time to wait
+   * @param unit unit of the maximum time to wait
+   * @return this instance
+   */
+  public MessageFetcher setMaxWait(long maxWait, TimeUnit unit) {
+    if (maxWait < 0) {
+      throw new IllegalArgumentException("Invalid message fetching max wait. Max wait must be >= 0");
+    }
+    this.maxWaitNanos = unit.toNanos(maxWait);
+    return this;
+  }
+
   @Nullable
   protected MessageId getStartOffset() {
     return startOffset;
@@ -117,6 +137,10 @@ public abstract class MessageFetcher {
     return limit;
   }
 
+  protected long getMaxWaitNanos() {
+    return maxWaitNanos;
+  }
+
   /**
    * Returns a {@link CloseableIterator} that iterates over messages fetched from the messaging system.
    *
@@ -20,15 +20,16 @@ import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.messaging.MessageRollback;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -36,8 +37,9 @@ import javax.annotation.concurrent.ThreadSafe;
 /**
  * Class to support writing to message/payload tables with high concurrency.
  *
- * It uses a non-blocking algorithm to batch writes from concurrent threads. The algorithm is the same as
- * the one used in ConcurrentStreamWriter.
+ * It uses a non-blocking algorithm to batch writes from concurrent threads. The algorithm is similar to
+ * the one used in ConcurrentStreamWriter, with the writing of a batch split into an encode stage and a store stage,
+ * so that the next batch can be encoded while the current one is being stored.
  *
  * The algorithm is like this:
  *
@@ -45,25 +47,31 @@ import javax.annotation.concurrent.ThreadSafe;
  *
  * <pre>
  * 1. Constructs a PendingStoreRequest locally and enqueue it to a ConcurrentLinkedQueue.
- * 2. Use CAS to set an AtomicBoolean flag to true.
- * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
- * 4. Provides an Iterator of PendingStoreRequest, which consumes from the ConcurrentLinkedQueue mentioned in step 1.
- * 5. The message table store method will consume the Iterator until it is empty
- * 6. Set the state of each PendingStoreRequest that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 2. Use CAS to set the encode flag to true.
+ * 3. If successfully set the flag to true, this thread becomes the encoder and proceed to run step 4-9.
+ * 4. Drains all PendingStoreRequest from the ConcurrentLinkedQueue mentioned in step 1.
+ * 5. Encodes the payloads of the drained PendingStoreRequest into table entries.
+ * 6. Use CAS to set the store flag to true, spinning until it succeeded.
+ * 7. Set the encode flag back to false, so that another thread can encode the next batch.
+ * 8. Stores the entries to the table and set the state of each PendingStoreRequest to COMPLETED (succeed/failure).
+ * 9. Set the store flag back to false.
+ * 10. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, go back to step 2.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * The spin lock between step 2 to step 10 is necessary as it guarantees events enqueued by all threads would
+ * eventually get written and flushed. Acquiring the store flag before releasing the encode flag guarantees
+ * batches are stored in the same order as they are encoded, hence in increasing order of message timestamp.
+ *
+ * Each instance of this class is used for one topic only, hence writes to different topics don't block each other.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
-  private final PendingStoreQueue pendingStoreQueue;
-  private final AtomicBoolean writerFlag;
+  private final Queue<PendingStoreRequest> writeQueue;
+  private final AtomicBoolean encodeFlag;
+  private final AtomicBoolean storeFlag;
   private final AtomicBoolean closed;
 
   /**
@@ -83,11 +91,19 @@ final class ConcurrentMessageWriter implements Closeable {
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
-    this.writerFlag = new AtomicBoolean();
+    this.writeQueue = new ConcurrentLinkedQueue<>();
+    this.encodeFlag = new AtomicBoolean();
+    this.storeFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
   }
 
+  /**
+   * Returns the {@link StoreRequestWriter} used by this class for persisting {@link StoreRequest}.
+   */
+  StoreRequestWriter<?> getMessagesWriter() {
+    return messagesWriter;
+  }
+
   /**
    * Persists the given {@link StoreRequest} to the {@link StoreRequestWriter} in this class. This method
    * is safe to be called concurrently from multiple threads.
@@ -101,7 +117,7 @@ final class ConcurrentMessageWriter implements Closeable {
     }
 
     PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest);
-    pendingStoreQueue.enqueue(pendingStoreRequest);
+    writeQueue.add(pendingStoreRequest);
 
     metricsCollector.increment("persist.requested", 1L);
 
@@ -125,98 +141,99 @@ final class ConcurrentMessageWriter implements Closeable {
   }
 
   /**
-   * Tries to acquire the writer flag and persist the pending requests.
+   * Tries to acquire the encode flag and persist the pending requests.
    *
-   * @return {@code true} if acquired the writer flag and called {@link PendingStoreQueue#persist(StoreRequestWriter)};
+   * @return {@code true} if acquired the encode flag and persisted all pending requests in the queue;
    *         otherwise {@code false} will be returned.
    */
   private boolean tryWrite() {
-    if (!writerFlag.compareAndSet(false, true)) {
+    if (!encodeFlag.compareAndSet(false, true)) {
       return false;
     }
-    try {
-      pendingStoreQueue.persist(messagesWriter);
-    } finally {
-      writerFlag.set(false);
+
+    // Capture all current requests.
+    // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
+    // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
+    // The number of requests in the queue is bounded by the number of threads that call this method.
+    // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
+    // the thread pool size used by the http service.
+    List<PendingStoreRequest> requests = new ArrayList<>();
+    PendingStoreRequest request = writeQueue.poll();
+    while (request != null) {
+      requests.add(request);
+      request = writeQueue.poll();
+    }
+
+    if (requests.isEmpty()) {
+      encodeFlag.set(false);
+    } else {
+      metricsCollector.gauge("persist.queue.size", requests.size());
+      write(messagesWriter, requests);
     }
     return true;
   }
 
-  @Override
-  public void close() throws IOException {
-    if (!closed.compareAndSet(false, true)) {
+  /**
+   * Encodes and stores the given list of {@link PendingStoreRequest}. This method must be called while holding
+   * the encode flag, and the encode flag will be released once the encoding is done.
+   */
+  private <T> void write(StoreRequestWriter<T> writer, List<PendingStoreRequest> requests) {
+    List<T> entries;
+    try {
+      entries = writer.encode(requests.iterator());
+    } catch (Throwable t) {
+      encodeFlag.set(false);
+      completeAll(requests, t);
       return;
     }
-    // Flush everything in the queue.
-    // When this thread can grab the writer flag, all pending write requests must be completed since the closed
-    // flag was already set to false.
-    while (!tryWrite()) {
+
+    // Acquire the store flag before releasing the encode flag to make sure batches are stored in encode order.
+    while (!storeFlag.compareAndSet(false, true)) {
       Thread.yield();
     }
-    messagesWriter.close();
+    encodeFlag.set(false);
+
+    try {
+      Stopwatch stopwatch = new Stopwatch().start();
+      writer.store(entries);
+      metricsCollector.increment("persist.batches", 1L);
+      metricsCollector.increment("persist.store.micros", stopwatch.elapsedTime(TimeUnit.MICROSECONDS));
+      metricsCollector.gauge("persist.batch.size", entries.size());
+      completeAll(requests, null);
+    } catch (Throwable t) {
+      completeAll(requests, t);
+    } finally {
+      storeFlag.set(false);
+    }
   }
 
   /**
-   * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
-   * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
-   * called while holding the writer flag.
+   * Marks all the given requests as completed.
    */
-  private static final class PendingStoreQueue {
-
-    private final MetricsCollector metricsCollector;
-    private final Queue<PendingStoreRequest> writeQueue;
-    private final List<PendingStoreRequest> inflightRequests;
-
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
-      this.metricsCollector = metricsCollector;
-      this.writeQueue = new ConcurrentLinkedQueue<>();
-      this.inflightRequests = new ArrayList<>(100);
+  private void completeAll(List<PendingStoreRequest> requests, @Nullable Throwable failureCause) {
+    for (PendingStoreRequest request : requests) {
+      request.completed(failureCause);
     }
+  }
 
-    /**
-     * Puts the given {@link PendingStoreRequest} to the concurrent queue.
-     */
-    void enqueue(PendingStoreRequest storeRequest) {
-      writeQueue.add(storeRequest);
+  @Override
+  public void close() throws IOException {
+    if (!closed.compareAndSet(false, true)) {
+      return;
     }
-
-    /**
-     * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
-     */
-    void persist(StoreRequestWriter<?> writer) {
-      // Capture all current events.
-      // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
-      // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
-      // The number of requests in the queue is bounded by the number of threads that call this method.
-      // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
-      // the thread pool size used by the http service.
-      inflightRequests.clear();
-      PendingStoreRequest request = writeQueue.poll();
-      while (request != null) {
-        inflightRequests.add(request);
-        request = writeQueue.poll();
-      }
-
-      metricsCollector.gauge("persist.queue.size", inflightRequests.size());
-
-      try {
-        writer.write(inflightRequests.iterator());
-        completeAll(null);
-      } catch (Throwable t) {
-        completeAll(t);
-      }
+    // Flush everything in the queue.
+    // When this thread can grab the encode flag, all pending write requests must have been encoded since the closed
+    // flag was already set to true. Then wait for the store flag to make sure the last batch has been stored.
+    while (!tryWrite()) {
+      Thread.yield();
     }
-
-    /**
-     * Marks all inflight requests as collected through the {@link Iterator#next()} method as completed.
-     * This method must be called while holding the writer flag.
-     */
-    void completeAll(@Nullable Throwable failureCause) {
-      Iterator<PendingStoreRequest> iterator = inflightRequests.iterator();
-      while (iterator.hasNext()) {
-        iterator.next().completed(failureCause);
-        iterator.remove();
-      }
+    while (!storeFlag.compareAndSet(false, true)) {
+      Thread.yield();
+    }
+    try {
+      messagesWriter.close();
+    } finally {
+      storeFlag.set(false);
     }
   }
 }
@@ -17,38 +17,82 @@
 package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.data.Message;
 import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.messaging.store.MessageTableTailCache;
 import co.cask.cdap.messaging.store.PayloadTable;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.base.Throwables;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MessageFetcher} that fetch messages directly
- * from {@link MessageTable} and {@link PayloadTable}.
+ * from {@link MessageTable} and {@link PayloadTable}. If the fetch starts from within the window of recently
+ * published messages kept in the {@link MessageTableTailCache}, message entries are fetched from the cache instead
+ * of the {@link MessageTable}. If there is no message available and max wait is set,
+ * it waits on the {@link TopicNotifier} for new messages being published before fetching again.
  */
 final class CoreMessageFetcher extends MessageFetcher {
 
   private final TopicMetadata topicMetadata;
   private final MessageTable messageTable;
   private final PayloadTable payloadTable;
+  private final TopicNotifier topicNotifier;
+  private final MessageTableTailCache tailCache;
+  private final MetricsCollector metricsCollector;
 
-  CoreMessageFetcher(TopicMetadata topicMetadata, MessageTable messageTable, PayloadTable payloadTable) {
+  CoreMessageFetcher(TopicMetadata topicMetadata, MessageTable messageTable, PayloadTable payloadTable,
+                     TopicNotifier topicNotifier, @Nullable MessageTableTailCache tailCache,
+                     MetricsCollector metricsCollector) {
     this.topicMetadata = topicMetadata;
     this.messageTable = messageTable;
     this.payloadTable = payloadTable;
+    this.topicNotifier = topicNotifier;
+    this.tailCache = tailCache;
+    this.metricsCollector = metricsCollector;
   }
 
   @Override
   public CloseableIterator<Message> fetch() throws IOException {
+    long maxWaitNanos = getMaxWaitNanos();
+    if (maxWaitNanos <= 0) {
+      return doFetch();
+    }
+
+    TopicId topicId = topicMetadata.getTopicId();
+    long deadline = System.nanoTime() + maxWaitNanos;
+    while (true) {
+      // Get the generation before fetching, so that messages published after the fetch won't be missed
+      long generation = topicNotifier.getGeneration(topicId);
+      CloseableIterator<Message> iterator = doFetch();
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0 || iterator.hasNext()) {
+        return iterator;
+      }
+      iterator.close();
+
+      try {
+        topicNotifier.await(topicId, generation, remaining, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for messages from " + topicId);
+      }
+    }
+  }
+
+  /**
+   * Fetches messages from the {@link MessageTable} and {@link PayloadTable} without waiting.
+   */
+  private CloseableIterator<Message> doFetch() throws IOException {
     final TopicId topicId = topicMetadata.getTopicId();
     long ttl = topicMetadata.getTTL();
 
@@ -63,16 +107,25 @@ final class CoreMessageFetcher extends MessageFetcher {
     // do the scanning based on time. The smallest start time should be the currentTime - TTL.
     if (startOffset == null || startOffset.getPublishTimestamp() < smallestPublishTime) {
       long fetchStartTime = Math.max(smallestPublishTime, startTime == null ? smallestPublishTime : startTime);
-      messageIterator = messageTable.fetch(topicId, fetchStartTime, getLimit(), getTransaction());
+      CloseableIterator<MessageTable.Entry> cacheIterator = tailCache == null
+        ? null : tailCache.fetch(fetchStartTime, getLimit(), getTransaction());
+      messageIterator = cacheIterator != null
+        ? cacheIterator : messageTable.fetch(topicId, fetchStartTime, getLimit(), getTransaction());
+      emitCacheMetrics(cacheIterator != null);
     } else {
       // Start scanning based on the start message id
+      MessageId messageId = startOffset;
+      boolean inclusive = isIncludeStart();
       if (startOffset.getPayloadWriteTimestamp() != 0L) {
         // This message ID refer to payload table. We scan the message table with the reference message ID inclusively.
-        messageIterator = messageTable.fetch(topicId, createMessageTableMessageId(startOffset),
-                                             true, getLimit(), getTransaction());
-      } else {
-        messageIterator = messageTable.fetch(topicId, startOffset, isIncludeStart(), getLimit(), getTransaction());
+        messageId = createMessageTableMessageId(startOffset);
+        inclusive = true;
       }
+      CloseableIterator<MessageTable.Entry> cacheIterator = tailCache == null
+        ? null : tailCache.fetch(messageId, inclusive, getLimit(), getTransaction());
+      messageIterator = cacheIterator != null
+        ? cacheIterator : messageTable.fetch(topicId, messageId, inclusive, getLimit(), getTransaction());
+      emitCacheMetrics(cacheIterator != null);
     }
 
     return new CloseableIterator<Message>() {
@@ -153,6 +206,15 @@ final class CoreMessageFetcher extends MessageFetcher {
     };
   }
 
+  /**
+   * Emits metrics about whether a fetch was served from the {@link MessageTableTailCache}.
+   */
+  private void emitCacheMetrics(boolean hit) {
+    if (tailCache != null) {
+      metricsCollector.increment(hit ? "fetch.cache.hit" : "fetch.cache.miss", 1L);
+    }
+  }
+
   /**
    * Creates a {@link MessageId} from another message id by copying the publish timestamp and
    * sequence id.
@@ -28,6 +28,7 @@ import co.cask.cdap.messaging.TopicAlreadyExistsException;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.TopicNotFoundException;
 import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.messaging.store.MessageTableTailCache;
 import co.cask.cdap.messaging.store.MetadataTable;
 import co.cask.cdap.messaging.store.PayloadTable;
 import co.cask.cdap.messaging.store.TableFactory;
@@ -48,8 +49,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -68,6 +72,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final LoadingCache<TopicId, ConcurrentMessageWriter> payloadTableWriterCache;
   private final TimeProvider timeProvider;
   private final MetricsContext metricsContext;
+  private final TopicNotifier topicNotifier;
+  private final ConcurrentMap<TopicId, MessageTableTailCache> tailCaches;
 
   @Inject
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -84,6 +90,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
     this.timeProvider = timeProvider;
+    this.topicNotifier = new TopicNotifier();
+    this.tailCaches = new ConcurrentHashMap<>();
     this.metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
       Constants.Metrics.Tag.COMPONENT, Constants.Service.MESSAGING_SERVICE,
       Constants.Metrics.Tag.INSTANCE_ID, cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, "0")
@@ -110,6 +118,11 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     try (MetadataTable metadataTable = createMetadataTable()) {
       metadataTable.deleteTopic(topicId);
       topicCache.invalidate(topicId);
+      topicNotifier.remove(topicId);
+      MessageTableTailCache tailCache = tailCaches.get(topicId);
+      if (tailCache != null) {
+        tailCache.reset();
+      }
     }
   }
 
@@ -127,13 +140,17 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public MessageFetcher prepareFetch(final TopicId topicId) throws TopicNotFoundException, IOException {
     TopicMetadata metadata = getTopic(topicId);
-    return new CoreMessageFetcher(metadata, createMessageTable(metadata), createPayloadTable(metadata));
+    return new CoreMessageFetcher(metadata, createMessageTable(metadata), createPayloadTable(metadata), topicNotifier,
+                                  tailCaches.get(topicId), metricsContext);
   }
 
   @Override
   public MessageRollback publish(TopicId topicId, StoreRequest messages) throws TopicNotFoundException, IOException {
     try {
-      return messageTableWriterCache.get(topicId).persist(messages);
+      MessageRollback rollback = messageTableWriterCache.get(topicId).persist(messages);
+      // Wakes up fetchers that are waiting for new messages
+      topicNotifier.notifyPublished(topicId);
+      return rollback;
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -156,6 +173,12 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   public void rollback(TopicId topicId, MessageRollback rollbackInfo) throws TopicNotFoundException, IOException {
     TopicMetadata metadata = getTopic(topicId);
 
+    // The rolled back messages are removed from the message table, hence can't be served from the cache anymore
+    MessageTableTailCache tailCache = tailCaches.get(topicId);
+    if (tailCache != null) {
+      tailCache.reset();
+    }
+
     Exception failure = null;
     try (MessageTable messageTable = createMessageTable(metadata)) {
       // Safe to cast to short because message table only use the sequence id as unsigned bytes.
@@ -226,6 +249,15 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
         @Override
         public void onRemoval(RemovalNotification<TopicId, ConcurrentMessageWriter> notification) {
           ConcurrentMessageWriter writer = notification.getValue();
+          if (writer != null && writer.getMessagesWriter() instanceof MessageTableStoreRequestWriter) {
+            // Only remove the tail cache of this writer, since a new writer of the same topic
+            // might have been loaded and registered its own tail cache already.
+            MessageTableTailCache tailCache =
+              ((MessageTableStoreRequestWriter) writer.getMessagesWriter()).getTailCache();
+            if (tailCache != null) {
+              tailCaches.remove(notification.getKey(), tailCache);
+            }
+          }
           if (writer != null) {
             try {
               writer.close();
@@ -239,9 +271,16 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
         @Override
         public ConcurrentMessageWriter load(TopicId topicId) throws Exception {
           TopicMetadata metadata = getTopic(topicId);
-          StoreRequestWriter<?> messagesWriter = messageTable
-            ? new MessageTableStoreRequestWriter(createMessageTable(metadata), timeProvider)
-            : new PayloadTableStoreRequestWriter(createPayloadTable(metadata), timeProvider);
+          StoreRequestWriter<?> messagesWriter;
+          if (messageTable) {
+            MessageTableTailCache tailCache = createTailCache(topicId);
+            messagesWriter = new MessageTableStoreRequestWriter(createMessageTable(metadata), timeProvider, tailCache);
+            if (tailCache != null) {
+              tailCaches.put(topicId, tailCache);
+            }
+          } else {
+            messagesWriter = new PayloadTableStoreRequestWriter(createPayloadTable(metadata), timeProvider);
+          }
 
           MetricsContext writerMetricsContext = metricsContext.childContext(ImmutableMap.of(
             Constants.Metrics.Tag.NAMESPACE, topicId.getNamespace(),
@@ -253,6 +292,21 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       });
   }
 
+  /**
+   * Creates a {@link MessageTableTailCache} for the given topic based on the configuration.
+   *
+   * @return a new {@link MessageTableTailCache} or {@code null} if the cache is disabled
+   */
+  @Nullable
+  private MessageTableTailCache createTailCache(TopicId topicId) {
+    int maxMessages = cConf.getInt(Constants.MessagingSystem.TOPIC_TAIL_CACHE_MAX_MESSAGES);
+    long maxBytes = cConf.getLong(Constants.MessagingSystem.TOPIC_TAIL_CACHE_MAX_BYTES);
+    if (maxMessages <= 0 || maxBytes <= 0) {
+      return null;
+    }
+    return new MessageTableTailCache(topicId, maxMessages, maxBytes);
+  }
+
   /**
    * Creates a new instance of {@link MetadataTable}.
    */
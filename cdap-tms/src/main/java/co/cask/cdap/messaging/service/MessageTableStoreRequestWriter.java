@@ -18,10 +18,12 @@ package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.messaging.store.MessageTableTailCache;
 import co.cask.cdap.proto.id.TopicId;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -32,24 +34,51 @@ import javax.annotation.concurrent.NotThreadSafe;
 final class MessageTableStoreRequestWriter extends StoreRequestWriter<MessageTable.Entry> {
 
   private final MessageTable messageTable;
-  private final MutableMessageTableEntry entry;
+  private final MessageTableTailCache tailCache;
 
-  MessageTableStoreRequestWriter(MessageTable messageTable, TimeProvider timeProvider) {
+  /**
+   * Constructor.
+   *
+   * @param messageTable the {@link MessageTable} to write to
+   * @param timeProvider the {@link TimeProvider} for generating timestamp to be used for write timestamp
+   * @param tailCache an optional {@link MessageTableTailCache} to append entries to after they are persisted
+   */
+  MessageTableStoreRequestWriter(MessageTable messageTable, TimeProvider timeProvider,
+                                 @Nullable MessageTableTailCache tailCache) {
     super(timeProvider);
     this.messageTable = messageTable;
-    this.entry = new MutableMessageTableEntry();
+    this.tailCache = tailCache;
+  }
+
+  /**
+   * Returns the {@link MessageTableTailCache} that entries are appended to or {@code null} if there is none.
+   */
+  @Nullable
+  MessageTableTailCache getTailCache() {
+    return tailCache;
   }
 
   @Override
   MessageTable.Entry getEntry(TopicId topicId, boolean transactional, long transactionWritePointer,
                               long writeTimestamp, short sequenceId, @Nullable byte[] payload) {
-    return entry
-      .setTopicId(topicId)
-      .setTransactional(transactional)
-      .setTransactionWritePointer(transactionWritePointer)
-      .setPublishTimestamp(writeTimestamp)
-      .setSequenceId(sequenceId)
-      .setPayload(payload);
+    return new StoreMessageTableEntry(topicId, transactional, transactionWritePointer,
+                                      writeTimestamp, sequenceId, payload);
+  }
+
+  @Override
+  void store(List<MessageTable.Entry> entries) throws IOException {
+    if (tailCache == null) {
+      super.store(entries);
+      return;
+    }
+    try {
+      super.store(entries);
+    } catch (IOException | RuntimeException e) {
+      // Some of the entries might have been persisted, hence reset the cache to avoid having a gap in it.
+      tailCache.reset();
+      throw e;
+    }
+    tailCache.append(entries.iterator());
   }
 
   @Override
@@ -63,45 +92,25 @@ final class MessageTableStoreRequestWriter extends StoreRequestWriter<MessageTab
   }
 
   /**
-   * A mutable implementation of {@link MessageTable.Entry}.
+   * An implementation of {@link MessageTable.Entry} for entries to be stored.
    */
-  private static final class MutableMessageTableEntry implements MessageTable.Entry {
+  private static final class StoreMessageTableEntry implements MessageTable.Entry {
 
-    private TopicId topicId;
-    private boolean transactional;
-    private long transactionWritePointer;
-    private long publishTimestamp;
-    private short sequenceId;
-    private byte[] payload;
+    private final TopicId topicId;
+    private final boolean transactional;
+    private final long transactionWritePointer;
+    private final long publishTimestamp;
+    private final short sequenceId;
+    private final byte[] payload;
 
-    MutableMessageTableEntry setTopicId(TopicId topicId) {
+    StoreMessageTableEntry(TopicId topicId, boolean transactional, long transactionWritePointer,
+                           long publishTimestamp, short sequenceId, @Nullable byte[] payload) {
       this.topicId = topicId;
-      return this;
-    }
-
-    MutableMessageTableEntry setTransactional(boolean transactional) {
       this.transactional = transactional;
-      return this;
-    }
-
-    MutableMessageTableEntry setTransactionWritePointer(long transactionWritePointer) {
       this.transactionWritePointer = transactionWritePointer;
-      return this;
-    }
-
-    MutableMessageTableEntry setPublishTimestamp(long publishTimestamp) {
       this.publishTimestamp = publishTimestamp;
-      return this;
-    }
-
-    MutableMessageTableEntry setSequenceId(short sequenceId) {
       this.sequenceId = sequenceId;
-      return this;
-    }
-
-    MutableMessageTableEntry setPayload(@Nullable byte[] payload) {
       this.payload = payload;
-      return this;
     }
 
     @Override
@@ -32,23 +32,16 @@ import javax.annotation.concurrent.NotThreadSafe;
 final class PayloadTableStoreRequestWriter extends StoreRequestWriter<PayloadTable.Entry> {
 
   private final PayloadTable payloadTable;
-  private final MutablePayloadTableEntry entry;
 
   PayloadTableStoreRequestWriter(PayloadTable payloadTable, TimeProvider timeProvider) {
     super(timeProvider);
     this.payloadTable = payloadTable;
-    this.entry = new MutablePayloadTableEntry();
   }
 
   @Override
   PayloadTable.Entry getEntry(TopicId topicId, boolean transactional, long transactionWritePointer,
                               long writeTimestamp, short sequenceId, @Nullable byte[] payload) {
-    return entry
-      .setTopicId(topicId)
-      .setTransactionWritePointer(transactionWritePointer)
-      .setPayloadWriteTimestamp(writeTimestamp)
-      .setPayloadSequenceId(sequenceId)
-      .setPayload(payload);
+    return new StorePayloadTableEntry(topicId, transactionWritePointer, writeTimestamp, sequenceId, payload);
   }
 
   @Override
@@ -62,39 +55,23 @@ final class PayloadTableStoreRequestWriter extends StoreRequestWriter<PayloadTab
   }
 
   /**
-   * A mutable implementation of {@link PayloadTable.Entry}.
+   * An implementation of {@link PayloadTable.Entry} for entries to be stored.
    */
-  private static final class MutablePayloadTableEntry implements PayloadTable.Entry {
+  private static final class StorePayloadTableEntry implements PayloadTable.Entry {
 
-    private TopicId topicId;
-    private long transactionWritePointer;
-    private long writeTimestamp;
-    private short sequenceId;
-    private byte[] payload;
+    private final TopicId topicId;
+    private final long transactionWritePointer;
+    private final long writeTimestamp;
+    private final short sequenceId;
+    private final byte[] payload;
 
-    MutablePayloadTableEntry setTopicId(TopicId topicId) {
+    StorePayloadTableEntry(TopicId topicId, long transactionWritePointer,
+                           long writeTimestamp, short sequenceId, byte[] payload) {
       this.topicId = topicId;
-      return this;
-    }
-
-    MutablePayloadTableEntry setTransactionWritePointer(long transactionWritePointer) {
       this.transactionWritePointer = transactionWritePointer;
-      return this;
-    }
-
-    MutablePayloadTableEntry setPayloadWriteTimestamp(long writeTimestamp) {
       this.writeTimestamp = writeTimestamp;
-      return this;
-    }
-
-    MutablePayloadTableEntry setPayloadSequenceId(short sequenceId) {
       this.sequenceId = sequenceId;
-      return this;
-    }
-
-    MutablePayloadTableEntry setPayload(byte[] payload) {
       this.payload = payload;
-      return this;
     }
 
     @Override
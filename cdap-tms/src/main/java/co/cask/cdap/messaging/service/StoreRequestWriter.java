@@ -19,12 +19,13 @@ package co.cask.cdap.messaging.service;
 import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.AbstractIterator;
 import com.google.common.util.concurrent.Uninterruptibles;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -34,6 +35,9 @@ import javax.annotation.concurrent.NotThreadSafe;
  * An abstract base class to abstract out writing of {@link Iterator} of {@link StoreRequest} to underlying
  * storage table.
  *
+ * The {@link #encode(Iterator)} and {@link #store(List)} methods can be called concurrently with each other
+ * from different threads, but each of them can only be called by one thread at a time.
+ *
  * @param <T> Type of the internal entry that can be written by this writer.
  */
 @NotThreadSafe
@@ -62,38 +66,35 @@ abstract class StoreRequestWriter<T> implements Closeable {
   }
 
   /**
-   * Writes the given list of {@link PendingStoreRequest} through this writer.
+   * Encodes the given list of {@link PendingStoreRequest} into entries to be written, assigning the write timestamp
+   * and sequence id to each message. Entries returned by this method must be stored with {@link #store(List)}
+   * in the same order as they were encoded.
    */
-  final void write(final Iterator<? extends PendingStoreRequest> requests) throws IOException {
+  final List<T> encode(Iterator<? extends PendingStoreRequest> requests) {
     // Make sure we start with the current timestamp
     updateTimeSequence();
 
     // Transform payloads inside each PendingStoreRequest into individual write entry
-    doWrite(new AbstractIterator<T>() {
-      private PendingStoreRequest currentRequest;
-
-      @Override
-      protected T computeNext() {
-        // If there is no current payload iterator (initial case)
-        // or the current iterator is already exhausted (finished one PendingStoreRequest),
-        // look for a new payload iterator from the next PendingStoreRequest
-        while (!payloadTransformIterator.hasNext()) {
-          // Finished all PendingStoreRequest
-          if (!requests.hasNext()) {
-            return endOfData();
-          }
-
-          // Get the next PendingStoreRequest
-          currentRequest = requests.next();
-          payloadTransformIterator.reset(currentRequest);
-        }
-        return payloadTransformIterator.hasNext() ? payloadTransformIterator.next() : endOfData();
+    List<T> entries = new ArrayList<>();
+    while (requests.hasNext()) {
+      payloadTransformIterator.reset(requests.next());
+      while (payloadTransformIterator.hasNext()) {
+        entries.add(payloadTransformIterator.next());
       }
-    });
+    }
+    return entries;
+  }
+
+  /**
+   * Writes the given list of entries as returned by the {@link #encode(Iterator)} method.
+   */
+  void store(List<T> entries) throws IOException {
+    doWrite(entries.iterator());
   }
 
   /**
-   * Returns an entry to be written based on the provided information.
+   * Returns an entry to be written based on the provided information. A new entry must be returned
+   * on every call, since entries are collected before being written.
    *
    * @param topicId the topic id
    * @param transactional whether a store request is transactional or not
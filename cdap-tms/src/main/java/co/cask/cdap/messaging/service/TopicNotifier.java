@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.proto.id.TopicId;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Allows threads to wait for new messages being published to a topic.
+ *
+ * Each topic has a generation number that changes whenever messages are published to the topic.
+ * A thread reads the generation before fetching messages and, if there was nothing to fetch, waits for the
+ * generation to change. Reading the generation before fetching guarantees no publish in between is missed.
+ *
+ * Generation numbers are taken from a sequence shared by all topics, so that a number is never handed out twice,
+ * even after a topic was removed and its generation recreated. A thread waiting with a generation read before
+ * the removal therefore sees a changed generation right away.
+ */
+@ThreadSafe
+final class TopicNotifier {
+
+  private final ConcurrentMap<TopicId, Generation> generations = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Returns the current generation of the given topic.
+   */
+  long getGeneration(TopicId topicId) {
+    return getOrCreate(topicId).value.get();
+  }
+
+  /**
+   * Notifies threads waiting on the given topic that new messages were published.
+   */
+  void notifyPublished(TopicId topicId) {
+    Generation generation = generations.get(topicId);
+    // If there is no generation, no thread has read it yet, hence nobody to notify.
+    if (generation != null) {
+      generation.advance(sequence.incrementAndGet());
+    }
+  }
+
+  /**
+   * Removes the given topic. Threads waiting on the topic will be woken up.
+   */
+  void remove(TopicId topicId) {
+    Generation generation = generations.remove(topicId);
+    if (generation != null) {
+      generation.advance(sequence.incrementAndGet());
+    }
+  }
+
+  /**
+   * Waits for the generation of the given topic to be changed from the given one.
+   *
+   * @param topicId the topic to wait on
+   * @param generation the generation as returned by {@link #getGeneration(TopicId)}
+   * @param timeout the maximum time to wait
+   * @param unit unit of the timeout
+   * @return {@code true} if the generation was changed; {@code false} if timeout reached
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  boolean await(TopicId topicId, long generation, long timeout, TimeUnit unit) throws InterruptedException {
+    Generation current = getOrCreate(topicId);
+    if (current.value.get() != generation) {
+      return true;
+    }
+
+    long remaining = unit.toNanos(timeout);
+    long deadline = System.nanoTime() + remaining;
+
+    // Increment the waiter count before checking the generation again,
+    // so that the publishing thread either sees the waiter or this thread sees the new generation.
+    current.waiters.incrementAndGet();
+    try {
+      synchronized (current) {
+        while (current.value.get() == generation) {
+          if (remaining <= 0) {
+            return false;
+          }
+          TimeUnit.NANOSECONDS.timedWait(current, remaining);
+          remaining = deadline - System.nanoTime();
+        }
+        return true;
+      }
+    } finally {
+      current.waiters.decrementAndGet();
+    }
+  }
+
+  private Generation getOrCreate(TopicId topicId) {
+    Generation generation = generations.get(topicId);
+    if (generation != null) {
+      return generation;
+    }
+    generation = new Generation(sequence.incrementAndGet());
+    Generation existing = generations.putIfAbsent(topicId, generation);
+    return existing == null ? generation : existing;
+  }
+
+  /**
+   * The generation number of a topic, together with the number of threads waiting on it.
+   */
+  private static final class Generation {
+    private final AtomicLong value;
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    Generation(long initial) {
+      this.value = new AtomicLong(initial);
+    }
+
+    /**
+     * Changes the generation to the given value, which is never used by any generation before.
+     */
+    void advance(long newValue) {
+      value.set(newValue);
+      // Only need to acquire the monitor when there are waiting threads
+      if (waiters.get() > 0) {
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    }
+  }
+}
@@ -139,9 +139,10 @@ public abstract class AbstractMessageTable implements MessageTable {
   }
 
   /**
-   * An {@link Iterator} for fetching {@link Entry} from the the message table.
+   * An {@link Iterator} for fetching {@link Entry} from the the message table. It is also used by the
+   * {@link MessageTableTailCache} for fetching from cached entries.
    */
-  private static class FetchIterator extends AbstractCloseableIterator<Entry> {
+  static class FetchIterator extends AbstractCloseableIterator<Entry> {
     private final CloseableIterator<RawMessageTableEntry> scanner;
     private final Transaction transaction;
     private byte[] skipStartRow;
@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.messaging.MessagingUtils;
+import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Preconditions;
+import org.apache.tephra.Transaction;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A bounded in-memory cache of the most recently stored {@link MessageTable} entries of a topic, kept as
+ * {@link RawMessageTableEntry} in a ring buffer in row key order.
+ *
+ * The cache relies on entries being appended in the same order as they are persisted to the {@link MessageTable},
+ * by the only writer of the topic. With that, every entry in the table that is larger than or equal to the first
+ * cached entry is in the cache, hence a fetch can be served from the cache if it starts from there.
+ * If an entry is appended out of order, or if the cache is {@link #reset()}, the cached entries are dropped and
+ * caching restarts with the next entry that is larger than all entries appended before.
+ */
+@ThreadSafe
+public final class MessageTableTailCache {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final byte[] topic;
+  private final int maxEntries;
+  private final long maxBytes;
+
+  // Ring buffer of the cached entries, in increasing order of the row key
+  private RawMessageTableEntry[] entries;
+  private int head;
+  private int count;
+  private long bytes;
+  // The largest row key ever appended
+  private byte[] lastKey;
+
+  /**
+   * Constructor.
+   *
+   * @param topicId the topic that the entries to cache belongs to
+   * @param maxEntries maximum number of entries to cache
+   * @param maxBytes maximum size in bytes of the entries to cache
+   */
+  public MessageTableTailCache(TopicId topicId, int maxEntries, long maxBytes) {
+    Preconditions.checkArgument(maxEntries > 0, "Maximum number of entries must be positive: %s", maxEntries);
+    Preconditions.checkArgument(maxBytes > 0, "Maximum size must be positive: %s", maxBytes);
+    this.topic = MessagingUtils.toRowKeyPrefix(topicId);
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.entries = new RawMessageTableEntry[Math.min(INITIAL_CAPACITY, maxEntries)];
+  }
+
+  /**
+   * Appends entries that were just persisted to the {@link MessageTable}.
+   *
+   * @param entries entries in the same order as they were persisted
+   */
+  public synchronized void append(Iterator<? extends MessageTable.Entry> entries) {
+    while (entries.hasNext()) {
+      MessageTable.Entry entry = entries.next();
+      byte[] key = new byte[topic.length + Bytes.SIZEOF_LONG + Bytes.SIZEOF_SHORT];
+      Bytes.putBytes(key, 0, topic, 0, topic.length);
+      Bytes.putLong(key, topic.length, entry.getPublishTimestamp());
+      Bytes.putShort(key, topic.length + Bytes.SIZEOF_LONG, entry.getSequenceId());
+
+      // Entries not in increasing order, possibly due to clock change. The table may contain entries larger
+      // than this one that are no longer in the cache, hence drop everything until we pass the last key.
+      if (lastKey != null && Bytes.compareTo(key, lastKey) <= 0) {
+        clear();
+        continue;
+      }
+      lastKey = key;
+
+      byte[] txPtr = entry.isTransactional() ? Bytes.toBytes(entry.getTransactionWritePointer()) : null;
+      byte[] payload = entry.getPayload();
+      long size = key.length + (txPtr == null ? 0 : txPtr.length) + (payload == null ? 0 : payload.length);
+      if (size > maxBytes) {
+        // Too large to cache. Drop all cached entries so that there is no gap in the cache.
+        clear();
+        continue;
+      }
+
+      while (count > 0 && (count == maxEntries || bytes + size > maxBytes)) {
+        evict();
+      }
+      if (count == this.entries.length) {
+        grow();
+      }
+      this.entries[(head + count) % this.entries.length] = new RawMessageTableEntry().set(key, txPtr, payload);
+      count++;
+      bytes += size;
+    }
+  }
+
+  /**
+   * Drops all cached entries. This method should be called when entries in the {@link MessageTable} were
+   * modified by means other than the writer that appends to this cache, or when the writer failed to persist
+   * entries, in which case some of the entries might have been persisted.
+   */
+  public synchronized void reset() {
+    clear();
+  }
+
+  /**
+   * Fetches entries published at or after the given time from the cache,
+   * with the same semantic as {@link MessageTable#fetch(TopicId, long, int, Transaction)}.
+   *
+   * @return a {@link CloseableIterator} of entries or {@code null} if the cache doesn't cover the start time
+   */
+  @Nullable
+  public CloseableIterator<MessageTable.Entry> fetch(long startTime, int limit, @Nullable Transaction transaction) {
+    byte[] startRow = new byte[topic.length + Bytes.SIZEOF_LONG];
+    Bytes.putBytes(startRow, 0, topic, 0, topic.length);
+    Bytes.putLong(startRow, topic.length, startTime);
+
+    List<RawMessageTableEntry> result = getEntries(startRow);
+    return result == null ? null : new AbstractMessageTable.FetchIterator(new ListScanner(result), limit,
+                                                                          null, transaction);
+  }
+
+  /**
+   * Fetches entries starting from the given {@link MessageId} from the cache, with the same semantic as
+   * {@link MessageTable#fetch(TopicId, MessageId, boolean, int, Transaction)}.
+   *
+   * @return a {@link CloseableIterator} of entries or {@code null} if the cache doesn't cover the message id
+   */
+  @Nullable
+  public CloseableIterator<MessageTable.Entry> fetch(MessageId messageId, boolean inclusive, int limit,
+                                                     @Nullable Transaction transaction) {
+    byte[] startRow = new byte[topic.length + Bytes.SIZEOF_LONG + Bytes.SIZEOF_SHORT];
+    Bytes.putBytes(startRow, 0, topic, 0, topic.length);
+    Bytes.putLong(startRow, topic.length, messageId.getPublishTimestamp());
+    Bytes.putShort(startRow, topic.length + Bytes.SIZEOF_LONG, messageId.getSequenceId());
+
+    List<RawMessageTableEntry> result = getEntries(startRow);
+    return result == null ? null : new AbstractMessageTable.FetchIterator(new ListScanner(result), limit,
+                                                                          inclusive ? null : startRow, transaction);
+  }
+
+  /**
+   * Returns the cached entries with row key larger than or equal to the given start row, or {@code null}
+   * if the cache doesn't cover the start row.
+   */
+  @Nullable
+  private synchronized List<RawMessageTableEntry> getEntries(byte[] startRow) {
+    if (count == 0 || Bytes.compareTo(startRow, entries[head].getKey()) < 0) {
+      return null;
+    }
+
+    // Binary search for the first entry that is larger than or equal to the start row
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Bytes.compareTo(entries[(head + mid) % entries.length].getKey(), startRow) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    RawMessageTableEntry[] result = new RawMessageTableEntry[count - low];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = entries[(head + low + i) % entries.length];
+    }
+    return Arrays.asList(result);
+  }
+
+  private void evict() {
+    RawMessageTableEntry entry = entries[head];
+    entries[head] = null;
+    head = (head + 1) % entries.length;
+    count--;
+    bytes -= entry.getKey().length
+      + (entry.getTxPtr() == null ? 0 : entry.getTxPtr().length)
+      + (entry.getPayload() == null ? 0 : entry.getPayload().length);
+  }
+
+  private void grow() {
+    RawMessageTableEntry[] newEntries = new RawMessageTableEntry[Math.min(entries.length * 2, maxEntries)];
+    for (int i = 0; i < count; i++) {
+      newEntries[i] = entries[(head + i) % entries.length];
+    }
+    entries = newEntries;
+    head = 0;
+  }
+
+  private void clear() {
+    Arrays.fill(entries, null);
+    head = 0;
+    count = 0;
+    bytes = 0;
+  }
+
+  /**
+   * A {@link CloseableIterator} over a list of {@link RawMessageTableEntry}.
+   */
+  private static final class ListScanner extends AbstractCloseableIterator<RawMessageTableEntry> {
+
+    private final Iterator<RawMessageTableEntry> iterator;
+
+    ListScanner(List<RawMessageTableEntry> entries) {
+      this.iterator = entries.iterator();
+    }
+
+    @Override
+    protected RawMessageTableEntry computeNext() {
+      return iterator.hasNext() ? iterator.next() : endOfData();
+    }
+
+    @Override
+    public void close() {
+      // no-op
+    }
+  }
+}
@@ -24,6 +24,7 @@ import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
@@ -38,10 +39,12 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -159,6 +162,11 @@ public class ConcurrentMessageWriterTest {
       public void gauge(String metricName, long value) {
         LOG.info("MetricsContext.gauge: {} = {}", metricName, value);
       }
+
+      @Override
+      public void distribution(String metricName, long value) {
+        // no-op
+      }
     });
 
     ExecutorService executor = Executors.newFixedThreadPool(3);
@@ -258,10 +266,77 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testPipelinedWrites() throws Exception {
+    final CountDownLatch storeStartedLatch = new CountDownLatch(1);
+    final CountDownLatch storeLatch = new CountDownLatch(1);
+    final CountDownLatch encodedLatch = new CountDownLatch(1);
+
+    // A writer that blocks the first store until the second request is encoded
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider()) {
+      @Override
+      protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+        storeStartedLatch.countDown();
+        Uninterruptibles.awaitUninterruptibly(storeLatch);
+        super.doWrite(entries);
+      }
+    };
+    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter);
+    final TopicId topicId = NamespaceId.DEFAULT.topic("t");
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> firstFuture = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          writer.persist(new TestStoreRequest(topicId, Arrays.asList("1")));
+          return null;
+        }
+      });
+      Assert.assertTrue(storeStartedLatch.await(10, TimeUnit.SECONDS));
+
+      final Iterator<String> payloads = Arrays.asList("2").iterator();
+      Future<?> secondFuture = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          writer.persist(new TestStoreRequest(topicId, new AbstractIterator<String>() {
+            @Override
+            protected String computeNext() {
+              if (!payloads.hasNext()) {
+                encodedLatch.countDown();
+                return endOfData();
+              }
+              return payloads.next();
+            }
+          }));
+          return null;
+        }
+      });
+
+      // The second request should get encoded while the first one is still being stored
+      Assert.assertTrue(encodedLatch.await(10, TimeUnit.SECONDS));
+      Assert.assertFalse(firstFuture.isDone());
+      Assert.assertFalse(secondFuture.isDone());
+
+      storeLatch.countDown();
+      firstFuture.get(10, TimeUnit.SECONDS);
+      secondFuture.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Messages should be stored in the order as they were encoded
+    List<Message> messages = testWriter.getMessages().get(topicId);
+    Assert.assertEquals(2, messages.size());
+    Assert.assertEquals("1", Bytes.toString(messages.get(0).getPayload()));
+    Assert.assertEquals("2", Bytes.toString(messages.get(1).getPayload()));
+    Assert.assertTrue(Bytes.compareTo(messages.get(0).getId().getRawId(), messages.get(1).getId().getRawId()) < 0);
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link Message} and stores it in a List.
    */
-  private static final class TestStoreRequestWriter extends StoreRequestWriter<TestEntry> {
+  private static class TestStoreRequestWriter extends StoreRequestWriter<TestEntry> {
 
     private final ListMultimap<TopicId, Message> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.data.Message;
+import co.cask.cdap.messaging.store.TableFactory;
+import co.cask.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Stopwatch;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Scopes;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Unit-test for {@link CoreMessagingService}.
+ */
+public class CoreMessagingServiceTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static CoreMessagingService messagingService;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.MessagingSystem.LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+
+    messagingService = Guice.createInjector(new ConfigModule(cConf), new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(TableFactory.class).to(LevelDBTableFactory.class).in(Scopes.SINGLETON);
+        bind(MetricsCollectionService.class).to(NoOpMetricsCollectionService.class);
+      }
+    }).getInstance(CoreMessagingService.class);
+    messagingService.startAndWait();
+  }
+
+  @AfterClass
+  public static void finish() {
+    messagingService.stopAndWait();
+  }
+
+  @Test
+  public void testFetchWithMaxWait() throws Exception {
+    final TopicId topicId = NamespaceId.DEFAULT.topic("maxwait");
+    messagingService.createTopic(new TopicMetadata(topicId, "ttl", 3600));
+
+    // Fetching from an empty topic should return no message after the max wait
+    Stopwatch stopwatch = new Stopwatch().start();
+    Assert.assertTrue(fetch(topicId, 200, TimeUnit.MILLISECONDS).isEmpty());
+    Assert.assertTrue(stopwatch.elapsedMillis() >= 200);
+
+    // Fetching with a long max wait should return as soon as a message is published
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<String>> future = executor.submit(new Callable<List<String>>() {
+        @Override
+        public List<String> call() throws Exception {
+          return fetch(topicId, 60, TimeUnit.SECONDS);
+        }
+      });
+
+      // Wait a bit so that the fetch is likely be waiting, though the result should be the same if it is not.
+      TimeUnit.MILLISECONDS.sleep(200);
+      messagingService.publish(topicId, new TestStoreRequest(topicId, Arrays.asList("m1", "m2")));
+      Assert.assertEquals(Arrays.asList("m1", "m2"), future.get(10, TimeUnit.SECONDS));
+
+      // Fetching with max wait should return immediately if there are messages
+      stopwatch.reset().start();
+      Assert.assertEquals(Arrays.asList("m1", "m2"), fetch(topicId, 60, TimeUnit.SECONDS));
+      Assert.assertTrue(stopwatch.elapsedMillis() < TimeUnit.SECONDS.toMillis(60));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<String> fetch(TopicId topicId, long maxWait, TimeUnit unit) throws Exception {
+    List<String> payloads = new ArrayList<>();
+    try (CloseableIterator<Message> iterator = messagingService.prepareFetch(topicId)
+                                                               .setMaxWait(maxWait, unit).fetch()) {
+      while (iterator.hasNext()) {
+        payloads.add(Bytes.toString(iterator.next().getPayload()));
+      }
+    }
+    return payloads;
+  }
+
+  private static final class TestStoreRequest extends StoreRequest {
+
+    private final Iterator<String> payloads;
+
+    TestStoreRequest(TopicId topicId, List<String> payloads) {
+      super(topicId, false, -1L);
+      this.payloads = payloads.iterator();
+    }
+
+    @Nullable
+    @Override
+    protected byte[] doComputeNext() {
+      return payloads.hasNext() ? Bytes.toBytes(payloads.next()) : null;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Stopwatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit-test for {@link TopicNotifier}.
+ */
+public class TopicNotifierTest {
+
+  @Test
+  public void testAwait() throws InterruptedException {
+    TopicNotifier notifier = new TopicNotifier();
+    TopicId topicId = NamespaceId.DEFAULT.topic("notifier");
+
+    long generation = notifier.getGeneration(topicId);
+    Assert.assertFalse(notifier.await(topicId, generation, 10, TimeUnit.MILLISECONDS));
+
+    notifier.notifyPublished(topicId);
+    Assert.assertTrue(notifier.await(topicId, generation, 10, TimeUnit.SECONDS));
+    Assert.assertNotEquals(generation, notifier.getGeneration(topicId));
+  }
+
+  @Test
+  public void testAwaitAfterRemove() throws InterruptedException {
+    TopicNotifier notifier = new TopicNotifier();
+    TopicId topicId = NamespaceId.DEFAULT.topic("removed");
+
+    // Waiting with a generation read before the topic was removed should return immediately
+    long generation = notifier.getGeneration(topicId);
+    notifier.remove(topicId);
+
+    Stopwatch stopwatch = new Stopwatch().start();
+    Assert.assertTrue(notifier.await(topicId, generation, 10, TimeUnit.SECONDS));
+    Assert.assertTrue(stopwatch.elapsedMillis() < TimeUnit.SECONDS.toMillis(10));
+
+    // Same if the topic was removed before reading the generation again and is then recreated
+    generation = notifier.getGeneration(topicId);
+    notifier.remove(topicId);
+    Assert.assertNotEquals(generation, notifier.getGeneration(topicId));
+    Assert.assertTrue(notifier.await(topicId, generation, 10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import org.apache.tephra.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Unit-test for {@link MessageTableTailCache}.
+ */
+public class MessageTableTailCacheTest {
+
+  private static final TopicId TOPIC = NamespaceId.DEFAULT.topic("tail");
+
+  @Test
+  public void testFetch() {
+    MessageTableTailCache cache = new MessageTableTailCache(TOPIC, 100, 1024 * 1024);
+
+    // Empty cache doesn't cover anything
+    Assert.assertNull(cache.fetch(0L, 10, null));
+
+    append(cache, 1, 2, 3, 4, 5);
+
+    // Fetch by message id
+    Assert.assertEquals(Arrays.asList(3L, 4L, 5L), toTimestamps(cache.fetch(createMessageId(3), true, 10, null)));
+    Assert.assertEquals(Arrays.asList(4L, 5L), toTimestamps(cache.fetch(createMessageId(3), false, 10, null)));
+    Assert.assertEquals(Arrays.asList(1L, 2L), toTimestamps(cache.fetch(createMessageId(1), true, 2, null)));
+    Assert.assertEquals(Collections.<Long>emptyList(),
+                        toTimestamps(cache.fetch(createMessageId(5), false, 10, null)));
+
+    // Fetch by time
+    Assert.assertEquals(Arrays.asList(2L, 3L, 4L, 5L), toTimestamps(cache.fetch(2L, 10, null)));
+    Assert.assertEquals(Collections.<Long>emptyList(), toTimestamps(cache.fetch(6L, 10, null)));
+
+    // Fetching from before the first cached entry is not covered by the cache
+    Assert.assertNull(cache.fetch(createMessageId(0), true, 10, null));
+    Assert.assertNull(cache.fetch(1L, 10, null));
+  }
+
+  @Test
+  public void testEviction() {
+    // Limit by number of entries
+    MessageTableTailCache cache = new MessageTableTailCache(TOPIC, 3, 1024 * 1024);
+    append(cache, 1, 2, 3, 4, 5);
+    Assert.assertNull(cache.fetch(createMessageId(2), true, 10, null));
+    Assert.assertEquals(Arrays.asList(3L, 4L, 5L), toTimestamps(cache.fetch(createMessageId(3), true, 10, null)));
+
+    // Limit by size. Each entry has 100 bytes payload plus the row key, hence only two entries can be cached.
+    cache = new MessageTableTailCache(TOPIC, 100, 250);
+    append(cache, 1, 2, 3, 4, 5);
+    Assert.assertNull(cache.fetch(createMessageId(3), true, 10, null));
+    Assert.assertEquals(Arrays.asList(4L, 5L), toTimestamps(cache.fetch(createMessageId(4), true, 10, null)));
+
+    // Entry that is too large drops all cached entries
+    cache = new MessageTableTailCache(TOPIC, 100, 50);
+    append(cache, 1, 2);
+    Assert.assertNull(cache.fetch(createMessageId(1), true, 10, null));
+    Assert.assertNull(cache.fetch(createMessageId(2), true, 10, null));
+  }
+
+  @Test
+  public void testOutOfOrder() {
+    MessageTableTailCache cache = new MessageTableTailCache(TOPIC, 100, 1024 * 1024);
+    append(cache, 5, 6);
+
+    // Appending an entry smaller than the last one drops all cached entries
+    append(cache, 3, 4);
+    Assert.assertNull(cache.fetch(createMessageId(3), true, 10, null));
+    Assert.assertNull(cache.fetch(createMessageId(5), true, 10, null));
+
+    // Caching resumes only with entries larger than the largest ever appended
+    append(cache, 6, 7, 8);
+    Assert.assertNull(cache.fetch(createMessageId(6), true, 10, null));
+    Assert.assertEquals(Arrays.asList(7L, 8L), toTimestamps(cache.fetch(createMessageId(7), true, 10, null)));
+
+    // Reset drops all cached entries
+    cache.reset();
+    Assert.assertNull(cache.fetch(createMessageId(7), true, 10, null));
+    append(cache, 9);
+    Assert.assertEquals(Arrays.asList(9L), toTimestamps(cache.fetch(createMessageId(9), true, 10, null)));
+  }
+
+  @Test
+  public void testTransactional() {
+    MessageTableTailCache cache = new MessageTableTailCache(TOPIC, 100, 1024 * 1024);
+    List<MessageTable.Entry> entries = new ArrayList<>();
+    entries.add(createEntry(1, null));
+    entries.add(createEntry(2, 10L));
+    entries.add(createEntry(3, null));
+    cache.append(entries.iterator());
+
+    // Transaction 10 is invalid, hence should be skipped
+    Transaction tx = new Transaction(20L, 20L, new long[] { 10L }, new long[0], 20L);
+    Assert.assertEquals(Arrays.asList(1L, 3L), toTimestamps(cache.fetch(createMessageId(1), true, 10, tx)));
+
+    // Transaction 10 is in progress, hence should stop there
+    tx = new Transaction(5L, 20L, new long[0], new long[] { 10L }, 10L);
+    Assert.assertEquals(Arrays.asList(1L), toTimestamps(cache.fetch(createMessageId(1), true, 10, tx)));
+  }
+
+  private void append(MessageTableTailCache cache, long...timestamps) {
+    List<MessageTable.Entry> entries = new ArrayList<>();
+    for (long timestamp : timestamps) {
+      entries.add(createEntry(timestamp, null));
+    }
+    cache.append(entries.iterator());
+  }
+
+  private MessageTable.Entry createEntry(long timestamp, @Nullable Long txWritePointer) {
+    return new MessageTableTest.TestMessageEntry(TOPIC, false, txWritePointer != null,
+                                                 txWritePointer == null ? -1L : txWritePointer,
+                                                 timestamp, (short) 0, new byte[100]);
+  }
+
+  private MessageId createMessageId(long timestamp) {
+    byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+    MessageId.putRawId(timestamp, (short) 0, 0L, (short) 0, rawId, 0);
+    return new MessageId(rawId);
+  }
+
+  private List<Long> toTimestamps(@Nullable CloseableIterator<MessageTable.Entry> iterator) {
+    Assert.assertNotNull(iterator);
+    List<Long> timestamps = new ArrayList<>();
+    try {
+      while (iterator.hasNext()) {
+        MessageTable.Entry entry = iterator.next();
+        Assert.assertEquals(TOPIC, entry.getTopicId());
+        Assert.assertTrue(Bytes.equals(new byte[100], entry.getPayload()));
+        timestamps.add(entry.getPublishTimestamp());
+      }
+    } finally {
+      iterator.close();
+    }
+    return timestamps;
+  }
+}
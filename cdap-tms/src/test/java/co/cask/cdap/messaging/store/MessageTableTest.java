@@ -179,8 +179,8 @@ public abstract class MessageTableTest {
     return timestamp;
   }
 
-  // Private class for publishing messages
-  private static class TestMessageEntry implements MessageTable.Entry {
+  // Class for publishing messages
+  static class TestMessageEntry implements MessageTable.Entry {
     private final TopicId topicId;
     private final boolean isPayloadReference;
     private final boolean isTransactional;
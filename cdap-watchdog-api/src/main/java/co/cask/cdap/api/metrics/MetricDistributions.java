@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.api.metrics;
+
+import javax.annotation.Nullable;
+
+/**
+ * Helper for metrics of type {@link MetricType#DISTRIBUTION}.
+ *
+ * A distribution is kept as counts of values in a fixed set of log-scaled buckets, with four buckets for each
+ * power of two, so that the value reported for a percentile is at most 25% larger than the actual value.
+ * Since the buckets are the same everywhere, distributions are merged by adding up the counts of each bucket.
+ * The count of each bucket is emitted and stored as a separate counter, named by {@link #getBucketName}.
+ */
+public final class MetricDistributions {
+
+  /**
+   * Number of buckets in a distribution.
+   */
+  public static final int BUCKETS = 253;
+
+  private static final String BUCKET_SEPARATOR = ":b";
+
+  /**
+   * Returns the bucket that the given value falls into. Values smaller than one all fall into bucket {@code 0}.
+   */
+  public static int getBucket(long value) {
+    if (value <= 0) {
+      return 0;
+    }
+    int exp = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (exp >= 2 ? (value >>> (exp - 2)) & 3 : (value << (2 - exp)) & 3);
+    return 1 + (exp << 2) + sub;
+  }
+
+  /**
+   * Returns the largest value that falls into the given bucket.
+   */
+  public static long getUpperBound(int bucket) {
+    if (bucket <= 0) {
+      return 0L;
+    }
+    int exp = (bucket - 1) >> 2;
+    int sub = (bucket - 1) & 3;
+    if (exp < 2) {
+      return (4 + sub) >> (2 - exp);
+    }
+    // For the last bucket this overflows to Long.MAX_VALUE
+    return ((5L + sub) << (exp - 2)) - 1;
+  }
+
+  /**
+   * Returns the value at the given percentile of a distribution.
+   *
+   * @param counts count of values of each bucket
+   * @param percentile the percentile, between {@code 0} and {@code 1}
+   * @return the upper bound of the bucket that contains the percentile, or {@code 0} if the distribution is empty
+   */
+  public static long getPercentile(long[] counts, double percentile) {
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    if (total <= 0) {
+      return 0L;
+    }
+
+    long rank = Math.max(1L, (long) Math.ceil(percentile * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return getUpperBound(i);
+      }
+    }
+    return getUpperBound(counts.length - 1);
+  }
+
+  /**
+   * Returns the name of the counter of the given bucket of a distribution metric.
+   */
+  public static String getBucketName(String metricName, int bucket) {
+    return metricName + BUCKET_SEPARATOR + bucket;
+  }
+
+  /**
+   * Returns the bucket of the given counter name as created by {@link #getBucketName(String, int)},
+   * or {@code -1} if the name is not the name of a distribution bucket.
+   */
+  public static int getBucket(String bucketName) {
+    int idx = bucketName.lastIndexOf(BUCKET_SEPARATOR);
+    if (idx <= 0) {
+      return -1;
+    }
+    int bucket = 0;
+    int start = idx + BUCKET_SEPARATOR.length();
+    if (start == bucketName.length() || bucketName.length() - start > 3) {
+      return -1;
+    }
+    for (int i = start; i < bucketName.length(); i++) {
+      char c = bucketName.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      bucket = bucket * 10 + (c - '0');
+    }
+    return bucket < BUCKETS ? bucket : -1;
+  }
+
+  /**
+   * Returns the name of the distribution metric of the given bucket counter name, or {@code null} if the name
+   * is not the name of a distribution bucket.
+   */
+  @Nullable
+  public static String getDistributionName(String bucketName) {
+    return getBucket(bucketName) < 0 ? null : bucketName.substring(0, bucketName.lastIndexOf(BUCKET_SEPARATOR));
+  }
+
+  private MetricDistributions() {
+    // no-op
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.api.metrics;
+
+/**
+ * A handle for emitting values of a single metric of a {@link MetricsContext}, as returned by
+ * {@link MetricsContext#getMetricHandle(String)}. Unlike the methods of {@link MetricsContext}, it doesn't need
+ * to look up the metric by its name and tags on every call.
+ */
+public interface MetricHandle {
+
+  /**
+   * Increment the metric value at the current time.
+   * @param value value to increment by.
+   */
+  void increment(long value);
+
+  /**
+   * Gauge the metric value at the current time.
+   * @param value value of the metric.
+   */
+  void gauge(long value);
+
+  /**
+   * Adds a value to the distribution of the metric at the current time.
+   * @param value value to add to the distribution.
+   */
+  void distribution(long value);
+}
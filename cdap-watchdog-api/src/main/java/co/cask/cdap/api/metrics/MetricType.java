@@ -16,9 +16,16 @@
 package co.cask.cdap.api.metrics;
 
 /**
- * MetricType - COUNTER or GAUGE type
+ * MetricType - COUNTER, GAUGE or DISTRIBUTION type
+ *
+ * A DISTRIBUTION metric value is the number of values added to one bucket of a distribution,
+ * see {@link MetricDistributions}.
+ *
+ * The type is encoded in {@link MetricValues} as the enum index. Metrics processors that predate DISTRIBUTION
+ * fail to decode messages containing it, hence they have to be upgraded before the metrics emitters.
  */
 public enum MetricType {
   COUNTER,
-  GAUGE
+  GAUGE,
+  DISTRIBUTION
 }
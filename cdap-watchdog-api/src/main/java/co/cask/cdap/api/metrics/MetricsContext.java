@@ -38,4 +38,12 @@ public interface MetricsContext extends MetricsCollector {
    * @return tags that identify the context.
    */
   Map<String, String> getTags();
+
+  /**
+   * Returns a {@link MetricHandle} for emitting values of the given metric in this context. Emitting through
+   * the handle is cheaper than through this context, hence it should be used for frequently emitted metrics.
+   * @param metricName Name of the metric.
+   * @return a {@link MetricHandle} that can be kept and used for as long as needed
+   */
+  MetricHandle getMetricHandle(String metricName);
 }
@@ -25,6 +25,23 @@ import java.util.Map;
  */
 public final class NoopMetricsContext implements MetricsContext {
 
+  private static final MetricHandle NOOP_HANDLE = new MetricHandle() {
+    @Override
+    public void increment(long value) {
+      // no-op
+    }
+
+    @Override
+    public void gauge(long value) {
+      // no-op
+    }
+
+    @Override
+    public void distribution(long value) {
+      // no-op
+    }
+  };
+
   private final Map<String, String> tags;
 
   public NoopMetricsContext() {
@@ -50,6 +67,11 @@ public final class NoopMetricsContext implements MetricsContext {
     return tags;
   }
 
+  @Override
+  public MetricHandle getMetricHandle(String metricName) {
+    return NOOP_HANDLE;
+  }
+
   @Override
   public void increment(String metricName, long value) {
     // no-op
@@ -59,4 +81,9 @@ public final class NoopMetricsContext implements MetricsContext {
   public void gauge(String metricName, long value) {
     // no-op
   }
+
+  @Override
+  public void distribution(String metricName, long value) {
+    // no-op
+  }
 }
@@ -73,6 +73,7 @@ public class FileLogAppender extends LogAppender {
   private final long maxFileLifetimeMs;
   private final long checkpointIntervalMs;
   private final int logCleanupIntervalMins;
+  private final boolean tokenIndexEnabled;
   private final ListeningScheduledExecutorService scheduledExecutor;
   private final Impersonator impersonator;
 
@@ -134,6 +135,9 @@ public class FileLogAppender extends LogAppender {
     Preconditions.checkArgument(logCleanupIntervalMins > 0,
                                 "Log cleanup run interval is invalid: %s", logCleanupIntervalMins);
 
+    tokenIndexEnabled = cConfig.getBoolean(LoggingConfiguration.LOG_SAVER_TOKEN_INDEX_ENABLED,
+                                           LoggingConfiguration.DEFAULT_LOG_SAVER_TOKEN_INDEX_ENABLED);
+
     this.scheduledExecutor =
       MoreExecutors.listeningDecorator(Executors.newSingleThreadScheduledExecutor(
         Threads.createDaemonThreadFactory("file-log-appender")));
@@ -150,7 +154,7 @@ public class FileLogAppender extends LogAppender {
 
       AvroFileWriter avroFileWriter = new AvroFileWriter(fileMetaDataManager, namespacedLocationFactory, logBaseDir,
                                                          logSchema, maxLogFileSizeBytes, syncIntervalBytes,
-                                                         maxFileLifetimeMs, impersonator);
+                                                         maxFileLifetimeMs, impersonator, tokenIndexEnabled);
       logFileWriter = new SimpleLogFileWriter(avroFileWriter, checkpointIntervalMs);
 
       LogCleanup logCleanup = new LogCleanup(fileMetaDataManager, rootLocationFactory, namespaceQueryAdmin,
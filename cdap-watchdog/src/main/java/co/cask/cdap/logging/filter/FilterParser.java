@@ -94,6 +94,12 @@ public final class FilterParser {
     } else if (key.equals("loglevel")) {
       // Log level
       return new LogLevelExpression(value);
+    } else if (key.equals("logger")) {
+      // Logger name
+      return new LoggerExpression(value);
+    } else if (key.equals("message")) {
+      // Words in the log message
+      return new MessageExpression(value);
     } else {
       throw new IllegalArgumentException(String.format("Unknown expression of type %s", key));
     }
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.filter;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import com.google.common.base.Objects;
+
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Represents an expression that matches words in the log message. An event matches if all words of the expression
+ * appear in the formatted message, or in the class name or message of the exception or any of its causes.
+ * Words are sequences of letters and digits, and are matched ignoring case.
+ */
+public class MessageExpression implements Filter {
+  private final String value;
+  private final Set<String> words;
+
+  public MessageExpression(String value) {
+    this.value = value;
+    this.words = getWords(value);
+  }
+
+  @Override
+  public boolean match(ILoggingEvent event) {
+    return words.isEmpty() || getWords(event).containsAll(words);
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Returns the words to match, in lower case.
+   */
+  public Set<String> getWords() {
+    return words;
+  }
+
+  /**
+   * Returns the words of the given event that this expression matches against, in lower case.
+   */
+  public static Set<String> getWords(ILoggingEvent event) {
+    Set<String> words = new HashSet<>();
+    addWords(event.getFormattedMessage(), words);
+    for (IThrowableProxy throwable = event.getThrowableProxy(); throwable != null; throwable = throwable.getCause()) {
+      addWords(throwable.getClassName(), words);
+      addWords(throwable.getMessage(), words);
+    }
+    return words;
+  }
+
+  /**
+   * Returns the words of the given text, in lower case.
+   */
+  public static Set<String> getWords(String text) {
+    Set<String> words = new HashSet<>();
+    addWords(text, words);
+    return words;
+  }
+
+  private static void addWords(@Nullable String text, Set<String> words) {
+    if (text == null) {
+      return;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        words.add(text.substring(start, i).toLowerCase());
+        start = -1;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("value", value)
+      .toString();
+  }
+}
@@ -23,6 +23,8 @@ import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.logging.filter.Filter;
 import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.logging.write.LogFileIndex;
+import co.cask.cdap.logging.write.LogTokenIndex;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -39,13 +41,17 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
- * Reads log events from an Avro file.
+ * Reads log events from an Avro file. If the file has a {@link LogFileIndex}, it is used to seek to the blocks
+ * containing the requested time range. Otherwise the file is scanned for them. If the file also has a
+ * {@link LogTokenIndex}, the segments of the file that cannot contain events matching the filter are skipped.
  */
 public class AvroFileReader {
   private static final Logger LOG = LoggerFactory.getLogger(AvroFileReader.class);
@@ -68,6 +74,12 @@ public class AvroFileReader {
 
     private DataFileReader<GenericRecord> dataFileReader;
 
+    // Segments of the index that may contain matching events, or null to read all
+    private LogFileIndex index;
+    private BitSet segments;
+    private int segment;
+    private boolean segmentsExhausted;
+
     private ILoggingEvent loggingEvent;
     private GenericRecord datum;
 
@@ -88,7 +100,25 @@ public class AvroFileReader {
 
       try {
         dataFileReader = createReader(file, namespaceId, impersonator);
-        if (dataFileReader.hasNext()) {
+        index = readIndex(file, namespaceId, impersonator);
+        if (index != null) {
+          segments = readTokenIndex(file, logFilter, index, namespaceId, impersonator);
+          // Seek to the last block that starts before fromTimeMs
+          int entry = index.findBefore(fromTimeMs);
+          if (segments != null) {
+            // Skip to the first segment from there that may contain matching events
+            segment = segments.nextSetBit(Math.max(entry, 0));
+            if (segment < 0) {
+              segmentsExhausted = true;
+            } else {
+              LOG.trace("Seeking to indexed pos {} of segment {}", index.getPosition(segment), segment);
+              dataFileReader.seek(index.getPosition(segment));
+            }
+          } else if (entry >= 0) {
+            LOG.trace("Seeking to indexed pos {}", index.getPosition(entry));
+            dataFileReader.seek(index.getPosition(entry));
+          }
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = LoggingEvent.decode(datum);
           long prevPrevSyncPos = 0;
@@ -124,7 +154,7 @@ public class AvroFileReader {
     private void computeNext() {
       try {
         // read events from file
-        while (next == null && dataFileReader.hasNext()) {
+        while (next == null && hasNextEvent()) {
           loggingEvent = LoggingEvent.decode(dataFileReader.next(datum));
           if (loggingEvent.getTimeStamp() >= fromTimeMs && logFilter.match(loggingEvent)) {
             ++count;
@@ -145,6 +175,30 @@ public class AvroFileReader {
       }
     }
 
+    /**
+     * Returns whether there are more events to read. When reading by segments, it skips to the next segment that
+     * may contain matching events at the end of each segment.
+     */
+    private boolean hasNextEvent() throws IOException {
+      if (segmentsExhausted) {
+        return false;
+      }
+      if (segments != null && segment + 1 < index.size()
+        && dataFileReader.previousSync() >= index.getPosition(segment + 1)) {
+        int nextSegment = segments.nextSetBit(segment + 1);
+        if (nextSegment < 0) {
+          segmentsExhausted = true;
+          return false;
+        }
+        if (nextSegment != segment + 1) {
+          LOG.trace("Skipping to indexed pos {} of segment {}", index.getPosition(nextSegment), nextSegment);
+          dataFileReader.seek(index.getPosition(nextSegment));
+        }
+        segment = nextSegment;
+      }
+      return dataFileReader.hasNext();
+    }
+
     @Override
     public void close() {
       try {
@@ -203,6 +257,12 @@ public class AvroFileReader {
         return ImmutableList.of();
       }
 
+      LogFileIndex index = readIndex(file, namespaceId, impersonator);
+      if (index != null) {
+        BitSet segments = readTokenIndex(file, logFilter, index, namespaceId, impersonator);
+        return readLogPrev(dataFileReader, index, segments, logFilter, fromTimeMs, maxEvents);
+      }
+
       List<List<LogEvent>> logSegments = Lists.newArrayList();
       List<LogEvent> logSegment;
       int count = 0;
@@ -257,6 +317,39 @@ public class AvroFileReader {
     }
   }
 
+  /**
+   * Reads the last log events at or before the given time, using the index to read the file backward
+   * one indexed range of blocks at a time. Ranges not in the given segments are skipped.
+   */
+  private Collection<LogEvent> readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index,
+                                           @Nullable BitSet segments, Filter logFilter,
+                                           long fromTimeMs, int maxEvents) throws IOException {
+    List<List<LogEvent>> logSegments = Lists.newArrayList();
+    int count = 0;
+
+    // Blocks starting from the first entry after fromTimeMs only have events after fromTimeMs.
+    // If there is no such entry, read till the end of the file.
+    int entry = index.findFirstAfter(fromTimeMs);
+    long endPosition = entry < index.size() ? index.getPosition(entry) : -1;
+
+    while (--entry >= 0 && count < maxEvents) {
+      if (segments == null || segments.get(entry)) {
+        dataFileReader.seek(index.getPosition(entry));
+        List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+        if (!logSegment.isEmpty()) {
+          logSegments.add(logSegment);
+          count = count + logSegment.size();
+        }
+        LOG.trace("Read logevents {} from indexed position {} to endPosition {}",
+                  count, index.getPosition(entry), endPosition);
+      }
+      endPosition = index.getPosition(entry);
+    }
+
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(Lists.reverse(logSegments)), skip));
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -303,6 +396,60 @@ public class AvroFileReader {
     return startPosition;
   }
 
+  /**
+   * Reads the {@link LogFileIndex} of the given log file.
+   *
+   * @return the index or {@code null} if the file doesn't have an index or the index cannot be read
+   */
+  @Nullable
+  private LogFileIndex readIndex(final Location location, NamespaceId namespaceId, Impersonator impersonator) {
+    try {
+      return impersonator.doAs(namespaceId, new Callable<LogFileIndex>() {
+        @Override
+        public LogFileIndex call() throws Exception {
+          return LogFileIndex.read(location, location.length());
+        }
+      });
+    } catch (Exception e) {
+      LOG.warn("Failed to read index of log file {}. Reading without index.", location, e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads the {@link LogTokenIndex} of the given log file to find the segments of the given {@link LogFileIndex}
+   * that may contain events matching the given filter.
+   *
+   * @return the segments or {@code null} if all segments have to be read
+   */
+  @Nullable
+  private BitSet readTokenIndex(final Location location, final Filter logFilter, LogFileIndex index,
+                                NamespaceId namespaceId, Impersonator impersonator) {
+    if (index.size() == 0) {
+      return null;
+    }
+    try {
+      LogTokenIndex tokenIndex = impersonator.doAs(namespaceId, new Callable<LogTokenIndex>() {
+        @Override
+        public LogTokenIndex call() throws Exception {
+          return LogTokenIndex.read(location, logFilter);
+        }
+      });
+      if (tokenIndex == null) {
+        return null;
+      }
+      BitSet segments = tokenIndex.getSegments(logFilter);
+      if (segments != null) {
+        // Segments not covered by the token index may contain anything
+        segments.set(tokenIndex.getSegmentCount(), Math.max(tokenIndex.getSegmentCount(), index.size()));
+      }
+      return segments;
+    } catch (Exception e) {
+      LOG.warn("Failed to read token index of log file {}. Reading without token index.", location, e);
+      return null;
+    }
+  }
+
   private DataFileReader<GenericRecord> createReader(Location location, NamespaceId namespaceId,
                                                      Impersonator impersonator) throws IOException {
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator),
@@ -143,9 +143,13 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
     Preconditions.checkArgument(logCleanupIntervalMins > 0,
                                 "Log cleanup run interval is invalid: %s", logCleanupIntervalMins);
 
+    boolean tokenIndexEnabled = cConf.getBoolean(LoggingConfiguration.LOG_SAVER_TOKEN_INDEX_ENABLED,
+                                                 LoggingConfiguration.DEFAULT_LOG_SAVER_TOKEN_INDEX_ENABLED);
+
     AvroFileWriter avroFileWriter = new AvroFileWriter(fileMetaDataManager, namespacedLocationFactory, logBaseDir,
                                                        serializer.getAvroSchema(), maxLogFileSizeBytes,
-                                                       syncIntervalBytes, maxFileLifetimeMs, impersonator);
+                                                       syncIntervalBytes, maxFileLifetimeMs, impersonator,
+                                                       tokenIndexEnabled);
 
     checkpointManager = checkpointManagerFactory.create(cConf.get(Constants.Logging.KAFKA_TOPIC),
                                                         CHECKPOINT_ROW_KEY_PREFIX);
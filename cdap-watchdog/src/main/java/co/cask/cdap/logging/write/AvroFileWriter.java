@@ -22,6 +22,7 @@ import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.logging.context.LoggingContextHelper;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
@@ -59,6 +60,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
   private final long maxFileSize;
   private final long maxFileLifetimeMs;
   private final Impersonator impersonator;
+  private final boolean tokenIndexEnabled;
 
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
@@ -71,10 +73,11 @@ public final class AvroFileWriter implements Closeable, Flushable {
    * @param maxFileSize Avro files greater than maxFileSize will get rotated.
    * @param syncIntervalBytes the approximate number of uncompressed bytes to write in each block.
    * @param maxFileLifetimeMs files that are older than maxFileLifetimeMs will be closed.
+   * @param tokenIndexEnabled whether to write a {@link LogTokenIndex} for the files.
    */
   public AvroFileWriter(FileMetaDataManager fileMetaDataManager, NamespacedLocationFactory namespacedLocationFactory,
                         String logBaseDir, Schema schema, long maxFileSize, int syncIntervalBytes,
-                        long maxFileLifetimeMs, Impersonator impersonator) {
+                        long maxFileLifetimeMs, Impersonator impersonator, boolean tokenIndexEnabled) {
     this.fileMetaDataManager = fileMetaDataManager;
     this.namespacedLocationFactory = namespacedLocationFactory;
     this.logBaseDir = logBaseDir;
@@ -84,6 +87,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
     this.maxFileSize = maxFileSize;
     this.maxFileLifetimeMs = maxFileLifetimeMs;
     this.impersonator = impersonator;
+    this.tokenIndexEnabled = tokenIndexEnabled;
   }
 
   /**
@@ -254,6 +258,13 @@ public final class AvroFileWriter implements Closeable, Flushable {
         if (avroFile.getLocation().exists()) {
           avroFile.getLocation().delete();
         }
+        Location location = avroFile.getLocation();
+        for (Location indexLocation : ImmutableList.of(LogFileIndex.getIndexLocation(location),
+                                                       LogTokenIndex.getIndexLocation(location))) {
+          if (indexLocation.exists()) {
+            indexLocation.delete();
+          }
+        }
       }
     } catch (IOException e) {
       LOG.error("Error while closing and deleting file {}", avroFile.getLocation(), e);
@@ -261,7 +272,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
   }
 
   /**
-   * Represents an Avro file.
+   * Represents an Avro file, together with its {@link LogFileIndex} and optional {@link LogTokenIndex}.
    *
    * Since there is no way to check the state of the underlying file on an exception,
    * all methods of this class assume that the file state is bad on any exception and close the file.
@@ -270,6 +281,9 @@ public final class AvroFileWriter implements Closeable, Flushable {
     private final Location location;
     private FSDataOutputStream outputStream;
     private DataFileWriter<GenericRecord> dataFileWriter;
+    private LogFileIndex.Writer indexWriter;
+    private LogTokenIndex.Writer tokenIndexWriter;
+    private long eventCount;
     private long createTime;
     private boolean isOpen = false;
 
@@ -283,12 +297,16 @@ public final class AvroFileWriter implements Closeable, Flushable {
      *
      * @throws IOException
      */
-    void open() throws IOException {
+    public void open() throws IOException {
       try {
         this.outputStream = new FSDataOutputStream(location.getOutputStream(), null);
         this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
         this.dataFileWriter.create(schema, this.outputStream);
         this.dataFileWriter.setSyncInterval(syncIntervalBytes);
+        this.indexWriter = new LogFileIndex.Writer(location);
+        if (tokenIndexEnabled) {
+          this.tokenIndexWriter = new LogTokenIndex.Writer(location);
+        }
         this.createTime = System.currentTimeMillis();
         // Sync the file as soon as it is created, otherwise a zero length Avro file can get created on OOM
         sync();
@@ -309,7 +327,15 @@ public final class AvroFileWriter implements Closeable, Flushable {
 
     public void append(LogWriteEvent event) throws IOException {
       try {
+        if (eventCount % LogFileIndex.INDEX_INTERVAL_EVENTS == 0) {
+          // Start a new block with this event, so that readers can seek to it through the index
+          indexWriter.add(event.getLogEvent().getTimeStamp(), dataFileWriter.sync());
+        }
+        if (tokenIndexWriter != null) {
+          tokenIndexWriter.add((int) (eventCount / LogFileIndex.INDEX_INTERVAL_EVENTS), event.getLogEvent());
+        }
         dataFileWriter.append(event.getGenericRecord());
+        eventCount++;
       } catch (Exception e) {
         close();
         throw new IOException("Exception while appending to file " + location, e);
@@ -333,6 +359,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
       try {
         dataFileWriter.flush();
         outputStream.hflush();
+        indexWriter.flush();
       } catch (Exception e) {
         close();
         throw new IOException("Exception while flushing file " + location, e);
@@ -343,6 +370,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
       try {
         dataFileWriter.flush();
         outputStream.hsync();
+        indexWriter.flush();
       } catch (Exception e) {
         close();
         throw new IOException("Exception while syncing file " + location, e);
@@ -363,8 +391,20 @@ public final class AvroFileWriter implements Closeable, Flushable {
           dataFileWriter.close();
         }
       } finally {
-        if (outputStream != null) {
-          outputStream.close();
+        try {
+          if (outputStream != null) {
+            outputStream.close();
+          }
+        } finally {
+          try {
+            if (indexWriter != null) {
+              indexWriter.close();
+            }
+          } finally {
+            if (tokenIndexWriter != null) {
+              tokenIndexWriter.close();
+            }
+          }
         }
       }
     }
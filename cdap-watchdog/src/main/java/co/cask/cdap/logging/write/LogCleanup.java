@@ -31,6 +31,7 @@ import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.SetMultimap;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
@@ -309,6 +310,12 @@ public final class LogCleanup implements Runnable {
         if (location.exists()) {
           LOG.info("Deleting log file {}", location);
           location.delete();
+          for (Location indexLocation : ImmutableList.of(LogFileIndex.getIndexLocation(location),
+                                                         LogTokenIndex.getIndexLocation(location))) {
+            if (indexLocation.exists()) {
+              indexLocation.delete();
+            }
+          }
           parentDirs.put(namespacedBaseDir, getParent(location));
         }
         return null;
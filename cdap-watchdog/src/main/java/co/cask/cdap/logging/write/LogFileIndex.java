@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.io.ByteStreams;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.twill.filesystem.Location;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Index of an Avro log file, stored in a sidecar file next to the log file. The index contains the timestamp of
+ * the first log event of every {@link #INDEX_INTERVAL_EVENTS} events, together with the position of the Avro block
+ * that starts with that event, so that readers can seek directly to the block containing a given time.
+ *
+ * The index file is a sequence of entries, each having the timestamp and the position as two longs. The index
+ * of a file that is still being written may miss the latest entries, or may have entries that point to data not
+ * yet visible to readers, which are ignored.
+ */
+public final class LogFileIndex {
+
+  /**
+   * Number of log events between two index entries.
+   */
+  public static final int INDEX_INTERVAL_EVENTS = 1000;
+
+  private static final String INDEX_SUFFIX = ".idx";
+  private static final int ENTRY_SIZE = 2 * 8;
+
+  private final long[] timestamps;
+  private final long[] positions;
+
+  private LogFileIndex(long[] timestamps, long[] positions) {
+    this.timestamps = timestamps;
+    this.positions = positions;
+  }
+
+  /**
+   * Returns the {@link Location} of the index file of the given log file.
+   */
+  public static Location getIndexLocation(Location logFile) throws IOException {
+    Location parent = Locations.getParent(logFile);
+    if (parent == null) {
+      throw new IOException("Log file " + logFile + " has no parent directory");
+    }
+    return parent.append(logFile.getName() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @param logFile the log file
+   * @param logFileLength the length of the log file, entries pointing beyond it are ignored
+   * @return the index or {@code null} if the log file doesn't have an index
+   */
+  @Nullable
+  public static LogFileIndex read(Location logFile, long logFileLength) throws IOException {
+    Location indexLocation = getIndexLocation(logFile);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+
+    byte[] content;
+    try (InputStream is = indexLocation.getInputStream()) {
+      content = ByteStreams.toByteArray(is);
+    }
+
+    int size = content.length / ENTRY_SIZE;
+    long[] timestamps = new long[size];
+    long[] positions = new long[size];
+    ByteBuffer buffer = ByteBuffer.wrap(content);
+    int count = 0;
+    while (count < size) {
+      long timestamp = buffer.getLong();
+      long position = buffer.getLong();
+      if (position >= logFileLength) {
+        break;
+      }
+      timestamps[count] = timestamp;
+      positions[count] = position;
+      count++;
+    }
+    return new LogFileIndex(Arrays.copyOf(timestamps, count), Arrays.copyOf(positions, count));
+  }
+
+  /**
+   * Returns the number of entries in this index.
+   */
+  public int size() {
+    return timestamps.length;
+  }
+
+  /**
+   * Returns the timestamp of the first log event in the block of the given entry.
+   */
+  public long getTimestamp(int entry) {
+    return timestamps[entry];
+  }
+
+  /**
+   * Returns the position of the block of the given entry, which can be used with
+   * {@link org.apache.avro.file.DataFileReader#seek(long)}.
+   */
+  public long getPosition(int entry) {
+    return positions[entry];
+  }
+
+  /**
+   * Returns the last entry with timestamp smaller than the given timestamp, or {@code -1} if there is none.
+   * All log events at or after the given timestamp are in the blocks starting from the returned entry.
+   */
+  public int findBefore(long timestamp) {
+    int low = 0;
+    int high = timestamps.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (timestamps[mid] < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * Returns the first entry with timestamp larger than the given timestamp, or {@link #size()} if there is none.
+   * All log events at or before the given timestamp are in the blocks before the returned entry.
+   */
+  public int findFirstAfter(long timestamp) {
+    int low = 0;
+    int high = timestamps.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (timestamps[mid] <= timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Writes the index of a log file. This class is not thread-safe.
+   */
+  static final class Writer implements Closeable {
+
+    private final FSDataOutputStream output;
+
+    Writer(Location logFile) throws IOException {
+      this.output = new FSDataOutputStream(getIndexLocation(logFile).getOutputStream(), null);
+    }
+
+    /**
+     * Adds an index entry.
+     *
+     * @param timestamp timestamp of the first log event in the block
+     * @param position position of the block
+     */
+    void add(long timestamp, long position) throws IOException {
+      output.writeLong(timestamp);
+      output.writeLong(position);
+    }
+
+    /**
+     * Flushes the index entries so that they are visible to readers.
+     */
+    void flush() throws IOException {
+      output.hflush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+}
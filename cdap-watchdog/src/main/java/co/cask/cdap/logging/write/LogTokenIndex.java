@@ -0,0 +1,361 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.logging.filter.AndFilter;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.LoggerExpression;
+import co.cask.cdap.logging.filter.MessageExpression;
+import co.cask.cdap.logging.filter.OrFilter;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Inverted index from tokens to the segments of an Avro log file that contain them, stored in a sidecar file next
+ * to the log file. A segment is the range of blocks between two consecutive entries of the {@link LogFileIndex}.
+ * Readers use it to skip the segments that cannot contain events matching a {@link Filter}.
+ *
+ * The tokens of an event are its log level, its logger and the parents of the logger, and the words of the message
+ * as defined by {@link MessageExpression}, except for numbers and words longer than {@link #MAX_WORD_LENGTH}.
+ * The index is written when the log file is closed, hence a file that is still being written doesn't have one.
+ * No index is written for a file with more than {@link #MAX_TOKENS} distinct tokens.
+ *
+ * The index file contains the number of segments and the number of tokens as two ints, followed by each token
+ * with the number of segments containing it and the delta encoded segment numbers as vints.
+ */
+public final class LogTokenIndex {
+
+  /**
+   * Maximum number of distinct tokens of a log file to index.
+   */
+  public static final int MAX_TOKENS = 100000;
+
+  /**
+   * Maximum length of message words to index.
+   */
+  public static final int MAX_WORD_LENGTH = 64;
+
+  private static final Logger LOG = LoggerFactory.getLogger(LogTokenIndex.class);
+
+  private static final String INDEX_SUFFIX = ".tok";
+  private static final String LEVEL_PREFIX = "level:";
+  private static final String LOGGER_PREFIX = "logger:";
+  private static final List<Level> LEVELS = ImmutableList.of(Level.TRACE, Level.DEBUG, Level.INFO,
+                                                             Level.WARN, Level.ERROR);
+
+  private final int segmentCount;
+  private final Map<String, BitSet> segments;
+
+  private LogTokenIndex(int segmentCount, Map<String, BitSet> segments) {
+    this.segmentCount = segmentCount;
+    this.segments = segments;
+  }
+
+  /**
+   * Returns the {@link Location} of the token index file of the given log file.
+   */
+  public static Location getIndexLocation(Location logFile) throws IOException {
+    Location parent = Locations.getParent(logFile);
+    if (parent == null) {
+      throw new IOException("Log file " + logFile + " has no parent directory");
+    }
+    return parent.append(logFile.getName() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Reads the token index of the given log file, keeping only the tokens that are used by the given filter.
+   *
+   * @return the index or {@code null} if the log file doesn't have an index or the filter cannot use it
+   */
+  @Nullable
+  public static LogTokenIndex read(Location logFile, Filter filter) throws IOException {
+    Set<String> tokens = new HashSet<>();
+    collectTokens(filter, tokens);
+    if (tokens.isEmpty()) {
+      return null;
+    }
+
+    Location indexLocation = getIndexLocation(logFile);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(indexLocation.getInputStream()))) {
+      int segmentCount = input.readInt();
+      int tokenCount = input.readInt();
+      Map<String, BitSet> segments = new HashMap<>();
+      for (int i = 0; i < tokenCount; i++) {
+        String token = input.readUTF();
+        BitSet tokenSegments = tokens.contains(token) ? new BitSet(segmentCount) : null;
+        int size = WritableUtils.readVInt(input);
+        int segment = 0;
+        for (int j = 0; j < size; j++) {
+          segment += WritableUtils.readVInt(input);
+          if (tokenSegments != null) {
+            tokenSegments.set(segment);
+          }
+        }
+        if (tokenSegments != null) {
+          segments.put(token, tokenSegments);
+        }
+      }
+      return new LogTokenIndex(segmentCount, segments);
+    }
+  }
+
+  /**
+   * Returns the number of segments covered by this index.
+   */
+  public int getSegmentCount() {
+    return segmentCount;
+  }
+
+  /**
+   * Returns the segments that may contain events matching the given filter.
+   *
+   * @return a new {@link BitSet} of segment numbers or {@code null} if the index cannot tell, in which case
+   *         any segment may contain matching events
+   */
+  @Nullable
+  public BitSet getSegments(Filter filter) {
+    if (filter instanceof AndFilter) {
+      BitSet result = null;
+      for (Filter expression : ((AndFilter) filter).getExpressions()) {
+        BitSet expressionSegments = getSegments(expression);
+        if (result == null) {
+          result = expressionSegments;
+        } else if (expressionSegments != null) {
+          result.and(expressionSegments);
+        }
+      }
+      return result;
+    }
+    if (filter instanceof OrFilter) {
+      BitSet result = new BitSet(segmentCount);
+      for (Filter expression : ((OrFilter) filter).getExpressions()) {
+        BitSet expressionSegments = getSegments(expression);
+        if (expressionSegments == null) {
+          return null;
+        }
+        result.or(expressionSegments);
+      }
+      return result;
+    }
+    if (filter instanceof LogLevelExpression) {
+      BitSet result = new BitSet(segmentCount);
+      for (Level level : LEVELS) {
+        if (level.isGreaterOrEqual(((LogLevelExpression) filter).getLevel())) {
+          result.or(getTokenSegments(LEVEL_PREFIX + level));
+        }
+      }
+      return result;
+    }
+    if (filter instanceof LoggerExpression) {
+      return getTokenSegments(LOGGER_PREFIX + ((LoggerExpression) filter).getLoggerName());
+    }
+    if (filter instanceof MessageExpression) {
+      BitSet result = null;
+      for (String word : ((MessageExpression) filter).getWords()) {
+        if (isIndexed(word)) {
+          BitSet wordSegments = getTokenSegments(word);
+          if (result == null) {
+            result = wordSegments;
+          } else {
+            result.and(wordSegments);
+          }
+        }
+      }
+      return result;
+    }
+    return null;
+  }
+
+  private BitSet getTokenSegments(String token) {
+    BitSet tokenSegments = segments.get(token);
+    return tokenSegments == null ? new BitSet(segmentCount) : (BitSet) tokenSegments.clone();
+  }
+
+  /**
+   * Adds the tokens that are used by {@link #getSegments(Filter)} for the given filter to the given set.
+   */
+  private static void collectTokens(Filter filter, Set<String> tokens) {
+    if (filter instanceof AndFilter) {
+      for (Filter expression : ((AndFilter) filter).getExpressions()) {
+        collectTokens(expression, tokens);
+      }
+    } else if (filter instanceof OrFilter) {
+      for (Filter expression : ((OrFilter) filter).getExpressions()) {
+        collectTokens(expression, tokens);
+      }
+    } else if (filter instanceof LogLevelExpression) {
+      for (Level level : LEVELS) {
+        tokens.add(LEVEL_PREFIX + level);
+      }
+    } else if (filter instanceof LoggerExpression) {
+      tokens.add(LOGGER_PREFIX + ((LoggerExpression) filter).getLoggerName());
+    } else if (filter instanceof MessageExpression) {
+      for (String word : ((MessageExpression) filter).getWords()) {
+        if (isIndexed(word)) {
+          tokens.add(word);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether the given message word is indexed. Numbers are excluded since they are mostly unique.
+   */
+  private static boolean isIndexed(String word) {
+    if (word.length() > MAX_WORD_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (!Character.isDigit(word.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Builds the token index of a log file in memory and writes it on close. This class is not thread-safe.
+   */
+  static final class Writer implements Closeable {
+
+    private final Location logFile;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int segmentCount;
+    private boolean overflow;
+
+    Writer(Location logFile) {
+      this.logFile = logFile;
+    }
+
+    /**
+     * Adds the tokens of a log event.
+     *
+     * @param segment the segment that the event is written to, which must not be smaller than the previous one
+     * @param event the log event
+     */
+    void add(int segment, ILoggingEvent event) {
+      if (overflow) {
+        return;
+      }
+      segmentCount = Math.max(segmentCount, segment + 1);
+
+      addToken(LEVEL_PREFIX + event.getLevel(), segment);
+      String loggerName = event.getLoggerName();
+      if (loggerName != null) {
+        for (int idx = loggerName.indexOf('.'); idx >= 0; idx = loggerName.indexOf('.', idx + 1)) {
+          addToken(LOGGER_PREFIX + loggerName.substring(0, idx), segment);
+        }
+        addToken(LOGGER_PREFIX + loggerName, segment);
+      }
+      for (String word : MessageExpression.getWords(event)) {
+        if (isIndexed(word)) {
+          addToken(word, segment);
+        }
+      }
+    }
+
+    private void addToken(String token, int segment) {
+      if (overflow) {
+        return;
+      }
+      Postings tokenPostings = postings.get(token);
+      if (tokenPostings == null) {
+        if (postings.size() >= MAX_TOKENS) {
+          LOG.debug("Log file {} has more than {} distinct tokens. Not writing token index.", logFile, MAX_TOKENS);
+          overflow = true;
+          postings.clear();
+          return;
+        }
+        tokenPostings = new Postings();
+        postings.put(token, tokenPostings);
+      }
+      tokenPostings.add(segment);
+    }
+
+    /**
+     * Writes the index file, unless there are too many tokens to index.
+     */
+    @Override
+    public void close() throws IOException {
+      if (overflow || segmentCount == 0) {
+        return;
+      }
+      try (DataOutputStream output =
+             new DataOutputStream(new BufferedOutputStream(getIndexLocation(logFile).getOutputStream()))) {
+        output.writeInt(segmentCount);
+        output.writeInt(postings.size());
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+          output.writeUTF(entry.getKey());
+          Postings tokenPostings = entry.getValue();
+          WritableUtils.writeVInt(output, tokenPostings.size);
+          int previous = 0;
+          for (int i = 0; i < tokenPostings.size; i++) {
+            WritableUtils.writeVInt(output, tokenPostings.segments[i] - previous);
+            previous = tokenPostings.segments[i];
+          }
+        }
+      } finally {
+        postings.clear();
+      }
+    }
+  }
+
+  /**
+   * Sorted segment numbers of a token.
+   */
+  private static final class Postings {
+    private int[] segments = new int[1];
+    private int size;
+
+    void add(int segment) {
+      if (size > 0 && segments[size - 1] == segment) {
+        return;
+      }
+      if (size == segments.length) {
+        segments = Arrays.copyOf(segments, segments.length * 2);
+      }
+      segments[size++] = segment;
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.metrics.collect;
 
+import co.cask.cdap.api.metrics.MetricHandle;
 import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
@@ -24,21 +25,28 @@ import co.cask.cdap.common.conf.Constants;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
@@ -52,6 +60,9 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
 
   private final LoadingCache<Map<String, String>, MetricsContext> collectors;
   private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  // Emitters removed from the emitters cache. They are emitted again in the next iteration,
+  // since a MetricHandle may have updated an emitter while it was being removed.
+  private final Queue<Map.Entry<Map<String, String>, AggregatedMetricsEmitter>> retiredEmitters;
 
   private ScheduledExecutorService executorService;
 
@@ -60,17 +71,33 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
       .build(createCollectorLoader());
 
+    this.retiredEmitters = new ConcurrentLinkedQueue<>();
     this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
+      // NOTE : emitters expire after not being accessed for a minute. Besides emitters.get() that is used to
+      // increment/gauge, getMetrics() refreshes the access time of emitters that emitted any value, so that emitters
+      // only updated through a MetricHandle don't expire. Removed emitters are retired for the MetricHandle
+      // to look up a new one, and are emitted once more so that no values are lost.
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+      .removalListener(new RemovalListener<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
+        @Override
+        public void onRemoval(RemovalNotification<Map<String, String>,
+                                                  LoadingCache<String, AggregatedMetricsEmitter>> notification) {
+          for (AggregatedMetricsEmitter emitter : notification.getValue().asMap().values()) {
+            retire(notification.getKey(), emitter);
+          }
+        }
+      })
       .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
         @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
+        public LoadingCache<String, AggregatedMetricsEmitter> load(final Map<String, String> tags) throws Exception {
+          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .removalListener(new RemovalListener<String, AggregatedMetricsEmitter>() {
+              @Override
+              public void onRemoval(RemovalNotification<String, AggregatedMetricsEmitter> notification) {
+                retire(tags, notification.getValue());
+              }
+            })
+            .build(new CacheLoader<String, AggregatedMetricsEmitter>() {
               @Override
               public AggregatedMetricsEmitter load(String metricName) throws Exception {
                 return new AggregatedMetricsEmitter(metricName);
@@ -145,43 +172,122 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   }
 
   private Iterator<MetricValues> getMetrics(final long timestamp) {
+    // Retired emitters are emitted together with the emitters of the same tags
+    final Map<Map<String, String>, List<AggregatedMetricsEmitter>> retired = new HashMap<>();
+    Map.Entry<Map<String, String>, AggregatedMetricsEmitter> retiredEntry = retiredEmitters.poll();
+    while (retiredEntry != null) {
+      List<AggregatedMetricsEmitter> list = retired.get(retiredEntry.getKey());
+      if (list == null) {
+        list = new ArrayList<>();
+        retired.put(retiredEntry.getKey(), list);
+      }
+      list.add(retiredEntry.getValue());
+      retiredEntry = retiredEmitters.poll();
+    }
+
     // NOTE : emitters.asMap does not reset the access time in cache,
     // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
     final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
       emitters.asMap().entrySet().iterator();
     return new AbstractIterator<MetricValues>() {
+
+      private Iterator<Map.Entry<Map<String, String>, List<AggregatedMetricsEmitter>>> retiredIterator;
+
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
           Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
-          // +1 because we add extra metric about how many metric values did we emit in this context (see below)
-          List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
-          for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
-            // skip increment by 0
-            if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
-              continue;
-            }
-            metricValues.add(metricValue);
+          MetricValues metricValues = getMetricValues(timestamp, entry.getKey(), entry.getValue(),
+                                                      retired.remove(entry.getKey()));
+          if (metricValues != null) {
+            return metricValues;
           }
+        }
 
-          if (metricValues.isEmpty()) {
-            // skip if there are no metric values to send
-            continue;
+        // Emit retired emitters of tags that no longer have emitters in the cache
+        if (retiredIterator == null) {
+          retiredIterator = retired.entrySet().iterator();
+        }
+        while (retiredIterator.hasNext()) {
+          Map.Entry<Map<String, String>, List<AggregatedMetricsEmitter>> entry = retiredIterator.next();
+          MetricValues metricValues = getMetricValues(timestamp, entry.getKey(), null, entry.getValue());
+          if (metricValues != null) {
+            return metricValues;
           }
-
-          // number of emitted metrics
-          metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
-
-          LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
         }
         return endOfData();
       }
     };
   }
 
+  /**
+   * Creates the {@link MetricValues} from the values collected by the given emitters.
+   *
+   * @return the {@link MetricValues} or {@code null} if there is no metric value to send
+   */
+  @Nullable
+  private MetricValues getMetricValues(long timestamp, Map<String, String> tags,
+                                       @Nullable LoadingCache<String, AggregatedMetricsEmitter> metricEmitters,
+                                       @Nullable Collection<AggregatedMetricsEmitter> retired) {
+    List<MetricValue> metricValues = new ArrayList<>();
+
+    // Emit retired emitters first, so that gauges of the emitters in the cache, which are more recent, take effect
+    if (retired != null) {
+      for (AggregatedMetricsEmitter emitter : retired) {
+        // Keep emitting until it is idle, since a handle might still be updating it
+        if (emit(emitter, metricValues)) {
+          retiredEmitters.add(Maps.immutableEntry(tags, emitter));
+        }
+      }
+    }
+
+    if (metricEmitters != null) {
+      boolean active = false;
+      for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.asMap().entrySet()) {
+        if (emit(emitterEntry.getValue(), metricValues)) {
+          // Refresh the access time so that emitters updated through a MetricHandle don't expire
+          metricEmitters.getIfPresent(emitterEntry.getKey());
+          active = true;
+        }
+      }
+      if (active) {
+        emitters.getIfPresent(tags);
+      }
+    }
+
+    if (metricValues.isEmpty()) {
+      // skip if there are no metric values to send
+      return null;
+    }
+
+    // number of emitted metrics
+    metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
+
+    LOG.trace("Emit metric {}", metricValues);
+    return new MetricValues(tags, timestamp, metricValues);
+  }
+
+  /**
+   * Adds the values collected by the given emitter to the given list.
+   *
+   * @return {@code true} if any value was added
+   */
+  private boolean emit(AggregatedMetricsEmitter emitter, List<MetricValue> metricValues) {
+    int size = metricValues.size();
+    emitter.emitDistribution(metricValues);
+    MetricValue metricValue = emitter.emit();
+    // skip increment by 0
+    if (metricValue.getType() != MetricType.COUNTER || metricValue.getValue() != 0) {
+      metricValues.add(metricValue);
+    }
+    return metricValues.size() > size;
+  }
+
+  private void retire(Map<String, String> tags, AggregatedMetricsEmitter emitter) {
+    emitter.retire();
+    retiredEmitters.add(Maps.immutableEntry(tags, emitter));
+  }
+
   private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
     return new CacheLoader<Map<String, String>, MetricsContext>() {
       @Override
@@ -209,6 +315,16 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
       emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
     }
 
+    @Override
+    public void distribution(String metricName, long value) {
+      emitters.getUnchecked(tags).getUnchecked(metricName).distribution(value);
+    }
+
+    @Override
+    public MetricHandle getMetricHandle(String metricName) {
+      return new MetricHandleImpl(tags, metricName);
+    }
+
     @Override
     public MetricsContext childContext(String tagName, String tagValue) {
       ImmutableMap<String, String> allTags = ImmutableMap.<String, String>builder()
@@ -233,4 +349,45 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
       return collectors.getUnchecked(allTags);
     }
   }
+
+  /**
+   * A {@link MetricHandle} bound to an {@link AggregatedMetricsEmitter}. The emitter is only looked up again
+   * after it was retired from the emitters cache.
+   */
+  private final class MetricHandleImpl implements MetricHandle {
+
+    private final Map<String, String> tags;
+    private final String metricName;
+    private volatile AggregatedMetricsEmitter emitter;
+
+    private MetricHandleImpl(Map<String, String> tags, String metricName) {
+      this.tags = tags;
+      this.metricName = metricName;
+      this.emitter = emitters.getUnchecked(tags).getUnchecked(metricName);
+    }
+
+    @Override
+    public void increment(long value) {
+      getEmitter().increment(value);
+    }
+
+    @Override
+    public void gauge(long value) {
+      getEmitter().gauge(value);
+    }
+
+    @Override
+    public void distribution(long value) {
+      getEmitter().distribution(value);
+    }
+
+    private AggregatedMetricsEmitter getEmitter() {
+      AggregatedMetricsEmitter emitter = this.emitter;
+      if (emitter.isRetired()) {
+        emitter = emitters.getUnchecked(tags).getUnchecked(metricName);
+        this.emitter = emitter;
+      }
+      return emitter;
+    }
+  }
 }
@@ -15,13 +15,17 @@
  */
 package co.cask.cdap.metrics.collect;
 
+import co.cask.cdap.api.metrics.MetricDistributions;
 import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
@@ -35,6 +39,10 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
   private final AtomicLong value;
   // specifies if the metric type is gauge or counter
   private final AtomicBoolean gaugeUsed;
+  // bucket counts of the distribution, only created if the metric is used as a distribution
+  private final AtomicReference<AtomicLongArray> distribution;
+  // set when the emitter is removed from the emitters cache, for handles to look up a new one
+  private volatile boolean retired;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -44,6 +52,15 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     this.name = name;
     this.value = new AtomicLong();
     this.gaugeUsed = new AtomicBoolean(false);
+    this.distribution = new AtomicReference<>();
+  }
+
+  boolean isRetired() {
+    return retired;
+  }
+
+  void retire() {
+    retired = true;
   }
 
   void increment(long value) {
@@ -63,4 +80,34 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     this.value.set(value);
     this.gaugeUsed.set(true);
   }
+
+  void distribution(long value) {
+    AtomicLongArray buckets = distribution.get();
+    if (buckets == null) {
+      distribution.compareAndSet(null, new AtomicLongArray(MetricDistributions.BUCKETS));
+      buckets = distribution.get();
+    }
+    buckets.incrementAndGet(MetricDistributions.getBucket(value));
+  }
+
+  /**
+   * Emits the non-zero bucket counts of the distribution since the last call, as values of type
+   * {@link MetricType#DISTRIBUTION}.
+   *
+   * @param values collection to add the emitted values to
+   */
+  void emitDistribution(Collection<? super MetricValue> values) {
+    AtomicLongArray buckets = distribution.get();
+    if (buckets == null) {
+      return;
+    }
+    for (int i = 0; i < buckets.length(); i++) {
+      // Cheap check to avoid the write for empty buckets
+      if (buckets.get(i) == 0) {
+        continue;
+      }
+      long count = buckets.getAndSet(i, 0);
+      values.add(new MetricValue(MetricDistributions.getBucketName(name, i), MetricType.DISTRIBUTION, count));
+    }
+  }
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.metrics.query;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.Interpolator;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDistributions;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.common.utils.ImmutablePair;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Translates queries of percentiles of {@link MetricType#DISTRIBUTION} metrics.
+ *
+ * A percentile is queried by appending {@code :p} and the digits of the percentile to the metric name, e.g.
+ * {@code system.process.time.ms:p95} for the 95th percentile. The digits are read as a percentage, with digits
+ * after the first two being the fraction, e.g. {@code p5} is the 5th, {@code p100} is the 100th and {@code p999}
+ * is the 99.9th percentile. Since {@code p990} could be read as the 99th percentile, a fraction ending with
+ * {@code 0} is rejected as ambiguous. A percentile metric is queried as the counters of all buckets of the
+ * distribution, from which the percentile of every data point is computed. Since the buckets of a data point are
+ * only known together, the limit and interpolation of the query are applied to the computed percentiles.
+ */
+final class MetricPercentiles {
+
+  private static final Pattern PERCENTILE_PATTERN = Pattern.compile("(.+):p([0-9]+)");
+  private static final String[] DEFAULT_PERCENTILES = { "p50", "p95", "p99" };
+
+  /**
+   * Returns whether any of the given metrics is a percentile metric. The store has to be queried without limit
+   * and interpolator for such metrics, which are applied by {@link #computePercentiles} instead.
+   */
+  static boolean hasPercentiles(Collection<String> metrics) {
+    for (String metric : metrics) {
+      if (parsePercentile(metric) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the metrics to query from the store for the given metrics. Percentile metrics are replaced with
+   * the bucket counters of the distribution.
+   */
+  static Map<String, AggregationFunction> toStoreMetrics(Collection<String> metrics) {
+    Map<String, AggregationFunction> result = new HashMap<>();
+    for (String metric : metrics) {
+      ImmutablePair<String, Double> percentile = parsePercentile(metric);
+      if (percentile == null) {
+        // todo: figure out metric type
+        result.put(metric, AggregationFunction.SUM);
+        continue;
+      }
+      for (int i = 0; i < MetricDistributions.BUCKETS; i++) {
+        result.put(MetricDistributions.getBucketName(percentile.getFirst(), i), AggregationFunction.SUM);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes the percentiles time series from the bucket counters time series queried from the store, then
+   * applies the limit and interpolator of the query to all time series, the same way as the store does.
+   *
+   * @param metrics the metrics as given in the query
+   * @param storeResult result of querying the store with the metrics returned by {@link #toStoreMetrics},
+   *                    without limit and interpolator
+   * @param resolution resolution of the query in seconds
+   * @param limit maximum number of data points of each time series
+   * @param interpolator interpolator of the query, or {@code null} to not interpolate
+   * @return the time series of the metrics given in the query
+   */
+  static Collection<MetricTimeSeries> computePercentiles(Collection<String> metrics,
+                                                         Collection<MetricTimeSeries> storeResult,
+                                                         int resolution, int limit,
+                                                         @Nullable Interpolator interpolator) {
+    Map<String, List<ImmutablePair<String, Double>>> percentiles = new HashMap<>();
+    for (String metric : metrics) {
+      ImmutablePair<String, Double> percentile = parsePercentile(metric);
+      if (percentile != null) {
+        List<ImmutablePair<String, Double>> list = percentiles.get(percentile.getFirst());
+        if (list == null) {
+          list = new ArrayList<>();
+          percentiles.put(percentile.getFirst(), list);
+        }
+        list.add(ImmutablePair.of(metric, percentile.getSecond()));
+      }
+    }
+
+    List<MetricTimeSeries> result = new ArrayList<>();
+    // Bucket counts of each time point, per distribution and tag values
+    Map<ImmutablePair<String, Map<String, String>>, TreeMap<Long, long[]>> distributions = new LinkedHashMap<>();
+    for (MetricTimeSeries series : storeResult) {
+      String distribution = MetricDistributions.getDistributionName(series.getMetricName());
+      if (distribution == null || !percentiles.containsKey(distribution)) {
+        result.add(new MetricTimeSeries(series.getMetricName(), series.getTagValues(),
+                                        interpolate(series.getTimeValues(), resolution, limit, interpolator)));
+        continue;
+      }
+
+      ImmutablePair<String, Map<String, String>> key = ImmutablePair.of(distribution, series.getTagValues());
+      TreeMap<Long, long[]> points = distributions.get(key);
+      if (points == null) {
+        points = new TreeMap<>();
+        distributions.put(key, points);
+      }
+      int bucket = MetricDistributions.getBucket(series.getMetricName());
+      for (TimeValue timeValue : series.getTimeValues()) {
+        long[] counts = points.get(timeValue.getTimestamp());
+        if (counts == null) {
+          counts = new long[MetricDistributions.BUCKETS];
+          points.put(timeValue.getTimestamp(), counts);
+        }
+        counts[bucket] += timeValue.getValue();
+      }
+    }
+
+    for (Map.Entry<ImmutablePair<String, Map<String, String>>, TreeMap<Long, long[]>> entry
+      : distributions.entrySet()) {
+      for (ImmutablePair<String, Double> percentile : percentiles.get(entry.getKey().getFirst())) {
+        List<TimeValue> timeValues = new ArrayList<>(entry.getValue().size());
+        for (Map.Entry<Long, long[]> point : entry.getValue().entrySet()) {
+          timeValues.add(new TimeValue(point.getKey(),
+                                       MetricDistributions.getPercentile(point.getValue(), percentile.getSecond())));
+        }
+        result.add(new MetricTimeSeries(percentile.getFirst(), entry.getKey().getSecond(),
+                                        interpolate(timeValues, resolution, limit, interpolator)));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Fills in the data points missing between the given ones with the interpolator, at every resolution interval,
+   * and returns at most {@code limit} data points. At least the first data point is always returned.
+   */
+  private static List<TimeValue> interpolate(List<TimeValue> timeValues, int resolution, int limit,
+                                             @Nullable Interpolator interpolator) {
+    int maxSize = Math.max(1, limit);
+    List<TimeValue> result = new ArrayList<>(Math.min(maxSize, timeValues.size()));
+    TimeValue previous = null;
+    for (TimeValue timeValue : timeValues) {
+      if (interpolator != null && previous != null) {
+        for (long ts = previous.getTimestamp() + resolution; ts < timeValue.getTimestamp() && result.size() < maxSize;
+             ts += resolution) {
+          result.add(new TimeValue(ts, interpolator.interpolate(previous, timeValue, ts)));
+        }
+      }
+      if (result.size() >= maxSize) {
+        break;
+      }
+      result.add(timeValue);
+      previous = timeValue;
+    }
+    return result;
+  }
+
+  /**
+   * Replaces the bucket counter names of distributions with the names of the commonly used percentiles.
+   */
+  static Collection<String> toPercentileNames(Iterable<String> metricNames) {
+    Set<String> result = new LinkedHashSet<>();
+    for (String metricName : metricNames) {
+      String distribution = MetricDistributions.getDistributionName(metricName);
+      if (distribution == null) {
+        result.add(metricName);
+        continue;
+      }
+      for (String percentile : DEFAULT_PERCENTILES) {
+        result.add(distribution + ":" + percentile);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Parses a percentile metric name into the distribution metric name and the percentile between 0 and 1,
+   * or returns {@code null} if it is not a percentile metric name.
+   *
+   * @throws IllegalArgumentException if the percentile is ambiguous
+   */
+  @Nullable
+  @VisibleForTesting
+  static ImmutablePair<String, Double> parsePercentile(String metric) {
+    Matcher matcher = PERCENTILE_PATTERN.matcher(metric);
+    if (!matcher.matches()) {
+      return null;
+    }
+    String digits = matcher.group(2);
+    double percentile;
+    if (digits.length() == 1) {
+      percentile = Double.parseDouble("0.0" + digits);
+    } else if (digits.equals("100")) {
+      percentile = 1.0d;
+    } else if (digits.length() > 2 && digits.endsWith("0")) {
+      throw new IllegalArgumentException("Ambiguous percentile in metric " + metric + ". Use p"
+                                           + digits.replaceAll("0+$", "") + " instead.");
+    } else {
+      // The first two digits are the whole percentage and the rest are the fraction
+      percentile = Double.parseDouble("0." + digits);
+    }
+    return ImmutablePair.of(matcher.group(1), percentile);
+  }
+
+  private MetricPercentiles() {
+    // no-op
+  }
+}
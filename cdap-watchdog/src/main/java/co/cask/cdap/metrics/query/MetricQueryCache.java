@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.query;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.common.utils.TimeProvider;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Caches results of {@link MetricStore} time range queries, so that dashboards polling the same query don't
+ * re-scan the whole time range on every poll.
+ *
+ * Results are cached per query, ignoring the time range. A time bucket of the query resolution is complete
+ * when it ended before the current time minus a delay, which allows late metrics to be processed. Data points of
+ * complete buckets never change, hence are served from the cache, and only the buckets after the cached ones are
+ * queried from the store. Aggregate queries and queries with interpolation are not cached.
+ *
+ * Complete buckets can still change, when metrics are deleted or arrive later than the delay. Since deletions
+ * happen outside of this process, cache entries expire after a fixed time since they were first created, even if
+ * they keep being extended, so that such changes show up after the expiry.
+ */
+@ThreadSafe
+final class MetricQueryCache {
+
+  // estimated sizes of the cached objects, for bounding the cache memory usage
+  private static final int SERIES_OVERHEAD_BYTES = 256;
+  private static final int TIME_VALUE_BYTES = 48;
+
+  private final MetricStore metricStore;
+  // null if caching is disabled
+  @Nullable
+  private final Cache<CacheKey, CacheEntry> cache;
+  private final long delaySeconds;
+  private final long expireSeconds;
+  private final MetricsContext metricsContext;
+  private final TimeProvider timeProvider;
+
+  /**
+   * Creates an instance.
+   *
+   * @param metricStore the {@link MetricStore} to query
+   * @param maxSizeBytes approximate maximum memory used by the cache; caching is disabled if not positive
+   * @param delaySeconds number of seconds to wait after a time bucket ended before caching it
+   * @param expireSeconds number of seconds after a cache entry is created before it expires; caching is disabled
+   *                      if not positive
+   * @param metricsContext {@link MetricsContext} for emitting cache hit and miss counts
+   * @param timeProvider {@link TimeProvider} for the current time
+   */
+  MetricQueryCache(MetricStore metricStore, long maxSizeBytes, long delaySeconds, long expireSeconds,
+                   MetricsContext metricsContext, TimeProvider timeProvider) {
+    this.metricStore = metricStore;
+    this.cache = maxSizeBytes <= 0 || expireSeconds <= 0 ? null : CacheBuilder.newBuilder()
+      .maximumWeight(maxSizeBytes)
+      .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+      .weigher(new Weigher<CacheKey, CacheEntry>() {
+        @Override
+        public int weigh(CacheKey key, CacheEntry entry) {
+          return entry.weight;
+        }
+      })
+      .build();
+    this.delaySeconds = delaySeconds;
+    this.expireSeconds = expireSeconds;
+    this.metricsContext = metricsContext;
+    this.timeProvider = timeProvider;
+  }
+
+  /**
+   * Executes the given query, with the same result as {@link MetricStore#query(MetricDataQuery)}.
+   */
+  Collection<MetricTimeSeries> query(MetricDataQuery query) throws Exception {
+    int resolution = query.getResolution();
+    if (cache == null || query.getInterpolator() != null
+      || resolution == Integer.MAX_VALUE || query.getStartTs() > query.getEndTs()) {
+      return metricStore.query(query);
+    }
+
+    long now = TimeUnit.MILLISECONDS.toSeconds(timeProvider.currentTimeMillis());
+    // buckets with timestamp smaller than this are complete
+    long completeEnd = (now - delaySeconds) / resolution * resolution;
+
+    CacheKey key = new CacheKey(query);
+    CacheEntry entry = cache.getIfPresent(key);
+    if (entry != null && (entry.start > query.getStartTs() || entry.end <= query.getStartTs()
+      || now - entry.createTime >= expireSeconds)) {
+      entry = null;
+    }
+    metricsContext.increment(entry == null ? "query.cache.miss" : "query.cache.hit", 1);
+
+    // Query the store for the data points not in the cache entry
+    long cachedEnd = entry == null ? query.getStartTs() : entry.end;
+    Collection<MetricTimeSeries> queried = Collections.emptyList();
+    if (cachedEnd <= query.getEndTs()) {
+      queried = metricStore.query(new MetricDataQuery(cachedEnd, query.getEndTs(), resolution, Integer.MAX_VALUE,
+                                                      query.getMetrics(), query.getSliceByTags(),
+                                                      query.getGroupByTags(), null));
+    }
+
+    // Cache the data points of the complete buckets in the query time range
+    long newEnd = Math.max(cachedEnd, Math.min(completeEnd, query.getEndTs() + 1));
+    if (newEnd > query.getStartTs() && (entry == null || newEnd > entry.end || entry.start < query.getStartTs())) {
+      Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> series = new LinkedHashMap<>();
+      if (entry != null) {
+        addTimeValues(series, entry.series, query.getStartTs(), cachedEnd);
+      }
+      addTimeValues(series, queried, cachedEnd, newEnd);
+      // An extended entry keeps the creation time, so that it expires even if the query keeps being polled
+      cache.put(key, new CacheEntry(query.getStartTs(), newEnd, series, entry == null ? now : entry.createTime));
+    }
+
+    // Combine cached data points with the queried ones and apply the limit
+    Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result = new LinkedHashMap<>();
+    if (entry != null) {
+      addTimeValues(result, entry.series, query.getStartTs(), Math.min(cachedEnd, query.getEndTs() + 1));
+    }
+    addTimeValues(result, queried, cachedEnd, query.getEndTs() + 1);
+
+    List<MetricTimeSeries> timeSeries = new ArrayList<>(result.size());
+    for (Map.Entry<ImmutablePair<String, Map<String, String>>, List<TimeValue>> resultEntry : result.entrySet()) {
+      List<TimeValue> timeValues = resultEntry.getValue();
+      if (timeValues.isEmpty()) {
+        continue;
+      }
+      // same as the limit in the cube query, which always includes the first data point
+      int limit = Math.max(1, query.getLimit());
+      if (timeValues.size() > limit) {
+        timeValues = timeValues.subList(0, limit);
+      }
+      timeSeries.add(new MetricTimeSeries(resultEntry.getKey().getFirst(), resultEntry.getKey().getSecond(),
+                                          timeValues));
+    }
+    return timeSeries;
+  }
+
+  /**
+   * Adds the data points with timestamp in the given range from the given time series to the given map.
+   *
+   * @param series map from metric name and tag values to data points
+   * @param timeSeries time series to add from
+   * @param start start of the time range, inclusive
+   * @param end end of the time range, exclusive
+   */
+  private void addTimeValues(Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> series,
+                             Collection<MetricTimeSeries> timeSeries, long start, long end) {
+    for (MetricTimeSeries metricTimeSeries : timeSeries) {
+      ImmutablePair<String, Map<String, String>> seriesKey =
+        ImmutablePair.of(metricTimeSeries.getMetricName(), metricTimeSeries.getTagValues());
+      List<TimeValue> timeValues = series.get(seriesKey);
+      if (timeValues == null) {
+        timeValues = new ArrayList<>();
+        series.put(seriesKey, timeValues);
+      }
+      for (TimeValue timeValue : metricTimeSeries.getTimeValues()) {
+        if (timeValue.getTimestamp() >= start && timeValue.getTimestamp() < end) {
+          timeValues.add(timeValue);
+        }
+      }
+    }
+  }
+
+  /**
+   * Key of the cache, which is the query without the time range and the limit.
+   */
+  private static final class CacheKey {
+    private final int resolution;
+    private final Map<String, AggregationFunction> metrics;
+    private final Map<String, String> sliceByTags;
+    private final List<String> groupByTags;
+
+    CacheKey(MetricDataQuery query) {
+      this.resolution = query.getResolution();
+      this.metrics = new HashMap<>(query.getMetrics());
+      this.sliceByTags = new HashMap<>(query.getSliceByTags());
+      this.groupByTags = ImmutableList.copyOf(query.getGroupByTags());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return resolution == other.resolution
+        && Objects.equal(metrics, other.metrics)
+        && Objects.equal(sliceByTags, other.sliceByTags)
+        && Objects.equal(groupByTags, other.groupByTags);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(resolution, metrics, sliceByTags, groupByTags);
+    }
+  }
+
+  /**
+   * Cached data points of a query, which contains all data points with timestamp in the range of
+   * {@code [start, end)}.
+   */
+  private static final class CacheEntry {
+    private final long start;
+    private final long end;
+    private final List<MetricTimeSeries> series;
+    private final int weight;
+    // time in seconds when the data points were first cached
+    private final long createTime;
+
+    CacheEntry(long start, long end, Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> series,
+               long createTime) {
+      this.start = start;
+      this.end = end;
+      this.createTime = createTime;
+      this.series = new ArrayList<>(series.size());
+      long weight = 0;
+      for (Map.Entry<ImmutablePair<String, Map<String, String>>, List<TimeValue>> entry : series.entrySet()) {
+        if (entry.getValue().isEmpty()) {
+          continue;
+        }
+        this.series.add(new MetricTimeSeries(entry.getKey().getFirst(), entry.getKey().getSecond(),
+                                             entry.getValue()));
+        weight += SERIES_OVERHEAD_BYTES + (long) TIME_VALUE_BYTES * entry.getValue().size();
+      }
+      this.weight = (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+  }
+}
@@ -16,7 +16,6 @@
 
 package co.cask.cdap.metrics.query;
 
-import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.Interpolator;
 import co.cask.cdap.api.dataset.lib.cube.Interpolators;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
@@ -24,9 +23,14 @@ import co.cask.cdap.api.metrics.MetricDataQuery;
 import co.cask.cdap.api.metrics.MetricSearchQuery;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.utils.TimeMathParser;
+import co.cask.cdap.common.utils.TimeProvider;
+import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.MetricQueryRequest;
 import co.cask.cdap.proto.MetricQueryResult;
 import co.cask.cdap.proto.MetricTagValue;
@@ -83,6 +87,7 @@ public class MetricsHandler extends AbstractHttpHandler {
   public static final String ANY_TAG_VALUE = "*";
 
   private final MetricStore metricStore;
+  private final MetricQueryCache queryCache;
 
   private static final Map<String, String> tagNameToHuman;
   private static final Map<String, String> humanToTagName;
@@ -127,8 +132,17 @@ public class MetricsHandler extends AbstractHttpHandler {
   }
 
   @Inject
-  public MetricsHandler(MetricStore metricStore) {
+  public MetricsHandler(CConfiguration cConf, MetricStore metricStore,
+                        MetricsCollectionService metricsCollectionService) {
     this.metricStore = metricStore;
+    MetricsContext metricsContext = metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS));
+    this.queryCache = new MetricQueryCache(metricStore,
+                                           cConf.getLong(Constants.Metrics.QUERY_CACHE_MAX_SIZE_MB) * 1024 * 1024,
+                                           cConf.getLong(Constants.Metrics.QUERY_CACHE_DELAY_SECONDS),
+                                           cConf.getLong(Constants.Metrics.QUERY_CACHE_EXPIRE_SECONDS),
+                                           metricsContext, TimeProvider.SYSTEM_TIME);
   }
 
   @POST
@@ -334,12 +348,21 @@ public class MetricsHandler extends AbstractHttpHandler {
 
     MetricQueryRequest.TimeRange timeRange = queryRequest.getTimeRange();
 
+    // Percentiles are computed from all bucket counters of a data point, so the limit and interpolation
+    // are applied to the computed percentiles instead of to each bucket counter by the store
+    boolean percentiles = MetricPercentiles.hasPercentiles(queryRequest.getMetrics());
     MetricDataQuery query = new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
                                                 timeRange.getResolutionInSeconds(),
-                                                timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
+                                                percentiles ? Integer.MAX_VALUE : timeRange.getCount(),
+                                                MetricPercentiles.toStoreMetrics(queryRequest.getMetrics()),
                                                 tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
-                                                timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+                                                percentiles ? null : timeRange.getInterpolate());
+    Collection<MetricTimeSeries> queryResult = queryCache.query(query);
+    if (percentiles) {
+      queryResult = MetricPercentiles.computePercentiles(queryRequest.getMetrics(), queryResult,
+                                                         timeRange.getResolutionInSeconds(), timeRange.getCount(),
+                                                         timeRange.getInterpolate());
+    }
 
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
@@ -350,15 +373,6 @@ public class MetricsHandler extends AbstractHttpHandler {
     return decorate(queryResult, timeRange.getStart(), endTime, timeRange.getResolutionInSeconds());
   }
 
-  private Map<String, AggregationFunction> toMetrics(List<String> metrics) {
-    Map<String, AggregationFunction> result = Maps.newHashMap();
-    for (String metric : metrics) {
-      // todo: figure out metric type
-      result.put(metric, AggregationFunction.SUM);
-    }
-    return result;
-  }
-
   private Map<String, String> transformTagMap(Map<String, String> tags) {
     return Maps.transformValues(tags, new Function<String, String>() {
       @Override
@@ -463,7 +477,8 @@ public class MetricsHandler extends AbstractHttpHandler {
     MetricSearchQuery searchQuery =
       new MetricSearchQuery(0, Integer.MAX_VALUE, -1, toTagValues(tagValues));
     Collection<String> metricNames = metricStore.findMetricNames(searchQuery);
-    return Lists.newArrayList(Iterables.filter(metricNames, Predicates.notNull()));
+    return Lists.newArrayList(MetricPercentiles.toPercentileNames(Iterables.filter(metricNames,
+                                                                                   Predicates.notNull())));
   }
 
   private MetricQueryResult decorate(Collection<MetricTimeSeries> series, long startTs, long endTs,
@@ -241,7 +241,8 @@ public class DefaultMetricStore implements MetricStore {
       // todo improve this logic?
       for (MetricValue metric : metricValue.getMetrics()) {
         String measureName = (scope == null ? "system." : scope + ".") + metric.getName();
-        MeasureType type = metric.getType() == MetricType.COUNTER ? MeasureType.COUNTER : MeasureType.GAUGE;
+        // Distribution buckets are counts, which are merged across time by adding them up as counters
+        MeasureType type = metric.getType() == MetricType.GAUGE ? MeasureType.GAUGE : MeasureType.COUNTER;
         metrics.add(new Measurement(measureName, type, metric.getValue()));
       }
 
@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.read;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.common.security.DefaultImpersonator;
+import co.cask.cdap.common.security.Impersonator;
+import co.cask.cdap.common.security.UnsupportedUGIProvider;
+import co.cask.cdap.logging.context.FlowletLoggingContext;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.FilterParser;
+import co.cask.cdap.logging.serialize.LogSchema;
+import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.logging.write.AvroFileWriter;
+import co.cask.cdap.logging.write.LogFileIndex;
+import co.cask.cdap.logging.write.LogTokenIndex;
+import co.cask.cdap.logging.write.LogWriteEvent;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import org.apache.avro.Schema;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Tests for reading log files written by {@link AvroFileWriter} through {@link AvroFileReader}.
+ */
+public class AvroFileReaderTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final LoggerContext LOGGER_CONTEXT = new LoggerContext();
+  private static final LoggingContext LOGGING_CONTEXT =
+    new FlowletLoggingContext("NS_1", "APP_1", "FLOW_1", "FLOWLET_1", "RUN1", "INSTANCE1");
+  private static final int SEGMENT_SIZE = LogFileIndex.INDEX_INTERVAL_EVENTS;
+  // Events span three full index segments and part of a fourth
+  private static final int EVENT_COUNT = 3 * SEGMENT_SIZE + SEGMENT_SIZE / 2;
+
+  private static Schema schema;
+  private static Impersonator impersonator;
+  private static Location base;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    schema = new LogSchema().getAvroSchema();
+    impersonator = new DefaultImpersonator(CConfiguration.create(), new UnsupportedUGIProvider(), null);
+    base = new LocalLocationFactory().create(TEMP_FOLDER.newFolder().toURI());
+  }
+
+  @Test
+  public void testIndexedRead() throws Exception {
+    Location indexed = writeLogFile(base.append("indexed.avro"), EVENT_COUNT, false);
+    Location notIndexed = copyLogFile(indexed, base.append("notIndexed.avro"));
+    LogFileIndex index = LogFileIndex.read(indexed, indexed.length());
+    Assert.assertNotNull(index);
+    Assert.assertEquals(4, index.size());
+    Assert.assertNull(LogFileIndex.read(notIndexed, notIndexed.length()));
+
+    // Times at the start of the file, in the middle of a segment, at the start of a segment and at the end
+    long midSegmentTime = getTimestamp(SEGMENT_SIZE + SEGMENT_SIZE / 2) + 5;
+    List<Long> fromTimes = ImmutableList.of(0L, getTimestamp(0), midSegmentTime, getTimestamp(2 * SEGMENT_SIZE),
+                                            getTimestamp(EVENT_COUNT - 1), Long.MAX_VALUE);
+    List<Integer> maxEvents = ImmutableList.of(1, 10, SEGMENT_SIZE + 200, Integer.MAX_VALUE);
+    List<Filter> filters = ImmutableList.of(Filter.EMPTY_FILTER, FilterParser.parse("message=middle"));
+
+    for (Filter filter : filters) {
+      for (long fromTime : fromTimes) {
+        for (int max : maxEvents) {
+          Assert.assertEquals(readLog(notIndexed, filter, fromTime, Long.MAX_VALUE, max),
+                              readLog(indexed, filter, fromTime, Long.MAX_VALUE, max));
+          Assert.assertEquals(readLog(notIndexed, filter, fromTime, getTimestamp(EVENT_COUNT - 200), max),
+                              readLog(indexed, filter, fromTime, getTimestamp(EVENT_COUNT - 200), max));
+          Assert.assertEquals(readLogPrev(notIndexed, filter, fromTime, max),
+                              readLogPrev(indexed, filter, fromTime, max));
+        }
+      }
+    }
+
+    // Reading from the middle of a segment starts with the first event at or after the given time
+    int midSegmentEvent = SEGMENT_SIZE + SEGMENT_SIZE / 2 + 1;
+    Assert.assertEquals(createMessages(midSegmentEvent, midSegmentEvent + 10),
+                        readLog(indexed, Filter.EMPTY_FILTER, midSegmentTime, Long.MAX_VALUE, 10));
+    Assert.assertEquals(createMessages(midSegmentEvent - 10, midSegmentEvent),
+                        readLogPrev(indexed, Filter.EMPTY_FILTER, midSegmentTime, 10));
+    Assert.assertEquals(createMessages(midSegmentEvent - SEGMENT_SIZE - 200, midSegmentEvent),
+                        readLogPrev(indexed, Filter.EMPTY_FILTER, midSegmentTime, SEGMENT_SIZE + 200));
+  }
+
+  @Test
+  public void testTokenIndexedRead() throws Exception {
+    Location tokenIndexed = writeLogFile(base.append("tokenIndexed.avro"), EVENT_COUNT, true);
+    Location notTokenIndexed = writeLogFile(base.append("notTokenIndexed.avro"), EVENT_COUNT, false);
+    Assert.assertTrue(LogTokenIndex.getIndexLocation(tokenIndexed).exists());
+    Assert.assertFalse(LogTokenIndex.getIndexLocation(notTokenIndexed).exists());
+
+    // A token index that only covers the first three segments of the file
+    Location partiallyTokenIndexed = writeLogFile(base.append("partiallyTokenIndexed.avro"), EVENT_COUNT, false);
+    Location shorter = writeLogFile(base.append("shorter.avro"), EVENT_COUNT - SEGMENT_SIZE, true);
+    Assert.assertNotNull(LogTokenIndex.getIndexLocation(shorter)
+                           .renameTo(LogTokenIndex.getIndexLocation(partiallyTokenIndexed)));
+
+    Filter middle = FilterParser.parse("message=middle");
+    assertSegments(tokenIndexed, middle, 4, 1);
+    assertSegments(partiallyTokenIndexed, middle, 3, 1);
+    Filter tail = FilterParser.parse("message=tail");
+    assertSegments(tokenIndexed, tail, 4, 3);
+    assertSegments(partiallyTokenIndexed, tail, 3);
+
+    Assert.assertEquals(createMessages(SEGMENT_SIZE, 2 * SEGMENT_SIZE),
+                        readLog(tokenIndexed, middle, 0, Long.MAX_VALUE, Integer.MAX_VALUE));
+    Assert.assertEquals(createMessages(SEGMENT_SIZE, 2 * SEGMENT_SIZE),
+                        readLogPrev(tokenIndexed, middle, Long.MAX_VALUE, Integer.MAX_VALUE));
+    // Segments past the end of the token index are always read
+    Assert.assertEquals(createMessages(3 * SEGMENT_SIZE, EVENT_COUNT),
+                        readLog(partiallyTokenIndexed, tail, 0, Long.MAX_VALUE, Integer.MAX_VALUE));
+    Assert.assertEquals(createMessages(3 * SEGMENT_SIZE, EVENT_COUNT),
+                        readLogPrev(partiallyTokenIndexed, tail, Long.MAX_VALUE, Integer.MAX_VALUE));
+
+    long midSegmentTime = getTimestamp(SEGMENT_SIZE + SEGMENT_SIZE / 2) + 5;
+    List<Long> fromTimes = ImmutableList.of(0L, getTimestamp(SEGMENT_SIZE - 1), getTimestamp(SEGMENT_SIZE),
+                                            midSegmentTime, getTimestamp(2 * SEGMENT_SIZE - 1),
+                                            getTimestamp(2 * SEGMENT_SIZE), getTimestamp(3 * SEGMENT_SIZE),
+                                            Long.MAX_VALUE);
+    List<Integer> maxEvents = ImmutableList.of(1, 10, SEGMENT_SIZE / 2, Integer.MAX_VALUE);
+    List<Filter> filters = ImmutableList.of(middle, tail, FilterParser.parse("message=middle OR message=tail"),
+                                            FilterParser.parse("logger=co.cask.cdap.Test AND message=middle"));
+
+    for (Filter filter : filters) {
+      for (long fromTime : fromTimes) {
+        for (int max : maxEvents) {
+          List<String> expected = readLog(notTokenIndexed, filter, fromTime, Long.MAX_VALUE, max);
+          Assert.assertEquals(expected, readLog(tokenIndexed, filter, fromTime, Long.MAX_VALUE, max));
+          Assert.assertEquals(expected, readLog(partiallyTokenIndexed, filter, fromTime, Long.MAX_VALUE, max));
+
+          expected = readLogPrev(notTokenIndexed, filter, fromTime, max);
+          Assert.assertEquals(expected, readLogPrev(tokenIndexed, filter, fromTime, max));
+          Assert.assertEquals(expected, readLogPrev(partiallyTokenIndexed, filter, fromTime, max));
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes a log file with the given number of events through {@link AvroFileWriter}. Events in the second index
+   * segment have the word "middle" in their message, events in the fourth segment have the word "tail".
+   */
+  private Location writeLogFile(Location location, int eventCount, boolean tokenIndexEnabled) throws IOException {
+    // Use a small sync interval so that each index segment has many Avro blocks
+    AvroFileWriter writer = new AvroFileWriter(null, null, "", schema, Long.MAX_VALUE, 2048, Long.MAX_VALUE,
+                                               impersonator, tokenIndexEnabled);
+    try (AvroFileWriter.AvroFile avroFile = writer.new AvroFile(location)) {
+      avroFile.open();
+      for (int i = 0; i < eventCount; i++) {
+        ILoggingEvent event = createEvent(i);
+        avroFile.append(new LogWriteEvent(LoggingEvent.encode(schema, event, LOGGING_CONTEXT),
+                                          event, LOGGING_CONTEXT));
+      }
+    }
+    return location;
+  }
+
+  private void assertSegments(Location logFile, Filter filter, int segmentCount, int... expected) throws IOException {
+    LogTokenIndex tokenIndex = LogTokenIndex.read(logFile, filter);
+    Assert.assertNotNull(tokenIndex);
+    Assert.assertEquals(segmentCount, tokenIndex.getSegmentCount());
+    BitSet expectedSegments = new BitSet();
+    for (int segment : expected) {
+      expectedSegments.set(segment);
+    }
+    Assert.assertEquals(expectedSegments, tokenIndex.getSegments(filter));
+  }
+
+  /**
+   * Copies only the Avro file, without its index files.
+   */
+  private Location copyLogFile(Location source, Location target) throws IOException {
+    ByteStreams.copy(Locations.newInputSupplier(source), Locations.newOutputSupplier(target));
+    return target;
+  }
+
+  private ILoggingEvent createEvent(int i) {
+    ch.qos.logback.classic.spi.LoggingEvent event = new ch.qos.logback.classic.spi.LoggingEvent(
+      getClass().getName(), LOGGER_CONTEXT.getLogger("co.cask.cdap.Test"), Level.INFO, createMessage(i), null, null);
+    event.setTimeStamp(getTimestamp(i));
+    return event;
+  }
+
+  private static String createMessage(int i) {
+    String word;
+    switch (i / SEGMENT_SIZE) {
+      case 1:
+        word = "middle";
+        break;
+      case 3:
+        word = "tail";
+        break;
+      default:
+        word = "head";
+    }
+    return "Processing " + word + " record " + i;
+  }
+
+  private static List<String> createMessages(int start, int end) {
+    List<String> messages = new ArrayList<>();
+    for (int i = start; i < end; i++) {
+      messages.add(getTimestamp(i) + " " + createMessage(i));
+    }
+    return messages;
+  }
+
+  private static long getTimestamp(int i) {
+    return 1000000L + i * 10L;
+  }
+
+  private List<String> readLog(Location file, Filter filter, long fromTimeMs, long toTimeMs, int maxEvents) {
+    List<String> messages = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = new AvroFileReader(schema).readLog(
+      file, filter, fromTimeMs, toTimeMs, maxEvents, NamespaceId.DEFAULT, impersonator)) {
+      while (iterator.hasNext()) {
+        messages.add(toString(iterator.next()));
+      }
+    }
+    return messages;
+  }
+
+  private List<String> readLogPrev(Location file, Filter filter, long fromTimeMs, int maxEvents) throws IOException {
+    List<String> messages = new ArrayList<>();
+    for (LogEvent event : new AvroFileReader(schema).readLogPrev(file, filter, fromTimeMs, maxEvents,
+                                                                 NamespaceId.DEFAULT, impersonator)) {
+      messages.add(toString(event));
+    }
+    return messages;
+  }
+
+  private static String toString(LogEvent event) {
+    return event.getLoggingEvent().getTimeStamp() + " " + event.getLoggingEvent().getFormattedMessage();
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for {@link LogFileIndex}.
+ */
+public class LogFileIndexTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testIndex() throws Exception {
+    Location base = new LocalLocationFactory().create(TEMP_FOLDER.newFolder().toURI());
+    Location logFile = base.append("1234.avro");
+    Assert.assertEquals(base.append("1234.avro.idx"), LogFileIndex.getIndexLocation(logFile));
+
+    // No index
+    Assert.assertNull(LogFileIndex.read(logFile, 1000L));
+
+    // Entries at positions 100, 200, ... with timestamps 10, 20, 20, 30, 40
+    long[] timestamps = { 10L, 20L, 20L, 30L, 40L };
+    try (LogFileIndex.Writer writer = new LogFileIndex.Writer(logFile)) {
+      for (int i = 0; i < timestamps.length; i++) {
+        writer.add(timestamps[i], (i + 1) * 100L);
+      }
+      writer.flush();
+    }
+
+    LogFileIndex index = LogFileIndex.read(logFile, 1000L);
+    Assert.assertNotNull(index);
+    Assert.assertEquals(timestamps.length, index.size());
+    for (int i = 0; i < timestamps.length; i++) {
+      Assert.assertEquals(timestamps[i], index.getTimestamp(i));
+      Assert.assertEquals((i + 1) * 100L, index.getPosition(i));
+    }
+
+    // Last entry with timestamp smaller than the given one
+    Assert.assertEquals(-1, index.findBefore(5L));
+    Assert.assertEquals(-1, index.findBefore(10L));
+    Assert.assertEquals(0, index.findBefore(11L));
+    Assert.assertEquals(0, index.findBefore(20L));
+    Assert.assertEquals(2, index.findBefore(21L));
+    Assert.assertEquals(4, index.findBefore(100L));
+
+    // First entry with timestamp larger than the given one
+    Assert.assertEquals(0, index.findFirstAfter(5L));
+    Assert.assertEquals(1, index.findFirstAfter(10L));
+    Assert.assertEquals(3, index.findFirstAfter(20L));
+    Assert.assertEquals(5, index.findFirstAfter(40L));
+
+    // Entries pointing beyond the log file length are ignored
+    index = LogFileIndex.read(logFile, 350L);
+    Assert.assertNotNull(index);
+    Assert.assertEquals(3, index.size());
+    Assert.assertEquals(3, index.findFirstAfter(40L));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.FilterParser;
+import com.google.common.collect.ImmutableList;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Unit test for {@link LogTokenIndex}.
+ */
+public class LogTokenIndexTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final LoggerContext LOGGER_CONTEXT = new LoggerContext();
+
+  @Test
+  public void testIndex() throws Exception {
+    Location base = new LocalLocationFactory().create(TEMP_FOLDER.newFolder().toURI());
+    Location logFile = base.append("1234.avro");
+    Assert.assertEquals(base.append("1234.avro.tok"), LogTokenIndex.getIndexLocation(logFile));
+
+    // No index
+    Assert.assertNull(LogTokenIndex.read(logFile, FilterParser.parse("loglevel=ERROR")));
+
+    List<ILoggingEvent> events = ImmutableList.of(
+      createEvent("co.cask.cdap.Foo", Level.INFO, "Starting program run 1234", null),
+      createEvent("co.cask.cdap.Bar", Level.ERROR, "Failed to connect", new IOException("Connection refused")),
+      createEvent("org.apache.Zoo", Level.DEBUG, "Processed 100 records", null));
+    try (LogTokenIndex.Writer writer = new LogTokenIndex.Writer(logFile)) {
+      for (int i = 0; i < events.size(); i++) {
+        writer.add(i, events.get(i));
+      }
+    }
+
+    assertSegments(logFile, "loglevel=WARN", 1);
+    assertSegments(logFile, "loglevel=DEBUG", 0, 1, 2);
+    assertSegments(logFile, "logger=co.cask.cdap", 0, 1);
+    assertSegments(logFile, "logger=co.cask.cdap.Bar", 1);
+    assertSegments(logFile, "logger=co.cask.cd");
+    assertSegments(logFile, "message=NullPointerException");
+    assertSegments(logFile, "message=ioexception", 1);
+    assertSegments(logFile, "message='connection Refused'", 1);
+    assertSegments(logFile, "message='Refused program'");
+    assertSegments(logFile, "loglevel=ERROR OR message=records", 1, 2);
+    assertSegments(logFile, "loglevel=INFO AND .appId=test", 0, 1);
+
+    // Numbers are not indexed
+    Assert.assertNull(LogTokenIndex.read(logFile, FilterParser.parse("message=1234")));
+    assertSegments(logFile, "message='run 1234'", 0);
+
+    // Filters that cannot be answered by the index
+    LogTokenIndex index = LogTokenIndex.read(logFile, FilterParser.parse("loglevel=ERROR OR .appId=test"));
+    Assert.assertNotNull(index);
+    Assert.assertNull(index.getSegments(FilterParser.parse("loglevel=ERROR OR .appId=test")));
+
+    // The filters should match the events in the segments
+    Filter filter = FilterParser.parse("message='connection Refused'");
+    Assert.assertFalse(filter.match(events.get(0)));
+    Assert.assertTrue(filter.match(events.get(1)));
+    filter = FilterParser.parse("logger=co.cask.cdap");
+    Assert.assertTrue(filter.match(events.get(0)));
+    Assert.assertFalse(filter.match(events.get(2)));
+  }
+
+  @Test
+  public void testTooManyTokens() throws Exception {
+    Location logFile = new LocalLocationFactory().create(TEMP_FOLDER.newFolder().toURI()).append("1234.avro");
+
+    StringBuilder message = new StringBuilder();
+    for (int i = 0; i <= LogTokenIndex.MAX_TOKENS; i++) {
+      message.append("word").append(i).append(' ');
+    }
+    try (LogTokenIndex.Writer writer = new LogTokenIndex.Writer(logFile)) {
+      writer.add(0, createEvent("co.cask.cdap.Foo", Level.INFO, message.toString(), null));
+    }
+
+    // No index should be written
+    Assert.assertFalse(LogTokenIndex.getIndexLocation(logFile).exists());
+    Assert.assertNull(LogTokenIndex.read(logFile, FilterParser.parse("message=word1")));
+  }
+
+  private void assertSegments(Location logFile, String filterExpression, int... expected) throws IOException {
+    Filter filter = FilterParser.parse(filterExpression);
+    LogTokenIndex index = LogTokenIndex.read(logFile, filter);
+    Assert.assertNotNull(index);
+    Assert.assertEquals(3, index.getSegmentCount());
+
+    BitSet expectedSegments = new BitSet();
+    for (int segment : expected) {
+      expectedSegments.set(segment);
+    }
+    Assert.assertEquals(expectedSegments, index.getSegments(filter));
+  }
+
+  private ILoggingEvent createEvent(String loggerName, Level level, String message, @Nullable Throwable throwable) {
+    return new LoggingEvent(getClass().getName(), LOGGER_CONTEXT.getLogger(loggerName), level, message,
+                            throwable, null);
+  }
+}
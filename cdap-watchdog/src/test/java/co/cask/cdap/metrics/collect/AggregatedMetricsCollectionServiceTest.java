@@ -15,6 +15,9 @@
  */
 package co.cask.cdap.metrics.collect;
 
+import co.cask.cdap.api.metrics.MetricDistributions;
+import co.cask.cdap.api.metrics.MetricHandle;
+import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
@@ -26,9 +29,11 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -155,6 +160,57 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testMetricHandle() throws Exception {
+    final List<MetricValues> published = new ArrayList<>();
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService() {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    // Values emitted through the handle and through the context are aggregated together
+    MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+    MetricHandle handle = context.getMetricHandle(METRIC);
+    handle.increment(3);
+    context.increment(METRIC, 4);
+    handle.increment(5);
+    service.runOneIteration();
+    Assert.assertEquals(1, published.size());
+    Assert.assertEquals(12L, getMetricValue(published.get(0).getMetrics(), METRIC));
+
+    // The handle keeps working across iterations
+    published.clear();
+    handle.gauge(7);
+    service.runOneIteration();
+    Assert.assertEquals(1, published.size());
+    Assert.assertEquals(7L, getMetricValue(published.get(0).getMetrics(), METRIC));
+
+    // Distribution through the handle
+    published.clear();
+    handle.distribution(10);
+    handle.distribution(10);
+    handle.distribution(1000);
+    service.runOneIteration();
+    Assert.assertEquals(1, published.size());
+    Collection<MetricValue> metrics = published.get(0).getMetrics();
+    String bucket10 = MetricDistributions.getBucketName(METRIC, MetricDistributions.getBucket(10L));
+    String bucket1000 = MetricDistributions.getBucketName(METRIC, MetricDistributions.getBucket(1000L));
+    Assert.assertEquals(2L, getMetricValue(metrics, bucket10));
+    Assert.assertEquals(1L, getMetricValue(metrics, bucket1000));
+    for (MetricValue metricValue : metrics) {
+      if (METRIC.equals(MetricDistributions.getDistributionName(metricValue.getName()))) {
+        Assert.assertEquals(MetricType.DISTRIBUTION, metricValue.getType());
+      }
+    }
+
+    // Nothing is published when nothing was emitted
+    published.clear();
+    service.runOneIteration();
+    Assert.assertTrue(published.isEmpty());
+  }
+
   private void verifyCounterMetricsValue(MetricValues metricValues) {
     Assert.assertNotNull(metricValues);
     Map<String, String> tags = metricValues.getTags();
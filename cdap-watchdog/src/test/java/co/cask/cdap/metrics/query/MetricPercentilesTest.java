@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.metrics.query;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.Interpolator;
+import co.cask.cdap.api.dataset.lib.cube.Interpolators;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDistributions;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.common.utils.ImmutablePair;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit test for {@link MetricPercentiles} and {@link MetricDistributions}.
+ */
+public class MetricPercentilesTest {
+
+  @Test
+  public void testBuckets() {
+    Assert.assertEquals(0, MetricDistributions.getBucket(-10L));
+    Assert.assertEquals(0, MetricDistributions.getBucket(0L));
+    Assert.assertEquals(MetricDistributions.BUCKETS - 1, MetricDistributions.getBucket(Long.MAX_VALUE));
+    Assert.assertEquals(Long.MAX_VALUE, MetricDistributions.getUpperBound(MetricDistributions.BUCKETS - 1));
+
+    // Small values have their own bucket
+    for (long value = 1; value < 8; value++) {
+      Assert.assertEquals(value, MetricDistributions.getUpperBound(MetricDistributions.getBucket(value)));
+    }
+
+    // Every value is in a bucket with upper bound at most 25% larger and buckets are in increasing order
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+      int bucket = MetricDistributions.getBucket(value);
+      long upperBound = MetricDistributions.getUpperBound(bucket);
+      Assert.assertTrue(value <= upperBound);
+      Assert.assertTrue(value == 0 || (upperBound - value) <= value / 4);
+      if (value < Long.MAX_VALUE) {
+        Assert.assertTrue(MetricDistributions.getBucket(value + 1) >= bucket);
+      }
+    }
+
+    String name = MetricDistributions.getBucketName("system.latency", 17);
+    Assert.assertEquals(17, MetricDistributions.getBucket(name));
+    Assert.assertEquals("system.latency", MetricDistributions.getDistributionName(name));
+    Assert.assertNull(MetricDistributions.getDistributionName("system.latency"));
+    Assert.assertNull(MetricDistributions.getDistributionName("system.latency:b"));
+    Assert.assertNull(MetricDistributions.getDistributionName("system.latency:b1000"));
+  }
+
+  @Test
+  public void testPercentile() {
+    long[] counts = new long[MetricDistributions.BUCKETS];
+    Assert.assertEquals(0L, MetricDistributions.getPercentile(counts, 0.5d));
+
+    for (long value = 1; value <= 100; value++) {
+      counts[MetricDistributions.getBucket(value)]++;
+    }
+    assertWithin(50, MetricDistributions.getPercentile(counts, 0.5d));
+    assertWithin(95, MetricDistributions.getPercentile(counts, 0.95d));
+    assertWithin(99, MetricDistributions.getPercentile(counts, 0.99d));
+    Assert.assertEquals(1L, MetricDistributions.getPercentile(counts, 0d));
+  }
+
+  @Test
+  public void testParsePercentile() {
+    Assert.assertNull(MetricPercentiles.parsePercentile("system.latency"));
+    Assert.assertNull(MetricPercentiles.parsePercentile("system.latency:p"));
+    assertPercentile(0d, "system.latency:p0");
+    assertPercentile(0.01d, "system.latency:p1");
+    assertPercentile(0.05d, "system.latency:p5");
+    assertPercentile(0.05d, "system.latency:p05");
+    assertPercentile(0.1d, "system.latency:p10");
+    assertPercentile(0.5d, "system.latency:p50");
+    assertPercentile(0.99d, "system.latency:p99");
+    assertPercentile(1d, "system.latency:p100");
+    assertPercentile(0.999d, "system.latency:p999");
+    assertPercentile(0.9999d, "system.latency:p9999");
+    assertPercentile(0.105d, "system.latency:p105");
+
+    // A fraction with trailing zero is ambiguous
+    for (String metric : ImmutableList.of("system.latency:p990", "system.latency:p1000", "system.latency:p500")) {
+      try {
+        MetricPercentiles.parsePercentile(metric);
+        Assert.fail("Expected failure for " + metric);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testQuery() {
+    Assert.assertFalse(MetricPercentiles.hasPercentiles(ImmutableList.of("system.count", "system.latency")));
+    Assert.assertTrue(MetricPercentiles.hasPercentiles(ImmutableList.of("system.count", "system.latency:p50")));
+    Map<String, AggregationFunction> storeMetrics =
+      MetricPercentiles.toStoreMetrics(ImmutableList.of("system.count", "system.latency:p50", "system.latency:p99"));
+    Assert.assertEquals(MetricDistributions.BUCKETS + 1, storeMetrics.size());
+    Assert.assertEquals(AggregationFunction.SUM, storeMetrics.get("system.count"));
+    Assert.assertEquals(AggregationFunction.SUM,
+                        storeMetrics.get(MetricDistributions.getBucketName("system.latency", 0)));
+
+    // At time 10, values 1 to 100 in one series. At time 20, 90 values of 1 and 10 values of 1000, across two series.
+    Map<String, String> tags = ImmutableMap.of("app", "a");
+    List<MetricTimeSeries> storeResult = new ArrayList<>();
+    storeResult.add(new MetricTimeSeries("system.count", tags, ImmutableList.of(new TimeValue(10, 5))));
+    long[] counts = new long[MetricDistributions.BUCKETS];
+    for (long value = 1; value <= 100; value++) {
+      counts[MetricDistributions.getBucket(value)]++;
+    }
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        List<TimeValue> timeValues = new ArrayList<>();
+        timeValues.add(new TimeValue(10, counts[i]));
+        if (i == MetricDistributions.getBucket(1L)) {
+          timeValues.add(new TimeValue(20, 90));
+        }
+        storeResult.add(new MetricTimeSeries(MetricDistributions.getBucketName("system.latency", i),
+                                             tags, timeValues));
+      }
+    }
+    storeResult.add(new MetricTimeSeries(MetricDistributions.getBucketName("system.latency",
+                                                                           MetricDistributions.getBucket(1000L)),
+                                         tags, ImmutableList.of(new TimeValue(20, 10))));
+
+    Collection<MetricTimeSeries> result =
+      MetricPercentiles.computePercentiles(ImmutableList.of("system.count", "system.latency:p50",
+                                                            "system.latency:p99"), storeResult,
+                                           10, Integer.MAX_VALUE, null);
+    Assert.assertEquals(3, result.size());
+    Assert.assertTrue(result.contains(storeResult.get(0)));
+    for (MetricTimeSeries series : result) {
+      Assert.assertEquals(tags, series.getTagValues());
+      List<TimeValue> timeValues = series.getTimeValues();
+      if (series.getMetricName().equals("system.latency:p50")) {
+        Assert.assertEquals(2, timeValues.size());
+        Assert.assertEquals(10L, timeValues.get(0).getTimestamp());
+        assertWithin(50, timeValues.get(0).getValue());
+        Assert.assertEquals(20L, timeValues.get(1).getTimestamp());
+        Assert.assertEquals(1L, timeValues.get(1).getValue());
+      } else if (series.getMetricName().equals("system.latency:p99")) {
+        Assert.assertEquals(2, timeValues.size());
+        assertWithin(99, timeValues.get(0).getValue());
+        assertWithin(1000, timeValues.get(1).getValue());
+      } else {
+        Assert.assertEquals("system.count", series.getMetricName());
+      }
+    }
+
+    // Bucket counters are listed as the common percentiles
+    Assert.assertEquals(new HashSet<>(Arrays.asList("system.count", "system.latency:p50",
+                                                    "system.latency:p95", "system.latency:p99")),
+                        new HashSet<>(MetricPercentiles.toPercentileNames(ImmutableList.of(
+                          "system.count", MetricDistributions.getBucketName("system.latency", 3),
+                          MetricDistributions.getBucketName("system.latency", 40)))));
+  }
+
+  @Test
+  public void testLimitAndInterpolation() {
+    // Buckets have data points at different times. Value 1 has 10 counts at 0, 180 and 240.
+    // Value 1000 has 30 counts at 60 and 240. No bucket has a data point at 120.
+    Map<String, String> tags = ImmutableMap.of("app", "a");
+    List<MetricTimeSeries> storeResult = ImmutableList.of(
+      new MetricTimeSeries("system.count", tags, ImmutableList.of(new TimeValue(0, 2), new TimeValue(120, 4))),
+      new MetricTimeSeries(MetricDistributions.getBucketName("system.latency", MetricDistributions.getBucket(1L)),
+                           tags, ImmutableList.of(new TimeValue(0, 10), new TimeValue(180, 10),
+                                                  new TimeValue(240, 10))),
+      new MetricTimeSeries(MetricDistributions.getBucketName("system.latency", MetricDistributions.getBucket(1000L)),
+                           tags, ImmutableList.of(new TimeValue(60, 30), new TimeValue(240, 30))));
+
+    long high = MetricDistributions.getUpperBound(MetricDistributions.getBucket(1000L));
+    Interpolator interpolator = new Interpolators.Linear(1000);
+    Collection<MetricTimeSeries> result =
+      MetricPercentiles.computePercentiles(ImmutableList.of("system.count", "system.latency:p50"), storeResult,
+                                           60, 4, interpolator);
+    Assert.assertEquals(2, result.size());
+    for (MetricTimeSeries series : result) {
+      if (series.getMetricName().equals("system.latency:p50")) {
+        // The percentile at 120 is interpolated from the percentiles at 60 and 180, not from interpolated buckets.
+        // The data point at 240 is beyond the limit.
+        Assert.assertEquals(ImmutableList.of(new TimeValue(0, 1L), new TimeValue(60, high),
+                                             new TimeValue(120, interpolator.interpolate(new TimeValue(60, high),
+                                                                                         new TimeValue(180, 1L),
+                                                                                         120)),
+                                             new TimeValue(180, 1L)),
+                            series.getTimeValues());
+      } else {
+        Assert.assertEquals("system.count", series.getMetricName());
+        Assert.assertEquals(ImmutableList.of(new TimeValue(0, 2), new TimeValue(60, 3), new TimeValue(120, 4)),
+                            series.getTimeValues());
+      }
+    }
+
+    // Without interpolator, the limit applies to the data points of the percentile
+    result = MetricPercentiles.computePercentiles(ImmutableList.of("system.latency:p50"),
+                                                  storeResult.subList(1, storeResult.size()), 60, 3, null);
+    Assert.assertEquals(ImmutableList.of(new MetricTimeSeries("system.latency:p50", tags, ImmutableList.of(
+      new TimeValue(0, 1L), new TimeValue(60, high), new TimeValue(180, 1L)))), result);
+  }
+
+  private void assertPercentile(double expected, String metric) {
+    ImmutablePair<String, Double> percentile = MetricPercentiles.parsePercentile(metric);
+    Assert.assertNotNull(percentile);
+    Assert.assertEquals("system.latency", percentile.getFirst());
+    Assert.assertEquals(expected, percentile.getSecond(), 0d);
+  }
+
+  private void assertWithin(long expected, long actual) {
+    Assert.assertTrue("Expected " + expected + " but got " + actual,
+                      actual >= expected && actual <= expected + expected / 4);
+  }
+}
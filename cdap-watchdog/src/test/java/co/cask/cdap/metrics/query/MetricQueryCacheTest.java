@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.query;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.Interpolators;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricDeleteQuery;
+import co.cask.cdap.api.metrics.MetricSearchQuery;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.utils.TimeProvider;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit-test for {@link MetricQueryCache}.
+ */
+public class MetricQueryCacheTest {
+
+  @Test
+  public void testSlidingQuery() throws Exception {
+    TestMetricStore store = new TestMetricStore();
+    final AtomicLong now = new AtomicLong(1000);
+    MetricQueryCache cache = new MetricQueryCache(store, 1024 * 1024, 5, 3600, new NoopMetricsContext(),
+                                                  new TimeProvider() {
+      @Override
+      public long currentTimeMillis() {
+        return TimeUnit.SECONDS.toMillis(now.get());
+      }
+    });
+
+    for (long ts = 0; ts < 1000; ts++) {
+      store.add(ts % 2 == 0 ? "a" : "b", ts, ts);
+    }
+
+    // first query is a miss and should be fully queried from the store
+    Assert.assertEquals(store.query(createQuery(900, 999, 100)), cache.query(createQuery(900, 999, 100)));
+    Assert.assertEquals(ImmutableList.of(900L, 900L), store.getQueriedStarts());
+
+    // with the time moving forward, only the incomplete buckets should be queried from the store
+    for (long ts = 1000; ts < 1010; ts++) {
+      store.add(ts % 2 == 0 ? "a" : "b", ts, ts);
+      now.incrementAndGet();
+      store.getQueriedStarts().clear();
+      MetricDataQuery query = createQuery(ts - 99, ts, 100);
+      Assert.assertEquals(store.query(query), cache.query(query));
+      // the first one is for the expected result, and the second one is from the cache for the buckets
+      // that were incomplete in the previous query
+      Assert.assertEquals(ImmutableList.of(ts - 99, now.get() - 6), store.getQueriedStarts());
+    }
+
+    // data points are not in cache for a late bucket
+    store.add("a", 1008, 1);
+    MetricDataQuery query = createQuery(1000, 1009, 100);
+    Assert.assertEquals(store.query(query), cache.query(query));
+
+    // limit should be applied to the combined result
+    query = createQuery(950, 1009, 10);
+    Assert.assertEquals(store.query(query), cache.query(query));
+
+    // query starting before the cached range should be a miss
+    store.getQueriedStarts().clear();
+    query = createQuery(800, 1009, 1000);
+    Assert.assertEquals(store.query(query), cache.query(query));
+    Assert.assertEquals(ImmutableList.of(800L, 800L), store.getQueriedStarts());
+
+    // queries with interpolation are not cached
+    store.getQueriedStarts().clear();
+    query = new MetricDataQuery(1000, 1009, 1, 100, ImmutableMap.of("metric", AggregationFunction.SUM),
+                                ImmutableMap.<String, String>of(), ImmutableList.of("tag"),
+                                new Interpolators.Step());
+    cache.query(query);
+    cache.query(query);
+    Assert.assertEquals(ImmutableList.of(1000L, 1000L), store.getQueriedStarts());
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    TestMetricStore store = new TestMetricStore();
+    final AtomicLong now = new AtomicLong(1000);
+    MetricQueryCache cache = new MetricQueryCache(store, 1024 * 1024, 5, 60, new NoopMetricsContext(),
+                                                  new TimeProvider() {
+      @Override
+      public long currentTimeMillis() {
+        return TimeUnit.SECONDS.toMillis(now.get());
+      }
+    });
+
+    for (long ts = 0; ts < 1000; ts++) {
+      store.add(ts % 2 == 0 ? "a" : "b", ts, ts);
+    }
+
+    MetricDataQuery query = createQuery(900, 999, 100);
+    Collection<MetricTimeSeries> expected = store.query(query);
+    Assert.assertEquals(expected, cache.query(query));
+
+    // A complete bucket changed, e.g. from a late metric. It is served from the cache until the entry expires,
+    // even though the entry keeps being extended by the query.
+    store.add("a", 900, 1);
+    for (int i = 0; i < 59; i++) {
+      now.incrementAndGet();
+      Assert.assertEquals(expected, cache.query(query));
+    }
+    now.incrementAndGet();
+    Assert.assertEquals(store.query(query), cache.query(query));
+    Assert.assertNotEquals(expected, store.query(query));
+  }
+
+  private MetricDataQuery createQuery(long start, long end, int limit) {
+    return new MetricDataQuery(start, end, 1, limit, ImmutableMap.of("metric", AggregationFunction.SUM),
+                               ImmutableMap.<String, String>of(), ImmutableList.of("tag"), null);
+  }
+
+  /**
+   * A {@link MetricStore} with a single metric of one second resolution, grouped by a single tag,
+   * that only supports the query method.
+   */
+  private static final class TestMetricStore implements MetricStore {
+
+    private final Map<String, List<TimeValue>> series = new TreeMap<>();
+    private final List<Long> queriedStarts = new ArrayList<>();
+
+    void add(String tagValue, long ts, long value) {
+      List<TimeValue> timeValues = series.get(tagValue);
+      if (timeValues == null) {
+        timeValues = new ArrayList<>();
+        series.put(tagValue, timeValues);
+      }
+      for (int i = 0; i < timeValues.size(); i++) {
+        if (timeValues.get(i).getTimestamp() == ts) {
+          timeValues.set(i, new TimeValue(ts, timeValues.get(i).getValue() + value));
+          return;
+        }
+      }
+      timeValues.add(new TimeValue(ts, value));
+    }
+
+    List<Long> getQueriedStarts() {
+      return queriedStarts;
+    }
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      queriedStarts.add(query.getStartTs());
+      List<MetricTimeSeries> result = new ArrayList<>();
+      for (Map.Entry<String, List<TimeValue>> entry : series.entrySet()) {
+        List<TimeValue> timeValues = new ArrayList<>();
+        for (TimeValue timeValue : entry.getValue()) {
+          if (timeValue.getTimestamp() >= query.getStartTs() && timeValue.getTimestamp() <= query.getEndTs()) {
+            timeValues.add(timeValue);
+            if (timeValues.size() >= query.getLimit()) {
+              break;
+            }
+          }
+        }
+        if (!timeValues.isEmpty()) {
+          result.add(new MetricTimeSeries("metric", ImmutableMap.of("tag", entry.getKey()), timeValues));
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) {
+      return Collections.emptyList();
+    }
+  }
+}